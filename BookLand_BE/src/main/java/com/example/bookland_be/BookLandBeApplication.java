@@ -6,6 +6,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @SecurityScheme(
@@ -16,6 +17,7 @@ import org.springframework.scheduling.annotation.EnableAsync;
 )
 @EnableCaching
 @EnableAsync
+@EnableScheduling
 public class BookLandBeApplication {
 
     public static void main(String[] args) {
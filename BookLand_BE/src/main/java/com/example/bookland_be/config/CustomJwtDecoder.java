@@ -1,55 +1,82 @@
 package com.example.bookland_be.config;
 
 import java.text.ParseException;
-import java.util.Objects;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import com.example.bookland_be.dto.request.IntrospectRequest;
-import com.example.bookland_be.service.AuthenticationService;
+import com.example.bookland_be.service.TokenRevocationService;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.oauth2.jwt.BadJwtException;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
 import org.springframework.stereotype.Component;
 
 import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
 
 
 // Tác dụng :
 // Nếu dùng mặc định Nimbus để Decode JWT Token => Nó chỉ đi qua verify mặc định của Nimbus => Ko có check Token LOGOUT (trong InvalidDB ấy)
 // => Ta cần Custome nó
+// Token chỉ được parse 1 lần + verify HMAC 1 lần (MACVerifier dùng lại), check thu hồi qua TokenRevocationService (không query DB mỗi request)
 @Component
 public class CustomJwtDecoder implements JwtDecoder {
     @Value("${jwt.signerKey}")
     private String signerKey;
 
     @Autowired
-    private AuthenticationService authenticationService;
+    private TokenRevocationService tokenRevocationService;
 
-    private NimbusJwtDecoder nimbusJwtDecoder = null;
+    private MACVerifier verifier;
+
+    private final Converter<Map<String, Object>, Map<String, Object>> claimSetConverter =
+            MappedJwtClaimSetConverter.withDefaults(Collections.emptyMap());
+
+    @PostConstruct
+    void init() throws JOSEException {
+        verifier = new MACVerifier(signerKey.getBytes());
+    }
 
     @Override
     public Jwt decode(String token) throws JwtException {
-
+        SignedJWT signedJWT;
+        JWTClaimsSet claimsSet;
         try {
-            var response = authenticationService.introspect(
-                    IntrospectRequest.builder().token(token).build());
+            signedJWT = SignedJWT.parse(token);
+            if (!JWSAlgorithm.HS512.equals(signedJWT.getHeader().getAlgorithm())
+                    || !signedJWT.verify(verifier)) {
+                throw new BadJwtException("Token invalid");
+            }
+            claimsSet = signedJWT.getJWTClaimsSet();
+        } catch (ParseException | JOSEException e) {
+            throw new BadJwtException(e.getMessage(), e);
+        }
 
-            if (!response.isValid()) throw new JwtException("Token invalid");
-        } catch (JOSEException | ParseException e) {
-            throw new JwtException(e.getMessage());
+        Date expiryTime = claimsSet.getExpirationTime();
+        if (expiryTime == null || !expiryTime.after(new Date())) {
+            throw new BadJwtException("Token expired");
         }
 
-        if (Objects.isNull(nimbusJwtDecoder)) {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS512");
-            nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
-                    .macAlgorithm(MacAlgorithm.HS512)
-                    .build();
+        if (tokenRevocationService.isRevoked(claimsSet.getJWTID())) {
+            throw new BadJwtException("Token invalid");
         }
 
-        return nimbusJwtDecoder.decode(token);
+        Map<String, Object> headers = new LinkedHashMap<>(signedJWT.getHeader().toJSONObject());
+        Map<String, Object> claims = claimSetConverter.convert(claimsSet.getClaims());
+
+        return Jwt.withTokenValue(token)
+                .headers(h -> h.putAll(headers))
+                .claims(c -> c.putAll(claims))
+                .build();
     }
-}
\ No newline at end of file
+}
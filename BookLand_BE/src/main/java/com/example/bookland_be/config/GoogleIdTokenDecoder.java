@@ -0,0 +1,55 @@
+package com.example.bookland_be.config;
+
+import com.example.bookland_be.util.RefreshingJwkSource;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+
+// Decoder dùng chung để verify id_token của Google (trước đây mỗi lần login tạo decoder mới => tải JWKS mỗi lần)
+// JWKS được cache theo Cache-Control, làm mới ở background, gặp kid lạ thì tải lại
+// google.jwks-uri có thể trỏ tới file:/... hoặc stub server khi test offline
+@Component
+public class GoogleIdTokenDecoder {
+
+    private final RefreshingJwkSource jwkSource;
+    private final NimbusJwtDecoder decoder;
+
+    public GoogleIdTokenDecoder(
+            @Value("${google.jwks-uri:https://www.googleapis.com/oauth2/v3/certs}") URI jwksUri,
+            @Value("${google.jwks.default-ttl:PT1H}") Duration defaultTtl,
+            @Value("${google.jwks.min-ttl:PT5M}") Duration minTtl,
+            @Value("${google.jwks.max-ttl:PT24H}") Duration maxTtl,
+            @Value("${google.jwks.unknown-kid-cooldown:PT30S}") Duration unknownKidCooldown,
+            @Value("${google.jwks.timeout:PT5S}") Duration timeout) {
+        this.jwkSource = new RefreshingJwkSource(jwksUri, defaultTtl, minTtl, maxTtl, unknownKidCooldown, timeout);
+
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // Claims được validate bởi OAuth2TokenValidator của Spring (giống NimbusJwtDecoder.withJwkSetUri)
+        processor.setJWTClaimsSetVerifier((claims, context) -> { });
+
+        this.decoder = new NimbusJwtDecoder(processor);
+        this.decoder.setJwtValidator(JwtValidators.createDefault());
+    }
+
+    public Jwt decode(String idToken) throws JwtException {
+        return decoder.decode(idToken);
+    }
+
+    // Làm mới JWKS trước khi hết hạn để request login không phải chờ tải key
+    @Scheduled(initialDelay = 0, fixedDelayString = "${google.jwks.refresh-check-interval:PT1M}")
+    public void refreshKeys() {
+        jwkSource.refreshIfStale(Duration.ofMinutes(2));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bookland_be.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Fan-out message của simple broker giữa các node qua Redis pub/sub (websocket.broker.mode=redis).
+ * Message app gửi vào brokerChannel với đích /topic/** hoặc /user/** được publish lên Redis,
+ * các node khác nhận về và gửi lại vào brokerChannel của mình (simple broker / user destination
+ * resolve theo session đang kết nối ở node đó). Đích /queue/** đã resolve theo session thì không fan-out.
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker.mode", havingValue = "redis")
+@Slf4j
+public class RedisBrokerFanout implements ChannelInterceptor {
+
+    public static final String ORIGIN_HEADER = "x-fanout-origin";
+    private static final String CHANNEL = "ws:broker-fanout";
+    private static final char SEPARATOR = '\n';
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final MessageChannel brokerChannel;
+
+    public RedisBrokerFanout(StringRedisTemplate stringRedisTemplate,
+                             RedisMessageListenerContainer redisMessageListenerContainer,
+                             @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.brokerChannel = brokerChannel;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        MessageListener listener = (message, pattern) -> onRemote(new String(message.getBody(), StandardCharsets.UTF_8));
+        redisMessageListenerContainer.addMessageListener(listener, new ChannelTopic(CHANNEL));
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE
+                || accessor.getHeader(ORIGIN_HEADER) != null
+                || destination == null
+                || !(destination.startsWith("/topic/") || destination.startsWith("/user/"))) {
+            return message;
+        }
+
+        byte[] payload;
+        if (message.getPayload() instanceof byte[] bytes) {
+            payload = bytes;
+        } else if (message.getPayload() instanceof String text) {
+            payload = text.getBytes(StandardCharsets.UTF_8);
+        } else {
+            return message;
+        }
+
+        MimeType contentType = accessor.getContentType();
+        String body = nodeId + SEPARATOR
+                + destination + SEPARATOR
+                + (contentType != null ? contentType.toString() : "") + SEPARATOR
+                + Base64.getEncoder().encodeToString(payload);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, body);
+        } catch (RuntimeException e) {
+            // Vẫn gửi cho client ở node hiện tại
+            log.warn("Cannot fan out STOMP message to {}: {}", destination, e.getMessage());
+        }
+        return message;
+    }
+
+    private void onRemote(String body) {
+        String[] parts = body.split(String.valueOf(SEPARATOR), 4);
+        if (parts.length != 4 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(parts[1]);
+        if (!parts[2].isEmpty()) {
+            accessor.setContentType(MimeType.valueOf(parts[2]));
+        }
+        accessor.setHeader(ORIGIN_HEADER, parts[0]);
+        accessor.setLeaveMutable(true);
+        try {
+            brokerChannel.send(MessageBuilder.createMessage(Base64.getDecoder().decode(parts[3]),
+                    accessor.getMessageHeaders()));
+        } catch (RuntimeException e) {
+            log.warn("Cannot deliver fanned-out STOMP message to {}: {}", parts[1], e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.bookland_be.config;
 
+import com.example.bookland_be.service.UserPrincipalService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -11,7 +13,8 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
 
@@ -49,6 +52,7 @@ public class SecurityConfig {
             "/api/publishers",        // getAllPublishers
             "/api/publishers/**",
             "/api/events/highest-priority",
+            "/api/files/**",          // ảnh khi storage.backend=local
     };
 
     private static final String[] API_DOC_ENDPOINTS = {
@@ -65,6 +69,9 @@ public class SecurityConfig {
     @Autowired
     private CustomJwtDecoder customJwtDecoder;
 
+    @Autowired
+    private UserPrincipalService userPrincipalService;
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity httpSecurity) throws Exception {
         httpSecurity
@@ -77,27 +84,31 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, PUBLIC_GET_ENDPOINTS).permitAll()
 
                         .requestMatchers("/admin/**").hasAuthority("ROLE_ADMIN")
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasAuthority("ROLE_ADMIN")
 
                             // Các Request còn lại thì cần xác thực
                         .anyRequest().authenticated())
 
                 .oauth2ResourceServer(oauth2 ->
-                        oauth2.jwt(jwtConfigurer -> jwtConfigurer.decoder(customJwtDecoder)) // Custom cách ta Decode JWT Token (Do ta còn lưu Token Logout vào DB nữa)
+                        oauth2.jwt(jwtConfigurer -> jwtConfigurer
+                                .decoder(customJwtDecoder) // Custom cách ta Decode JWT Token (Do ta còn lưu Token Logout vào DB nữa)
+                                .jwtAuthenticationConverter(jwtAuthenticationConverter()))
                 )
                 .csrf(AbstractHttpConfigurer::disable);
         return httpSecurity.build();
     }
 
     // Convert Role lưu trong scope của token (để nó không có cái prefix ở đầu nữa)
+    // + gắn UserPrincipal (cache) vào Authentication để service không phải findByEmail lại
     @Bean
-    JwtAuthenticationConverter jwtAuthenticationConverter() {
+    Converter<Jwt, AbstractAuthenticationToken> jwtAuthenticationConverter() {
         JwtGrantedAuthoritiesConverter jwtGrantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
         jwtGrantedAuthoritiesConverter.setAuthorityPrefix("");
 
-        JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
-        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(jwtGrantedAuthoritiesConverter);
-
-        return jwtAuthenticationConverter;
+        return jwt -> new UserPrincipalAuthenticationToken(jwt,
+                jwtGrantedAuthoritiesConverter.convert(jwt),
+                userPrincipalService.loadByEmail(jwt.getSubject()));
     }
 
     @Bean
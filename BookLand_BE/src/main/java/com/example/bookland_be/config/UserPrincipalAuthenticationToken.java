@@ -0,0 +1,24 @@
+package com.example.bookland_be.config;
+
+import com.example.bookland_be.dto.UserPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.util.Collection;
+
+// JwtAuthenticationToken kèm UserPrincipal đã resolve (null nếu user không còn tồn tại)
+public class UserPrincipalAuthenticationToken extends JwtAuthenticationToken {
+
+    private final transient UserPrincipal userPrincipal;
+
+    public UserPrincipalAuthenticationToken(Jwt jwt, Collection<? extends GrantedAuthority> authorities,
+                                            UserPrincipal userPrincipal) {
+        super(jwt, authorities, jwt.getSubject());
+        this.userPrincipal = userPrincipal;
+    }
+
+    public UserPrincipal getUserPrincipal() {
+        return userPrincipal;
+    }
+}
@@ -1,7 +1,13 @@
 package com.example.bookland_be.config;
 
+import com.example.bookland_be.service.NotificationBroadcastService;
+import com.example.bookland_be.service.PresenceService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.lang.NonNull;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
@@ -11,14 +17,20 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -27,6 +39,40 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Autowired
     private CustomJwtDecoder customJwtDecoder;
 
+    // simple: broker trong JVM (mặc định, dùng khi chạy 1 node / test)
+    // relay: chuyển tiếp /topic, /queue qua STOMP broker ngoài (RabbitMQ, ActiveMQ...)
+    // redis: simple broker + fan-out giữa các node qua Redis pub/sub
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${websocket.broker.relay-host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay-port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay-login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.broker.relay-passcode:guest}")
+    private String relayPasscode;
+
+    @Autowired
+    private ObjectProvider<RedisBrokerFanout> redisBrokerFanout;
+
+    @Autowired
+    @Lazy
+    private PresenceService presenceService;
+
+    // Heartbeat 2 chiều để phát hiện client mất kết nối (presence hết TTL)
+    @Value("${websocket.heartbeat-interval:10000}")
+    private long heartbeatInterval;
+
+    private static final String ROLE_NOTIFICATION_TOPIC = NotificationBroadcastService.TOPIC_PREFIX + "role/";
+
+    private static final Set<String> STAFF_ROLES = Set.of("ROLE_ADMIN", "ROLE_SERVICE_SUPPORTER", "ROLE_MANAGER");
+
+    private final ThreadPoolTaskScheduler heartbeatScheduler = createHeartbeatScheduler();
 
     // cấu hình message broker
     // MessageBrokerRegistry: dùng để cấu hình message broker (nơi trung gian chuyển tiếp message giữa client và server)
@@ -34,7 +80,23 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void configureMessageBroker(@NonNull MessageBrokerRegistry config) {
         // /topic: dùng để gửi message đến nhiều người (publish-subscribe)
         // /queue: dùng để gửi message đến một người (point-to-point)
-        config.enableSimpleBroker("/topic", "/queue"); // prefix gửi đi
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            config.enableStompBrokerRelay("/topic", "/queue") // prefix gửi đi
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    // User đang kết nối ở node khác: broadcast qua broker để node đó resolve session
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            config.enableSimpleBroker("/topic", "/queue") // prefix gửi đi
+                    .setHeartbeatValue(new long[]{heartbeatInterval, heartbeatInterval})
+                    .setTaskScheduler(heartbeatScheduler);
+            redisBrokerFanout.ifAvailable(fanout -> config.configureBrokerChannel().interceptors(fanout));
+        }
         // "/app": dùng để gửi message từ client đến server (client gửi message đến server với prefix này)
         config.setApplicationDestinationPrefixes("/app"); // prefix nhận
         // "/user": dùng để gửi message riêng tư đến một user cụ thể
@@ -68,17 +130,84 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                         try {
                             Jwt jwt = customJwtDecoder.decode(token);
                             String email = jwt.getSubject();
-                            
-                            Authentication authentication = new UsernamePasswordAuthenticationToken(email, null, new ArrayList<>());
+
+                            // Lấy quyền từ claim scope (giống JwtGrantedAuthoritiesConverter của HTTP)
+                            List<GrantedAuthority> authorities = new ArrayList<>();
+                            String scope = jwt.getClaimAsString("scope");
+                            if (scope != null && !scope.isBlank()) {
+                                for (String authority : scope.split(" ")) {
+                                    authorities.add(new SimpleGrantedAuthority(authority));
+                                }
+                            }
+
+                            Authentication authentication = new UsernamePasswordAuthenticationToken(email, null, authorities);
                             accessor.setUser(authentication);
+                            presenceService.connect(accessor.getSessionId(), email);
                         } catch (Exception e) {
                             // Handle invalid token if necessary
                         }
                     }
                 }
+
+                if (accessor != null) {
+                    if (StompCommand.DISCONNECT.equals(accessor.getCommand())) {
+                        presenceService.disconnect(accessor.getSessionId());
+                    } else if (!StompCommand.CONNECT.equals(accessor.getCommand())) {
+                        // Heartbeat / SEND / SUBSCRIBE đều tính là còn hoạt động
+                        presenceService.touch(accessor.getSessionId());
+                    }
+                }
+
+                // Presence / typing chỉ dành cho staff hỗ trợ chat
+                if (accessor != null && StompCommand.SUBSCRIBE.equals(accessor.getCommand())
+                        && PresenceService.PRESENCE_TOPIC.equals(accessor.getDestination())) {
+                    boolean isStaff = accessor.getUser() instanceof Authentication authentication
+                            && authentication.getAuthorities().stream()
+                                    .anyMatch(authority -> STAFF_ROLES.contains(authority.getAuthority()));
+                    if (!isStaff) {
+                        throw new AccessDeniedException("Staff role required to subscribe to " + accessor.getDestination());
+                    }
+                }
+
+                // Broadcast theo role: chỉ user có role đó mới subscribe được
+                if (accessor != null && StompCommand.SUBSCRIBE.equals(accessor.getCommand())
+                        && accessor.getDestination() != null
+                        && accessor.getDestination().startsWith(ROLE_NOTIFICATION_TOPIC)) {
+                    String requiredAuthority = "ROLE_" + accessor.getDestination().substring(ROLE_NOTIFICATION_TOPIC.length());
+                    boolean hasRole = accessor.getUser() instanceof Authentication authentication
+                            && authentication.getAuthorities().stream()
+                                    .anyMatch(authority -> requiredAuthority.equals(authority.getAuthority()));
+                    if (!hasRole) {
+                        throw new AccessDeniedException("Role required to subscribe to " + accessor.getDestination());
+                    }
+                }
+
+                // Topic /topic/admin/** chỉ dành cho ADMIN (dashboard)
+                if (accessor != null && StompCommand.SUBSCRIBE.equals(accessor.getCommand())
+                        && accessor.getDestination() != null
+                        && accessor.getDestination().startsWith("/topic/admin/")) {
+                    boolean isAdmin = accessor.getUser() instanceof Authentication authentication
+                            && authentication.getAuthorities().stream()
+                                    .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+                    if (!isAdmin) {
+                        throw new AccessDeniedException("Admin role required to subscribe to " + accessor.getDestination());
+                    }
+                }
                 return message;
             }
         });
     }
 
+    private static ThreadPoolTaskScheduler createHeartbeatScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("ws-heartbeat-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    @PreDestroy
+    void shutdownHeartbeatScheduler() {
+        heartbeatScheduler.shutdown();
+    }
 }
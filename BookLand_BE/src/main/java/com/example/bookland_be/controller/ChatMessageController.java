@@ -1,21 +1,24 @@
 package com.example.bookland_be.controller;
 
+import com.example.bookland_be.dto.UserPrincipal;
 import com.example.bookland_be.dto.request.SendChatMessageRequest;
+import com.example.bookland_be.dto.request.TypingRequest;
 import com.example.bookland_be.dto.response.ApiResponse;
+import com.example.bookland_be.dto.response.ChatHistoryPageResponse;
 import com.example.bookland_be.dto.response.ChatMessageResponse;
 import com.example.bookland_be.dto.response.ConversationUserResponse;
-import com.example.bookland_be.entity.User;
-import com.example.bookland_be.exception.AppException;
-import com.example.bookland_be.exception.ErrorCode;
-import com.example.bookland_be.repository.UserRepository;
+import com.example.bookland_be.dto.response.PresenceChangeResponse;
 import com.example.bookland_be.service.ChatMessageService;
+import com.example.bookland_be.service.PresenceService;
+import com.example.bookland_be.service.UserPrincipalService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.List;
 
 @RestController
@@ -25,7 +28,8 @@ import java.util.List;
 public class ChatMessageController {
 
     private final ChatMessageService chatMessageService;
-    private final UserRepository userRepository;
+    private final UserPrincipalService userPrincipalService;
+    private final PresenceService presenceService;
 
     @GetMapping("/history/{otherUserId}")
     public ApiResponse<List<ChatMessageResponse>> getChatHistory(@PathVariable Long otherUserId) {
@@ -35,23 +39,65 @@ public class ChatMessageController {
                 .build();
     }
 
+    /**
+     * Lịch sử chat phân trang: GET /chat/history/{otherUserId}/page?size=30 (trang mới nhất)
+     * rồi ?before={nextBefore} để tải tiếp các tin cũ hơn
+     */
+    @GetMapping("/history/{otherUserId}/page")
+    public ApiResponse<ChatHistoryPageResponse> getChatHistoryPage(
+            @PathVariable Long otherUserId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "30") int size) {
+        Long currentUserId = getCurrentUserId();
+        return ApiResponse.<ChatHistoryPageResponse>builder()
+                .result(chatMessageService.getChatHistoryPage(currentUserId, otherUserId, before, size))
+                .build();
+    }
+
     @GetMapping("/conversations")
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_SERVICE_SUPPORTER', 'ROLE_MANAGER')")
-    public ApiResponse<List<ConversationUserResponse>> getConversations() {
+    public ApiResponse<List<ConversationUserResponse>> getConversations(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
         Long currentUserId = getCurrentUserId();
         return ApiResponse.<List<ConversationUserResponse>>builder()
-                .result(chatMessageService.getConversations(currentUserId))
+                .result(chatMessageService.getConversations(currentUserId, page, size))
                 .build();
     }
 
+    // Danh sách user đang online trên mọi node (snapshot), sau đó nghe delta ở /topic/presence
+    @GetMapping("/presence/online")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_SERVICE_SUPPORTER', 'ROLE_MANAGER')")
+    public ApiResponse<List<PresenceChangeResponse>> getOnlineUsers() {
+        return ApiResponse.<List<PresenceChangeResponse>>builder()
+                .result(presenceService.getOnlineUsers())
+                .build();
+    }
+
+    // Client gửi STOMP tới /app/chat.typing {toUserId, typing}
+    @MessageMapping("/chat.typing")
+    public void typing(@Payload TypingRequest request, Principal principal) {
+        if (principal != null) {
+            presenceService.typing(principal.getName(), request);
+        }
+    }
+
     @PostMapping("/send")
     public ApiResponse<ChatMessageResponse> sendMessage(@RequestBody SendChatMessageRequest request) {
-        Long currentUserId = getCurrentUserId();
         return ApiResponse.<ChatMessageResponse>builder()
-                .result(chatMessageService.sendMessage(currentUserId, request))
+                .result(chatMessageService.sendMessage(userPrincipalService.getCurrentUser(), request))
                 .build();
     }
 
+    // Gửi qua STOMP /app/chat.send {toEmail, content, clientMessageId}, ack trả về ở /user/queue/chat.ack
+    @MessageMapping("/chat.send")
+    public void sendMessageOverSocket(@Payload SendChatMessageRequest request, Principal principal) {
+        UserPrincipal sender = principal != null ? userPrincipalService.loadByEmail(principal.getName()) : null;
+        if (sender != null) {
+            chatMessageService.sendMessageAsync(sender, request);
+        }
+    }
+
     @PutMapping("/mark-read/{otherUserId}")
     public ApiResponse<Void> markAsRead(@PathVariable Long otherUserId) {
         Long currentUserId = getCurrentUserId();
@@ -70,10 +116,6 @@ public class ChatMessageController {
     }
 
     private Long getCurrentUserId() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-        return user.getId();
+        return userPrincipalService.getCurrentUserId();
     }
 }
@@ -1,13 +1,18 @@
 package com.example.bookland_be.controller;
 
+import com.example.bookland_be.dto.request.BroadcastNotificationRequest;
 import com.example.bookland_be.dto.response.ApiResponse;
+import com.example.bookland_be.dto.response.NotificationBroadcastResponse;
 import com.example.bookland_be.dto.response.NotificationResponse;
+import com.example.bookland_be.service.NotificationBroadcastService;
 import com.example.bookland_be.service.NotificationService;
+import com.example.bookland_be.service.UserPrincipalService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -17,6 +22,8 @@ import org.springframework.web.bind.annotation.*;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final NotificationBroadcastService notificationBroadcastService;
+    private final UserPrincipalService userPrincipalService;
 
     @GetMapping("/user/{userId}")
     public ApiResponse<Page<NotificationResponse>> getNotifications(
@@ -59,4 +66,21 @@ public class NotificationController {
         notificationService.deleteAllRead(userId);
         return ApiResponse.<Void>builder().message("All read notifications deleted").build();
     }
+
+    // Gửi thông báo cho cả nhóm user, chạy nền; theo dõi tiến độ bằng GET /notifications/broadcast/{broadcastId}
+    @PostMapping("/broadcast")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_MANAGER')")
+    public ApiResponse<NotificationBroadcastResponse> broadcast(@RequestBody BroadcastNotificationRequest request) {
+        return ApiResponse.<NotificationBroadcastResponse>builder()
+                .result(notificationBroadcastService.broadcast(request, userPrincipalService.getCurrentUserId()))
+                .build();
+    }
+
+    @GetMapping("/broadcast/{broadcastId}")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_MANAGER')")
+    public ApiResponse<NotificationBroadcastResponse> getBroadcastStatus(@PathVariable String broadcastId) {
+        return ApiResponse.<NotificationBroadcastResponse>builder()
+                .result(notificationBroadcastService.getStatus(broadcastId))
+                .build();
+    }
 }
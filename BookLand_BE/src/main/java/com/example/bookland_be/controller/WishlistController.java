@@ -4,18 +4,13 @@ package com.example.bookland_be.controller;
 import com.example.bookland_be.dto.WishlistDTO;
 import com.example.bookland_be.dto.request.AddToWishlistRequest;
 import com.example.bookland_be.dto.response.ApiResponse;
-import com.example.bookland_be.entity.User;
-import com.example.bookland_be.exception.AppException;
-import com.example.bookland_be.exception.ErrorCode;
-import com.example.bookland_be.repository.UserRepository;
 import com.example.bookland_be.service.WishlistService;
+import com.example.bookland_be.service.UserPrincipalService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -27,18 +22,15 @@ import java.util.List;
 public class WishlistController {
 
     private final WishlistService wishlistService;
-    private final UserRepository userRepository;
+    private final UserPrincipalService userPrincipalService;
 
     /**
      * GET /api/wishlist/my - Lấy wishlist của user hiện tại từ JWT token
      */
     @GetMapping("/my")
     public ApiResponse<List<WishlistDTO>> getMyWishlist() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-        return ApiResponse.<List<WishlistDTO>>builder().result(wishlistService.getUserWishlist(user.getId())).build();
+        Long userId = userPrincipalService.getCurrentUserId();
+        return ApiResponse.<List<WishlistDTO>>builder().result(wishlistService.getUserWishlist(userId)).build();
     }
 
     @PreAuthorize("hasRole('ROLE_ADMIN')")
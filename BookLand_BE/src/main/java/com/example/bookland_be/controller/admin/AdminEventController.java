@@ -0,0 +1,62 @@
+package com.example.bookland_be.controller.admin;
+
+import com.example.bookland_be.dto.request.EventSimulationRequest;
+import com.example.bookland_be.dto.response.ApiResponse;
+import com.example.bookland_be.dto.response.EventAnalyticsResponse;
+import com.example.bookland_be.entity.Event;
+import com.example.bookland_be.service.EventAnalyticsService;
+import com.example.bookland_be.service.EventSimulationService;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// Mô phỏng event nháp:
+//{
+//"draftEvent": {
+//  "name": "Mua 2 tặng 1",
+//  "type": "FLASH_SALE",
+//  "startTime": "2025-01-01T00:00:00",
+//  "endTime": "2025-01-07T23:59:59",
+//  "targets": [{"targetType": "CATEGORY", "targetId": 1}],
+//  "actions": [{"actionType": "BUY_X_GET_Y_FREE", "actionValue": "2,1"}]
+//},
+//"categoryIds": [1, 2],
+//"sampleCarts": 50
+//}
+@RestController
+@RequestMapping("/admin/events")
+@RequiredArgsConstructor
+@SecurityRequirement(name = "BearerAuth")
+public class AdminEventController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final EventSimulationService eventSimulationService;
+    private final EventAnalyticsService eventAnalyticsService;
+
+    /**
+     * Stream giá mô phỏng của từng sách (NDJSON), sau đó là giỏ mẫu và dòng tổng hợp
+     */
+    @PostMapping("/simulate")
+    public ResponseEntity<StreamingResponseBody> simulate(@Valid @RequestBody EventSimulationRequest request) {
+        Event event = eventSimulationService.resolveEvent(request);
+        StreamingResponseBody body = outputStream -> eventSimulationService.simulate(event, request, outputStream);
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Thống kê realtime của event (cập nhật live qua STOMP /topic/admin/events/{id}/analytics)
+     */
+    @GetMapping("/{id}/analytics")
+    public ApiResponse<EventAnalyticsResponse> getAnalytics(@PathVariable Long id) {
+        return ApiResponse.<EventAnalyticsResponse>builder()
+                .result(eventAnalyticsService.getAnalytics(id))
+                .build();
+    }
+}
@@ -5,8 +5,10 @@ import com.example.bookland_be.dto.request.UserCreationRequest;
 import com.example.bookland_be.dto.request.UserRequest;
 import com.example.bookland_be.dto.request.UserUpdateRequest;
 import com.example.bookland_be.dto.response.ApiResponse;
+import com.example.bookland_be.dto.response.EmailCampaignResponse;
 import com.example.bookland_be.dto.response.UserResponse;
 import com.example.bookland_be.entity.User;
+import com.example.bookland_be.service.EmailCampaignService;
 import com.example.bookland_be.service.UserService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
@@ -30,6 +32,7 @@ import java.util.List;
 @SecurityRequirement(name = "BearerAuth")
 public class AdminUserController {
     private final UserService userService;
+    private final EmailCampaignService emailCampaignService;
 
     /**
      * Lấy danh sách tất cả users (có phân trang)
@@ -117,8 +120,35 @@ public class AdminUserController {
      * Gửi email tuỳ chỉnh cho người dùng
      */
     @PostMapping("/send-email")
-    public ResponseEntity<ApiResponse<String>> sendCustomEmail(@RequestBody com.example.bookland_be.dto.request.SendCustomEmailRequest request) {
-        userService.sendCustomEmails(request);
-        return ResponseEntity.ok(ApiResponse.<String>builder().result("Gửi email thành công").build());
+    public ResponseEntity<ApiResponse<EmailCampaignResponse>> sendCustomEmail(@RequestBody com.example.bookland_be.dto.request.SendCustomEmailRequest request) {
+        // Tạo campaign và gửi nền; theo dõi tiến độ qua /email-campaigns/{id}
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.<EmailCampaignResponse>builder()
+                        .result(emailCampaignService.createCampaign(request))
+                        .build());
+    }
+
+    @GetMapping("/email-campaigns/{id}")
+    public ResponseEntity<ApiResponse<EmailCampaignResponse>> getEmailCampaign(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.<EmailCampaignResponse>builder()
+                .result(emailCampaignService.getCampaign(id))
+                .build());
+    }
+
+    /**
+     * Gửi lại cho các người nhận bị lỗi của campaign đã hoàn thành
+     */
+    @PostMapping("/email-campaigns/{id}/retry-failed")
+    public ResponseEntity<ApiResponse<EmailCampaignResponse>> retryEmailCampaign(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.<EmailCampaignResponse>builder()
+                .result(emailCampaignService.retryFailed(id))
+                .build());
+    }
+
+    @PostMapping("/email-campaigns/{id}/cancel")
+    public ResponseEntity<ApiResponse<EmailCampaignResponse>> cancelEmailCampaign(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.<EmailCampaignResponse>builder()
+                .result(emailCampaignService.cancel(id))
+                .build());
     }
 }
@@ -8,8 +8,10 @@ import com.example.bookland_be.dto.response.LoginResponse;
 import com.example.bookland_be.dto.response.UserResponse;
 import com.example.bookland_be.service.AuthenticationService;
 import com.example.bookland_be.service.EmailService;
+import com.example.bookland_be.service.LoginRateLimiter;
 import com.nimbusds.jose.JOSEException;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -26,6 +28,7 @@ import java.util.Map;
 public class AuthenticationController {
     AuthenticationService authenticationService;
     EmailService emailService;
+    LoginRateLimiter loginRateLimiter;
 
     // API Lấy Token mới bằng RefreshToken
     @PostMapping("/refresh")
@@ -35,13 +38,15 @@ public class AuthenticationController {
     }
 
     @PostMapping("/login")
-    public ApiResponse<LoginResponse> login(@RequestBody LoginRequest request) throws JOSEException, ParseException {
+    public ApiResponse<LoginResponse> login(@RequestBody LoginRequest request, HttpServletRequest httpRequest) throws JOSEException, ParseException {
+        loginRateLimiter.checkLogin(httpRequest.getRemoteAddr(), request.getEmail());
         var result = authenticationService.login(request);
         return ApiResponse.<LoginResponse>builder().result(result).build();
     }
 
     @PostMapping("/admin/login")
-    public ApiResponse<LoginResponse> adminlogin(@RequestBody LoginRequest request) throws JOSEException, ParseException {
+    public ApiResponse<LoginResponse> adminlogin(@RequestBody LoginRequest request, HttpServletRequest httpRequest) throws JOSEException, ParseException {
+        loginRateLimiter.checkLogin(httpRequest.getRemoteAddr(), request.getEmail());
         var result = authenticationService.adminlogin(request);
         return ApiResponse.<LoginResponse>builder().result(result).build();
     }
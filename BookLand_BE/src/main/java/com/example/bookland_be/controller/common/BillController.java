@@ -8,6 +8,7 @@ import com.example.bookland_be.dto.response.ApiResponse;
 import com.example.bookland_be.entity.Bill.BillStatus;
 import com.example.bookland_be.service.BillPreviewService;
 import com.example.bookland_be.service.BillService;
+import com.example.bookland_be.service.UserPrincipalService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -17,8 +18,6 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
@@ -31,6 +30,7 @@ public class BillController {
 
     private final BillService billService;
     private final BillPreviewService billPreviewService;
+    private final UserPrincipalService userPrincipalService;
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_MANAGER', 'ROLE_ORDER_STAFF')")
@@ -72,15 +72,14 @@ public class BillController {
             @RequestParam(defaultValue = "DESC") String sortDirection
     ) {
         // Lấy userId từ token
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        
+        Long userId = userPrincipalService.getCurrentUserId();
+
         Sort.Direction direction = sortDirection.equalsIgnoreCase("ASC")
                 ? Sort.Direction.ASC
                 : Sort.Direction.DESC;
         Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
 
-        Page<BillDTO> bills = billService.getOwnBills(email, status, fromDate, toDate,
+        Page<BillDTO> bills = billService.getOwnBills(userId, status, fromDate, toDate,
                 minCost, maxCost, pageable);
         return ApiResponse.<Page<BillDTO>>builder().result(bills).build();
     }
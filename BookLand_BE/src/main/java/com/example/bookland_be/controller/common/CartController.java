@@ -5,17 +5,12 @@ import com.example.bookland_be.dto.*;
 import com.example.bookland_be.dto.request.AddToCartRequest;
 import com.example.bookland_be.dto.request.UpdateCartItemRequest;
 import com.example.bookland_be.dto.response.ApiResponse;
-import com.example.bookland_be.entity.User;
-import com.example.bookland_be.exception.AppException;
-import com.example.bookland_be.exception.ErrorCode;
-import com.example.bookland_be.repository.UserRepository;
 import com.example.bookland_be.service.CartService;
+import com.example.bookland_be.service.UserPrincipalService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -27,18 +22,15 @@ import java.util.List;
 public class CartController {
 
     private final CartService cartService;
-    private final UserRepository userRepository;
+    private final UserPrincipalService userPrincipalService;
 
     /**
      * GET /api/cart/my - Lấy giỏ hàng của user hiện tại từ JWT token
      */
     @GetMapping("/my")
     public ApiResponse<CartDTO> getMyCart() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-        return ApiResponse.<CartDTO>builder().result(cartService.getUserCart(user.getId())).build();
+        Long userId = userPrincipalService.getCurrentUserId();
+        return ApiResponse.<CartDTO>builder().result(cartService.getUserCart(userId)).build();
     }
 
     @GetMapping("/{userId}")
@@ -80,12 +72,9 @@ public class CartController {
      */
     @DeleteMapping("/my/items/batch")
     public ApiResponse<CartDTO> removeMultipleFromMyCart(@RequestBody List<Long> bookIds) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        Long userId = userPrincipalService.getCurrentUserId();
         return ApiResponse.<CartDTO>builder()
-                .result(cartService.removeMultipleFromCart(user.getId(), bookIds))
+                .result(cartService.removeMultipleFromCart(userId, bookIds))
                 .build();
     }
 }
\ No newline at end of file
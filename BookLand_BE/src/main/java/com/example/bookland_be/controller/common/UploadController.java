@@ -3,7 +3,8 @@ package com.example.bookland_be.controller.common;
 import com.example.bookland_be.dto.response.ApiResponse;
 import com.example.bookland_be.exception.AppException;
 import com.example.bookland_be.exception.ErrorCode;
-import com.example.bookland_be.service.SupabaseStorageService;
+import com.example.bookland_be.service.ImageUploadService;
+import com.example.bookland_be.service.StorageService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -26,6 +27,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/uploads")
@@ -35,7 +38,8 @@ import java.util.Map;
 @PreAuthorize("hasAnyRole('ROLE_ADMIN','ROLE_MANAGER')")
 public class UploadController {
 
-    private final SupabaseStorageService storageService;
+    private final StorageService storageService;
+    private final ImageUploadService imageUploadService;
 
     // Danh sách định dạng được phép
     private static final List<String> ALLOWED_IMAGE_TYPES = Arrays.asList(
@@ -116,10 +120,12 @@ public class UploadController {
         }
 
         try {
-            String imageUrl = storageService.uploadImage(file);
+            // Ảnh trùng nội dung với ảnh đã có thì trả về URL cũ, không upload lại
+            ImageUploadService.UploadResult uploaded = imageUploadService.upload(file);
 
             Map<String, Object> response = new HashMap<>();
-            response.put("url", imageUrl);
+            response.put("url", uploaded.url());
+            response.put("deduplicated", uploaded.deduplicated());
             response.put("fileName", file.getOriginalFilename());
             response.put("fileSize", file.getSize());
             response.put("contentType", file.getContentType());
@@ -150,36 +156,42 @@ public class UploadController {
         }
 
         try {
-            List<Map<String, Object>> uploadedFiles = files.stream()
+            // Gửi tất cả lên pool upload trước rồi mới chờ, các ảnh được upload song song
+            List<CompletableFuture<Map<String, Object>>> uploads = files.stream()
                     .map(file -> {
-                        try {
-                            // Validate từng file
-                            if (file.getSize() > MAX_FILE_SIZE) {
-                                Map<String, Object> error = new HashMap<>();
-                                error.put("fileName", file.getOriginalFilename());
-                                error.put("error", "File quá lớn");
-                                return error;
-                            }
-
-                            String url = storageService.uploadImage(file);
-
-                            Map<String, Object> result = new HashMap<>();
-                            result.put("url", url);
-                            result.put("fileName", file.getOriginalFilename());
-                            result.put("fileSize", file.getSize());
-                            result.put("success", true);
-                            return result;
-
-                        } catch (Exception e) {
+                        // Validate từng file
+                        if (file.getSize() > MAX_FILE_SIZE) {
                             Map<String, Object> error = new HashMap<>();
                             error.put("fileName", file.getOriginalFilename());
-                            error.put("error", e.getMessage());
-                            error.put("success", false);
-                            return error;
+                            error.put("error", "File quá lớn");
+                            return CompletableFuture.completedFuture(error);
                         }
+
+                        return imageUploadService.uploadAsync(file)
+                                .thenApply(uploaded -> {
+                                    Map<String, Object> result = new HashMap<>();
+                                    result.put("url", uploaded.url());
+                                    result.put("deduplicated", uploaded.deduplicated());
+                                    result.put("fileName", file.getOriginalFilename());
+                                    result.put("fileSize", file.getSize());
+                                    result.put("success", true);
+                                    return result;
+                                })
+                                .exceptionally(e -> {
+                                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                                    Map<String, Object> error = new HashMap<>();
+                                    error.put("fileName", file.getOriginalFilename());
+                                    error.put("error", cause.getMessage());
+                                    error.put("success", false);
+                                    return error;
+                                });
                     })
                     .toList();
 
+            List<Map<String, Object>> uploadedFiles = uploads.stream()
+                    .map(CompletableFuture::join)
+                    .toList();
+
             return ApiResponse.<Map<String, Object>>builder().result(Map.of("files", uploadedFiles)).build();
 
         } catch (Exception e) {
@@ -191,8 +203,10 @@ public class UploadController {
     @Operation(summary = "Xóa ảnh khỏi Supabase Storage")
     public ApiResponse<Void> deleteImage(@RequestParam String fileName) {
         try {
-            storageService.deleteImage(fileName);
+            imageUploadService.delete(fileName);
             return ApiResponse.<Void>builder().build();
+        } catch (AppException e) {
+            throw e;
         } catch (Exception e) {
             throw new AppException(ErrorCode.FILE_DELETE_FAILED);
         }
@@ -14,7 +14,8 @@ public class BillPreviewDTO {
     private Double originalSubtotal;      // Tổng tiền gốc (chưa event)
     private Double discountedSubtotal;    // Tổng tiền sau event
     private Double shippingCost;          // Phí ship
-    private Double totalSaved;            // Tổng tiền tiết kiệm
+    private Double shippingDiscount;      // Phí ship được giảm bởi event
+    private Double totalSaved;            // Tổng tiền tiết kiệm (gồm cả phí ship)
     private Double grandTotal;            // Tổng cộng cuối cùng
 
     private Boolean hasEventApplied;      // Có event được áp dụng không
@@ -6,6 +6,7 @@ import lombok.*;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Map;
 import java.util.Set;
 @Data
 @Builder
@@ -22,6 +23,8 @@ public class BookDTO implements Serializable {
     private BookStatus status;
     private LocalDate publishedDate;
     private String bookImageUrl;
+    // thumbnail / card / detail; null khi chưa sinh xong (dùng URL gốc)
+    private Map<String, String> imageVariants;
     private Boolean pin;
     private Long authorId;
     private String authorName;
@@ -16,6 +16,10 @@ public class CartDTO {
     private CartStatus status;
     private List<CartItemDTO> items;
     private Double totalAmount;
+    private Double eventDiscount;     // Số tiền giảm bởi event đang chạy
+    private Double totalAfterEvent;   // Tổng tiền sau event (chưa gồm phí ship)
+    private Long appliedEventId;
+    private String appliedEventName;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
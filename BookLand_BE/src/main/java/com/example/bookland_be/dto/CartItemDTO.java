@@ -14,7 +14,9 @@ public class CartItemDTO {
     private Double originalPrice;
     private Double salePrice;
     private Double finalPrice;
+    private Double eventPrice;        // Đơn giá sau event, null nếu không được giảm
     private Integer quantity;
     private Integer availableStock;
     private Double subtotal;
+    private Double eventSubtotal;
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package com.example.bookland_be.dto;
 import com.example.bookland_be.entity.EventImage;
 import lombok.*;
 
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -10,5 +12,7 @@ import lombok.*;
 public class EventImageDTO {
     private Long id;
     private String imageUrl;
+    // thumbnail / card / detail; null khi chưa sinh xong (dùng URL gốc)
+    private Map<String, String> imageVariants;
     private EventImage.ImageType imageType;
 }
@@ -0,0 +1,27 @@
+package com.example.bookland_be.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Set;
+
+/**
+ * Thông tin rút gọn của user đang đăng nhập (immutable), gắn vào SecurityContext mỗi request
+ * để service không phải findByEmail lại.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@ToString
+public class UserPrincipal {
+    private final Long id;
+    private final String email;
+    private final String username;
+    private final Set<String> roles;
+
+    public boolean hasRole(String role) {
+        return roles.contains(role);
+    }
+}
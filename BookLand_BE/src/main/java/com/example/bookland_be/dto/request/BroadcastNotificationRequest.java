@@ -0,0 +1,25 @@
+package com.example.bookland_be.dto.request;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BroadcastNotificationRequest {
+
+    public enum Segment {
+        ALL,             // mọi user đang hoạt động
+        ROLE,            // user có role roleName
+        WISHLIST_BOOK,   // user có bookId trong wishlist
+        PURCHASED_BOOK   // user đã mua bookId
+    }
+
+    private Segment segment;
+    private String roleName;
+    private Long bookId;
+
+    private String type;
+    private String title;
+    private String content;
+}
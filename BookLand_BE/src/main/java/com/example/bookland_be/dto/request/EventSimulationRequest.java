@@ -0,0 +1,35 @@
+package com.example.bookland_be.dto.request;
+
+import com.example.bookland_be.entity.Book.BookStatus;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EventSimulationRequest {
+
+    // Chọn 1 trong 2: event đã có hoặc bản nháp (chưa lưu)
+    private Long eventId;
+    private EventRequest draftEvent;
+
+    // Bộ lọc sách, giống GET /api/books
+    private String keyword;
+    private BookStatus status;
+    private List<Long> authorIds;
+    private List<Long> publisherIds;
+    private List<Long> seriesIds;
+    private List<Long> categoryIds;
+    private Boolean pinned;
+    private Double minPrice;
+    private Double maxPrice;
+
+    // Số đơn hàng gần nhất dùng làm giỏ mẫu
+    @Min(value = 0, message = "Số giỏ mẫu phải >= 0")
+    @Max(value = 200, message = "Số giỏ mẫu phải <= 200")
+    private Integer sampleCarts;
+}
@@ -9,4 +9,5 @@ import lombok.*;
 public class SendChatMessageRequest {
     private String toEmail;
     private String content;
+    private String clientMessageId;
 }
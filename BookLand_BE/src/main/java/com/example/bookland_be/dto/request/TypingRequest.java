@@ -0,0 +1,12 @@
+package com.example.bookland_be.dto.request;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TypingRequest {
+    private Long toUserId;
+    private boolean typing;
+}
@@ -0,0 +1,19 @@
+package com.example.bookland_be.dto.response;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPriceSimulationResponse {
+    @Builder.Default
+    private String type = "BOOK";
+    private Long bookId;
+    private String bookName;
+    private Double currentPrice;      // Giá hiện tại (đã tính sale của book)
+    private Double simulatedPrice;    // Giá dưới event mô phỏng
+    private Double discount;
+    private Boolean matched;          // Sách có thuộc target của event không
+    private Long unitsSold;           // Số lượng bán trong cửa sổ thống kê
+}
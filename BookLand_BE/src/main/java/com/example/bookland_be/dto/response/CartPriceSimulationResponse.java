@@ -0,0 +1,20 @@
+package com.example.bookland_be.dto.response;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartPriceSimulationResponse {
+    @Builder.Default
+    private String type = "CART";
+    private Long billId;              // Đơn hàng thật dùng làm giỏ mẫu
+    private Integer lineCount;
+    private Integer totalQuantity;
+    private Boolean eligible;         // Giỏ có thỏa rule của event không
+    private Double originalTotal;     // Tổng tiền theo giá hiện tại (gồm phí ship)
+    private Double simulatedTotal;    // Tổng tiền dưới event mô phỏng
+    private Double shippingDiscount;
+    private Double discount;
+}
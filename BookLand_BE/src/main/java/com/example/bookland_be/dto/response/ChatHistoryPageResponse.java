@@ -0,0 +1,17 @@
+package com.example.bookland_be.dto.response;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatHistoryPageResponse {
+    // Tin nhắn theo thứ tự cũ -> mới
+    private List<ChatMessageResponse> messages;
+    // Truyền vào before= để lấy trang cũ hơn (null khi hết)
+    private Long nextBefore;
+    private boolean hasMore;
+}
@@ -0,0 +1,26 @@
+package com.example.bookland_be.dto.response;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Ack gửi cho người gửi ở /user/queue/chat.ack
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageAckResponse {
+
+    public enum Status {
+        ACCEPTED,   // đã giao qua WebSocket, đang chờ ghi DB
+        PERSISTED,  // đã ghi DB
+        FAILED      // không ghi được, client gửi lại với cùng clientMessageId
+    }
+
+    private String clientMessageId;
+    private Long id;
+    private Status status;
+    private Integer errorCode;
+    private String errorMessage;
+    private LocalDateTime createdAt;
+}
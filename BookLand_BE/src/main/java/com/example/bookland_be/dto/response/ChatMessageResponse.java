@@ -4,7 +4,7 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ChatMessageResponse {
@@ -18,4 +18,5 @@ public class ChatMessageResponse {
     private String content;
     private Boolean isRead;
     private LocalDateTime createdAt;
+    private String clientMessageId;
 }
@@ -0,0 +1,41 @@
+package com.example.bookland_be.dto.response;
+
+import com.example.bookland_be.entity.EmailCampaign;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Tiến độ 1 chiến dịch gửi email hàng loạt
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailCampaignResponse {
+    private Long id;
+    private String subject;
+    private EmailCampaign.CampaignStatus status;
+    private Boolean sendToAll;
+    private Integer targetCount;
+    private Long sentCount;
+    private Long failedCount;
+    private Long cursorUserId;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime finishedAt;
+
+    public static EmailCampaignResponse fromEntity(EmailCampaign campaign) {
+        return EmailCampaignResponse.builder()
+                .id(campaign.getId())
+                .subject(campaign.getSubject())
+                .status(campaign.getStatus())
+                .sendToAll(campaign.getSendToAll())
+                .targetCount(Boolean.TRUE.equals(campaign.getSendToAll()) ? null : campaign.getTargetUserIds().size())
+                .sentCount(campaign.getSentCount())
+                .failedCount(campaign.getFailedCount())
+                .cursorUserId(campaign.getCursorUserId())
+                .createdAt(campaign.getCreatedAt())
+                .updatedAt(campaign.getUpdatedAt())
+                .finishedAt(campaign.getFinishedAt())
+                .build();
+    }
+}
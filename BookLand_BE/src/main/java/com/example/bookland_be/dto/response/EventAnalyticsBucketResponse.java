@@ -0,0 +1,17 @@
+package com.example.bookland_be.dto.response;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventAnalyticsBucketResponse {
+    private LocalDateTime start;      // Đầu phút / đầu ngày
+    private Long applications;
+    private Long totalDiscount;
+    private Double revenue;
+    private Long distinctUsers;       // Xấp xỉ (HyperLogLog)
+}
@@ -0,0 +1,21 @@
+package com.example.bookland_be.dto.response;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventAnalyticsResponse {
+    private Long eventId;
+    private Long applications;
+    private Long totalDiscount;
+    private Double revenue;
+    private Long distinctUsers;                         // Xấp xỉ (HyperLogLog)
+    private List<EventAnalyticsBucketResponse> minutes; // 60 phút gần nhất, cũ -> mới
+    private List<EventAnalyticsBucketResponse> days;    // 30 ngày gần nhất, cũ -> mới
+    private LocalDateTime generatedAt;
+}
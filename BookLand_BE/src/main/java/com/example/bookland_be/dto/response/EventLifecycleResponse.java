@@ -0,0 +1,21 @@
+package com.example.bookland_be.dto.response;
+
+import com.example.bookland_be.enums.EventType;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventLifecycleResponse {
+    private String type; // EVENT_STARTED | EVENT_ENDED
+    private Long eventId;
+    private String name;
+    private EventType eventType;
+    private Integer priority;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,28 @@
+package com.example.bookland_be.dto.response;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Tiến độ / kết quả 1 lần broadcast thông báo
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationBroadcastResponse {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private String broadcastId;
+    private String segment;
+    private String topic;
+    private Status status;
+    private long recipients;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long durationMs;
+    private Long recipientsPerSecond;
+    private String error;
+}
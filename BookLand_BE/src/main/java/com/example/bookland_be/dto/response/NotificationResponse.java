@@ -21,4 +21,5 @@ public class NotificationResponse {
     private NotificationStatus status;
     private LocalDateTime readAt;
     private LocalDateTime createdAt;
+    private String broadcastId;
 }
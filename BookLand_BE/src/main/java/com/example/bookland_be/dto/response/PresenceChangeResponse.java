@@ -0,0 +1,16 @@
+package com.example.bookland_be.dto.response;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceChangeResponse {
+    private Long userId;
+    private String email;
+    private boolean online;
+    private LocalDateTime lastSeen;
+}
@@ -0,0 +1,17 @@
+package com.example.bookland_be.dto.response;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Các thay đổi presence / typing đã gộp trong 1 cửa sổ flush
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceDeltaResponse {
+    private List<PresenceChangeResponse> presence;
+    private List<TypingEventResponse> typing;
+    private LocalDateTime at;
+}
@@ -0,0 +1,32 @@
+package com.example.bookland_be.dto.response;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceSimulationSummaryResponse {
+    @Builder.Default
+    private String type = "SUMMARY";
+    private Long eventId;                    // null nếu là bản nháp
+    private String eventName;
+
+    // Catalog
+    private Long totalBooks;
+    private Long matchedBooks;
+    private Double catalogCurrentTotal;      // Tổng giá 1 cuốn mỗi sách, trước event
+    private Double catalogSimulatedTotal;
+    private Double averageDiscountPercent;   // Trung bình trên các sách thuộc target
+    private Integer salesWindowDays;
+    private Double projectedRevenueImpact;   // Σ (giảm giá x số lượng bán trong cửa sổ)
+
+    // Giỏ mẫu
+    private Integer sampledCarts;
+    private Integer eligibleCarts;
+    private Double sampleOriginalTotal;
+    private Double sampleSimulatedTotal;
+    private Double sampleDiscountTotal;
+
+    private Long durationMs;
+}
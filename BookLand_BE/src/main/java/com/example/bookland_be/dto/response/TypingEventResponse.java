@@ -0,0 +1,14 @@
+package com.example.bookland_be.dto.response;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingEventResponse {
+    private Long fromUserId;
+    private String fromEmail;
+    private Long toUserId;
+    private boolean typing;
+}
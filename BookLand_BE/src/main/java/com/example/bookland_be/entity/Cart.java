@@ -33,6 +33,9 @@ public class Cart {
 
     private LocalDateTime updatedAt;
 
+    // Lần cuối user thêm / sửa / xoá món; null = giỏ có từ trước khi theo dõi (chờ backfill), retention bỏ qua
+    private LocalDateTime lastActivityAt;
+
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private Set<CartItem> items = new HashSet<>();
@@ -40,7 +43,8 @@ public class Cart {
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
-        updatedAt = LocalDateTime.now();
+        updatedAt = createdAt;
+        lastActivityAt = createdAt;
     }
 
     @PreUpdate
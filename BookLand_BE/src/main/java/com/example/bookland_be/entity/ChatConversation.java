@@ -0,0 +1,47 @@
+package com.example.bookland_be.entity;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Tóm tắt hội thoại nhìn từ phía owner (mỗi cặp user có 2 dòng, 1 dòng cho mỗi bên):
+ * tin nhắn cuối + số tin owner chưa đọc. Inbox chỉ cần 1 query theo (ownerId, lastMessageAt).
+ */
+@Entity
+@Table(name = "chat_conversation",
+        uniqueConstraints = @UniqueConstraint(name = "uk_chat_conversation_owner_peer", columnNames = {"ownerId", "peerId"}),
+        indexes = @Index(name = "idx_chat_conversation_owner_last", columnList = "ownerId, lastMessageAt"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatConversation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ownerId", nullable = false)
+    private User owner;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "peerId", nullable = false)
+    private User peer;
+
+    private Long lastMessageId;
+
+    // Người gửi tin nhắn cuối (owner hoặc peer)
+    private Long lastSenderId;
+
+    @Column(length = 255)
+    private String lastMessagePreview;
+
+    private LocalDateTime lastMessageAt;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long unreadCount = 0L;
+}
@@ -5,7 +5,13 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_message")
+@Table(name = "chat_message", indexes = {
+        // Seek paging lịch sử chat theo cặp user
+        @Index(name = "idx_chat_message_pair_id", columnList = "participantLow, participantHigh, id")
+}, uniqueConstraints = {
+        // Client gửi lại cùng clientMessageId (at-least-once) thì không tạo bản ghi trùng
+        @UniqueConstraint(name = "uk_chat_message_client_id", columnNames = {"fromUserId", "clientMessageId"})
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -13,8 +19,8 @@ import java.time.LocalDateTime;
 @Builder
 public class ChatMessage {
 
+    // Id theo thời gian (TimeOrderedIdGenerator) do ChatMessageWriter cấp trước khi ghi
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -35,8 +41,23 @@ public class ChatMessage {
     @Column(updatable = false)
     private LocalDateTime createdAt;
 
+    // Id do client sinh để gửi lại an toàn, có thể null với tin nhắn cũ
+    @Column(length = 64, updatable = false)
+    private String clientMessageId;
+
+    // Cặp user của hội thoại (id nhỏ / id lớn), không phụ thuộc chiều gửi
+    @Column(updatable = false)
+    private Long participantLow;
+
+    @Column(updatable = false)
+    private Long participantHigh;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
+        Long fromId = fromUser.getId();
+        Long toId = toUser.getId();
+        participantLow = Math.min(fromId, toId);
+        participantHigh = Math.max(fromId, toId);
     }
 }
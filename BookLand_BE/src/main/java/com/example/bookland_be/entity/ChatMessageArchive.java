@@ -0,0 +1,42 @@
+package com.example.bookland_be.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Tin nhắn cũ đã đọc được chuyển khỏi chat_message (job retention), không FK để không chặn xoá user
+@Entity
+@Table(name = "chat_message_archive", indexes = {
+        @Index(name = "idx_chat_message_archive_pair_id", columnList = "participantLow, participantHigh, id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatMessageArchive {
+
+    @Id
+    private Long id;
+
+    private Long fromUserId;
+
+    private Long toUserId;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String content;
+
+    private Boolean isRead;
+
+    private LocalDateTime createdAt;
+
+    @Column(length = 64)
+    private String clientMessageId;
+
+    private Long participantLow;
+
+    private Long participantHigh;
+
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,99 @@
+package com.example.bookland_be.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+// Chiến dịch gửi email hàng loạt, lưu tiến độ (cursor) để gửi tiếp khi retry / restart
+@Entity
+@Table(name = "email_campaign", indexes = {
+        @Index(name = "idx_email_campaign_status", columnList = "status")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailCampaign {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(length = 100, nullable = false)
+    private String templateName;
+
+    @Column(columnDefinition = "TEXT")
+    private String message;
+
+    @Column(columnDefinition = "TEXT")
+    private String details;
+
+    @Column(length = 1000)
+    private String actionUrl;
+
+    private String actionText;
+
+    @Column(nullable = false)
+    private Boolean sendToAll;
+
+    // Danh sách user cụ thể khi sendToAll = false
+    @ElementCollection
+    @CollectionTable(name = "email_campaign_target", joinColumns = @JoinColumn(name = "campaignId"))
+    @Column(name = "userId")
+    @Builder.Default
+    private Set<Long> targetUserIds = new HashSet<>();
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    @Builder.Default
+    private CampaignStatus status = CampaignStatus.PENDING;
+
+    // Đã xử lý xong mọi user có id <= cursorUserId
+    @Column(nullable = false)
+    @Builder.Default
+    private Long cursorUserId = 0L;
+
+    // Khi RETRYING: đã thử lại xong mọi failure có id <= retryCursorId
+    @Column(nullable = false)
+    @Builder.Default
+    private Long retryCursorId = 0L;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long sentCount = 0L;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long failedCount = 0L;
+
+    private Long createdBy;
+
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime finishedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum CampaignStatus {
+        PENDING, RUNNING, RETRYING, COMPLETED, CANCELLED
+    }
+}
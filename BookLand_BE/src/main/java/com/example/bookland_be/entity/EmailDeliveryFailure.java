@@ -0,0 +1,46 @@
+package com.example.bookland_be.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Người nhận gửi lỗi (đã hết số lần thử) của 1 campaign, dùng để retry sau
+@Entity
+@Table(name = "email_delivery_failure", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_email_delivery_failure_campaign_user", columnNames = {"campaignId", "userId"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailDeliveryFailure {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long campaignId;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private String email;
+
+    private String username;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    // Lỗi vĩnh viễn (địa chỉ không tồn tại...) thì retry bỏ qua
+    @Column(nullable = false)
+    private Boolean permanent;
+
+    private LocalDateTime failedAt;
+}
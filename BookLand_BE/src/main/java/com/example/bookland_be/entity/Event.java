@@ -9,7 +9,9 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "event")
+@Table(name = "event", indexes = {
+        @Index(name = "idx_event_status_time", columnList = "status, startTime, endTime")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,68 @@
+package com.example.bookland_be.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Ảnh gốc đã upload (đánh chỉ mục theo SHA-256 nội dung) và trạng thái sinh các bản thu nhỏ bên cạnh nó
+@Entity
+@Table(name = "image_asset", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_image_asset_object_name", columnNames = {"objectName"}),
+        @UniqueConstraint(name = "uk_image_asset_content_hash", columnNames = {"contentHash"})
+}, indexes = {
+        @Index(name = "idx_image_asset_status_updated", columnList = "status, updatedAt")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImageAsset {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Tên object trong bucket (không gồm bucket)
+    @Column(nullable = false, length = 512)
+    private String objectName;
+
+    // SHA-256 hex của nội dung: upload trùng nội dung trả về object cũ
+    @Column(length = 64)
+    private String contentHash;
+
+    private Long sizeBytes;
+
+    @Column(length = 100)
+    private String contentType;
+
+    // Lần cuối được upload (kể cả upload trùng); GC chỉ xét object quá grace-period kể từ mốc này
+    private LocalDateTime lastUploadedAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private VariantStatus status;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    // Đuôi file của các bản thu nhỏ: jpg, hoặc png khi ảnh gốc có kênh alpha
+    @Column(length = 10)
+    private String variantFormat;
+
+    private Integer width;
+
+    private Integer height;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    public enum VariantStatus {
+        PENDING, READY, FAILED
+    }
+}
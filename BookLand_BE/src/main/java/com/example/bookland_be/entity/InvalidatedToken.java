@@ -4,6 +4,8 @@ import java.util.Date;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 
 import lombok.*;
 import lombok.experimental.FieldDefaults;
@@ -15,9 +17,18 @@ import lombok.experimental.FieldDefaults;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
+@Table(indexes = {
+        // Dùng cho job purge token hết hạn
+        @Index(name = "idx_invalidated_token_expiry_time", columnList = "expiryTime"),
+        // Dùng cho sync định kỳ các token vừa bị thu hồi
+        @Index(name = "idx_invalidated_token_revoked_at", columnList = "revokedAt")
+})
 public class InvalidatedToken {
     @Id
     String id;
 
     Date expiryTime;
+
+    // null với các bản ghi cũ (trước khi có sync định kỳ)
+    Date revokedAt;
 }
\ No newline at end of file
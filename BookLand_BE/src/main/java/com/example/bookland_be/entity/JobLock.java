@@ -0,0 +1,30 @@
+package com.example.bookland_be.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Khoá theo tên job để chỉ 1 instance chạy job định kỳ (retention, campaign...)
+@Entity
+@Table(name = "job_lock")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobLock {
+
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    // Hết thời điểm này thì instance khác được chiếm khoá (instance giữ khoá chết giữa chừng)
+    @Column(nullable = false)
+    private LocalDateTime lockedUntil;
+
+    private LocalDateTime lockedAt;
+
+    @Column(length = 100)
+    private String lockedBy;
+}
@@ -41,6 +41,10 @@ public class Notification {
 
     private LocalDateTime readAt;
 
+    // Thông báo gửi theo nhóm (broadcast) thì các bản ghi cùng 1 broadcastId
+    @Column(length = 36, updatable = false)
+    private String broadcastId;
+
     @Column(updatable = false)
     private LocalDateTime createdAt;
 
@@ -14,6 +14,8 @@ public enum ErrorCode {
     EMAIL_EXISTED(1009, "Email existed, please choose another one", HttpStatus.BAD_REQUEST),
     USER_EXISTED(1010, "Username existed, please choose another one", HttpStatus.BAD_REQUEST),
     USERNAME_IS_MISSING(1011, "Please enter username", HttpStatus.BAD_REQUEST),
+    TOO_MANY_LOGIN_ATTEMPTS(1012, "Too many login attempts, please try again later", HttpStatus.TOO_MANY_REQUESTS),
+    AUTH_SERVICE_BUSY(1013, "Authentication service is busy, please try again later", HttpStatus.SERVICE_UNAVAILABLE),
     
     // Book errors
     BOOK_NOT_FOUND(2001, "Book not found", HttpStatus.NOT_FOUND),
@@ -60,6 +62,7 @@ public enum ErrorCode {
     EVENT_NOT_FOUND(2901, "Event not found", HttpStatus.NOT_FOUND),
     EVENT_HAS_LOGS(2902, "Cannot delete event with existing logs", HttpStatus.BAD_REQUEST),
     EVENT_INVALID_TIME(2903, "Start time must be before end time", HttpStatus.BAD_REQUEST),
+    EVENT_SIMULATION_SOURCE_REQUIRED(2904, "Either eventId or draftEvent is required", HttpStatus.BAD_REQUEST),
 
     // Event Target errors (2910-2920)
     EVENT_TARGET_BOOK_NOT_FOUND(2910, "Target book not found", HttpStatus.NOT_FOUND),
@@ -86,11 +89,28 @@ public enum ErrorCode {
     FILE_DELETE_FAILED(4002, "File delete failed", HttpStatus.INTERNAL_SERVER_ERROR),
     FILE_TOO_LARGE(4003, "File too large", HttpStatus.BAD_REQUEST),
     FILE_INVALID_FORMAT(4004, "Invalid file format", HttpStatus.BAD_REQUEST),
+    FILE_NOT_FOUND(4005, "File not found", HttpStatus.NOT_FOUND),
+    FILE_IN_USE(4006, "File is still used by a book, event or author", HttpStatus.CONFLICT),
 
     // Comment errors
     COMMENT_NOT_FOUND(5001, "Comment not found", HttpStatus.NOT_FOUND),
     ALREADY_COMMENTED(5002, "You have already commented on this book in this bill", HttpStatus.BAD_REQUEST),
 
+    // Chat errors (5101-5110)
+    CHAT_MESSAGE_EMPTY(5101, "Message content is required", HttpStatus.BAD_REQUEST),
+    CHAT_SERVICE_BUSY(5102, "Chat service is busy, please try again later", HttpStatus.SERVICE_UNAVAILABLE),
+    CHAT_MESSAGE_NOT_SAVED(5103, "Message could not be saved, please resend", HttpStatus.SERVICE_UNAVAILABLE),
+    CHAT_CLIENT_MESSAGE_ID_INVALID(5104, "clientMessageId must be at most 64 characters", HttpStatus.BAD_REQUEST),
+
+    // Notification errors (5201-5210)
+    NOTIFICATION_BROADCAST_INVALID(5201, "Broadcast requires segment, type, title and the segment's roleName or bookId", HttpStatus.BAD_REQUEST),
+    NOTIFICATION_BROADCAST_NOT_FOUND(5202, "Broadcast not found", HttpStatus.NOT_FOUND),
+
+    // Email campaign errors (5301-5310)
+    EMAIL_CAMPAIGN_INVALID(5301, "Email campaign requires sendToAll or at least one userId", HttpStatus.BAD_REQUEST),
+    EMAIL_CAMPAIGN_NOT_FOUND(5302, "Email campaign not found", HttpStatus.NOT_FOUND),
+    EMAIL_CAMPAIGN_STATE_INVALID(5303, "Email campaign cannot change to the requested state", HttpStatus.CONFLICT),
+
     // Additional Bill/Order errors
     BILL_NOT_COMPLETED(3002, "Bill is not completed", HttpStatus.BAD_REQUEST),
     USER_NOT_OWN_BILL(3003, "You do not own this bill", HttpStatus.FORBIDDEN),
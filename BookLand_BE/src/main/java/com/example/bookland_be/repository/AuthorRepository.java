@@ -4,9 +4,17 @@ package com.example.bookland_be.repository;
 import com.example.bookland_be.entity.Author;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface AuthorRepository extends JpaRepository<Author, Long>, JpaSpecificationExecutor<Author> {
     boolean existsByName(String name);
-}
\ No newline at end of file
+
+    @Query("SELECT DISTINCT a.authorImage FROM Author a WHERE a.authorImage IN :urls")
+    List<String> findReferencedImageUrls(@Param("urls") Collection<String> urls);
+}
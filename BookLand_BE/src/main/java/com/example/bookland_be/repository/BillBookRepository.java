@@ -1,11 +1,15 @@
 package com.example.bookland_be.repository;
 
 import com.example.bookland_be.entity.BillBook;
+import com.example.bookland_be.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,4 +24,21 @@ public interface BillBookRepository extends JpaRepository<BillBook, BillBook.Bil
 
     @Query("SELECT SUM(bb.quantity) FROM BillBook bb WHERE bb.book.id = :bookId")
     Long getTotalQuantitySoldByBookId(@Param("bookId") Long bookId);
+
+    @Query("SELECT bb.book.id, SUM(bb.quantity) FROM BillBook bb " +
+            "WHERE bb.book.id IN :bookIds " +
+            "AND bb.bill.status IN ('COMPLETED', 'SHIPPED', 'SHIPPING', 'APPROVED') " +
+            "AND bb.bill.createdAt >= :since " +
+            "GROUP BY bb.book.id")
+    List<Object[]> sumQuantitySoldByBookIdsSince(@Param("bookIds") Collection<Long> bookIds,
+                                                 @Param("since") LocalDateTime since);
+
+    // User đã mua sách (đơn không bị huỷ / chưa duyệt), seek theo userId (broadcast thông báo)
+    @Query("SELECT DISTINCT bb.bill.user.id FROM BillBook bb " +
+            "WHERE bb.book.id = :bookId " +
+            "AND bb.bill.status IN ('COMPLETED', 'SHIPPED', 'SHIPPING', 'APPROVED') " +
+            "AND bb.bill.user.status = :status AND bb.bill.user.id > :afterId " +
+            "ORDER BY bb.bill.user.id")
+    List<Long> findBuyerIdsByBookAfter(@Param("bookId") Long bookId, @Param("status") User.UserStatus status,
+                                       @Param("afterId") Long afterId, Pageable pageable);
 }
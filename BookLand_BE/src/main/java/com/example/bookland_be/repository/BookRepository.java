@@ -10,6 +10,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book> {
@@ -40,4 +42,12 @@ public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificat
             @Param("seriesIds") java.util.List<Long> seriesIds,
             Pageable pageable
     );
+
+    // Category id của nhiều sách trong 1 query (tránh N+1 khi load lazy categories)
+    @Query("SELECT b.id, c.id FROM Book b JOIN b.categories c WHERE b.id IN :bookIds")
+    List<Object[]> findCategoryIdsByBookIds(@Param("bookIds") Collection<Long> bookIds);
+
+    // GC ảnh: URL nào trong danh sách vẫn đang được dùng làm bìa sách
+    @Query("SELECT DISTINCT b.bookImageUrl FROM Book b WHERE b.bookImageUrl IN :urls")
+    List<String> findReferencedImageUrls(@Param("urls") Collection<String> urls);
 }
@@ -1,11 +1,17 @@
 package com.example.bookland_be.repository;
 
 import com.example.bookland_be.entity.Cart;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,4 +31,29 @@ public interface CartRepository extends JpaRepository<Cart, Integer> {
             "WHERE c.user.id = :userId AND c.status = :status")
     Optional<Cart> findByUserIdAndStatusWithItems(@Param("userId") Long userId,
                                                   @Param("status") Cart.CartStatus status);
+
+    // Retention: giỏ lâu không có thao tác theo trạng thái, seek theo id
+    @Query("SELECT c.id FROM Cart c " +
+            "WHERE c.status = :status AND c.lastActivityAt < :cutoff AND c.id > :afterId ORDER BY c.id")
+    List<Long> findIdsByStatusInactiveSince(@Param("status") Cart.CartStatus status,
+                                            @Param("cutoff") LocalDateTime cutoff,
+                                            @Param("afterId") Long afterId, Pageable pageable);
+
+    // Retention: khoá và kiểm tra lại ngay trước khi xoá (user có thể vừa quay lại sửa giỏ)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c.id FROM Cart c WHERE c.id IN :ids AND c.status = :status AND c.lastActivityAt < :cutoff")
+    List<Long> lockIdsByStatusInactiveSince(@Param("ids") Collection<Long> ids,
+                                            @Param("status") Cart.CartStatus status,
+                                            @Param("cutoff") LocalDateTime cutoff);
+
+    // Giỏ có từ trước khi có cột last_activity_at: coi như vừa hoạt động lúc deploy, không suy từ updatedAt
+    // (trước đây sửa món không cập nhật updatedAt nên giá trị cũ chỉ là lúc tạo giỏ)
+    @Modifying
+    @Query(value = "UPDATE cart SET last_activity_at = :now WHERE last_activity_at IS NULL LIMIT :limit",
+           nativeQuery = true)
+    int backfillLastActivity(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM Cart c WHERE c.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
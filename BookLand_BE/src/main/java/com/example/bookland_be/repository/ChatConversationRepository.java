@@ -0,0 +1,44 @@
+package com.example.bookland_be.repository;
+
+import com.example.bookland_be.entity.ChatConversation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ChatConversationRepository extends JpaRepository<ChatConversation, Long> {
+
+    // Inbox: hội thoại của owner, mới hoạt động nhất trước (index ownerId, lastMessageAt)
+    @Query("SELECT c FROM ChatConversation c JOIN FETCH c.owner JOIN FETCH c.peer " +
+           "WHERE c.owner.id = :ownerId ORDER BY c.lastMessageAt DESC, c.id DESC")
+    List<ChatConversation> findInbox(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    boolean existsByOwnerIdAndPeerId(Long ownerId, Long peerId);
+
+    // Chỉ ghi đè khi tin nhắn mới hơn tin đang lưu (các request gửi song song không ghi ngược)
+    @Modifying
+    @Query("UPDATE ChatConversation c SET " +
+           "c.lastMessageId = :messageId, c.lastSenderId = :senderId, " +
+           "c.lastMessagePreview = :preview, c.lastMessageAt = :sentAt " +
+           "WHERE c.owner.id = :ownerId AND c.peer.id = :peerId " +
+           "AND (c.lastMessageId IS NULL OR c.lastMessageId < :messageId)")
+    int applyMessage(@Param("ownerId") Long ownerId, @Param("peerId") Long peerId,
+                     @Param("messageId") Long messageId, @Param("senderId") Long senderId,
+                     @Param("preview") String preview, @Param("sentAt") LocalDateTime sentAt);
+
+    @Modifying
+    @Query("UPDATE ChatConversation c SET c.unreadCount = c.unreadCount + :delta " +
+           "WHERE c.owner.id = :ownerId AND c.peer.id = :peerId")
+    int incrementUnread(@Param("ownerId") Long ownerId, @Param("peerId") Long peerId, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE ChatConversation c SET c.unreadCount = 0 " +
+           "WHERE c.owner.id = :ownerId AND c.peer.id = :peerId")
+    int resetUnread(@Param("ownerId") Long ownerId, @Param("peerId") Long peerId);
+}
@@ -1,11 +1,15 @@
 package com.example.bookland_be.repository;
 
 import com.example.bookland_be.entity.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -17,6 +21,57 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
            "ORDER BY cm.createdAt ASC")
     List<ChatMessage> findChatHistory(@Param("userId1") Long userId1, @Param("userId2") Long userId2);
 
+    // Trang mới nhất của hội thoại (id giảm dần), dùng index (participantLow, participantHigh, id)
+    @Query("SELECT cm FROM ChatMessage cm JOIN FETCH cm.fromUser JOIN FETCH cm.toUser " +
+           "WHERE cm.participantLow = :low AND cm.participantHigh = :high " +
+           "ORDER BY cm.id DESC")
+    List<ChatMessage> findLatestInConversation(@Param("low") Long low, @Param("high") Long high,
+                                               Pageable pageable);
+
+    @Query("SELECT cm FROM ChatMessage cm JOIN FETCH cm.fromUser JOIN FETCH cm.toUser " +
+           "WHERE cm.participantLow = :low AND cm.participantHigh = :high AND cm.id < :beforeId " +
+           "ORDER BY cm.id DESC")
+    List<ChatMessage> findInConversationBefore(@Param("low") Long low, @Param("high") Long high,
+                                               @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // Điền cặp participant cho các tin nhắn tạo trước khi có 2 cột này
+    @Modifying
+    @Query(value = "UPDATE chat_message SET " +
+           "participant_low = LEAST(from_user_id, to_user_id), " +
+           "participant_high = GREATEST(from_user_id, to_user_id) " +
+           "WHERE participant_low IS NULL",
+           nativeQuery = true)
+    int backfillParticipants();
+
+    // Retention: tin đã đọc quá hạn, seek theo id
+    @Query("SELECT cm.id FROM ChatMessage cm " +
+           "WHERE cm.isRead = true AND cm.createdAt < :cutoff AND cm.id > :afterId ORDER BY cm.id")
+    List<Long> findReadIdsCreatedBefore(@Param("cutoff") LocalDateTime cutoff,
+                                        @Param("afterId") Long afterId, Pageable pageable);
+
+    // IGNORE: chunk bị chạy lại sau lỗi thì không trùng khoá
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO chat_message_archive " +
+           "(id, from_user_id, to_user_id, content, is_read, created_at, client_message_id, " +
+           "participant_low, participant_high, archived_at) " +
+           "SELECT id, from_user_id, to_user_id, content, is_read, created_at, client_message_id, " +
+           "participant_low, participant_high, :archivedAt FROM chat_message WHERE id IN (:ids)",
+           nativeQuery = true)
+    int archiveByIds(@Param("ids") Collection<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+
+    @Modifying
+    @Query("DELETE FROM ChatMessage cm WHERE cm.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Dùng để build bảng chat_conversation lần đầu
+    @Query("SELECT MAX(cm.id) FROM ChatMessage cm GROUP BY cm.fromUser.id, cm.toUser.id")
+    List<Long> findLastMessageIdPerDirection();
+
+    // [toUserId, fromUserId, số tin chưa đọc]
+    @Query("SELECT cm.toUser.id, cm.fromUser.id, COUNT(cm) FROM ChatMessage cm " +
+           "WHERE cm.isRead = false GROUP BY cm.toUser.id, cm.fromUser.id")
+    List<Object[]> countUnreadPerDirection();
+
     @Query(value = "SELECT DISTINCT CASE " +
            "WHEN cm.from_user_id = :adminId THEN cm.to_user_id " +
            "ELSE cm.from_user_id END as user_id " +
@@ -25,6 +80,12 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
            nativeQuery = true)
     List<Long> findConversationUserIds(@Param("adminId") Long adminId);
 
+    // Đánh dấu đã đọc mọi tin fromUser gửi cho toUser bằng 1 câu UPDATE
+    @Modifying
+    @Query("UPDATE ChatMessage cm SET cm.isRead = true " +
+           "WHERE cm.toUser.id = :toUserId AND cm.fromUser.id = :fromUserId AND cm.isRead = false")
+    int markConversationAsRead(@Param("toUserId") Long toUserId, @Param("fromUserId") Long fromUserId);
+
     @Query("SELECT COUNT(cm) FROM ChatMessage cm WHERE cm.toUser.id = :userId AND cm.isRead = false")
     Long countUnreadMessages(@Param("userId") Long userId);
 
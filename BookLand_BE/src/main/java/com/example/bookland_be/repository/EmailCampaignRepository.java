@@ -0,0 +1,53 @@
+package com.example.bookland_be.repository;
+
+import com.example.bookland_be.entity.EmailCampaign;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EmailCampaignRepository extends JpaRepository<EmailCampaign, Long> {
+
+    @Query("SELECT c.id FROM EmailCampaign c WHERE c.status IN :statuses ORDER BY c.id")
+    List<Long> findIdsByStatusIn(@Param("statuses") Collection<EmailCampaign.CampaignStatus> statuses);
+
+    @Query("SELECT c.status FROM EmailCampaign c WHERE c.id = :id")
+    Optional<EmailCampaign.CampaignStatus> findStatusById(@Param("id") Long id);
+
+    // Ghi tiến độ sau mỗi trang người nhận
+    @Modifying
+    @Query("UPDATE EmailCampaign c SET c.cursorUserId = :cursor, " +
+           "c.sentCount = c.sentCount + :sent, c.failedCount = c.failedCount + :failed, c.updatedAt = :now " +
+           "WHERE c.id = :id")
+    int advance(@Param("id") Long id, @Param("cursor") Long cursor,
+                @Param("sent") long sent, @Param("failed") long failed, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE EmailCampaign c SET c.retryCursorId = :cursor, " +
+           "c.sentCount = c.sentCount + :sent, c.failedCount = c.failedCount - :sent, c.updatedAt = :now " +
+           "WHERE c.id = :id")
+    int advanceRetry(@Param("id") Long id, @Param("cursor") Long cursor,
+                     @Param("sent") long sent, @Param("now") LocalDateTime now);
+
+    // Chỉ đổi trạng thái khi đang ở trạng thái mong đợi (tránh ghi đè CANCELLED từ admin)
+    @Modifying
+    @Query("UPDATE EmailCampaign c SET c.status = :to, c.finishedAt = :finishedAt, c.updatedAt = :now " +
+           "WHERE c.id = :id AND c.status IN :from")
+    int transition(@Param("id") Long id, @Param("from") Collection<EmailCampaign.CampaignStatus> from,
+                   @Param("to") EmailCampaign.CampaignStatus to, @Param("finishedAt") LocalDateTime finishedAt,
+                   @Param("now") LocalDateTime now);
+
+    // Gửi lại các người nhận lỗi của campaign đã xong
+    @Modifying
+    @Query("UPDATE EmailCampaign c SET c.status = :retrying, c.retryCursorId = 0, c.finishedAt = NULL, " +
+           "c.updatedAt = :now WHERE c.id = :id AND c.status = 'COMPLETED' AND c.failedCount > 0")
+    int startRetry(@Param("id") Long id, @Param("retrying") EmailCampaign.CampaignStatus retrying,
+                   @Param("now") LocalDateTime now);
+}
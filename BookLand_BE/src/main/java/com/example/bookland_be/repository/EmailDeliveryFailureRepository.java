@@ -0,0 +1,23 @@
+package com.example.bookland_be.repository;
+
+import com.example.bookland_be.entity.EmailDeliveryFailure;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailDeliveryFailureRepository extends JpaRepository<EmailDeliveryFailure, Long> {
+
+    // Retry theo seek trên id, bỏ qua lỗi vĩnh viễn
+    @Query("SELECT f FROM EmailDeliveryFailure f " +
+           "WHERE f.campaignId = :campaignId AND f.permanent = false AND f.id > :afterId ORDER BY f.id")
+    List<EmailDeliveryFailure> findRetryableAfter(@Param("campaignId") Long campaignId,
+                                                  @Param("afterId") Long afterId, Pageable pageable);
+
+    List<EmailDeliveryFailure> findByCampaignIdAndUserIdIn(Long campaignId, Collection<Long> userIds);
+}
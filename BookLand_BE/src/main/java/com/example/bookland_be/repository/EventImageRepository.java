@@ -2,8 +2,16 @@ package com.example.bookland_be.repository;
 
 import com.example.bookland_be.entity.EventImage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface EventImageRepository extends JpaRepository<EventImage, Long> {
-}
\ No newline at end of file
+
+    @Query("SELECT DISTINCT i.imageUrl FROM EventImage i WHERE i.imageUrl IN :urls")
+    List<String> findReferencedImageUrls(@Param("urls") Collection<String> urls);
+}
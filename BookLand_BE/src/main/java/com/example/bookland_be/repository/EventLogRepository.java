@@ -33,4 +33,27 @@ public interface EventLogRepository extends JpaRepository<EventLog, Long> {
 
     @Query("SELECT SUM(el.appliedValue) FROM EventLog el WHERE el.event.id = :eventId")
     Long getTotalDiscountByEventId(@Param("eventId") Long eventId);
-}
\ No newline at end of file
+
+    // ===== Dùng để seed EventAnalyticsService (chỉ chạy 1 lần / event) =====
+
+    @Query("SELECT COALESCE(MAX(el.id), 0) FROM EventLog el WHERE el.event.id = :eventId")
+    Long getMaxIdByEventId(@Param("eventId") Long eventId);
+
+    // [count, tổng giảm giá, tổng doanh thu bill]
+    @Query("SELECT COUNT(el), COALESCE(SUM(el.appliedValue), 0), COALESCE(SUM(b.totalCost), 0) " +
+            "FROM EventLog el LEFT JOIN el.bill b " +
+            "WHERE el.event.id = :eventId AND el.id <= :maxId")
+    List<Object[]> getTotalsByEventIdUpTo(@Param("eventId") Long eventId, @Param("maxId") Long maxId);
+
+    @Query("SELECT DISTINCT el.user.id FROM EventLog el " +
+            "WHERE el.event.id = :eventId AND el.user IS NOT NULL AND el.id <= :maxId")
+    List<Long> findDistinctUserIdsByEventIdUpTo(@Param("eventId") Long eventId, @Param("maxId") Long maxId);
+
+    // [createdAt, appliedValue, bill.totalCost, user.id]
+    @Query("SELECT el.createdAt, el.appliedValue, b.totalCost, u.id " +
+            "FROM EventLog el LEFT JOIN el.bill b LEFT JOIN el.user u " +
+            "WHERE el.event.id = :eventId AND el.createdAt >= :since AND el.id <= :maxId")
+    List<Object[]> findAnalyticsRowsSince(@Param("eventId") Long eventId,
+                                          @Param("since") LocalDateTime since,
+                                          @Param("maxId") Long maxId);
+}
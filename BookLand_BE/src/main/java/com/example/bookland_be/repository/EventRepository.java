@@ -3,6 +3,7 @@ package com.example.bookland_be.repository;
 import com.example.bookland_be.entity.Event;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -56,6 +57,11 @@ public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecific
     @Query("SELECT e FROM Event e WHERE e.status = 'ACTIVE' AND e.endTime < :now")
     List<Event> findExpiredEvents(@Param("now") LocalDateTime now);
 
+    // Chỉ 1 node chuyển được ACTIVE -> EXPIRED (node đó broadcast EVENT_ENDED); endTime đổi thì không khớp
+    @Modifying
+    @Query("UPDATE Event e SET e.status = 'EXPIRED' WHERE e.id = :id AND e.status = 'ACTIVE' AND e.endTime = :endTime")
+    int expireIfActive(@Param("id") Long id, @Param("endTime") LocalDateTime endTime);
+
     // Find upcoming events
     @Query("SELECT e FROM Event e WHERE e.status = 'ACTIVE' AND e.startTime > :now " +
             "ORDER BY e.startTime ASC")
@@ -0,0 +1,86 @@
+package com.example.bookland_be.repository;
+
+import com.example.bookland_be.entity.ImageAsset;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ImageAssetRepository extends JpaRepository<ImageAsset, Long> {
+
+    // Upload lại cùng object (hiếm) thì giữ dòng cũ
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO image_asset (object_name, status, attempts, created_at, updated_at) " +
+                   "VALUES (:objectName, 'PENDING', 0, :now, :now)",
+           nativeQuery = true)
+    int insertPending(@Param("objectName") String objectName, @Param("now") LocalDateTime now);
+
+    Optional<ImageAsset> findByContentHash(String contentHash);
+
+    Optional<ImageAsset> findByObjectName(String objectName);
+
+    // 2 upload cùng nội dung chạy song song thì cùng objectName, bên sau bị bỏ qua
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO image_asset (object_name, content_hash, size_bytes, content_type, " +
+                   "last_uploaded_at, status, attempts, created_at, updated_at) " +
+                   "VALUES (:objectName, :contentHash, :sizeBytes, :contentType, :now, 'PENDING', 0, :now, :now)",
+           nativeQuery = true)
+    int insertUploaded(@Param("objectName") String objectName, @Param("contentHash") String contentHash,
+                       @Param("sizeBytes") long sizeBytes, @Param("contentType") String contentType,
+                       @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE ImageAsset a SET a.lastUploadedAt = :now WHERE a.id = :id")
+    int touchUploaded(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // Ứng viên GC: có trong chỉ mục và không được upload lại từ trước :before
+    @Query("SELECT a FROM ImageAsset a WHERE a.lastUploadedAt < :before AND a.id > :afterId ORDER BY a.id")
+    List<ImageAsset> findGcCandidates(@Param("before") LocalDateTime before, @Param("afterId") Long afterId,
+                                      Pageable pageable);
+
+    // GC giành quyền xoá: chỉ xoá khi không được upload lại sau lúc chọn ứng viên
+    @Modifying
+    @Query("DELETE FROM ImageAsset a WHERE a.id = :id AND a.lastUploadedAt < :before")
+    int deleteIfNotUploadedSince(@Param("id") Long id, @Param("before") LocalDateTime before);
+
+    // [objectName, status, variantFormat]; objectName không có trong kết quả = ảnh cũ chưa có dòng chỉ mục
+    @Query("SELECT a.objectName, a.status, a.variantFormat FROM ImageAsset a WHERE a.objectName IN :objectNames")
+    List<Object[]> findVariantStates(@Param("objectNames") Collection<String> objectNames);
+
+    // Ảnh chưa xử lý xong (worker đầy, instance restart, lỗi tạm thời) để quét lại
+    @Query("SELECT a.objectName FROM ImageAsset a WHERE a.status IN :statuses " +
+           "AND a.attempts < :maxAttempts AND a.updatedAt < :before ORDER BY a.updatedAt")
+    List<String> findRetryable(@Param("statuses") List<ImageAsset.VariantStatus> statuses,
+                               @Param("maxAttempts") int maxAttempts,
+                               @Param("before") LocalDateTime before, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE ImageAsset a SET a.status = :status, a.variantFormat = :format, a.width = :width, " +
+           "a.height = :height, a.attempts = a.attempts + 1, a.lastError = NULL, a.updatedAt = :now " +
+           "WHERE a.objectName = :objectName")
+    int markReady(@Param("objectName") String objectName, @Param("status") ImageAsset.VariantStatus status,
+                  @Param("format") String format, @Param("width") int width, @Param("height") int height,
+                  @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE ImageAsset a SET a.status = :status, a.attempts = a.attempts + 1, a.lastError = :error, " +
+           "a.updatedAt = :now WHERE a.objectName = :objectName")
+    int markFailed(@Param("objectName") String objectName, @Param("status") ImageAsset.VariantStatus status,
+                   @Param("error") String error, @Param("now") LocalDateTime now);
+
+    // Lỗi không thử lại được (định dạng không đọc được): đẩy attempts lên max để job quét bỏ qua
+    @Modifying
+    @Query("UPDATE ImageAsset a SET a.status = :status, a.attempts = :attempts, a.lastError = :error, " +
+           "a.updatedAt = :now WHERE a.objectName = :objectName")
+    int markFailedPermanently(@Param("objectName") String objectName, @Param("status") ImageAsset.VariantStatus status,
+                              @Param("error") String error, @Param("attempts") int attempts,
+                              @Param("now") LocalDateTime now);
+}
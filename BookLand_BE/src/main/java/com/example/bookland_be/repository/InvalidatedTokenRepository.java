@@ -1,10 +1,31 @@
 package com.example.bookland_be.repository;
 
 import com.example.bookland_be.entity.InvalidatedToken;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-
+import java.util.Date;
+import java.util.List;
 
 @Repository
-public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedToken, String> {}
\ No newline at end of file
+public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedToken, String> {
+
+    @Query("SELECT t.id FROM InvalidatedToken t WHERE t.expiryTime IS NULL OR t.expiryTime > :now")
+    List<String> findIdsExpiringAfter(@Param("now") Date now);
+
+    // Token còn hiệu lực bị thu hồi (token đã hết hạn thì không cần check nữa)
+    @Query("SELECT COUNT(t) > 0 FROM InvalidatedToken t " +
+            "WHERE t.id = :id AND (t.expiryTime IS NULL OR t.expiryTime > :now)")
+    boolean existsActiveById(@Param("id") String id, @Param("now") Date now);
+
+    // [id, expiryTime] của các token bị thu hồi từ thời điểm since (sync giữa các node)
+    @Query("SELECT t.id, t.expiryTime FROM InvalidatedToken t WHERE t.revokedAt >= :since")
+    List<Object[]> findRevokedSince(@Param("since") Date since);
+
+    // Lấy từng chunk id đã hết hạn để xoá theo batch (dùng index expiry_time)
+    @Query("SELECT t.id FROM InvalidatedToken t WHERE t.expiryTime <= :now ORDER BY t.expiryTime")
+    List<String> findExpiredIds(@Param("now") Date now, Pageable pageable);
+}
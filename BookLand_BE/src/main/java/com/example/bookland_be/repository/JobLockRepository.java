@@ -0,0 +1,33 @@
+package com.example.bookland_be.repository;
+
+import com.example.bookland_be.entity.JobLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface JobLockRepository extends JpaRepository<JobLock, String> {
+
+    // Chiếm khoá nếu đã hết hạn; 1 = thành công (UPDATE có điều kiện nên chỉ 1 instance thắng)
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :until, l.lockedAt = :now, l.lockedBy = :owner " +
+           "WHERE l.name = :name AND l.lockedUntil <= :now")
+    int acquire(@Param("name") String name, @Param("owner") String owner,
+                @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    // INSERT thẳng (không merge) để 2 instance tạo cùng lúc thì 1 bên lỗi trùng khoá chính
+    @Modifying
+    @Query(value = "INSERT INTO job_lock (name, locked_until, locked_at, locked_by) " +
+                   "VALUES (:name, :until, :now, :owner)",
+           nativeQuery = true)
+    int insert(@Param("name") String name, @Param("owner") String owner,
+               @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :now WHERE l.name = :name AND l.lockedBy = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
@@ -10,7 +10,9 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
@@ -31,19 +33,32 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     @Query("SELECT COUNT(n) FROM Notification n WHERE n.to.id = :toId AND n.status = 'UNREAD'")
     long countUnreadByUserId(@Param("toId") Long toId);
 
-    // Mark as read
+    @Query("SELECT n.to.id FROM Notification n WHERE n.id = :id")
+    Optional<Long> findRecipientIdById(@Param("id") Long id);
+
+    // Mark as read (trả về số dòng thực sự chuyển từ UNREAD sang READ)
     @Modifying
-    @Query("UPDATE Notification n SET n.status = 'READ', n.readAt = :readAt WHERE n.id = :id")
-    void markAsRead(@Param("id") Long id, @Param("readAt") LocalDateTime readAt);
+    @Query("UPDATE Notification n SET n.status = 'READ', n.readAt = :readAt WHERE n.id = :id AND n.status = 'UNREAD'")
+    int markAsRead(@Param("id") Long id, @Param("readAt") LocalDateTime readAt);
 
     @Modifying
     @Query("UPDATE Notification n SET n.status = 'READ', n.readAt = :readAt " +
             "WHERE n.to.id = :toId AND n.status = 'UNREAD'")
-    void markAllAsReadByUserId(@Param("toId") Long toId, @Param("readAt") LocalDateTime readAt);
+    int markAllAsReadByUserId(@Param("toId") Long toId, @Param("readAt") LocalDateTime readAt);
 
-    @Modifying
-    @Query("DELETE FROM Notification n WHERE n.createdAt < :beforeDate")
-    void deleteOldNotifications(@Param("beforeDate") LocalDateTime beforeDate);
+    // Retention: lấy từng chunk id theo seek (id > afterId), xoá theo id để mỗi transaction ngắn
+    @Query("SELECT n.id FROM Notification n " +
+            "WHERE n.status = :status AND n.createdAt < :cutoff AND n.id > :afterId ORDER BY n.id")
+    List<Long> findIdsByStatusCreatedBefore(@Param("status") Notification.NotificationStatus status,
+                                            @Param("cutoff") LocalDateTime cutoff,
+                                            @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT n.id FROM Notification n WHERE n.createdAt < :cutoff AND n.id > :afterId ORDER BY n.id")
+    List<Long> findIdsCreatedBefore(@Param("cutoff") LocalDateTime cutoff,
+                                    @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT DISTINCT n.to.id FROM Notification n WHERE n.id IN :ids AND n.status = 'UNREAD'")
+    List<Long> findUnreadRecipientIds(@Param("ids") Collection<Long> ids);
 
     @Modifying
     @Query("DELETE FROM Notification n WHERE n.to.id = :toId AND n.status = 'READ'")
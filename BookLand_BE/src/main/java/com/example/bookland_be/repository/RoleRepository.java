@@ -4,7 +4,11 @@ import com.example.bookland_be.entity.Role;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 @Repository
@@ -14,4 +18,9 @@ public interface RoleRepository extends JpaRepository<Role, Long> {
     boolean existsByName(String name);
     Page<Role> findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(
             String name, String description, Pageable pageable);
+
+    // [roleName, permissionName | null], sort theo role để gom nhóm
+    @Query("SELECT r.name, p.name FROM Role r LEFT JOIN r.permissions p " +
+            "WHERE r.id IN :roleIds ORDER BY r.name, p.name")
+    List<Object[]> findRoleAndPermissionNames(@Param("roleIds") Collection<Long> roleIds);
 }
@@ -1,10 +1,13 @@
 package com.example.bookland_be.repository;
 
 import com.example.bookland_be.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,4 +19,30 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
 
     @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.id = :id")
     Optional<User> findByIdWithRoles(Long id);
+
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.email = :email")
+    Optional<User> findByEmailWithRoles(String email);
+
+    // Seek theo id để duyệt từng chunk user (broadcast thông báo)
+    @Query("SELECT u.id FROM User u WHERE u.status = :status AND u.id > :afterId ORDER BY u.id")
+    List<Long> findIdsByStatusAfter(@Param("status") User.UserStatus status,
+                                    @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT u.id FROM User u JOIN u.roles r " +
+           "WHERE r.name = :roleName AND u.status = :status AND u.id > :afterId ORDER BY u.id")
+    List<Long> findIdsByRoleAndStatusAfter(@Param("roleName") String roleName,
+                                           @Param("status") User.UserStatus status,
+                                           @Param("afterId") Long afterId, Pageable pageable);
+
+    // Người nhận email hàng loạt: [id, email, username], chỉ lấy cột cần thiết (không load roles)
+    @Query("SELECT u.id, u.email, u.username FROM User u " +
+           "WHERE u.status = :status AND u.email LIKE '%@%' AND u.id > :afterId ORDER BY u.id")
+    List<Object[]> findMailRecipientsAfter(@Param("status") User.UserStatus status,
+                                           @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT u.id, u.email, u.username FROM User u " +
+           "WHERE u.id IN (SELECT t FROM EmailCampaign c JOIN c.targetUserIds t WHERE c.id = :campaignId) " +
+           "AND u.email LIKE '%@%' AND u.id > :afterId ORDER BY u.id")
+    List<Object[]> findCampaignRecipientsAfter(@Param("campaignId") Long campaignId,
+                                               @Param("afterId") Long afterId, Pageable pageable);
 }
@@ -1,5 +1,6 @@
 package com.example.bookland_be.repository;
 
+import com.example.bookland_be.entity.User;
 import com.example.bookland_be.entity.Wishlist;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -16,4 +17,11 @@ public interface WishlistRepository extends JpaRepository<Wishlist, Long> {
     List<Wishlist> findByUserId(Long userId);
     Optional<Wishlist> findByUserIdAndBookId(Long userId, Long bookId);
     boolean existsByUserIdAndBookId(Long userId, Long bookId);
+
+    // User đã thêm sách vào wishlist, seek theo userId (broadcast thông báo)
+    @Query("SELECT DISTINCT w.user.id FROM Wishlist w " +
+           "WHERE w.book.id = :bookId AND w.user.status = :status AND w.user.id > :afterId " +
+           "ORDER BY w.user.id")
+    List<Long> findUserIdsByBookAfter(@Param("bookId") Long bookId, @Param("status") User.UserStatus status,
+                                      @Param("afterId") Long afterId, Pageable pageable);
 }
\ No newline at end of file
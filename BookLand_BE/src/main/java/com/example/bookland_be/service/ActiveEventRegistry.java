@@ -0,0 +1,194 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.entity.Event;
+import com.example.bookland_be.repository.EventRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Giữ trong bộ nhớ danh sách Event ACTIVE (đang chạy + sắp chạy) để checkout không phải query DB.
+ * Event hiện tại được đổi đúng thời điểm startTime / endTime bằng TaskScheduler.
+ * Node sửa Event publish lên Redis để các node khác load lại; reconcile định kỳ bù cho message pub/sub bị mất.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ActiveEventRegistry {
+
+    private static final String REFRESH_CHANNEL = "event:registry-refresh";
+    private static final Comparator<Event> BY_PRIORITY = Comparator
+            .comparing((Event e) -> e.getPriority() != null ? e.getPriority() : 0).reversed()
+            .thenComparing(Event::getStartTime);
+
+    private final EventRepository eventRepository;
+    private final TaskScheduler taskScheduler;
+    private final PlatformTransactionManager transactionManager;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Các event ACTIVE chưa kết thúc, đã sort theo priority DESC, startTime ASC
+    private volatile List<Event> schedule = List.of();
+    private volatile Event current;
+    private ScheduledFuture<?> nextSwitch;
+
+    @PostConstruct
+    void subscribe() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            if (!nodeId.equals(new String(message.getBody(), StandardCharsets.UTF_8))) {
+                refresh();
+            }
+        }, new ChannelTopic(REFRESH_CHANNEL));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    @Scheduled(initialDelayString = "${event.registry.reconcile-interval:PT1M}",
+            fixedDelayString = "${event.registry.reconcile-interval:PT1M}")
+    public void reconcile() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Cannot reconcile active event registry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Event có priority cao nhất đang trong khung giờ, không query DB
+     */
+    public Optional<Event> getCurrentEvent() {
+        Event event = current;
+        LocalDateTime now = LocalDateTime.now();
+        if (event != null && isRunning(event, now)) {
+            return Optional.of(event);
+        }
+        // Scheduler chưa kịp chạy (trễ vài ms) => tự chọn lại từ snapshot
+        return Optional.ofNullable(pick(schedule, now));
+    }
+
+    /**
+     * Load lại snapshot từ DB. Gọi sau khi Event bị tạo / sửa / xoá.
+     */
+    public void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        List<Event> loaded = transactionTemplate.execute(status -> {
+            List<Event> events = new ArrayList<>(eventRepository.findActiveEvents(now));
+            events.addAll(eventRepository.findUpcomingEvents(now));
+            // Snapshot dùng ngoài transaction => phải init các collection LAZY trước
+            events.forEach(event -> {
+                Hibernate.initialize(event.getTargets());
+                Hibernate.initialize(event.getRules());
+                Hibernate.initialize(event.getActions());
+            });
+            return events;
+        });
+
+        List<Event> sorted = new ArrayList<>(loaded != null ? loaded : List.of());
+        sorted.sort(BY_PRIORITY);
+
+        synchronized (this) {
+            schedule = List.copyOf(sorted);
+            switchCurrent();
+        }
+        log.info("Active event registry loaded {} event(s), current: {}",
+                sorted.size(), current != null ? current.getId() : null);
+    }
+
+    /**
+     * Refresh sau khi transaction hiện tại commit, để không đọc phải dữ liệu chưa commit,
+     * rồi báo các node khác refresh theo
+     */
+    public void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshAndPublish();
+                }
+            });
+        } else {
+            refreshAndPublish();
+        }
+    }
+
+    private void refreshAndPublish() {
+        refresh();
+        try {
+            stringRedisTemplate.convertAndSend(REFRESH_CHANNEL, nodeId);
+        } catch (RuntimeException e) {
+            // Node khác vẫn nhận thay đổi ở lần reconcile kế tiếp
+            log.warn("Cannot publish active event registry refresh: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void switchCurrent() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Event> events = schedule;
+        current = pick(events, now);
+
+        if (nextSwitch != null) {
+            nextSwitch.cancel(false);
+            nextSwitch = null;
+        }
+
+        // Mốc gần nhất mà kết quả pick() có thể thay đổi: 1 event bắt đầu hoặc kết thúc
+        LocalDateTime next = null;
+        for (Event event : events) {
+            if (event.getStartTime().isAfter(now) && (next == null || event.getStartTime().isBefore(next))) {
+                next = event.getStartTime();
+            }
+            if (event.getEndTime().isAfter(now) && (next == null || event.getEndTime().isBefore(next))) {
+                next = event.getEndTime();
+            }
+        }
+
+        if (next != null) {
+            nextSwitch = taskScheduler.schedule(this::switchCurrent, next.atZone(ZoneId.systemDefault()).toInstant());
+        }
+    }
+
+    private static Event pick(List<Event> events, LocalDateTime now) {
+        for (Event event : events) {
+            if (isRunning(event, now)) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isRunning(Event event, LocalDateTime now) {
+        return event.getStatus() == Event.EventStatus.ACTIVE
+                && !now.isBefore(event.getStartTime())
+                && now.isBefore(event.getEndTime());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.entity.Role;
+import com.example.bookland_be.repository.RoleRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chuỗi "scope" của JWT (ROLE_x + ROLE_permission) tính sẵn theo tập role,
+ * để generateToken không phải duyệt role.getPermissions() (lazy) mỗi lần.
+ * RoleService xoá cache khi role thay đổi; cache cũng được làm trống định kỳ cho các node khác.
+ */
+@Service
+@RequiredArgsConstructor
+public class AuthorityScopeService {
+
+    private final RoleRepository roleRepository;
+
+    // key = danh sách roleId đã sort
+    private final Map<List<Long>, String> scopes = new ConcurrentHashMap<>();
+
+    public String scopeFor(Set<Role> roles) {
+        if (roles == null || roles.isEmpty()) {
+            return "";
+        }
+        List<Long> roleIds = roles.stream().map(Role::getId).sorted().toList();
+        return scopes.computeIfAbsent(roleIds, this::buildScope);
+    }
+
+    public void invalidateAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    scopes.clear();
+                }
+            });
+        }
+        scopes.clear();
+    }
+
+    @Scheduled(fixedDelayString = "${security.scope-cache.ttl:PT10M}")
+    public void expire() {
+        scopes.clear();
+    }
+
+    private String buildScope(List<Long> roleIds) {
+        StringJoiner stringJoiner = new StringJoiner(" ");
+        String currentRole = null;
+        for (Object[] row : roleRepository.findRoleAndPermissionNames(roleIds)) {
+            String roleName = (String) row[0];
+            if (!roleName.equals(currentRole)) {
+                stringJoiner.add("ROLE_" + roleName);
+                currentRole = roleName;
+            }
+            if (row[1] != null) {
+                stringJoiner.add("ROLE_" + row[1]);
+            }
+        }
+        return stringJoiner.toString();
+    }
+}
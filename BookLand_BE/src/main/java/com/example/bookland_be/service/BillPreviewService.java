@@ -7,6 +7,10 @@ import com.example.bookland_be.entity.*;
 import com.example.bookland_be.exception.AppException;
 import com.example.bookland_be.exception.ErrorCode;
 import com.example.bookland_be.repository.*;
+import com.example.bookland_be.service.pricing.CartLines;
+import com.example.bookland_be.service.pricing.CartPricingPipeline;
+import com.example.bookland_be.service.pricing.CartPricingResult;
+import com.example.bookland_be.service.pricing.PricingPlan;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,6 +24,7 @@ public class BillPreviewService {
     private final BookRepository bookRepository;
     private final ShippingMethodRepository shippingMethodRepository;
     private final EventApplicationService eventApplicationService;
+    private final CartPricingPipeline cartPricingPipeline;
 
     /**
      * Preview bill trước khi tạo - xem có event nào áp dụng không
@@ -62,48 +67,49 @@ public class BillPreviewService {
         }
 
 
-        // 3. Build kết quả
-        List<BookPreviewDTO> bookPreviews = new ArrayList<>();
-        double originalTotal = 0.0;
-        double discountedTotal = 0.0;
-
+        // 3. Tính giá qua pipeline và build kết quả
+        PricingPlan plan = cartPricingPipeline.planFor(appliedEvent);
+        CartLines lines = new CartLines(bookRequests.size());
         for (BillBookRequest br : bookRequests) {
             Book book = bookMap.get(br.getBookId());
-            Double originalPrice = book.getFinalPrice();
-            Double finalPrice = originalPrice;
-            boolean hasDiscount = false;
+            lines.add(book.getId(), book.getFinalPrice(), br.getQuantity(), plan != null && plan.matches(book));
+        }
+        CartPricingResult pricing = cartPricingPipeline.price(plan, lines, shippingMethod.getPrice());
 
-            if (appliedEvent != null && eventApplicationService.isBookInEventTarget(appliedEvent, book)) {
-                finalPrice = eventApplicationService.calculateDiscountedPrice(appliedEvent, originalPrice);
-                hasDiscount = true;
-            }
+        List<BookPreviewDTO> bookPreviews = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            Book book = bookMap.get(lines.bookId(i));
+            double finalPrice = lines.unitPrice(i);
+            boolean hasDiscount = lines.isDiscounted(i);
 
             BookPreviewDTO bookPreview = BookPreviewDTO.builder()
                     .bookId(book.getId())
                     .bookName(book.getName())
                     .bookImageUrl(book.getBookImageUrl())
-                    .originalPrice(originalPrice)
+                    .originalPrice(lines.basePrice(i))
                     .eventDiscountedPrice(hasDiscount ? finalPrice : null)
                     .finalPrice(finalPrice)
-                    .quantity(br.getQuantity())
-                    .subtotal(finalPrice * br.getQuantity())
+                    .quantity(lines.quantity(i))
+                    .subtotal(lines.lineTotal(i))
                     .hasEventDiscount(hasDiscount)
                     .build();
 
             bookPreviews.add(bookPreview);
-            originalTotal += originalPrice * br.getQuantity();
-            discountedTotal += finalPrice * br.getQuantity();
         }
 
-        double shippingCost = shippingMethod.getPrice();
-        double grandTotal = discountedTotal + shippingCost;
-        double totalSaved = originalTotal - discountedTotal;
+        double originalTotal = pricing.getOriginalSubtotal();
+        double discountedTotal = pricing.getItemsSubtotal();
+        double shippingCost = pricing.getShippingCost();
+        double shippingDiscount = pricing.getShippingDiscount();
+        double grandTotal = pricing.getGrandTotal();
+        double totalSaved = pricing.getTotalDiscount();
 
         return BillPreviewDTO.builder()
                 .books(bookPreviews)
                 .originalSubtotal(originalTotal)
                 .discountedSubtotal(discountedTotal)
                 .shippingCost(shippingCost)
+                .shippingDiscount(shippingDiscount)
                 .totalSaved(totalSaved)
                 .grandTotal(grandTotal)
                 .appliedEventId(appliedEvent != null ? appliedEvent.getId() : null)
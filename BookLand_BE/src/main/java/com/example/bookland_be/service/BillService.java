@@ -11,6 +11,10 @@ import com.example.bookland_be.exception.AppException;
 import com.example.bookland_be.exception.ErrorCode;
 import com.example.bookland_be.repository.*;
 import com.example.bookland_be.repository.specification.BillSpecification;
+import com.example.bookland_be.service.pricing.CartLines;
+import com.example.bookland_be.service.pricing.CartPricingPipeline;
+import com.example.bookland_be.service.pricing.CartPricingResult;
+import com.example.bookland_be.service.pricing.PricingPlan;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -33,6 +37,7 @@ public class BillService {
     private final PaymentMethodRepository paymentMethodRepository;
     private final ShippingMethodRepository shippingMethodRepository;
     private final EventApplicationService eventApplicationService;
+    private final CartPricingPipeline cartPricingPipeline;
     private final NotificationService notificationService;
     private final EmailService emailService;
 
@@ -71,16 +76,12 @@ public class BillService {
     }
 
     @Transactional(readOnly = true)
-    public Page<BillDTO> getOwnBills(String email, BillStatus status,
+    public Page<BillDTO> getOwnBills(Long userId, BillStatus status,
                                       LocalDateTime fromDate, LocalDateTime toDate,
                                       Double minCost, Double maxCost,
                                       Pageable pageable) {
-        // Tìm user từ email
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-        
         // Tạo specification với userId
-        Specification<Bill> spec = BillSpecification.hasUser(user.getId());
+        Specification<Bill> spec = BillSpecification.hasUser(userId);
 
         if (status != null) {
             spec = spec.and(BillSpecification.hasStatus(status));
@@ -131,40 +132,30 @@ public class BillService {
 
         // 2. Lấy Event và Check Rule
         Optional<Event> activeEventOpt = eventApplicationService.getHighestPriorityActiveEvent();
-        Event appliedEvent = null;
-        Map<Long, Double> eventDiscountedPrices = new HashMap<>();
-        int totalDiscountValue = 0;
+        PricingPlan plan = null;
 
         if (activeEventOpt.isPresent()) {
             Event event = activeEventOpt.get();
-            
+
             // Validate Rule
             boolean isEligible = eventApplicationService.checkEventRule(event, user, tempTotalCost, totalQuantity);
-            
+
             if (isEligible) {
-                // Áp dụng giảm giá
-                for (Book book : books) {
-                    if (eventApplicationService.isBookInEventTarget(event, book)) {
-                        Double originalPrice = book.getFinalPrice();
-                        Double discountedPrice = eventApplicationService.calculateDiscountedPrice(event, originalPrice);
-                        int qty = quantities.get(book.getId());
-
-                        eventDiscountedPrices.put(book.getId(), discountedPrice);
-                        totalDiscountValue += (int)((originalPrice - discountedPrice) * qty);
-                        appliedEvent = event;
-                    }
-                }
+                plan = cartPricingPipeline.planFor(event);
             }
         }
 
-        // 3. Tính lại tổng tiền sau khi có (hoặc không) giảm giá
-        double finalBooksCost = 0.0;
+        // 3. Tính giá qua pipeline: giá sản phẩm -> action toàn giỏ -> phí ship -> tổng
+        CartLines lines = new CartLines(books.size());
         for (Book book : books) {
-            Double price = eventDiscountedPrices.getOrDefault(book.getId(), book.getFinalPrice());
-            finalBooksCost += price * quantities.get(book.getId());
+            lines.add(book.getId(), book.getFinalPrice(), quantities.get(book.getId()),
+                    plan != null && plan.matches(book));
         }
+        CartPricingResult pricing = cartPricingPipeline.price(plan, lines, shippingMethod.getPrice());
+        Event appliedEvent = pricing.getEvent();
+        int totalDiscountValue = (int) Math.round(pricing.getTotalDiscount());
 
-        double totalCost = finalBooksCost + shippingMethod.getPrice();
+        double totalCost = pricing.getGrandTotal();
 
         // 4. Lưu Bill
         Bill bill = Bill.builder()
@@ -178,9 +169,10 @@ public class BillService {
         Bill savedBill = billRepository.save(bill);
 
         // 5. Lưu BillBooks
-        for (Book book : books) {
-            Double priceToSave = eventDiscountedPrices.getOrDefault(book.getId(), book.getFinalPrice());
-            int qty = quantities.get(book.getId());
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            Double priceToSave = lines.unitPrice(i);
+            int qty = lines.quantity(i);
 
             BillBook billBook = BillBook.builder()
                     .bill(savedBill)
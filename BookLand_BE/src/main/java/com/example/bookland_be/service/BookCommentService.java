@@ -1,12 +1,12 @@
 package com.example.bookland_be.service;
 
+import com.example.bookland_be.dto.UserPrincipal;
 import com.example.bookland_be.dto.request.BookCommentRequest;
 import com.example.bookland_be.dto.response.BookCommentResponse;
 import com.example.bookland_be.dto.response.BookCommentSummaryResponse;
 import com.example.bookland_be.entity.Bill;
 import com.example.bookland_be.entity.Book;
 import com.example.bookland_be.entity.BookComment;
-import com.example.bookland_be.entity.User;
 import com.example.bookland_be.exception.AppException;
 import com.example.bookland_be.exception.ErrorCode;
 import com.example.bookland_be.mapper.BookCommentMapper;
@@ -18,7 +18,6 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,14 +31,13 @@ public class BookCommentService {
     private final BookCommentRepository bookCommentRepository;
     private final BookRepository bookRepository;
     private final UserRepository userRepository;
+    private final UserPrincipalService userPrincipalService;
     private final BillRepository billRepository;
     private final BookCommentMapper bookCommentMapper;
 
     @Transactional
     public BookCommentResponse createComment(BookCommentRequest request) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        UserPrincipal currentUser = userPrincipalService.getCurrentUser();
 
         Book book = bookRepository.findById(request.getBookId())
                 .orElseThrow(() -> new AppException(ErrorCode.BOOK_NOT_FOUND));
@@ -53,7 +51,7 @@ public class BookCommentService {
         }
 
         // Validation: User must own the bill
-        if (!bill.getUser().getId().equals(user.getId())) {
+        if (!bill.getUser().getId().equals(currentUser.getId())) {
              throw new AppException(ErrorCode.USER_NOT_OWN_BILL);
         }
 
@@ -65,12 +63,12 @@ public class BookCommentService {
         }
 
         // Validation: One comment per book per bill
-        if (bookCommentRepository.existsByUserIdAndBookIdAndBillId(user.getId(), book.getId(), bill.getId())) {
+        if (bookCommentRepository.existsByUserIdAndBookIdAndBillId(currentUser.getId(), book.getId(), bill.getId())) {
              throw new AppException(ErrorCode.ALREADY_COMMENTED);
         }
 
         BookComment comment = BookComment.builder()
-                .user(user)
+                .user(userRepository.getReferenceById(currentUser.getId()))
                 .book(book)
                 .bill(bill)
                 .rating(request.getRating())
@@ -109,11 +107,9 @@ public class BookCommentService {
     }
     
     public List<BookCommentResponse> getCommentsByUser() {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        UserPrincipal currentUser = userPrincipalService.getCurrentUser();
                 
-        return bookCommentRepository.findByUserId(user.getId()).stream()
+        return bookCommentRepository.findByUserId(currentUser.getId()).stream()
                 .map(bookCommentMapper::toResponse)
                 .collect(Collectors.toList());
     }
@@ -143,11 +139,9 @@ public class BookCommentService {
                 .orElseThrow(() -> new AppException(ErrorCode.COMMENT_NOT_FOUND));
 
         // Get current user
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        UserPrincipal currentUser = userPrincipalService.getCurrentUser();
 
-        if (!comment.getUser().getId().equals(user.getId())) {
+        if (!comment.getUser().getId().equals(currentUser.getId())) {
              throw new AppException(ErrorCode.UNAUTHORIZED); // or UNAUTHORIZED
         }
 
@@ -173,11 +167,9 @@ public class BookCommentService {
         BookComment comment = bookCommentRepository.findById(commentId)
                 .orElseThrow(() -> new AppException(ErrorCode.COMMENT_NOT_FOUND));
 
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        UserPrincipal currentUser = userPrincipalService.getCurrentUser();
 
-        if (!comment.getUser().getId().equals(user.getId())) {
+        if (!comment.getUser().getId().equals(currentUser.getId())) {
              throw new AppException(ErrorCode.UNAUTHORIZED);
         }
 
@@ -14,6 +14,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
@@ -31,6 +32,7 @@ public class BookService {
     private final PublisherRepository publisherRepository;
     private final SerieRepository serieRepository;
     private final CategoryRepository categoryRepository;
+    private final ImageVariantService imageVariantService;
 
     @Cacheable(value = "all_books")
     @Transactional(readOnly = true)
@@ -47,8 +49,7 @@ public class BookService {
                 .and(BookSpecification.isPinned(pinned))
                 .and(BookSpecification.priceBetween(minPrice, maxPrice));
 
-        return PageResponse.from(bookRepository.findAll(spec, pageable)
-                .map(this::convertToDTO));
+        return PageResponse.from(toDTOPage(bookRepository.findAll(spec, pageable)));
     }
 
     @Cacheable(value = "best_selling_books")
@@ -78,8 +79,7 @@ public class BookService {
             }
         }
 
-        return PageResponse.from(bookRepository.findBestSellingBooks(keyword, minPrice, maxPrice, startDate, categoryIds, authorIds, publisherIds, seriesIds, pageable)
-                .map(this::convertToDTO));
+        return PageResponse.from(toDTOPage(bookRepository.findBestSellingBooks(keyword, minPrice, maxPrice, startDate, categoryIds, authorIds, publisherIds, seriesIds, pageable)));
     }
 
     @Cacheable(value = "books", key = "#id")
@@ -214,6 +214,12 @@ public class BookService {
         return convertToDTO(updatedBook);
     }
 
+    // Nạp bản thu nhỏ của cả trang bằng 1 query trước khi map từng sách
+    private Page<BookDTO> toDTOPage(Page<Book> books) {
+        imageVariantService.preload(books.map(Book::getBookImageUrl).getContent());
+        return books.map(this::convertToDTO);
+    }
+
     private BookDTO convertToDTO(Book book) {
         return BookDTO.builder()
                 .id(book.getId())
@@ -226,6 +232,7 @@ public class BookService {
                 .status(book.getStatus())
                 .publishedDate(book.getPublishedDate())
                 .bookImageUrl(book.getBookImageUrl())
+                .imageVariants(imageVariantService.variantUrls(book.getBookImageUrl()))
                 .pin(book.getPin())
                 .authorId(book.getAuthor().getId())
                 .authorName(book.getAuthor().getName())
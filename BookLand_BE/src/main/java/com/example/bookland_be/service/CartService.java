@@ -9,12 +9,18 @@ import com.example.bookland_be.entity.Cart.CartStatus;
 import com.example.bookland_be.exception.AppException;
 import com.example.bookland_be.exception.ErrorCode;
 import com.example.bookland_be.repository.*;
+import com.example.bookland_be.service.pricing.CartLines;
+import com.example.bookland_be.service.pricing.CartPricingPipeline;
+import com.example.bookland_be.service.pricing.CartPricingResult;
+import com.example.bookland_be.service.pricing.PricingPlan;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +30,8 @@ public class CartService {
     private final CartItemRepository cartItemRepository;
     private final BookRepository bookRepository;
     private final UserRepository userRepository;
+    private final EventApplicationService eventApplicationService;
+    private final CartPricingPipeline cartPricingPipeline;
 
     public CartDTO getUserCart(Long userId) {
         Cart cart = cartRepository.findByUserIdAndStatus(userId, CartStatus.BUYING)
@@ -64,6 +72,7 @@ public class CartService {
             cart.getItems().add(newItem);
         }
 
+        touch(cart);
         cartRepository.save(cart);
         return convertToDTO(cart);
     }
@@ -83,6 +92,7 @@ public class CartService {
 
         cartItem.setQuantity(request.getQuantity());
         cartItemRepository.save(cartItem);
+        touch(cart);
 
         return convertToDTO(cart);
     }
@@ -97,6 +107,7 @@ public class CartService {
 
         cart.getItems().remove(cartItem);
         cartItemRepository.delete(cartItem);
+        touch(cart);
         cartRepository.save(cart);
 
         return convertToDTO(cart);
@@ -112,6 +123,7 @@ public class CartService {
 
         cart.getItems().removeAll(itemsToRemove);
         cartItemRepository.deleteAllInBatch(itemsToRemove);
+        touch(cart);
         cartRepository.save(cart);
 
         return convertToDTO(cart);
@@ -123,9 +135,15 @@ public class CartService {
                 .orElseThrow(() -> new AppException(ErrorCode.CART_NOT_FOUND));
 
         cart.getItems().clear();
+        touch(cart);
         cartRepository.save(cart);
     }
 
+    // Chỉ sửa cart_item thì Hibernate không coi cart là dirty => tự ghi lastActivityAt (retention giỏ bỏ quên dựa vào đây)
+    private static void touch(Cart cart) {
+        cart.setLastActivityAt(LocalDateTime.now());
+    }
+
     private Cart createNewCart(Long userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
@@ -139,29 +157,56 @@ public class CartService {
     }
 
     private CartDTO convertToDTO(Cart cart) {
-        List<CartItemDTO> itemDTOs = cart.getItems().stream()
-                .map(this::convertItemToDTO)
-                .collect(Collectors.toList());
+        List<CartItem> items = List.copyOf(cart.getItems());
+
+        // Giá event trong giỏ: cùng pipeline với preview / tạo bill (chưa có phí ship)
+        double totalAmount = 0.0;
+        int totalQuantity = 0;
+        for (CartItem item : items) {
+            totalAmount += item.getBook().getFinalPrice() * item.getQuantity();
+            totalQuantity += item.getQuantity();
+        }
+
+        PricingPlan plan = null;
+        Optional<Event> activeEventOpt = eventApplicationService.getHighestPriorityActiveEvent();
+        if (activeEventOpt.isPresent() && !items.isEmpty()
+                && eventApplicationService.checkEventRule(activeEventOpt.get(), cart.getUser(), totalAmount, totalQuantity)) {
+            plan = cartPricingPipeline.planFor(activeEventOpt.get());
+        }
+
+        CartLines lines = new CartLines(items.size());
+        for (CartItem item : items) {
+            Book book = item.getBook();
+            lines.add(book.getId(), book.getFinalPrice(), item.getQuantity(), plan != null && plan.matches(book));
+        }
+        CartPricingResult pricing = cartPricingPipeline.price(plan, lines, 0);
 
-        double totalAmount = itemDTOs.stream()
-                .mapToDouble(CartItemDTO::getSubtotal)
-                .sum();
+        List<CartItemDTO> itemDTOs = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            itemDTOs.add(convertItemToDTO(items.get(i), lines, i));
+        }
 
+        Event appliedEvent = pricing.getEvent();
         return CartDTO.builder()
                 .id(cart.getId())
                 .userId(cart.getUser().getId())
                 .status(cart.getStatus())
                 .items(itemDTOs)
                 .totalAmount(totalAmount)
+                .eventDiscount(pricing.getTotalDiscount())
+                .totalAfterEvent(pricing.getItemsSubtotal())
+                .appliedEventId(appliedEvent != null ? appliedEvent.getId() : null)
+                .appliedEventName(appliedEvent != null ? appliedEvent.getName() : null)
                 .createdAt(cart.getCreatedAt())
                 .updatedAt(cart.getUpdatedAt())
                 .build();
     }
 
-    private CartItemDTO convertItemToDTO(CartItem item) {
+    private CartItemDTO convertItemToDTO(CartItem item, CartLines lines, int index) {
         Book book = item.getBook();
         double finalPrice = book.getFinalPrice();
         double subtotal = finalPrice * item.getQuantity();
+        boolean hasDiscount = lines.isDiscounted(index);
 
         return CartItemDTO.builder()
                 .bookId(book.getId())
@@ -170,9 +215,11 @@ public class CartService {
                 .originalPrice(book.getOriginalCost())
                 .salePrice(book.getSale())
                 .finalPrice(finalPrice)
+                .eventPrice(hasDiscount ? lines.unitPrice(index) : null)
                 .quantity(item.getQuantity())
                 .availableStock(book.getStock())
                 .subtotal(subtotal)
+                .eventSubtotal(lines.lineTotal(index))
                 .build();
     }
 }
@@ -0,0 +1,229 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.dto.response.ChatMessageResponse;
+import com.example.bookland_be.dto.response.ConversationUserResponse;
+import com.example.bookland_be.entity.ChatConversation;
+import com.example.bookland_be.entity.ChatMessage;
+import com.example.bookland_be.entity.User;
+import com.example.bookland_be.repository.ChatConversationRepository;
+import com.example.bookland_be.repository.ChatMessageRepository;
+import com.example.bookland_be.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Duy trì bảng chat_conversation (tin nhắn cuối + số tin chưa đọc của từng bên)
+ * để inbox không phải quét lại chat_message.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatConversationService {
+
+    private static final int PREVIEW_LENGTH = 200;
+    private static final int BACKFILL_CHUNK = 500;
+
+    private final ChatConversationRepository chatConversationRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final UserRepository userRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Transactional(readOnly = true)
+    public List<ConversationUserResponse> getInbox(Long ownerId, int page, int size) {
+        return chatConversationRepository.findInbox(ownerId, PageRequest.of(page, size))
+                .stream()
+                .map(this::toResponse)
+                .toList();
+    }
+
+    /**
+     * Cập nhật tóm tắt của cả 2 bên cho 1 batch tin nhắn đã ghi xong.
+     * Mỗi chiều chỉ cần tin mới nhất + số tin đến trong batch => mỗi cặp tối đa 2 transaction.
+     */
+    public void recordMessages(Collection<MessageSnapshot> messages) {
+        Map<List<Long>, MessageSnapshot> latestBySide = new HashMap<>();
+        Map<List<Long>, Long> incomingBySide = new HashMap<>();
+        for (MessageSnapshot message : messages) {
+            List<Long> senderSide = List.of(message.fromUserId(), message.toUserId());
+            List<Long> recipientSide = List.of(message.toUserId(), message.fromUserId());
+            latestBySide.merge(senderSide, message, ChatConversationService::newer);
+            latestBySide.merge(recipientSide, message, ChatConversationService::newer);
+            if (message.unread()) {
+                incomingBySide.merge(recipientSide, 1L, Long::sum);
+            }
+        }
+
+        latestBySide.forEach((side, latest) -> {
+            try {
+                applySide(side.get(0), side.get(1), latest, incomingBySide.getOrDefault(side, 0L));
+            } catch (RuntimeException e) {
+                log.error("Cannot update conversation summary {} -> {} for message {}",
+                        side.get(0), side.get(1), latest.messageId(), e);
+            }
+        });
+    }
+
+    public void markAsRead(Long ownerId, Long peerId) {
+        chatConversationRepository.resetUnread(ownerId, peerId);
+    }
+
+    /**
+     * Build bảng tóm tắt từ chat_message khi bảng còn trống (lần đầu deploy)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (chatConversationRepository.count() > 0) {
+            return;
+        }
+        try {
+            newTransaction().executeWithoutResult(status -> {
+                Map<List<Long>, ChatMessage> lastByPair = new HashMap<>();
+                List<Long> lastIds = chatMessageRepository.findLastMessageIdPerDirection();
+                for (int from = 0; from < lastIds.size(); from += BACKFILL_CHUNK) {
+                    List<Long> chunk = lastIds.subList(from, Math.min(from + BACKFILL_CHUNK, lastIds.size()));
+                    for (ChatMessage message : chatMessageRepository.findAllById(chunk)) {
+                        Long a = message.getFromUser().getId();
+                        Long b = message.getToUser().getId();
+                        lastByPair.merge(List.of(Math.min(a, b), Math.max(a, b)), message,
+                                (x, y) -> x.getId() > y.getId() ? x : y);
+                    }
+                }
+
+                Map<List<Long>, Long> unread = new HashMap<>();
+                for (Object[] row : chatMessageRepository.countUnreadPerDirection()) {
+                    unread.put(List.of((Long) row[0], (Long) row[1]), ((Number) row[2]).longValue());
+                }
+
+                List<ChatConversation> rows = new ArrayList<>();
+                lastByPair.forEach((pair, message) -> {
+                    rows.add(newRow(pair.get(0), pair.get(1), message, unread.getOrDefault(pair, 0L)));
+                    rows.add(newRow(pair.get(1), pair.get(0), message,
+                            unread.getOrDefault(List.of(pair.get(1), pair.get(0)), 0L)));
+                });
+                chatConversationRepository.saveAll(rows);
+                if (!rows.isEmpty()) {
+                    log.info("Built {} chat conversation summary row(s)", rows.size());
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Node khác đang build cùng lúc
+            log.info("Chat conversation summaries are being built by another node");
+        }
+    }
+
+    private void applySide(Long ownerId, Long peerId, MessageSnapshot snapshot, long incoming) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                newTransaction().executeWithoutResult(status -> {
+                    if (!chatConversationRepository.existsByOwnerIdAndPeerId(ownerId, peerId)) {
+                        chatConversationRepository.saveAndFlush(ChatConversation.builder()
+                                .owner(userRepository.getReferenceById(ownerId))
+                                .peer(userRepository.getReferenceById(peerId))
+                                .lastMessageId(snapshot.messageId())
+                                .lastSenderId(snapshot.fromUserId())
+                                .lastMessagePreview(snapshot.preview())
+                                .lastMessageAt(snapshot.sentAt())
+                                .unreadCount(incoming)
+                                .build());
+                        return;
+                    }
+                    chatConversationRepository.applyMessage(ownerId, peerId, snapshot.messageId(),
+                            snapshot.fromUserId(), snapshot.preview(), snapshot.sentAt());
+                    if (incoming > 0) {
+                        chatConversationRepository.incrementUnread(ownerId, peerId, incoming);
+                    }
+                });
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // Dòng vừa được tạo bởi request khác => thử lại bằng UPDATE
+            }
+        }
+    }
+
+    private ChatConversation newRow(Long ownerId, Long peerId, ChatMessage message, long unreadCount) {
+        return ChatConversation.builder()
+                .owner(userRepository.getReferenceById(ownerId))
+                .peer(userRepository.getReferenceById(peerId))
+                .lastMessageId(message.getId())
+                .lastSenderId(message.getFromUser().getId())
+                .lastMessagePreview(preview(message.getContent()))
+                .lastMessageAt(message.getCreatedAt())
+                .unreadCount(unreadCount)
+                .build();
+    }
+
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    private ConversationUserResponse toResponse(ChatConversation conversation) {
+        User owner = conversation.getOwner();
+        User peer = conversation.getPeer();
+        ChatMessageResponse lastMessage = null;
+        if (conversation.getLastMessageId() != null) {
+            boolean fromPeer = peer.getId().equals(conversation.getLastSenderId());
+            User from = fromPeer ? peer : owner;
+            User to = fromPeer ? owner : peer;
+            lastMessage = ChatMessageResponse.builder()
+                    .id(conversation.getLastMessageId())
+                    .fromUserId(from.getId())
+                    .fromUsername(from.getUsername())
+                    .fromEmail(from.getEmail())
+                    .toUserId(to.getId())
+                    .toUsername(to.getUsername())
+                    .toEmail(to.getEmail())
+                    .content(conversation.getLastMessagePreview())
+                    .isRead(fromPeer ? conversation.getUnreadCount() == 0 : null)
+                    .createdAt(conversation.getLastMessageAt())
+                    .build();
+        }
+
+        return ConversationUserResponse.builder()
+                .userId(peer.getId())
+                .username(peer.getUsername())
+                .email(peer.getEmail())
+                .unreadCount(conversation.getUnreadCount())
+                .lastMessage(lastMessage)
+                .build();
+    }
+
+    private static MessageSnapshot newer(MessageSnapshot a, MessageSnapshot b) {
+        return a.messageId() > b.messageId() ? a : b;
+    }
+
+    private static String preview(String content) {
+        if (content == null || content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, PREVIEW_LENGTH);
+    }
+
+    // unread = dòng vẫn is_read = false lúc cập nhật tóm tắt (người nhận có thể đã đọc ngay sau khi INSERT)
+    public record MessageSnapshot(Long messageId, Long fromUserId, Long toUserId,
+                                  String preview, LocalDateTime sentAt, boolean unread) {
+
+        public static MessageSnapshot of(Long messageId, Long fromUserId, Long toUserId,
+                                         String content, LocalDateTime sentAt, boolean unread) {
+            return new MessageSnapshot(messageId, fromUserId, toUserId, ChatConversationService.preview(content),
+                    sentAt, unread);
+        }
+    }
+}
@@ -1,22 +1,36 @@
 package com.example.bookland_be.service;
 
+import com.example.bookland_be.dto.UserPrincipal;
 import com.example.bookland_be.dto.request.SendChatMessageRequest;
+import com.example.bookland_be.dto.response.ChatHistoryPageResponse;
+import com.example.bookland_be.dto.response.ChatMessageAckResponse;
 import com.example.bookland_be.dto.response.ChatMessageResponse;
 import com.example.bookland_be.dto.response.ConversationUserResponse;
 import com.example.bookland_be.entity.ChatMessage;
-import com.example.bookland_be.entity.User;
 import com.example.bookland_be.exception.AppException;
 import com.example.bookland_be.exception.ErrorCode;
 import com.example.bookland_be.repository.ChatMessageRepository;
-import com.example.bookland_be.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,9 +38,23 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ChatMessageService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_CLIENT_MESSAGE_ID_LENGTH = 64;
+    // Khoảng thời gian nhận ra tin gửi lại theo clientMessageId (sau đó dựa vào unique key trên DB)
+    private static final Duration DEDUPE_WINDOW = Duration.ofMinutes(10);
+    private static final int MAX_DEDUPE_ENTRIES = 50_000;
+
     private final ChatMessageRepository chatMessageRepository;
-    private final UserRepository userRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ChatConversationService chatConversationService;
+    private final UnreadCounterService unreadCounterService;
+    private final ChatMessageWriter chatMessageWriter;
+    private final UserPrincipalService userPrincipalService;
+
+    private final Map<String, AcceptedMessage> recentByClientId = new ConcurrentHashMap<>();
+
+    @Value("${chat.write-behind.sync-timeout:PT5S}")
+    private Duration syncTimeout;
 
     @Transactional(readOnly = true)
     public List<ChatMessageResponse> getChatHistory(Long currentUserId, Long otherUserId) {
@@ -36,73 +64,201 @@ public class ChatMessageService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Lịch sử chat phân trang kiểu seek: không có before => trang mới nhất,
+     * có before => các tin nhắn có id < before. Chi phí mỗi trang không phụ thuộc độ dài hội thoại.
+     */
     @Transactional(readOnly = true)
-    public List<ConversationUserResponse> getConversations(Long adminId) {
-        List<Long> userIds = chatMessageRepository.findConversationUserIds(adminId);
-        List<ConversationUserResponse> conversations = new ArrayList<>();
-
-        for (Long userId : userIds) {
-            User user = userRepository.findById(userId).orElse(null);
-            if (user != null) {
-                Long unreadCount = chatMessageRepository.countUnreadMessagesBetween(userId, adminId);
-                
-                List<ChatMessage> history = chatMessageRepository.findChatHistory(adminId, userId);
-                ChatMessageResponse lastMessage = history.isEmpty() ? null : convertToResponse(history.get(history.size() - 1));
-
-                conversations.add(ConversationUserResponse.builder()
-                        .userId(user.getId())
-                        .username(user.getUsername())
-                        .email(user.getEmail())
-                        .unreadCount(unreadCount)
-                        .lastMessage(lastMessage)
-                        .build());
-            }
-        }
+    public ChatHistoryPageResponse getChatHistoryPage(Long currentUserId, Long otherUserId, Long beforeId, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Long low = Math.min(currentUserId, otherUserId);
+        Long high = Math.max(currentUserId, otherUserId);
+
+        // Lấy dư 1 bản ghi để biết còn trang cũ hơn không
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        List<ChatMessage> rows = beforeId == null
+                ? chatMessageRepository.findLatestInConversation(low, high, limit)
+                : chatMessageRepository.findInConversationBefore(low, high, beforeId, limit);
 
-        return conversations;
+        boolean hasMore = rows.size() > pageSize;
+        List<ChatMessageResponse> messages = rows.stream()
+                .limit(pageSize)
+                .map(this::convertToResponse)
+                .collect(Collectors.toCollection(ArrayList::new));
+        Collections.reverse(messages);
+
+        return ChatHistoryPageResponse.builder()
+                .messages(messages)
+                .nextBefore(hasMore ? messages.get(0).getId() : null)
+                .hasMore(hasMore)
+                .build();
     }
 
+    @EventListener(ApplicationReadyEvent.class)
     @Transactional
-    public ChatMessageResponse sendMessage(Long fromUserId, SendChatMessageRequest request) {
-        User fromUser = userRepository.findById(fromUserId)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+    public void backfillParticipants() {
+        int updated = chatMessageRepository.backfillParticipants();
+        if (updated > 0) {
+            log.info("Backfilled participant pair for {} chat message(s)", updated);
+        }
+    }
+
+    /**
+     * Inbox: đọc từ bảng tóm tắt chat_conversation, sort theo hoạt động gần nhất
+     */
+    public List<ConversationUserResponse> getConversations(Long adminId, int page, int size) {
+        return chatConversationService.getInbox(adminId, Math.max(page, 0), Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+    }
+
+    /**
+     * REST: giao qua WebSocket ngay, chỉ trả về khi batch writer đã ghi xong tin nhắn
+     */
+    public ChatMessageResponse sendMessage(UserPrincipal sender, SendChatMessageRequest request) {
+        AcceptedMessage accepted = accept(sender, request);
+        Long storedId;
+        try {
+            storedId = accepted.persisted().get(syncTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Gửi lại với cùng clientMessageId sẽ không tạo bản ghi trùng
+            throw new AppException(ErrorCode.CHAT_MESSAGE_NOT_SAVED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.CHAT_MESSAGE_NOT_SAVED);
+        }
+        return withStoredId(accepted.response(), storedId);
+    }
+
+    /**
+     * STOMP /app/chat.send: không chờ DB. Người gửi nhận ack ở /user/queue/chat.ack:
+     * ACCEPTED (đã giao, kèm id) rồi PERSISTED hoặc FAILED.
+     * Chưa nhận PERSISTED thì client gửi lại với cùng clientMessageId (at-least-once).
+     */
+    public void sendMessageAsync(UserPrincipal sender, SendChatMessageRequest request) {
+        AcceptedMessage accepted;
+        try {
+            accepted = accept(sender, request);
+        } catch (AppException e) {
+            sendAck(sender.getEmail(), ChatMessageAckResponse.builder()
+                    .clientMessageId(request.getClientMessageId())
+                    .status(ChatMessageAckResponse.Status.FAILED)
+                    .errorCode(e.getErrorCode().getErrorCode())
+                    .errorMessage(e.getErrorCode().getMessage())
+                    .build());
+            return;
+        }
+
+        ChatMessageResponse response = accepted.response();
+        sendAck(sender.getEmail(), ack(response, ChatMessageAckResponse.Status.ACCEPTED));
+        accepted.persisted().whenComplete((storedId, error) -> {
+            // Tin gửi lại đã có trên DB => PERSISTED mang id của bản ghi có sẵn
+            ChatMessageAckResponse ack = ack(withStoredId(response, storedId), error == null
+                    ? ChatMessageAckResponse.Status.PERSISTED
+                    : ChatMessageAckResponse.Status.FAILED);
+            if (error != null) {
+                ack.setErrorCode(ErrorCode.CHAT_MESSAGE_NOT_SAVED.getErrorCode());
+                ack.setErrorMessage(ErrorCode.CHAT_MESSAGE_NOT_SAVED.getMessage());
+            }
+            sendAck(sender.getEmail(), ack);
+        });
+    }
 
-        User toUser = userRepository.findByEmail(request.getToEmail())
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+    // Cấp id, đưa vào batch writer và giao cho người nhận ngay (chưa chờ ghi DB)
+    private AcceptedMessage accept(UserPrincipal sender, SendChatMessageRequest request) {
+        if (request.getContent() == null || request.getContent().isBlank()) {
+            throw new AppException(ErrorCode.CHAT_MESSAGE_EMPTY);
+        }
+        String clientMessageId = request.getClientMessageId();
+        if (clientMessageId != null && clientMessageId.isBlank()) {
+            clientMessageId = null;
+        }
+        if (clientMessageId != null && clientMessageId.length() > MAX_CLIENT_MESSAGE_ID_LENGTH) {
+            throw new AppException(ErrorCode.CHAT_CLIENT_MESSAGE_ID_INVALID);
+        }
+
+        long now = System.currentTimeMillis();
+        String dedupeKey = clientMessageId != null ? sender.getId() + ":" + clientMessageId : null;
+        if (dedupeKey != null) {
+            AcceptedMessage previous = recentByClientId.get(dedupeKey);
+            // Gửi lại tin đã nhận (đang ghi hoặc đã ghi) => trả lại kết quả cũ, không ghi thêm
+            if (previous != null && previous.expiresAt() > now && !previous.persisted().isCompletedExceptionally()) {
+                return previous;
+            }
+        }
 
-        ChatMessage chatMessage = ChatMessage.builder()
-                .fromUser(fromUser)
-                .toUser(toUser)
+        UserPrincipal recipient = userPrincipalService.loadByEmail(request.getToEmail());
+        if (recipient == null) {
+            throw new AppException(ErrorCode.USER_NOT_EXISTED);
+        }
+
+        long id = chatMessageWriter.nextId();
+        LocalDateTime createdAt = LocalDateTime.now();
+        CompletableFuture<Long> persisted = chatMessageWriter.submit(new ChatMessageWriter.PendingMessage(
+                id, sender.getId(), recipient.getId(), request.getContent(), createdAt, clientMessageId));
+
+        ChatMessageResponse response = ChatMessageResponse.builder()
+                .id(id)
+                .fromUserId(sender.getId())
+                .fromUsername(sender.getUsername())
+                .fromEmail(sender.getEmail())
+                .toUserId(recipient.getId())
+                .toUsername(recipient.getUsername())
+                .toEmail(recipient.getEmail())
                 .content(request.getContent())
                 .isRead(false)
+                .createdAt(createdAt)
+                .clientMessageId(clientMessageId)
                 .build();
 
-        ChatMessage saved = chatMessageRepository.save(chatMessage);
-        ChatMessageResponse response = convertToResponse(saved);
+        AcceptedMessage accepted = new AcceptedMessage(response, persisted, now + DEDUPE_WINDOW.toMillis());
+        if (dedupeKey != null) {
+            if (recentByClientId.size() >= MAX_DEDUPE_ENTRIES) {
+                recentByClientId.values().removeIf(entry -> entry.expiresAt() <= now);
+            }
+            recentByClientId.put(dedupeKey, accepted);
+        }
 
-        // Send WebSocket message to recipient
-        log.info("Sending WebSocket chat message from {} to {}", fromUser.getEmail(), toUser.getEmail());
-        messagingTemplate.convertAndSendToUser(
-                toUser.getEmail(),
-                "/queue/chat",
-                response
-        );
+        log.debug("Sending WebSocket chat message {} from {} to {}", id, sender.getEmail(), recipient.getEmail());
+        messagingTemplate.convertAndSendToUser(recipient.getEmail(), "/queue/chat", response);
+        return accepted;
+    }
+
+    private void sendAck(String senderEmail, ChatMessageAckResponse ack) {
+        try {
+            messagingTemplate.convertAndSendToUser(senderEmail, "/queue/chat.ack", ack);
+        } catch (RuntimeException e) {
+            log.warn("Cannot send chat ack to {}: {}", senderEmail, e.getMessage());
+        }
+    }
+
+    private static ChatMessageResponse withStoredId(ChatMessageResponse response, Long storedId) {
+        if (storedId == null || storedId.equals(response.getId())) {
+            return response;
+        }
+        return response.toBuilder().id(storedId).build();
+    }
 
-        return response;
+    private static ChatMessageAckResponse ack(ChatMessageResponse response, ChatMessageAckResponse.Status status) {
+        return ChatMessageAckResponse.builder()
+                .clientMessageId(response.getClientMessageId())
+                .id(response.getId())
+                .status(status)
+                .createdAt(response.getCreatedAt())
+                .build();
     }
 
     @Transactional
     public void markAsRead(Long currentUserId, Long otherUserId) {
-        List<ChatMessage> messages = chatMessageRepository.findChatHistory(currentUserId, otherUserId);
-        messages.stream()
-                .filter(msg -> msg.getToUser().getId().equals(currentUserId) && !msg.getIsRead())
-                .forEach(msg -> msg.setIsRead(true));
-        chatMessageRepository.saveAll(messages);
+        chatMessageRepository.markConversationAsRead(currentUserId, otherUserId);
+        // Không trừ theo số dòng cập nhật: tin vừa INSERT nhưng writer chưa kịp cộng bộ đếm cũng bị tính ở đây.
+        // Bộ đếm là tổng mọi hội thoại nên không đặt về 0 được => xoá để lần đọc sau COUNT lại
+        unreadCounterService.evictAfterCommit(UnreadCounterService.Kind.CHAT, List.of(currentUserId));
+        chatConversationService.markAsRead(currentUserId, otherUserId);
     }
 
     @Transactional(readOnly = true)
     public Long getUnreadCount(Long userId) {
-        return chatMessageRepository.countUnreadMessages(userId);
+        return unreadCounterService.get(UnreadCounterService.Kind.CHAT, userId,
+                () -> chatMessageRepository.countUnreadMessages(userId));
     }
 
     private ChatMessageResponse convertToResponse(ChatMessage message) {
@@ -117,6 +273,10 @@ public class ChatMessageService {
                 .content(message.getContent())
                 .isRead(message.getIsRead())
                 .createdAt(message.getCreatedAt())
+                .clientMessageId(message.getClientMessageId())
                 .build();
     }
+
+    private record AcceptedMessage(ChatMessageResponse response, CompletableFuture<Long> persisted, long expiresAt) {
+    }
 }
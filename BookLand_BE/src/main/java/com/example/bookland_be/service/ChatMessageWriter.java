@@ -0,0 +1,318 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import com.example.bookland_be.util.TimeOrderedIdGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ghi chat_message kiểu write-behind: tin nhắn vào hàng đợi có giới hạn, 1 thread gom thành batch
+ * (tối đa batch-size tin hoặc chờ max-delay) rồi ghi bằng 1 câu INSERT nhiều dòng.
+ * Future của từng tin hoàn thành theo kết quả của chính dòng đó, trả về id đã lưu
+ * (tin gửi lại trùng clientMessageId => id của bản ghi có sẵn), dùng cho ack PERSISTED.
+ * Batch lỗi hẳn thì chia đôi để 1 dòng lỗi không làm hỏng các dòng khác.
+ * Hàng đợi đầy => CHAT_SERVICE_BUSY để client gửi lại sau.
+ */
+@Service
+@Slf4j
+public class ChatMessageWriter {
+
+    private static final String INSERT_PREFIX = "INSERT INTO chat_message " +
+            "(id, from_user_id, to_user_id, content, is_read, created_at, client_message_id, " +
+            "participant_low, participant_high) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Chỉ bỏ qua trùng khoá (id / clientMessageId); lỗi dữ liệu khác vẫn báo lỗi, khác INSERT IGNORE
+    private static final String INSERT_SUFFIX = " ON DUPLICATE KEY UPDATE id = id";
+
+    public record PendingMessage(Long id, Long fromUserId, Long toUserId, String content,
+                                 LocalDateTime createdAt, String clientMessageId) {
+    }
+
+    private record PendingWrite(PendingMessage message, CompletableFuture<Long> persisted) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final ChatConversationService chatConversationService;
+    private final UnreadCounterService unreadCounterService;
+    private final ChatNodeIdLease nodeIdLease;
+    private volatile TimeOrderedIdGenerator idGenerator;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final long offerTimeoutMillis;
+    private final int maxAttempts;
+    private final Timer flushTimer;
+    private final Counter failedCounter;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public ChatMessageWriter(JdbcTemplate jdbcTemplate,
+                             NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                             ChatConversationService chatConversationService,
+                             UnreadCounterService unreadCounterService,
+                             MeterRegistry meterRegistry,
+                             ChatNodeIdLease nodeIdLease,
+                             @Value("${chat.write-behind.queue-capacity:10000}") int queueCapacity,
+                             @Value("${chat.write-behind.batch-size:200}") int batchSize,
+                             @Value("${chat.write-behind.max-delay:PT0.02S}") Duration maxDelay,
+                             @Value("${chat.write-behind.offer-timeout:PT0.1S}") Duration offerTimeout,
+                             @Value("${chat.write-behind.max-attempts:3}") int maxAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.chatConversationService = chatConversationService;
+        this.unreadCounterService = unreadCounterService;
+        this.nodeIdLease = nodeIdLease;
+        this.idGenerator = new TimeOrderedIdGenerator(nodeIdLease.nodeId());
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.offerTimeoutMillis = offerTimeout.toMillis();
+        this.maxAttempts = Math.max(1, maxAttempts);
+
+        this.flushTimer = Timer.builder("chat.write-behind.flush").register(meterRegistry);
+        this.failedCounter = Counter.builder("chat.write-behind.failed").register(meterRegistry);
+        meterRegistry.gauge("chat.write-behind.queue", queue, BlockingQueue::size);
+
+        this.worker = new Thread(this::run, "chat-write-behind");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public long nextId() {
+        TimeOrderedIdGenerator generator = idGenerator;
+        int nodeId = nodeIdLease.nodeId();
+        if (generator.getNodeId() != nodeId) {
+            // Lease đổi sang node id khác
+            synchronized (this) {
+                if (idGenerator.getNodeId() != nodeId) {
+                    idGenerator = new TimeOrderedIdGenerator(nodeId);
+                }
+                generator = idGenerator;
+            }
+        }
+        return generator.nextId();
+    }
+
+    /**
+     * @return future hoàn thành với id đã lưu của tin (khác id đã cấp nếu là tin gửi lại đã có trên DB)
+     */
+    public CompletableFuture<Long> submit(PendingMessage message) {
+        CompletableFuture<Long> persisted = new CompletableFuture<>();
+        boolean accepted;
+        try {
+            accepted = running && queue.offer(new PendingWrite(message, persisted), offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            throw new AppException(ErrorCode.CHAT_SERVICE_BUSY);
+        }
+        return persisted;
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Gom thêm tới khi đủ batch hoặc hết max-delay
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch, maxAttempts);
+            } catch (InterruptedException e) {
+                // Chỉ dừng khi running = false và đã ghi hết hàng đợi
+                if (!batch.isEmpty()) {
+                    flush(batch, maxAttempts);
+                }
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in chat write-behind worker", e);
+                batch.forEach(write -> write.persisted().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch, int attempts) {
+        List<PendingMessage> messages = batch.stream().map(PendingWrite::message).toList();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<Long> storedIds = flushTimer.record(() -> insertAndResolve(messages));
+                complete(batch, storedIds);
+                return;
+            } catch (DataAccessException e) {
+                // Lỗi tạm thời (mất kết nối, deadlock...) thì thử lại cả batch
+                if (!(e instanceof NonTransientDataAccessException) && attempt < attempts) {
+                    log.warn("Persisting {} chat message(s) failed (attempt {}): {}", messages.size(), attempt, e.getMessage());
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100L * attempt));
+                    continue;
+                }
+                if (batch.size() > 1) {
+                    // Chia đôi, mỗi nửa thử 1 lần: dòng lỗi bị cô lập, các dòng khác vẫn được ghi
+                    log.warn("Persisting {} chat message(s) failed, splitting batch: {}", messages.size(), e.getMessage());
+                    int middle = batch.size() / 2;
+                    flush(batch.subList(0, middle), 1);
+                    flush(batch.subList(middle, batch.size()), 1);
+                    return;
+                }
+                log.error("Cannot persist chat message {} after {} attempt(s)", messages.get(0).id(), attempt, e);
+                failedCounter.increment();
+                batch.get(0).persisted().completeExceptionally(new AppException(ErrorCode.CHAT_MESSAGE_NOT_SAVED));
+                return;
+            }
+        }
+    }
+
+    private void complete(List<PendingWrite> batch, List<Long> storedIds) {
+        List<PendingMessage> inserted = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            Long storedId = storedIds.get(i);
+            if (storedId == null) {
+                // Không thấy dòng theo id lẫn clientMessageId (bị xoá ngay sau khi ghi?)
+                failedCounter.increment();
+                write.persisted().completeExceptionally(new AppException(ErrorCode.CHAT_MESSAGE_NOT_SAVED));
+                continue;
+            }
+            if (storedId.equals(write.message().id())) {
+                inserted.add(write.message());
+            }
+            write.persisted().complete(storedId);
+        }
+        // Chỉ cập nhật tóm tắt / bộ đếm cho các dòng thực sự được ghi bởi batch này
+        afterPersist(inserted);
+    }
+
+    /**
+     * Ghi batch rồi đọc lại id đã lưu cho từng tin: thấy id của tin => dòng của tin này;
+     * không thấy => tin gửi lại trùng (fromUserId, clientMessageId), lấy id của bản ghi có sẵn.
+     * Gọi lại sau lỗi vẫn đúng vì ON DUPLICATE KEY bỏ qua các dòng đã ghi ở lần trước.
+     */
+    private List<Long> insertAndResolve(List<PendingMessage> messages) {
+        insert(messages);
+
+        Set<Long> existing = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "SELECT id FROM chat_message WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", messages.stream().map(PendingMessage::id).toList()),
+                Long.class));
+        List<PendingMessage> duplicates = messages.stream()
+                .filter(message -> !existing.contains(message.id()) && message.clientMessageId() != null)
+                .toList();
+        Map<String, Long> storedByClientId = new HashMap<>();
+        if (!duplicates.isEmpty()) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("senders", duplicates.stream().map(PendingMessage::fromUserId).distinct().toList())
+                    .addValue("clientIds", duplicates.stream().map(PendingMessage::clientMessageId).distinct().toList());
+            namedParameterJdbcTemplate.query("SELECT id, from_user_id, client_message_id FROM chat_message " +
+                            "WHERE from_user_id IN (:senders) AND client_message_id IN (:clientIds)", params,
+                    rs -> {
+                        storedByClientId.put(rs.getLong("from_user_id") + ":" + rs.getString("client_message_id"),
+                                rs.getLong("id"));
+                    });
+        }
+        return messages.stream()
+                .map(message -> existing.contains(message.id()) ? message.id()
+                        : storedByClientId.get(message.fromUserId() + ":" + message.clientMessageId()))
+                .toList();
+    }
+
+    private void insert(List<PendingMessage> messages) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + INSERT_SUFFIX.length()
+                + messages.size() * (INSERT_ROW.length() + 2))
+                .append(INSERT_PREFIX);
+        List<Object> args = new ArrayList<>(messages.size() * 9);
+        for (int i = 0; i < messages.size(); i++) {
+            PendingMessage message = messages.get(i);
+            sql.append(i == 0 ? "" : ", ").append(INSERT_ROW);
+            args.add(message.id());
+            args.add(message.fromUserId());
+            args.add(message.toUserId());
+            args.add(message.content());
+            args.add(false);
+            args.add(message.createdAt());
+            args.add(message.clientMessageId());
+            args.add(Math.min(message.fromUserId(), message.toUserId()));
+            args.add(Math.max(message.fromUserId(), message.toUserId()));
+        }
+        jdbcTemplate.update(sql.append(INSERT_SUFFIX).toString(), args.toArray());
+    }
+
+    private void afterPersist(List<PendingMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            // Dòng đã commit từ lúc INSERT: người nhận mở hội thoại ngay sau đó thì markAsRead đã tính dòng này
+            // (và reset tóm tắt) => chỉ cộng chưa đọc cho dòng vẫn is_read = false
+            Set<Long> unread = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                    "SELECT id FROM chat_message WHERE id IN (:ids) AND is_read = false",
+                    new MapSqlParameterSource("ids", messages.stream().map(PendingMessage::id).toList()),
+                    Long.class));
+            chatConversationService.recordMessages(messages.stream()
+                    .map(message -> ChatConversationService.MessageSnapshot.of(message.id(),
+                            message.fromUserId(), message.toUserId(), message.content(), message.createdAt(),
+                            unread.contains(message.id())))
+                    .toList());
+            Map<Long, Long> incoming = new HashMap<>();
+            messages.stream()
+                    .filter(message -> unread.contains(message.id()))
+                    .forEach(message -> incoming.merge(message.toUserId(), 1L, Long::sum));
+            incoming.forEach((userId, count) ->
+                    unreadCounterService.adjustAfterCommit(UnreadCounterService.Kind.CHAT, userId, count));
+        } catch (RuntimeException e) {
+            log.error("Cannot update chat summaries for {} persisted message(s)", messages.size(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // Ghi nốt các tin còn trong hàng đợi trước khi tắt
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(30));
+        if (worker.isAlive()) {
+            log.warn("Chat write-behind worker did not finish, {} message(s) left in queue", queue.size());
+        }
+    }
+}
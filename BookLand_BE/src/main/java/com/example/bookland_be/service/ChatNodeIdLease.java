@@ -0,0 +1,117 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.util.TimeOrderedIdGenerator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Node id (10 bit) cho TimeOrderedIdGenerator của chat. Cấu hình chat.message.node-id thì dùng luôn;
+ * không thì thuê 1 id trên Redis (SET chat:node-id:{n} NX PX) và gia hạn định kỳ.
+ * Không có node id cấu hình mà cũng không thuê được => không khởi động (2 node trùng id sẽ sinh id trùng).
+ */
+@Service
+@Slf4j
+public class ChatNodeIdLease {
+
+    private static final String KEY_PREFIX = "chat:node-id:";
+
+    // Chỉ gia hạn / xoá khi lease vẫn thuộc node này
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "end " +
+            "return 0",
+            Long.class);
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('DEL', KEYS[1]) " +
+            "end " +
+            "return 0",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Duration leaseTtl;
+    private final boolean leased;
+    private final String owner = UUID.randomUUID().toString();
+    private volatile int nodeId;
+
+    public ChatNodeIdLease(StringRedisTemplate stringRedisTemplate,
+                           @Value("${chat.message.node-id:-1}") int configuredNodeId,
+                           @Value("${chat.message.node-id-lease-ttl:PT5M}") Duration leaseTtl) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.leaseTtl = leaseTtl;
+        if (configuredNodeId > TimeOrderedIdGenerator.MAX_NODE_ID) {
+            throw new IllegalStateException("chat.message.node-id must be in [0, " + TimeOrderedIdGenerator.MAX_NODE_ID + "]");
+        }
+        this.leased = configuredNodeId < 0;
+        this.nodeId = leased ? acquire() : configuredNodeId;
+        log.info("Chat message node id: {} ({})", nodeId, leased ? "leased from Redis" : "configured");
+    }
+
+    public int nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Gia hạn lease; mất lease (Redis mất key, node khác đã lấy) thì thuê id khác.
+     * Redis lỗi thì giữ id hiện tại và thử lại lần sau.
+     */
+    @Scheduled(fixedDelayString = "${chat.message.node-id-renew-interval:PT1M}")
+    public void renew() {
+        if (!leased) {
+            return;
+        }
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW, List.of(KEY_PREFIX + nodeId),
+                    owner, Long.toString(leaseTtl.toMillis()));
+            if (renewed == null || renewed == 0L) {
+                int previous = nodeId;
+                nodeId = acquire();
+                log.warn("Lost chat node id lease {}, switched to {}", previous, nodeId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot renew chat node id lease {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void release() {
+        if (!leased) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE, List.of(KEY_PREFIX + nodeId), owner);
+        } catch (RuntimeException e) {
+            log.debug("Cannot release chat node id lease {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    // Bắt đầu từ vị trí ngẫu nhiên để các node khởi động cùng lúc không tranh cùng id
+    private int acquire() {
+        int slots = TimeOrderedIdGenerator.MAX_NODE_ID + 1;
+        int start = ThreadLocalRandom.current().nextInt(slots);
+        try {
+            for (int i = 0; i < slots; i++) {
+                int candidate = (start + i) % slots;
+                if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                        .setIfAbsent(KEY_PREFIX + candidate, owner, leaseTtl))) {
+                    return candidate;
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("chat.message.node-id is not set and no node id lease could be acquired from Redis", e);
+        }
+        throw new IllegalStateException("chat.message.node-id is not set and all " + slots + " node ids are leased");
+    }
+}
@@ -0,0 +1,500 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.dto.request.SendCustomEmailRequest;
+import com.example.bookland_be.dto.response.EmailCampaignResponse;
+import com.example.bookland_be.entity.EmailCampaign;
+import com.example.bookland_be.entity.EmailDeliveryFailure;
+import com.example.bookland_be.entity.User;
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import com.example.bookland_be.repository.EmailCampaignRepository;
+import com.example.bookland_be.repository.EmailDeliveryFailureRepository;
+import com.example.bookland_be.repository.UserRepository;
+import com.example.bookland_be.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Gửi email hàng loạt theo campaign (thay cho findAll + mỗi user 1 lần @Async send).
+ * Người nhận được duyệt theo seek trên user id từng trang; mỗi trang render trên pool có giới hạn,
+ * gửi qua {@link SmtpTransportPool} với giới hạn tốc độ toàn cục và theo domain người nhận,
+ * rồi ghi cursor + số đếm + danh sách lỗi trong 1 transaction. Restart thì chạy tiếp từ cursor
+ * (trang đang dở có thể bị gửi lại: at-least-once). Mỗi campaign chạy dưới khoá job_lock riêng.
+ */
+@Service
+@Slf4j
+public class EmailCampaignService {
+
+    public static final String TEMPLATE_NAME = "email-template";
+    private static final String DEFAULT_SUBJECT = "Thông báo từ BookLand";
+    private static final String NAME_SLOT = "name";
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final Set<EmailCampaign.CampaignStatus> ACTIVE = EnumSet.of(
+            EmailCampaign.CampaignStatus.PENDING,
+            EmailCampaign.CampaignStatus.RUNNING,
+            EmailCampaign.CampaignStatus.RETRYING);
+
+    private record Recipient(Long userId, String email, String username, Long failureId) {
+    }
+
+    private record Outcome(Recipient recipient, boolean sent, boolean permanent, int attempts, String error) {
+    }
+
+    private final EmailCampaignRepository campaignRepository;
+    private final EmailDeliveryFailureRepository failureRepository;
+    private final UserRepository userRepository;
+    private final JobLockService jobLockService;
+    private final UserPrincipalService userPrincipalService;
+    private final SmtpTransportPool transportPool;
+    private final EmailTemplateRenderer templateRenderer;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor renderExecutor;
+    private final ThreadPoolExecutor sendExecutor;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "email-campaign");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private final TokenBucket globalBucket;
+    private final Map<String, TokenBucket> domainBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Double> domainRates;
+    private final double defaultDomainRate;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+
+    @Value("${mail.from:pbookland2k4@gmail.com}")
+    private String from;
+
+    @Value("${mail.campaign.page-size:200}")
+    private int pageSize;
+
+    @Value("${mail.campaign.slice-budget:PT5M}")
+    private Duration sliceBudget;
+
+    @Value("${mail.campaign.lock-at-most:PT10M}")
+    private Duration lockAtMost;
+
+    @Value("${mail.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${mail.retry-backoff:PT2S}")
+    private Duration retryBackoff;
+
+    public EmailCampaignService(EmailCampaignRepository campaignRepository,
+                                EmailDeliveryFailureRepository failureRepository,
+                                UserRepository userRepository,
+                                JobLockService jobLockService,
+                                UserPrincipalService userPrincipalService,
+                                SmtpTransportPool transportPool,
+                                EmailTemplateRenderer templateRenderer,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${mail.campaign.render-threads:2}") int renderThreads,
+                                @Value("${mail.campaign.page-size:200}") int queueCapacity,
+                                @Value("${mail.rate-limit.per-second:10}") double globalRate,
+                                @Value("${mail.rate-limit.per-domain-per-second:5}") double defaultDomainRate,
+                                @Value("${mail.rate-limit.domains:}") String domainRates) {
+        this.campaignRepository = campaignRepository;
+        this.failureRepository = failureRepository;
+        this.userRepository = userRepository;
+        this.jobLockService = jobLockService;
+        this.userPrincipalService = userPrincipalService;
+        this.transportPool = transportPool;
+        this.templateRenderer = templateRenderer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Hàng đợi chứa đủ 1 trang; đầy thì thread gọi tự làm (CallerRuns) thay vì từ chối
+        this.renderExecutor = boundedPool("email-render", Math.max(1, renderThreads), queueCapacity);
+        this.sendExecutor = boundedPool("email-send", transportPool.getPoolSize(), queueCapacity);
+        this.globalBucket = new TokenBucket(Math.max(1, globalRate), globalRate);
+        this.defaultDomainRate = defaultDomainRate;
+        this.domainRates = parseRates(domainRates);
+        this.sentCounter = Counter.builder("mail.campaign.sent").register(meterRegistry);
+        this.failedCounter = Counter.builder("mail.campaign.failed").register(meterRegistry);
+    }
+
+    @Transactional
+    public EmailCampaignResponse createCampaign(SendCustomEmailRequest request) {
+        boolean sendToAll = request.isSendToAll();
+        if (!sendToAll && (request.getUserIds() == null || request.getUserIds().isEmpty())) {
+            throw new AppException(ErrorCode.EMAIL_CAMPAIGN_INVALID);
+        }
+        EmailCampaign campaign = campaignRepository.save(EmailCampaign.builder()
+                .subject(isBlank(request.getSubject()) ? DEFAULT_SUBJECT : request.getSubject())
+                .templateName(TEMPLATE_NAME)
+                .message(request.getMessage() != null ? request.getMessage() : "")
+                .details(request.getDetails())
+                .actionUrl(request.getActionUrl())
+                .actionText(request.getActionText())
+                .sendToAll(sendToAll)
+                .targetUserIds(sendToAll ? new HashSet<>() : new HashSet<>(request.getUserIds()))
+                .createdBy(userPrincipalService.getCurrentUser().getId())
+                .build());
+        triggerAfterCommit();
+        return EmailCampaignResponse.fromEntity(campaign);
+    }
+
+    @Transactional(readOnly = true)
+    public EmailCampaignResponse getCampaign(Long id) {
+        return campaignRepository.findById(id)
+                .map(EmailCampaignResponse::fromEntity)
+                .orElseThrow(() -> new AppException(ErrorCode.EMAIL_CAMPAIGN_NOT_FOUND));
+    }
+
+    // Gửi lại cho các người nhận lỗi tạm thời (lỗi vĩnh viễn như địa chỉ bị từ chối thì bỏ qua)
+    @Transactional
+    public EmailCampaignResponse retryFailed(Long id) {
+        int updated = campaignRepository.startRetry(id, EmailCampaign.CampaignStatus.RETRYING, LocalDateTime.now());
+        EmailCampaign campaign = afterTransition(id, updated);
+        triggerAfterCommit();
+        return EmailCampaignResponse.fromEntity(campaign);
+    }
+
+    @Transactional
+    public EmailCampaignResponse cancel(Long id) {
+        LocalDateTime now = LocalDateTime.now();
+        int updated = campaignRepository.transition(id, ACTIVE, EmailCampaign.CampaignStatus.CANCELLED, now, now);
+        return EmailCampaignResponse.fromEntity(afterTransition(id, updated));
+    }
+
+    // Đổi trạng thái bằng UPDATE có điều kiện trước, chỉ load entity sau đó (tránh dirty-check ghi đè)
+    private EmailCampaign afterTransition(Long id, int updated) {
+        EmailCampaign campaign = campaignRepository.findById(id)
+                .orElseThrow(() -> new AppException(ErrorCode.EMAIL_CAMPAIGN_NOT_FOUND));
+        if (updated == 0) {
+            throw new AppException(ErrorCode.EMAIL_CAMPAIGN_STATE_INVALID);
+        }
+        return campaign;
+    }
+
+    // Quét campaign còn dở (kể cả của instance đã chết) để chạy tiếp
+    @Scheduled(fixedDelayString = "${mail.campaign.poll-interval:PT30S}")
+    public void trigger() {
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+        coordinator.execute(() -> {
+            try {
+                for (Long id : campaignRepository.findIdsByStatusIn(ACTIVE)) {
+                    jobLockService.runWithLock("email-campaign:" + id, lockAtMost, () -> runSlice(id));
+                }
+            } catch (RuntimeException e) {
+                log.error("Email campaign poll failed", e);
+            } finally {
+                polling.set(false);
+            }
+        });
+    }
+
+    private void triggerAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    trigger();
+                }
+            });
+        } else {
+            trigger();
+        }
+    }
+
+    /**
+     * Chạy campaign tối đa slice-budget (nhỏ hơn lockAtMost) rồi nhả khoá; phần còn lại chạy ở lần poll sau.
+     */
+    private void runSlice(Long id) {
+        EmailCampaign campaign = campaignRepository.findById(id).orElse(null);
+        if (campaign == null || !ACTIVE.contains(campaign.getStatus())) {
+            return;
+        }
+        if (campaign.getStatus() == EmailCampaign.CampaignStatus.PENDING) {
+            transactionTemplate.executeWithoutResult(status -> campaignRepository.transition(id,
+                    Set.of(EmailCampaign.CampaignStatus.PENDING), EmailCampaign.CampaignStatus.RUNNING,
+                    null, LocalDateTime.now()));
+        }
+
+        // Phần chung của thư render 1 lần cho cả slice, mỗi người nhận chỉ thay tên
+        EmailTemplateRenderer.PreparedTemplate template = templateRenderer.prepare(
+                campaign.getTemplateName(), baseModel(campaign), List.of(NAME_SLOT));
+        Pageable page = PageRequest.of(0, Math.max(1, pageSize));
+        long cursor = campaign.getCursorUserId();
+        long retryCursor = campaign.getRetryCursorId();
+        long deadline = System.nanoTime() + sliceBudget.toNanos();
+        long sent = 0;
+        long failed = 0;
+
+        while (System.nanoTime() < deadline) {
+            EmailCampaign.CampaignStatus status = campaignRepository.findStatusById(id)
+                    .orElse(EmailCampaign.CampaignStatus.CANCELLED);
+            if (!ACTIVE.contains(status)) {
+                log.info("Email campaign {} stopped with status {}", id, status);
+                return;
+            }
+            boolean retrying = status == EmailCampaign.CampaignStatus.RETRYING;
+            List<Recipient> recipients = retrying
+                    ? retryRecipients(id, retryCursor, page)
+                    : recipients(campaign, cursor, page);
+            if (recipients.isEmpty()) {
+                LocalDateTime now = LocalDateTime.now();
+                transactionTemplate.executeWithoutResult(tx -> campaignRepository.transition(id,
+                        Set.of(status), EmailCampaign.CampaignStatus.COMPLETED, now, now));
+                log.info("Email campaign {} completed ({} sent, {} failed in last slice)", id, sent, failed);
+                return;
+            }
+
+            List<Outcome> outcomes = deliver(campaign.getSubject(), template, recipients);
+            Recipient last = recipients.get(recipients.size() - 1);
+            if (retrying) {
+                transactionTemplate.executeWithoutResult(tx -> recordRetry(id, last.failureId(), outcomes));
+                retryCursor = last.failureId();
+            } else {
+                transactionTemplate.executeWithoutResult(tx -> recordPage(id, last.userId(), outcomes));
+                cursor = last.userId();
+            }
+            long pageSent = outcomes.stream().filter(Outcome::sent).count();
+            sent += pageSent;
+            failed += outcomes.size() - pageSent;
+        }
+        log.info("Email campaign {} paused after slice ({} sent, {} failed), continuing on next poll", id, sent, failed);
+    }
+
+    private List<Recipient> recipients(EmailCampaign campaign, long afterUserId, Pageable page) {
+        List<Object[]> rows = Boolean.TRUE.equals(campaign.getSendToAll())
+                ? userRepository.findMailRecipientsAfter(User.UserStatus.ENABLE, afterUserId, page)
+                : userRepository.findCampaignRecipientsAfter(campaign.getId(), afterUserId, page);
+        return rows.stream()
+                .map(row -> new Recipient((Long) row[0], (String) row[1], (String) row[2], null))
+                .toList();
+    }
+
+    private List<Recipient> retryRecipients(Long campaignId, long afterFailureId, Pageable page) {
+        return failureRepository.findRetryableAfter(campaignId, afterFailureId, page).stream()
+                .map(failure -> new Recipient(failure.getUserId(), failure.getEmail(), failure.getUsername(), failure.getId()))
+                .toList();
+    }
+
+    private List<Outcome> deliver(String subject, EmailTemplateRenderer.PreparedTemplate template,
+                                  List<Recipient> recipients) {
+        List<CompletableFuture<Outcome>> futures = new ArrayList<>(recipients.size());
+        for (Recipient recipient : recipients) {
+            futures.add(CompletableFuture
+                    .supplyAsync(() -> template.render(Map.of(NAME_SLOT,
+                            recipient.username() != null ? recipient.username() : "Customer")), renderExecutor)
+                    .thenApplyAsync(html -> send(subject, html, recipient), sendExecutor)
+                    .exceptionally(e -> new Outcome(recipient, false, false, 0, errorMessage(e))));
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    // Thử lại lỗi tạm thời với backoff tăng dần; địa chỉ bị server từ chối thì dừng ngay
+    private Outcome send(String subject, String html, Recipient recipient) {
+        String error = null;
+        int attempt = 0;
+        while (attempt < Math.max(1, maxAttempts)) {
+            attempt++;
+            try {
+                MimeMessage message = transportPool.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+                helper.setFrom(from);
+                helper.setTo(recipient.email());
+                helper.setSubject(subject);
+                helper.setText(html, true);
+                globalBucket.acquire();
+                domainBucket(recipient.email()).acquire();
+                transportPool.send(message);
+                sentCounter.increment();
+                return new Outcome(recipient, true, false, attempt, null);
+            } catch (SendFailedException e) {
+                failedCounter.increment();
+                return new Outcome(recipient, false, true, attempt, errorMessage(e));
+            } catch (MessagingException e) {
+                error = errorMessage(e);
+                log.debug("Sending campaign email to {} failed (attempt {}): {}", recipient.email(), attempt, error);
+                LockSupport.parkNanos(retryBackoff.toNanos() * attempt);
+            }
+        }
+        failedCounter.increment();
+        return new Outcome(recipient, false, false, attempt, error);
+    }
+
+    // Lưu lỗi + tiến độ của 1 trang; trang bị gửi lại sau restart thì không đếm lỗi 2 lần
+    private void recordPage(Long campaignId, Long cursor, List<Outcome> outcomes) {
+        Map<Long, EmailDeliveryFailure> existing = failureRepository.findByCampaignIdAndUserIdIn(campaignId,
+                        outcomes.stream().map(outcome -> outcome.recipient().userId()).toList())
+                .stream()
+                .collect(Collectors.toMap(EmailDeliveryFailure::getUserId, Function.identity()));
+        List<EmailDeliveryFailure> failures = new ArrayList<>();
+        List<Long> recovered = new ArrayList<>();
+        long sent = 0;
+        long failedDelta = 0;
+        for (Outcome outcome : outcomes) {
+            EmailDeliveryFailure previous = existing.get(outcome.recipient().userId());
+            if (outcome.sent()) {
+                sent++;
+                if (previous != null) {
+                    recovered.add(previous.getId());
+                    failedDelta--;
+                }
+                continue;
+            }
+            if (previous == null) {
+                failedDelta++;
+            }
+            failures.add(applyFailure(previous != null ? previous : newFailure(campaignId, outcome.recipient()), outcome));
+        }
+        if (!recovered.isEmpty()) {
+            failureRepository.deleteAllByIdInBatch(recovered);
+        }
+        failureRepository.saveAll(failures);
+        campaignRepository.advance(campaignId, cursor, sent, failedDelta, LocalDateTime.now());
+    }
+
+    private void recordRetry(Long campaignId, Long cursor, List<Outcome> outcomes) {
+        List<Long> recovered = new ArrayList<>();
+        List<Long> stillFailing = new ArrayList<>();
+        for (Outcome outcome : outcomes) {
+            (outcome.sent() ? recovered : stillFailing).add(outcome.recipient().failureId());
+        }
+        if (!recovered.isEmpty()) {
+            failureRepository.deleteAllByIdInBatch(recovered);
+        }
+        if (!stillFailing.isEmpty()) {
+            Map<Long, Outcome> byFailureId = outcomes.stream()
+                    .filter(outcome -> !outcome.sent())
+                    .collect(Collectors.toMap(outcome -> outcome.recipient().failureId(), Function.identity()));
+            List<EmailDeliveryFailure> failures = failureRepository.findAllById(stillFailing);
+            failures.forEach(failure -> applyFailure(failure, byFailureId.get(failure.getId())));
+            failureRepository.saveAll(failures);
+        }
+        campaignRepository.advanceRetry(campaignId, cursor, recovered.size(), LocalDateTime.now());
+    }
+
+    private static EmailDeliveryFailure newFailure(Long campaignId, Recipient recipient) {
+        return EmailDeliveryFailure.builder()
+                .campaignId(campaignId)
+                .userId(recipient.userId())
+                .email(recipient.email())
+                .username(recipient.username())
+                .attempts(0)
+                .build();
+    }
+
+    private static EmailDeliveryFailure applyFailure(EmailDeliveryFailure failure, Outcome outcome) {
+        failure.setAttempts(failure.getAttempts() + outcome.attempts());
+        failure.setPermanent(outcome.permanent());
+        failure.setLastError(outcome.error());
+        failure.setFailedAt(LocalDateTime.now());
+        return failure;
+    }
+
+    private Map<String, Object> baseModel(EmailCampaign campaign) {
+        Map<String, Object> model = new HashMap<>();
+        model.put("message", campaign.getMessage() != null ? campaign.getMessage() : "");
+        if (!isBlank(campaign.getDetails())) {
+            model.put("details", campaign.getDetails());
+        }
+        if (!isBlank(campaign.getActionUrl())) {
+            model.put("actionUrl", campaign.getActionUrl());
+        }
+        if (!isBlank(campaign.getActionText())) {
+            model.put("actionText", campaign.getActionText());
+        }
+        return model;
+    }
+
+    private TokenBucket domainBucket(String email) {
+        String domain = email.substring(email.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+        return domainBuckets.computeIfAbsent(domain, key -> {
+            double rate = domainRates.getOrDefault(key, defaultDomainRate);
+            return new TokenBucket(Math.max(1, rate), rate);
+        });
+    }
+
+    // "gmail.com=5,yahoo.com=2"
+    private static Map<String, Double> parseRates(String value) {
+        Map<String, Double> rates = new HashMap<>();
+        if (isBlank(value)) {
+            return rates;
+        }
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split("=", 2);
+            if (parts.length == 2 && !parts[0].isBlank()) {
+                try {
+                    rates.put(parts[0].trim().toLowerCase(Locale.ROOT), Double.parseDouble(parts[1].trim()));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring invalid mail rate limit entry '{}'", entry);
+                }
+            }
+        }
+        return rates;
+    }
+
+    private static ThreadPoolExecutor boundedPool(String name, int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static String errorMessage(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        String message = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        coordinator.shutdownNow();
+        renderExecutor.shutdown();
+        sendExecutor.shutdown();
+    }
+}
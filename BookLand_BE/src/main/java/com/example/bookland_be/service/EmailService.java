@@ -8,8 +8,6 @@ import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
 
 import java.util.Map;
 
@@ -19,15 +17,12 @@ import java.util.Map;
 public class EmailService {
 
     private final JavaMailSender mailSender;
-    private final TemplateEngine templateEngine;
+    private final EmailTemplateRenderer emailTemplateRenderer;
 
     @Async
     public void sendEmailWithHtmlTemplate(String to, String subject, String templateName, Map<String, Object> templateModel) {
         try {
-            Context thymeleafContext = new Context();
-            thymeleafContext.setVariables(templateModel);
-
-            String htmlBody = templateEngine.process(templateName, thymeleafContext);
+            String htmlBody = emailTemplateRenderer.render(templateName, templateModel);
 
             MimeMessage message = mailSender.createMimeMessage();
             // true = multipart message, utf-8
@@ -0,0 +1,134 @@
+package com.example.bookland_be.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.unbescape.html.HtmlEscape;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Render template email. TemplateEngine của Spring Boot đã cache template đã parse (spring.thymeleaf.cache),
+ * nhưng process() vẫn chạy lại toàn bộ cây template cho mỗi thư.
+ * Với gửi hàng loạt, {@link #prepare} render 1 lần phần chung, thay biến theo người nhận bằng marker
+ * rồi cắt thành các đoạn tĩnh; mỗi thư chỉ còn nối chuỗi + escape giá trị riêng.
+ */
+@Service
+@Slf4j
+public class EmailTemplateRenderer {
+
+    private final TemplateEngine templateEngine;
+    private final Timer renderTimer;
+
+    public EmailTemplateRenderer(TemplateEngine templateEngine, MeterRegistry meterRegistry) {
+        this.templateEngine = templateEngine;
+        this.renderTimer = Timer.builder("mail.template.render").register(meterRegistry);
+    }
+
+    public String render(String templateName, Map<String, Object> model) {
+        return renderTimer.record(() -> process(templateName, model));
+    }
+
+    /**
+     * Chuẩn bị template cho nhiều người nhận: sharedModel giống nhau cho mọi thư, slots là tên biến
+     * khác nhau theo người nhận. Biến slot chỉ được in ra bằng th:text (không dùng trong th:if / th:href...)
+     * và giá trị luôn khác null; nếu marker không xuất hiện trong kết quả thì quay về render đầy đủ mỗi thư.
+     */
+    public PreparedTemplate prepare(String templateName, Map<String, Object> sharedModel, Collection<String> slots) {
+        List<String> slotNames = List.copyOf(slots);
+        String token = "BLSLOT" + UUID.randomUUID().toString().replace("-", "");
+        Context context = new Context();
+        context.setVariables(sharedModel);
+        for (int i = 0; i < slotNames.size(); i++) {
+            context.setVariable(slotNames.get(i), token + i + "X");
+        }
+        String html = templateEngine.process(templateName, context);
+
+        List<String> parts = new ArrayList<>();
+        List<Integer> slotOrder = new ArrayList<>();
+        boolean[] seen = new boolean[slotNames.size()];
+        Matcher matcher = Pattern.compile(token + "(\\d+)X").matcher(html);
+        int start = 0;
+        while (matcher.find()) {
+            int slot = Integer.parseInt(matcher.group(1));
+            parts.add(html.substring(start, matcher.start()));
+            slotOrder.add(slot);
+            seen[slot] = true;
+            start = matcher.end();
+        }
+        parts.add(html.substring(start));
+
+        for (int i = 0; i < seen.length; i++) {
+            if (!seen[i]) {
+                log.debug("Slot {} is not printed by template {}, falling back to full render", slotNames.get(i), templateName);
+                return new PreparedTemplate(this, templateName, sharedModel, null, null, slotNames);
+            }
+        }
+        return new PreparedTemplate(this, templateName, sharedModel, parts, slotOrder, slotNames);
+    }
+
+    private String process(String templateName, Map<String, Object> model) {
+        Context context = new Context();
+        context.setVariables(model);
+        return templateEngine.process(templateName, context);
+    }
+
+    public static final class PreparedTemplate {
+
+        private final EmailTemplateRenderer renderer;
+        private final String templateName;
+        private final Map<String, Object> sharedModel;
+        private final List<String> parts;
+        private final int[] slotOrder;
+        private final List<String> slotNames;
+        private final int staticLength;
+
+        private PreparedTemplate(EmailTemplateRenderer renderer, String templateName, Map<String, Object> sharedModel,
+                                 List<String> parts, List<Integer> slotOrder, List<String> slotNames) {
+            this.renderer = renderer;
+            this.templateName = templateName;
+            this.sharedModel = Collections.unmodifiableMap(new HashMap<>(sharedModel));
+            this.parts = parts;
+            this.slotOrder = slotOrder != null ? slotOrder.stream().mapToInt(Integer::intValue).toArray() : null;
+            this.slotNames = slotNames;
+            this.staticLength = parts != null ? parts.stream().mapToInt(String::length).sum() : 0;
+        }
+
+        // values: tên slot -> giá trị chưa escape (escape giống th:text)
+        public String render(Map<String, String> values) {
+            return renderer.renderTimer.record(() -> parts != null ? fill(values) : fullRender(values));
+        }
+
+        private String fill(Map<String, String> values) {
+            String[] escaped = new String[slotNames.size()];
+            int length = staticLength;
+            for (int i = 0; i < escaped.length; i++) {
+                String value = values.get(slotNames.get(i));
+                escaped[i] = value != null ? HtmlEscape.escapeHtml4Xml(value) : "";
+                length += escaped[i].length();
+            }
+            StringBuilder html = new StringBuilder(length + 16 * slotOrder.length);
+            for (int i = 0; i < slotOrder.length; i++) {
+                html.append(parts.get(i)).append(escaped[slotOrder[i]]);
+            }
+            return html.append(parts.get(parts.size() - 1)).toString();
+        }
+
+        private String fullRender(Map<String, String> values) {
+            Map<String, Object> model = new HashMap<>(sharedModel);
+            model.putAll(values);
+            return renderer.process(templateName, model);
+        }
+    }
+}
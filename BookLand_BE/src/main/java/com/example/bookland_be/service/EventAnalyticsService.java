@@ -0,0 +1,354 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.dto.response.EventAnalyticsBucketResponse;
+import com.example.bookland_be.dto.response.EventAnalyticsResponse;
+import com.example.bookland_be.entity.EventLog;
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import com.example.bookland_be.repository.EventLogRepository;
+import com.example.bookland_be.repository.EventRepository;
+import com.example.bookland_be.util.HyperLogLog;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thống kê realtime cho Event: số lần áp dụng, tổng giảm giá, doanh thu, số user (HyperLogLog),
+ * theo từng phút (60 phút gần nhất) và từng ngày (30 ngày gần nhất).
+ * Counter được seed 1 lần từ event_log rồi cộng dồn mỗi khi logEventApplication commit.
+ * Mỗi lần áp dụng được publish lên Redis để counter ở mọi node đều đủ (dedup theo id log so với mốc seed).
+ * Counter không được đọc / ghi trong event.analytics.idle-eviction thì bị bỏ, lần đọc sau seed lại từ DB.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EventAnalyticsService {
+
+    public static final String ANALYTICS_TOPIC_PREFIX = "/topic/admin/events/";
+
+    private static final int MINUTE_SLOTS = 60;
+    private static final int DAY_SLOTS = 30;
+    private static final int HLL_PRECISION = 11;
+    private static final String RECORD_CHANNEL = "event:analytics-record";
+
+    private final EventRepository eventRepository;
+    private final EventLogRepository eventLogRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Value("${event.analytics.idle-eviction:PT1H}")
+    private Duration idleEviction;
+
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<Long, EventCounters> counters = new ConcurrentHashMap<>();
+    // Seed đang chạy theo event: các thread khác chờ chung 1 lần query thay vì giữ lock của map
+    private final Map<Long, CompletableFuture<EventCounters>> seeding = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void subscribe() {
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onRemoteRecord(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(RECORD_CHANNEL));
+    }
+
+    /**
+     * Cộng log vào counter sau khi transaction tạo bill commit (bill rollback thì không tính)
+     */
+    public void recordAfterCommit(EventLog eventLog) {
+        Long eventId = eventLog.getEvent().getId();
+        Long logId = eventLog.getId();
+        Long userId = eventLog.getUser() != null ? eventLog.getUser().getId() : null;
+        long discount = eventLog.getAppliedValue() != null ? eventLog.getAppliedValue() : 0;
+        double revenue = eventLog.getBill() != null && eventLog.getBill().getTotalCost() != null
+                ? eventLog.getBill().getTotalCost() : 0;
+        LocalDateTime at = eventLog.getCreatedAt() != null ? eventLog.getCreatedAt() : LocalDateTime.now();
+
+        Runnable record = () -> {
+            try {
+                getOrSeed(eventId).record(logId, userId, discount, revenue, at, true);
+            } catch (RuntimeException e) {
+                log.error("Cannot record analytics for event {}", eventId, e);
+            }
+            publish(eventId, logId, userId, discount, revenue, at);
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record.run();
+                }
+            });
+        } else {
+            record.run();
+        }
+    }
+
+    public EventAnalyticsResponse getAnalytics(Long eventId) {
+        if (!counters.containsKey(eventId) && !eventRepository.existsById(eventId)) {
+            throw new AppException(ErrorCode.EVENT_NOT_FOUND);
+        }
+        return getOrSeed(eventId).snapshot(eventId, LocalDateTime.now());
+    }
+
+    /**
+     * Đẩy snapshot của các event có thay đổi lên /topic/admin/events/{id}/analytics
+     */
+    @Scheduled(fixedDelayString = "${event.analytics.push-interval:PT5S}")
+    public void pushChanged() {
+        LocalDateTime now = LocalDateTime.now();
+        long idleBefore = System.currentTimeMillis() - idleEviction.toMillis();
+        counters.forEach((eventId, eventCounters) -> {
+            if (eventCounters.takeDirty()) {
+                messagingTemplate.convertAndSend(ANALYTICS_TOPIC_PREFIX + eventId + "/analytics",
+                        eventCounters.snapshot(eventId, now));
+            } else if (eventCounters.lastAccessMillis < idleBefore) {
+                // Event đã kết thúc / không ai xem: giải phóng bộ nhớ
+                counters.remove(eventId, eventCounters);
+            }
+        });
+    }
+
+    private EventCounters getOrSeed(Long eventId) {
+        EventCounters existing = counters.get(eventId);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<EventCounters> mine = new CompletableFuture<>();
+        CompletableFuture<EventCounters> running = seeding.putIfAbsent(eventId, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            EventCounters seeded = seed(eventId);
+            EventCounters winner = counters.putIfAbsent(eventId, seeded);
+            EventCounters result = winner != null ? winner : seeded;
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            seeding.remove(eventId, mine);
+        }
+    }
+
+    private void publish(Long eventId, Long logId, Long userId, long discount, double revenue, LocalDateTime at) {
+        String message = String.join("|", nodeId, String.valueOf(eventId),
+                logId != null ? logId.toString() : "", userId != null ? userId.toString() : "",
+                String.valueOf(discount), String.valueOf(revenue),
+                String.valueOf(at.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        try {
+            stringRedisTemplate.convertAndSend(RECORD_CHANNEL, message);
+        } catch (RuntimeException e) {
+            // Node khác thiếu bản ghi này cho tới khi counter bị evict và seed lại từ DB
+            log.warn("Cannot publish analytics record for event {}: {}", eventId, e.getMessage());
+        }
+    }
+
+    private void onRemoteRecord(String message) {
+        String[] parts = message.split("\\|", -1);
+        if (parts.length != 7 || nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            Long eventId = Long.valueOf(parts[1]);
+            Long logId = parts[2].isEmpty() ? null : Long.valueOf(parts[2]);
+            Long userId = parts[3].isEmpty() ? null : Long.valueOf(parts[3]);
+            LocalDateTime at = LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[6])), ZoneId.systemDefault());
+            // Broker dùng chung (redis / relay) thì node gốc đã push cho mọi admin, node này không push lại
+            getOrSeed(eventId).record(logId, userId, Long.parseLong(parts[4]), Double.parseDouble(parts[5]), at,
+                    "simple".equalsIgnoreCase(brokerMode));
+        } catch (RuntimeException e) {
+            log.warn("Cannot apply remote analytics record {}: {}", message, e.getMessage());
+        }
+    }
+
+    private EventCounters seed(Long eventId) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate.execute(status -> {
+            // Chốt maxId trước: log có id lớn hơn sẽ được cộng qua record()
+            long maxId = eventLogRepository.getMaxIdByEventId(eventId);
+            EventCounters eventCounters = new EventCounters(maxId);
+
+            Object[] totals = eventLogRepository.getTotalsByEventIdUpTo(eventId, maxId).get(0);
+            eventCounters.applications = ((Number) totals[0]).longValue();
+            eventCounters.totalDiscount = ((Number) totals[1]).longValue();
+            eventCounters.revenue = ((Number) totals[2]).doubleValue();
+            eventLogRepository.findDistinctUserIdsByEventIdUpTo(eventId, maxId)
+                    .forEach(eventCounters.users::add);
+
+            LocalDateTime since = LocalDate.now().minusDays(DAY_SLOTS - 1).atStartOfDay();
+            for (Object[] row : eventLogRepository.findAnalyticsRowsSince(eventId, since, maxId)) {
+                eventCounters.addToBuckets((LocalDateTime) row[0],
+                        row[3] != null ? (Long) row[3] : null,
+                        row[1] != null ? ((Number) row[1]).longValue() : 0,
+                        row[2] != null ? ((Number) row[2]).doubleValue() : 0);
+            }
+            return eventCounters;
+        });
+    }
+
+    private static long epochMinute(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toEpochSecond() / 60;
+    }
+
+    private static final class Bucket {
+        long key = Long.MIN_VALUE;  // epochMinute hoặc epochDay
+        long applications;
+        long discount;
+        double revenue;
+        final HyperLogLog users = new HyperLogLog(HLL_PRECISION);
+
+        void resetIfStale(long newKey) {
+            if (key != newKey) {
+                key = newKey;
+                applications = 0;
+                discount = 0;
+                revenue = 0;
+                users.clear();
+            }
+        }
+    }
+
+    private static final class EventCounters {
+        private final long seededUpToId;
+        private long applications;
+        private long totalDiscount;
+        private double revenue;
+        private final HyperLogLog users = new HyperLogLog(HLL_PRECISION);
+        private final Bucket[] minutes = new Bucket[MINUTE_SLOTS];
+        private final Bucket[] days = new Bucket[DAY_SLOTS];
+        private boolean dirty = true;
+        private volatile long lastAccessMillis = System.currentTimeMillis();
+
+        EventCounters(long seededUpToId) {
+            this.seededUpToId = seededUpToId;
+            for (int i = 0; i < MINUTE_SLOTS; i++) {
+                minutes[i] = new Bucket();
+            }
+            for (int i = 0; i < DAY_SLOTS; i++) {
+                days[i] = new Bucket();
+            }
+        }
+
+        synchronized void record(Long logId, Long userId, long discount, double revenue, LocalDateTime at,
+                                 boolean markDirty) {
+            lastAccessMillis = System.currentTimeMillis();
+            // Log đã được tính lúc seed
+            if (logId != null && logId <= seededUpToId) {
+                return;
+            }
+            applications++;
+            totalDiscount += discount;
+            this.revenue += revenue;
+            if (userId != null) {
+                users.add(userId);
+            }
+            addToBuckets(at, userId, discount, revenue);
+            dirty |= markDirty;
+        }
+
+        void addToBuckets(LocalDateTime at, Long userId, long discount, double revenue) {
+            long minute = epochMinute(at);
+            addTo(minutes[Math.floorMod(minute, MINUTE_SLOTS)], minute, userId, discount, revenue);
+            long day = at.toLocalDate().toEpochDay();
+            addTo(days[Math.floorMod(day, DAY_SLOTS)], day, userId, discount, revenue);
+        }
+
+        private static void addTo(Bucket bucket, long key, Long userId, long discount, double revenue) {
+            if (bucket.key > key) {
+                return; // Slot đã chuyển sang phút / ngày mới hơn
+            }
+            bucket.resetIfStale(key);
+            bucket.applications++;
+            bucket.discount += discount;
+            bucket.revenue += revenue;
+            if (userId != null) {
+                bucket.users.add(userId);
+            }
+        }
+
+        synchronized boolean takeDirty() {
+            boolean wasDirty = dirty;
+            dirty = false;
+            return wasDirty;
+        }
+
+        synchronized EventAnalyticsResponse snapshot(Long eventId, LocalDateTime now) {
+            lastAccessMillis = System.currentTimeMillis();
+            long nowMinute = epochMinute(now);
+            List<EventAnalyticsBucketResponse> minuteResponses = new ArrayList<>(MINUTE_SLOTS);
+            for (long key = nowMinute - MINUTE_SLOTS + 1; key <= nowMinute; key++) {
+                Bucket bucket = minutes[Math.floorMod(key, MINUTE_SLOTS)];
+                LocalDateTime start = now.truncatedTo(ChronoUnit.MINUTES).minusMinutes(nowMinute - key);
+                minuteResponses.add(toResponse(bucket, key, start));
+            }
+
+            long today = now.toLocalDate().toEpochDay();
+            List<EventAnalyticsBucketResponse> dayResponses = new ArrayList<>(DAY_SLOTS);
+            for (long key = today - DAY_SLOTS + 1; key <= today; key++) {
+                Bucket bucket = days[Math.floorMod(key, DAY_SLOTS)];
+                dayResponses.add(toResponse(bucket, key, LocalDate.ofEpochDay(key).atStartOfDay()));
+            }
+
+            return EventAnalyticsResponse.builder()
+                    .eventId(eventId)
+                    .applications(applications)
+                    .totalDiscount(totalDiscount)
+                    .revenue(revenue)
+                    .distinctUsers(users.cardinality())
+                    .minutes(minuteResponses)
+                    .days(dayResponses)
+                    .generatedAt(now)
+                    .build();
+        }
+
+        private static EventAnalyticsBucketResponse toResponse(Bucket bucket, long key, LocalDateTime start) {
+            boolean current = bucket.key == key;
+            return EventAnalyticsBucketResponse.builder()
+                    .start(start)
+                    .applications(current ? bucket.applications : 0L)
+                    .totalDiscount(current ? bucket.discount : 0L)
+                    .revenue(current ? bucket.revenue : 0.0)
+                    .distinctUsers(current ? bucket.users.cardinality() : 0L)
+                    .build();
+        }
+    }
+}
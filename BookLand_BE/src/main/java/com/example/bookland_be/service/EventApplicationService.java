@@ -6,8 +6,6 @@ import com.example.bookland_be.enums.EventActionType;
 import com.example.bookland_be.enums.EventRuleType;
 import com.example.bookland_be.repository.*;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,26 +19,19 @@ import java.util.*;
 @RequiredArgsConstructor
 public class EventApplicationService {
 
-    private final EventRepository eventRepository;
+    private final ActiveEventRegistry activeEventRegistry;
     private final EventLogRepository eventLogRepository;
     private final BookRepository bookRepository;
+    private final EventAnalyticsService eventAnalyticsService;
     // Assume we might need these repositories for complex checks
     // private final BillRepository billRepository; 
     // private final UserRepository userRepository;
 
     /**
-     * Lấy Event có priority cao nhất đang active
+     * Lấy Event có priority cao nhất đang active (đọc từ ActiveEventRegistry, không query DB)
      */
-    @Transactional(readOnly = true)
     public Optional<Event> getHighestPriorityActiveEvent() {
-        LocalDateTime now = LocalDateTime.now();
-
-        return eventRepository
-                .findAll(PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "priority")))
-                .stream()
-                .filter(event -> event.getStatus() == Event.EventStatus.ACTIVE)
-                .filter(event -> now.isAfter(event.getStartTime()) && now.isBefore(event.getEndTime()))
-                .findFirst();
+        return activeEventRegistry.getCurrentEvent();
     }
 
     /**
@@ -210,5 +201,6 @@ public class EventApplicationService {
                 .appliedValue(discountValue)
                 .build();
         eventLogRepository.save(log);
+        eventAnalyticsService.recordAfterCommit(log);
     }
 }
\ No newline at end of file
@@ -0,0 +1,294 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.dto.response.EventLifecycleResponse;
+import com.example.bookland_be.entity.Event;
+import com.example.bookland_be.entity.Event.EventStatus;
+import com.example.bookland_be.repository.EventRepository;
+import com.example.bookland_be.util.HashedTimingWheel;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Vòng đời Event: đúng startTime thì broadcast EVENT_STARTED, đúng endTime thì chuyển EXPIRED
+ * và broadcast EVENT_ENDED lên /topic/events. Mốc thời gian được giữ trong HashedTimingWheel,
+ * DB chỉ được đọc khi khởi động, khi Event thay đổi và khi reconcile định kỳ.
+ * Mọi node đều chạy wheel riêng (làm mới cache / registry local) nhưng chỉ 1 node broadcast:
+ * node chuyển được ACTIVE -> EXPIRED bằng UPDATE có điều kiện, và node giành được khoá Redis cho (eventId, startTime).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EventLifecycleScheduler {
+
+    public static final String EVENTS_TOPIC = "/topic/events";
+    public static final String EVENT_STARTED = "EVENT_STARTED";
+    public static final String EVENT_ENDED = "EVENT_ENDED";
+
+    private static final String EVENTS_CACHE = "events";
+    private static final String START_CLAIM_PREFIX = "event:started:";
+    private static final Duration START_CLAIM_TTL = Duration.ofDays(1);
+
+    private final EventRepository eventRepository;
+    private final ActiveEventRegistry activeEventRegistry;
+    private final CacheManager cacheManager;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // Task hết hạn chạy tuần tự trên 1 thread riêng, không chặn worker của wheel
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "event-lifecycle");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final HashedTimingWheel wheel =
+            new HashedTimingWheel("event-lifecycle-wheel", Duration.ofSeconds(1), 512, dispatcher);
+
+    // eventId -> [timeout start, timeout end]
+    private final Map<Long, HashedTimingWheel.Timeout[]> timeouts = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reconcile();
+    }
+
+    /**
+     * Đồng bộ lại với DB: expire các event đã quá hạn (vd. app bị tắt lúc endTime)
+     * và lên lịch lại toàn bộ event ACTIVE chưa kết thúc.
+     */
+    @Scheduled(initialDelayString = "${event.lifecycle.reconcile-interval:PT1H}",
+            fixedDelayString = "${event.lifecycle.reconcile-interval:PT1H}")
+    public void reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        expireOverdue(now);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        List<Event> events = transactionTemplate.execute(status -> {
+            List<Event> result = new ArrayList<>(eventRepository.findActiveEvents(now));
+            result.addAll(eventRepository.findUpcomingEvents(now));
+            return result;
+        });
+
+        Set<Long> scheduledIds = new HashSet<>();
+        if (events != null) {
+            for (Event event : events) {
+                schedule(event, now);
+                scheduledIds.add(event.getId());
+            }
+        }
+        // Event đã bị xoá / đổi status ngoài luồng EventService
+        for (Long eventId : new ArrayList<>(timeouts.keySet())) {
+            if (!scheduledIds.contains(eventId)) {
+                cancel(eventId);
+            }
+        }
+        log.info("Event lifecycle reconciled, {} event(s) scheduled", scheduledIds.size());
+    }
+
+    /**
+     * Lên lịch lại 1 event sau khi transaction hiện tại commit (gọi từ EventService)
+     */
+    public void rescheduleAfterCommit(Long eventId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatcher.execute(() -> reschedule(eventId));
+                }
+            });
+        } else {
+            dispatcher.execute(() -> reschedule(eventId));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.close();
+        dispatcher.shutdownNow();
+    }
+
+    private void reschedule(Long eventId) {
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            Event event = transactionTemplate.execute(status -> eventRepository.findById(eventId).orElse(null));
+
+            LocalDateTime now = LocalDateTime.now();
+            if (event == null || event.getStatus() != EventStatus.ACTIVE || !event.getEndTime().isAfter(now)) {
+                cancel(eventId);
+            } else {
+                schedule(event, now);
+            }
+        } catch (RuntimeException e) {
+            log.error("Cannot reschedule lifecycle of event {}", eventId, e);
+        }
+    }
+
+    private synchronized void schedule(Event event, LocalDateTime now) {
+        Long eventId = event.getId();
+        LocalDateTime startTime = event.getStartTime();
+        LocalDateTime endTime = event.getEndTime();
+
+        cancel(eventId);
+        HashedTimingWheel.Timeout start = startTime.isAfter(now)
+                ? wheel.schedule(() -> onStart(eventId, startTime), toInstant(startTime))
+                : null;
+        HashedTimingWheel.Timeout end = wheel.schedule(() -> onEnd(eventId, endTime), toInstant(endTime));
+        timeouts.put(eventId, new HashedTimingWheel.Timeout[]{start, end});
+    }
+
+    private synchronized void cancel(Long eventId) {
+        HashedTimingWheel.Timeout[] existing = timeouts.remove(eventId);
+        if (existing != null) {
+            for (HashedTimingWheel.Timeout timeout : existing) {
+                if (timeout != null) {
+                    timeout.cancel();
+                }
+            }
+        }
+    }
+
+    private void onStart(Long eventId, LocalDateTime expectedStart) {
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            Event event = transactionTemplate.execute(status -> eventRepository.findById(eventId).orElse(null));
+
+            // Event đã bị sửa giờ / tạm dừng sau khi lên lịch
+            if (event == null || event.getStatus() != EventStatus.ACTIVE
+                    || !event.getStartTime().equals(expectedStart)) {
+                return;
+            }
+
+            evictCaches(eventId);
+            activeEventRegistry.refresh();
+            if (claimStart(eventId, expectedStart)) {
+                broadcast(EVENT_STARTED, event);
+                log.info("Event {} started", eventId);
+            }
+        } catch (RuntimeException e) {
+            log.error("Cannot start event {}", eventId, e);
+        }
+    }
+
+    private void onEnd(Long eventId, LocalDateTime expectedEnd) {
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            Integer expired = transactionTemplate.execute(status -> eventRepository.expireIfActive(eventId, expectedEnd));
+
+            timeouts.remove(eventId);
+            evictCaches(eventId);
+            activeEventRegistry.refresh();
+            // 0 dòng: node khác đã expire, hoặc event bị sửa / tạm dừng sau khi lên lịch
+            if (expired == null || expired == 0) {
+                return;
+            }
+
+            transactionTemplate.setReadOnly(true);
+            Event event = transactionTemplate.execute(status -> eventRepository.findById(eventId).orElse(null));
+            if (event != null) {
+                broadcast(EVENT_ENDED, event);
+            }
+            log.info("Event {} expired", eventId);
+        } catch (RuntimeException e) {
+            log.error("Cannot expire event {}", eventId, e);
+        }
+    }
+
+    private void expireOverdue(LocalDateTime now) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        List<Event> overdue = transactionTemplate.execute(status -> eventRepository.findExpiredEvents(now));
+        if (overdue == null || overdue.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.setReadOnly(false);
+        int expired = 0;
+        for (Event event : overdue) {
+            cancel(event.getId());
+            evictCaches(event.getId());
+            Integer updated = transactionTemplate.execute(status ->
+                    eventRepository.expireIfActive(event.getId(), event.getEndTime()));
+            if (updated != null && updated == 1) {
+                event.setStatus(EventStatus.EXPIRED);
+                broadcast(EVENT_ENDED, event);
+                expired++;
+            }
+        }
+        activeEventRegistry.refresh();
+        if (expired > 0) {
+            log.info("Expired {} overdue event(s)", expired);
+        }
+    }
+
+    /**
+     * Giành quyền broadcast EVENT_STARTED cho (eventId, startTime); đổi startTime thì là key mới.
+     * Redis lỗi thì vẫn broadcast: client nhận trùng còn hơn không nhận.
+     */
+    private boolean claimStart(Long eventId, LocalDateTime startTime) {
+        String key = START_CLAIM_PREFIX + eventId + ":" + toInstant(startTime).getEpochSecond();
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(key, "1", START_CLAIM_TTL));
+        } catch (RuntimeException e) {
+            log.warn("Cannot claim start broadcast of event {}, broadcasting anyway: {}", eventId, e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Chỉ xoá đúng các key bị ảnh hưởng thay vì allEntries
+     */
+    private void evictCaches(Long eventId) {
+        Cache cache = cacheManager.getCache(EVENTS_CACHE);
+        if (cache != null) {
+            cache.evict("id:" + eventId);
+            cache.evict("highest-priority");
+        }
+    }
+
+    private void broadcast(String type, Event event) {
+        EventLifecycleResponse message = EventLifecycleResponse.builder()
+                .type(type)
+                .eventId(event.getId())
+                .name(event.getName())
+                .eventType(event.getType())
+                .priority(event.getPriority())
+                .startTime(event.getStartTime())
+                .endTime(event.getEndTime())
+                .occurredAt(LocalDateTime.now())
+                .build();
+        messagingTemplate.convertAndSend(EVENTS_TOPIC, message);
+    }
+
+    private static Instant toInstant(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
@@ -42,6 +42,9 @@ public class EventService {
     private final SerieRepository serieRepository;
     private final AuthorRepository authorRepository;
     private final PublisherRepository publisherRepository;
+    private final ActiveEventRegistry activeEventRegistry;
+    private final EventLifecycleScheduler eventLifecycleScheduler;
+    private final ImageVariantService imageVariantService;
 
     @Transactional(readOnly = true)
     public Page<EventDTO> getAllEvents(String keyword, EventStatus status, EventType type,
@@ -92,8 +95,13 @@ public class EventService {
             spec = spec.and(EventSpecification.isActiveNow());
         }
 
-        return eventRepository.findAll(spec, pageable)
-                .map(this::convertToDTO);
+        Page<Event> events = eventRepository.findAll(spec, pageable);
+        // Nạp bản thu nhỏ của mọi ảnh trong trang bằng 1 query trước khi map
+        imageVariantService.preload(events.stream()
+                .flatMap(event -> event.getImages().stream())
+                .map(EventImage::getImageUrl)
+                .toList());
+        return events.map(this::convertToDTO);
     }
 
     @Transactional(readOnly = true)
@@ -211,6 +219,8 @@ public class EventService {
             }
         }
 
+        activeEventRegistry.refreshAfterCommit();
+        eventLifecycleScheduler.rescheduleAfterCommit(savedEvent.getId());
         return convertToDTO(savedEvent);
     }
 
@@ -375,6 +385,8 @@ public class EventService {
         }
 
         Event updatedEvent = eventRepository.save(event);
+        activeEventRegistry.refreshAfterCommit();
+        eventLifecycleScheduler.rescheduleAfterCommit(id);
         return convertToDTO(updatedEvent);
     }
 
@@ -389,6 +401,8 @@ public class EventService {
 
         event.setStatus(status);
         Event updatedEvent = eventRepository.save(event);
+        activeEventRegistry.refreshAfterCommit();
+        eventLifecycleScheduler.rescheduleAfterCommit(id);
 
         return convertToDTO(updatedEvent);
     }
@@ -407,6 +421,8 @@ public class EventService {
         }
 
         eventRepository.delete(event);
+        activeEventRegistry.refreshAfterCommit();
+        eventLifecycleScheduler.rescheduleAfterCommit(id);
     }
 
     private void validateEventTime(LocalDateTime startTime, LocalDateTime endTime) {
@@ -416,10 +432,12 @@ public class EventService {
     }
 
     private EventDTO convertToDTO(Event event) {
+        imageVariantService.preload(event.getImages().stream().map(EventImage::getImageUrl).toList());
         List<EventImageDTO> imageDTOs = event.getImages().stream()
                 .map(img -> EventImageDTO.builder()
                         .id(img.getId())
                         .imageUrl(img.getImageUrl())
+                        .imageVariants(imageVariantService.variantUrls(img.getImageUrl()))
                         .imageType(img.getImageType())
                         .build())
                 .collect(Collectors.toList());
@@ -0,0 +1,404 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.dto.request.EventRequest;
+import com.example.bookland_be.dto.request.EventSimulationRequest;
+import com.example.bookland_be.dto.response.BookPriceSimulationResponse;
+import com.example.bookland_be.dto.response.CartPriceSimulationResponse;
+import com.example.bookland_be.dto.response.PriceSimulationSummaryResponse;
+import com.example.bookland_be.entity.*;
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import com.example.bookland_be.repository.BillBookRepository;
+import com.example.bookland_be.repository.BillRepository;
+import com.example.bookland_be.repository.BookRepository;
+import com.example.bookland_be.repository.EventRepository;
+import com.example.bookland_be.repository.specification.BookSpecification;
+import com.example.bookland_be.service.pricing.CartLines;
+import com.example.bookland_be.service.pricing.CartPricingPipeline;
+import com.example.bookland_be.service.pricing.CartPricingResult;
+import com.example.bookland_be.service.pricing.PricingPlan;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mô phỏng giá dưới 1 event (đã có hoặc bản nháp) cho toàn bộ catalog + một số giỏ hàng thật.
+ * Kết quả được stream dạng NDJSON: từng dòng BOOK, sau đó CART, cuối cùng SUMMARY.
+ */
+@Service
+@RequiredArgsConstructor
+public class EventSimulationService {
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int FORK_THRESHOLD = 64;
+    private static final int SALES_WINDOW_DAYS = 30;
+    private static final int DEFAULT_SAMPLE_CARTS = 20;
+
+    private final EventRepository eventRepository;
+    private final BookRepository bookRepository;
+    private final BillRepository billRepository;
+    private final BillBookRepository billBookRepository;
+    private final EventApplicationService eventApplicationService;
+    private final CartPricingPipeline cartPricingPipeline;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Load event (kèm targets / rules / actions) hoặc dựng Event tạm từ bản nháp.
+     * Gọi trước khi stream để lỗi vẫn trả về dạng ApiResponse.
+     */
+    public Event resolveEvent(EventSimulationRequest request) {
+        if (request.getEventId() != null) {
+            TransactionTemplate transactionTemplate = readOnlyTransaction();
+            return transactionTemplate.execute(status -> {
+                Event event = eventRepository.findByIdWithDetails(request.getEventId())
+                        .orElseThrow(() -> new AppException(ErrorCode.EVENT_NOT_FOUND));
+                Hibernate.initialize(event.getTargets());
+                Hibernate.initialize(event.getRules());
+                Hibernate.initialize(event.getActions());
+                return event;
+            });
+        }
+        if (request.getDraftEvent() == null) {
+            throw new AppException(ErrorCode.EVENT_SIMULATION_SOURCE_REQUIRED);
+        }
+        return buildDraftEvent(request.getDraftEvent());
+    }
+
+    public void simulate(Event event, EventSimulationRequest request, OutputStream outputStream) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        PricingPlan plan = PricingPlan.compile(event);
+        Specification<Book> spec = buildSpecification(request);
+        LocalDateTime salesSince = LocalDateTime.now().minusDays(SALES_WINDOW_DAYS);
+        CatalogTotals totals = new CatalogTotals();
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        TransactionTemplate transactionTemplate = readOnlyTransaction();
+
+        // 1. Catalog: đọc theo keyset id, mỗi chunk tính song song trên ForkJoinPool
+        long lastId = 0;
+        while (true) {
+            long afterId = lastId;
+            CatalogChunk chunk = transactionTemplate.execute(status -> loadChunk(spec, afterId, salesSince));
+            if (chunk == null || chunk.size == 0) {
+                break;
+            }
+
+            ForkJoinPool.commonPool().invoke(new PriceChunkTask(plan, chunk, 0, chunk.size, totals));
+
+            for (int i = 0; i < chunk.size; i++) {
+                writeLine(writer, BookPriceSimulationResponse.builder()
+                        .bookId(chunk.bookIds[i])
+                        .bookName(chunk.names[i])
+                        .currentPrice(chunk.basePrices[i])
+                        .simulatedPrice(chunk.simulatedPrices[i])
+                        .discount(chunk.basePrices[i] - chunk.simulatedPrices[i])
+                        .matched(chunk.matched[i])
+                        .unitsSold(chunk.unitsSold[i])
+                        .build());
+            }
+            writer.flush();
+
+            lastId = chunk.bookIds[chunk.size - 1];
+            if (chunk.size < CHUNK_SIZE) {
+                break;
+            }
+        }
+
+        // 2. Giỏ mẫu: các đơn hàng gần nhất, tính lại theo giá hiện tại
+        int sampleSize = request.getSampleCarts() != null ? request.getSampleCarts() : DEFAULT_SAMPLE_CARTS;
+        List<CartPriceSimulationResponse> carts = sampleSize > 0
+                ? transactionTemplate.execute(status -> simulateCarts(event, plan, sampleSize))
+                : List.of();
+
+        int eligibleCarts = 0;
+        double sampleOriginal = 0;
+        double sampleSimulated = 0;
+        for (CartPriceSimulationResponse cart : carts) {
+            writeLine(writer, cart);
+            if (cart.getEligible()) {
+                eligibleCarts++;
+            }
+            sampleOriginal += cart.getOriginalTotal();
+            sampleSimulated += cart.getSimulatedTotal();
+        }
+
+        // 3. Tổng hợp
+        long matchedBooks = totals.matchedBooks.sum();
+        writeLine(writer, PriceSimulationSummaryResponse.builder()
+                .eventId(event.getId())
+                .eventName(event.getName())
+                .totalBooks(totals.totalBooks.sum())
+                .matchedBooks(matchedBooks)
+                .catalogCurrentTotal(totals.currentTotal.sum())
+                .catalogSimulatedTotal(totals.simulatedTotal.sum())
+                .averageDiscountPercent(matchedBooks > 0 ? totals.discountPercentSum.sum() / matchedBooks : 0.0)
+                .salesWindowDays(SALES_WINDOW_DAYS)
+                .projectedRevenueImpact(totals.revenueImpact.sum())
+                .sampledCarts(carts.size())
+                .eligibleCarts(eligibleCarts)
+                .sampleOriginalTotal(sampleOriginal)
+                .sampleSimulatedTotal(sampleSimulated)
+                .sampleDiscountTotal(sampleOriginal - sampleSimulated)
+                .durationMs(System.currentTimeMillis() - startedAt)
+                .build());
+        writer.flush();
+    }
+
+    private CatalogChunk loadChunk(Specification<Book> spec, long afterId, LocalDateTime salesSince) {
+        Specification<Book> keyset = spec.and((root, query, cb) -> cb.greaterThan(root.get("id"), afterId));
+        List<Book> books = bookRepository.findBy(keyset, q -> q.sortBy(Sort.by("id")).limit(CHUNK_SIZE).all());
+
+        CatalogChunk chunk = new CatalogChunk(books.size());
+        if (books.isEmpty()) {
+            return chunk;
+        }
+
+        List<Long> ids = new ArrayList<>(books.size());
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+
+        Map<Long, List<Long>> categoriesByBook = new HashMap<>();
+        for (Object[] row : bookRepository.findCategoryIdsByBookIds(ids)) {
+            categoriesByBook.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((Long) row[1]);
+        }
+        Map<Long, Long> soldByBook = new HashMap<>();
+        for (Object[] row : billBookRepository.sumQuantitySoldByBookIdsSince(ids, salesSince)) {
+            soldByBook.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            chunk.bookIds[i] = book.getId();
+            chunk.names[i] = book.getName();
+            chunk.basePrices[i] = book.getFinalPrice();
+            chunk.seriesIds[i] = book.getSeries() != null ? book.getSeries().getId() : null;
+            chunk.authorIds[i] = book.getAuthor() != null ? book.getAuthor().getId() : null;
+            chunk.publisherIds[i] = book.getPublisher() != null ? book.getPublisher().getId() : null;
+            List<Long> categoryIds = categoriesByBook.get(book.getId());
+            chunk.categoryIds[i] = categoryIds != null
+                    ? categoryIds.stream().mapToLong(Long::longValue).toArray()
+                    : new long[0];
+            chunk.unitsSold[i] = soldByBook.getOrDefault(book.getId(), 0L);
+        }
+        return chunk;
+    }
+
+    private List<CartPriceSimulationResponse> simulateCarts(Event event, PricingPlan plan, int sampleSize) {
+        List<Bill> bills = billRepository.findAll(
+                PageRequest.of(0, sampleSize, Sort.by(Sort.Direction.DESC, "createdAt"))).getContent();
+
+        List<CartPriceSimulationResponse> result = new ArrayList<>(bills.size());
+        for (Bill bill : bills) {
+            if (bill.getBillBooks().isEmpty()) {
+                continue;
+            }
+
+            double currentTotal = 0;
+            int totalQuantity = 0;
+            for (BillBook billBook : bill.getBillBooks()) {
+                currentTotal += billBook.getBook().getFinalPrice() * billBook.getQuantity();
+                totalQuantity += billBook.getQuantity();
+            }
+            boolean eligible = eventApplicationService.checkEventRule(event, bill.getUser(), currentTotal, totalQuantity);
+
+            CartLines lines = new CartLines(bill.getBillBooks().size());
+            for (BillBook billBook : bill.getBillBooks()) {
+                Book book = billBook.getBook();
+                lines.add(book.getId(), book.getFinalPrice(), billBook.getQuantity(), eligible && plan.matches(book));
+            }
+            double shippingCost = bill.getShippingMethod() != null ? bill.getShippingMethod().getPrice() : 0.0;
+            CartPricingResult pricing = cartPricingPipeline.price(eligible ? plan : null, lines, shippingCost);
+
+            double originalTotal = pricing.getOriginalSubtotal() + shippingCost;
+            result.add(CartPriceSimulationResponse.builder()
+                    .billId(bill.getId())
+                    .lineCount(lines.size())
+                    .totalQuantity(totalQuantity)
+                    .eligible(eligible)
+                    .originalTotal(originalTotal)
+                    .simulatedTotal(pricing.getGrandTotal())
+                    .shippingDiscount(pricing.getShippingDiscount())
+                    .discount(originalTotal - pricing.getGrandTotal())
+                    .build());
+        }
+        return result;
+    }
+
+    private Event buildDraftEvent(EventRequest draft) {
+        Event event = Event.builder()
+                .name(draft.getName())
+                .description(draft.getDescription())
+                .type(draft.getType())
+                .startTime(draft.getStartTime())
+                .endTime(draft.getEndTime())
+                .status(Event.EventStatus.DRAFT)
+                .priority(draft.getPriority() != null ? draft.getPriority() : 0)
+                .build();
+        // Action bản nháp chưa có id => giữ đúng thứ tự gửi lên
+        event.setActions(new LinkedHashSet<>());
+
+        if (draft.getTargets() != null) {
+            draft.getTargets().forEach(target -> event.getTargets().add(EventTarget.builder()
+                    .event(event)
+                    .targetType(target.getTargetType())
+                    .targetId(target.getTargetId())
+                    .build()));
+        }
+        if (draft.getRules() != null) {
+            draft.getRules().forEach(rule -> event.getRules().add(EventRule.builder()
+                    .event(event)
+                    .ruleType(rule.getRuleType())
+                    .ruleValue(rule.getRuleValue())
+                    .build()));
+        }
+        if (draft.getActions() != null) {
+            draft.getActions().forEach(action -> event.getActions().add(EventAction.builder()
+                    .event(event)
+                    .actionType(action.getActionType())
+                    .actionValue(action.getActionValue())
+                    .build()));
+        }
+        return event;
+    }
+
+    private Specification<Book> buildSpecification(EventSimulationRequest request) {
+        return BookSpecification.searchByKeyword(request.getKeyword())
+                .and(BookSpecification.hasStatus(request.getStatus()))
+                .and(BookSpecification.hasAuthors(request.getAuthorIds()))
+                .and(BookSpecification.hasPublishers(request.getPublisherIds()))
+                .and(BookSpecification.hasSeries(request.getSeriesIds()))
+                .and(BookSpecification.hasCategories(request.getCategoryIds()))
+                .and(BookSpecification.isPinned(request.getPinned()))
+                .and(BookSpecification.priceBetween(request.getMinPrice(), request.getMaxPrice()));
+    }
+
+    private void writeLine(Writer writer, Object value) throws IOException {
+        writer.write(objectMapper.writeValueAsString(value));
+        writer.write('\n');
+    }
+
+    private TransactionTemplate readOnlyTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate;
+    }
+
+    /**
+     * 1 chunk sách dưới dạng mảng, các task fork-join chỉ ghi vào đoạn index của mình
+     */
+    private static final class CatalogChunk {
+        final int size;
+        final long[] bookIds;
+        final String[] names;
+        final double[] basePrices;
+        final Long[] seriesIds;
+        final Long[] authorIds;
+        final Long[] publisherIds;
+        final long[][] categoryIds;
+        final long[] unitsSold;
+        final double[] simulatedPrices;
+        final boolean[] matched;
+
+        CatalogChunk(int size) {
+            this.size = size;
+            this.bookIds = new long[size];
+            this.names = new String[size];
+            this.basePrices = new double[size];
+            this.seriesIds = new Long[size];
+            this.authorIds = new Long[size];
+            this.publisherIds = new Long[size];
+            this.categoryIds = new long[size][];
+            this.unitsSold = new long[size];
+            this.simulatedPrices = new double[size];
+            this.matched = new boolean[size];
+        }
+    }
+
+    private static final class CatalogTotals {
+        final LongAdder totalBooks = new LongAdder();
+        final LongAdder matchedBooks = new LongAdder();
+        final DoubleAdder currentTotal = new DoubleAdder();
+        final DoubleAdder simulatedTotal = new DoubleAdder();
+        final DoubleAdder discountPercentSum = new DoubleAdder();
+        final DoubleAdder revenueImpact = new DoubleAdder();
+    }
+
+    /**
+     * Giá 1 cuốn của mỗi sách (stage item). Action toàn giỏ / phí ship được phản ánh qua giỏ mẫu.
+     */
+    private final class PriceChunkTask extends RecursiveAction {
+        private final PricingPlan plan;
+        private final CatalogChunk chunk;
+        private final int from;
+        private final int to;
+        private final CatalogTotals totals;
+
+        PriceChunkTask(PricingPlan plan, CatalogChunk chunk, int from, int to, CatalogTotals totals) {
+            this.plan = plan;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.totals = totals;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FORK_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new PriceChunkTask(plan, chunk, from, mid, totals),
+                        new PriceChunkTask(plan, chunk, mid, to, totals));
+                return;
+            }
+
+            int matchedCount = 0;
+            double current = 0;
+            double simulated = 0;
+            double discountPercent = 0;
+            double impact = 0;
+            for (int i = from; i < to; i++) {
+                double base = chunk.basePrices[i];
+                boolean matched = plan.matches(chunk.bookIds[i], chunk.categoryIds[i],
+                        chunk.seriesIds[i], chunk.authorIds[i], chunk.publisherIds[i]);
+                double price = matched ? cartPricingPipeline.itemPrice(plan, base) : base;
+
+                chunk.matched[i] = matched;
+                chunk.simulatedPrices[i] = price;
+                current += base;
+                simulated += price;
+                impact += (base - price) * chunk.unitsSold[i];
+                if (matched) {
+                    matchedCount++;
+                    discountPercent += base > 0 ? (base - price) * 100 / base : 0;
+                }
+            }
+
+            totals.totalBooks.add(to - from);
+            totals.matchedBooks.add(matchedCount);
+            totals.currentTotal.add(current);
+            totals.simulatedTotal.add(simulated);
+            totals.discountPercentSum.add(discountPercent);
+            totals.revenueImpact.add(impact);
+        }
+    }
+}
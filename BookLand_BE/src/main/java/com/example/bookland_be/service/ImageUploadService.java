@@ -0,0 +1,302 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.entity.ImageAsset;
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import com.example.bookland_be.repository.AuthorRepository;
+import com.example.bookland_be.repository.BookRepository;
+import com.example.bookland_be.repository.EventImageRepository;
+import com.example.bookland_be.repository.ImageAssetRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Upload ảnh theo nội dung: băm SHA-256 khi đọc stream file tạm của multipart, object đặt tên theo hash.
+ * Nội dung đã có trong chỉ mục image_asset thì trả về URL cũ, không truyền byte nào lên storage.
+ * Job GC (có khoá job_lock) xoá object trong chỉ mục không còn được sách / sự kiện / tác giả nào dùng.
+ */
+@Service
+@Slf4j
+public class ImageUploadService {
+
+    public record UploadResult(String url, String objectName, boolean deduplicated) {
+    }
+
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/jpeg", ".jpg",
+            "image/jpg", ".jpg",
+            "image/png", ".png",
+            "image/gif", ".gif",
+            "image/webp", ".webp");
+
+    private final StorageService storageService;
+    private final ImageVariantService imageVariantService;
+    private final ImageAssetRepository imageAssetRepository;
+    private final BookRepository bookRepository;
+    private final EventImageRepository eventImageRepository;
+    private final AuthorRepository authorRepository;
+    private final JobLockService jobLockService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor uploadExecutor;
+
+    @Value("${storage.gc.enabled:true}")
+    private boolean gcEnabled;
+
+    @Value("${storage.gc.grace-period:P7D}")
+    private Duration gcGracePeriod;
+
+    @Value("${storage.gc.batch-size:200}")
+    private int gcBatchSize;
+
+    @Value("${storage.gc.lock-at-most:PT1H}")
+    private Duration gcLockAtMost;
+
+    public ImageUploadService(StorageService storageService,
+                              ImageVariantService imageVariantService,
+                              ImageAssetRepository imageAssetRepository,
+                              BookRepository bookRepository,
+                              EventImageRepository eventImageRepository,
+                              AuthorRepository authorRepository,
+                              JobLockService jobLockService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${storage.upload.concurrency:4}") int concurrency) {
+        this.storageService = storageService;
+        this.imageVariantService = imageVariantService;
+        this.imageAssetRepository = imageAssetRepository;
+        this.bookRepository = bookRepository;
+        this.eventImageRepository = eventImageRepository;
+        this.authorRepository = authorRepository;
+        this.jobLockService = jobLockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(1, concurrency);
+        // Hàng đợi đầy thì thread request tự upload (CallerRuns) thay vì từ chối
+        this.uploadExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "storage-upload-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public UploadResult upload(MultipartFile file) throws IOException {
+        String hash = sha256(file);
+        LocalDateTime now = LocalDateTime.now();
+
+        Optional<ImageAsset> existing = imageAssetRepository.findByContentHash(hash);
+        if (existing.isPresent()) {
+            // Gia hạn grace-period của GC: admin có thể sắp gắn URL này vào sách
+            Integer touched = transactionTemplate.execute(status ->
+                    imageAssetRepository.touchUploaded(existing.get().getId(), now));
+            String objectName = existing.get().getObjectName();
+            if (touched != null && touched == 1) {
+                log.debug("Duplicate upload of {} resolved to existing object {}", file.getOriginalFilename(), objectName);
+                return new UploadResult(storageService.publicUrl(objectName), objectName, true);
+            }
+            // GC vừa giành dòng này (object sắp bị xoá) => upload lại như nội dung mới
+            log.debug("Object {} was claimed by GC during upload, uploading again", objectName);
+        }
+
+        String objectName = hash + extension(file);
+        String url = storageService.uploadImage(objectName, file);
+        transactionTemplate.executeWithoutResult(status -> imageAssetRepository.insertUploaded(
+                objectName, hash, file.getSize(), file.getContentType(), now));
+        // Sinh thumbnail / card / detail ở nền
+        imageVariantService.schedule(url);
+        return new UploadResult(url, objectName, false);
+    }
+
+    /**
+     * Upload chạy trên pool riêng. Người gọi phải chờ future xong trước khi request kết thúc
+     * (file tạm của multipart bị xoá khi request xong).
+     */
+    public CompletableFuture<UploadResult> uploadAsync(MultipartFile file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return upload(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, uploadExecutor);
+    }
+
+    /**
+     * Xoá ảnh theo yêu cầu admin: xoá cả bản thu nhỏ và dòng chỉ mục để upload sau không trỏ về object đã xoá.
+     * Ảnh còn được sách / sự kiện / tác giả dùng thì từ chối (FILE_IN_USE), phải gỡ khỏi chỗ dùng trước.
+     */
+    public void delete(String objectName) {
+        if (!referencedUrls(List.of(storageService.publicUrl(objectName))).isEmpty()) {
+            throw new AppException(ErrorCode.FILE_IN_USE);
+        }
+        Optional<ImageAsset> asset = imageAssetRepository.findByObjectName(objectName);
+        if (asset.isPresent()) {
+            transactionTemplate.executeWithoutResult(status -> imageAssetRepository.deleteById(asset.get().getId()));
+            deleteVariants(asset.get());
+        }
+        storageService.deleteImage(objectName);
+    }
+
+    // Đọc stream file tạm (trên đĩa) để băm, không nạp cả file vào heap
+    private static String sha256(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = file.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String extension(MultipartFile file) {
+        String contentType = file.getContentType();
+        if (contentType != null && EXTENSIONS.containsKey(contentType.toLowerCase(Locale.ROOT))) {
+            return EXTENSIONS.get(contentType.toLowerCase(Locale.ROOT));
+        }
+        String name = file.getOriginalFilename();
+        int dot = name != null ? name.lastIndexOf('.') : -1;
+        if (dot >= 0 && name.length() - dot <= 6 && name.substring(dot + 1).matches("[A-Za-z0-9]+")) {
+            return name.substring(dot).toLowerCase(Locale.ROOT);
+        }
+        return "";
+    }
+
+    /**
+     * Xoá object (và các bản thu nhỏ) có trong chỉ mục mà không còn được tham chiếu,
+     * chỉ xét object không được upload lại trong grace-period (vừa upload nhưng chưa kịp gắn vào sách).
+     * Object upload trước khi có chỉ mục không bị đụng tới.
+     */
+    @Scheduled(cron = "${storage.gc.cron:0 0 4 * * *}")
+    public void collectGarbage() {
+        if (!gcEnabled) {
+            return;
+        }
+        jobLockService.runWithLock("storage-gc", gcLockAtMost, this::runGc);
+    }
+
+    private void runGc() {
+        LocalDateTime before = LocalDateTime.now().minus(gcGracePeriod);
+        PageRequest batch = PageRequest.of(0, Math.max(1, gcBatchSize));
+        long afterId = 0L;
+        int deleted = 0;
+        try {
+            while (true) {
+                List<ImageAsset> candidates = imageAssetRepository.findGcCandidates(before, afterId, batch);
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                afterId = candidates.get(candidates.size() - 1).getId();
+
+                List<String> urls = candidates.stream()
+                        .map(asset -> storageService.publicUrl(asset.getObjectName()))
+                        .toList();
+                Set<String> referenced = referencedUrls(urls);
+
+                for (ImageAsset asset : candidates) {
+                    String url = storageService.publicUrl(asset.getObjectName());
+                    if (referenced.contains(url)) {
+                        continue;
+                    }
+                    // Kiểm tra lại ngay trước khi xoá: trong lúc quét có thể đã upload lại (đổi lastUploadedAt)
+                    // hoặc gắn URL vào sách. Xoá dòng trước để upload song song không dedup về object sắp xoá.
+                    Boolean claimed = transactionTemplate.execute(status -> {
+                        if (!referencedUrls(List.of(url)).isEmpty()) {
+                            return false;
+                        }
+                        return imageAssetRepository.deleteIfNotUploadedSince(asset.getId(), before) == 1;
+                    });
+                    if (!Boolean.TRUE.equals(claimed)) {
+                        continue;
+                    }
+                    try {
+                        deleteVariants(asset);
+                        storageService.deleteImage(asset.getObjectName());
+                        deleted++;
+                    } catch (RuntimeException e) {
+                        // Ghi lại dòng chỉ mục để lần sau xoá lại
+                        log.warn("Cannot delete unreferenced object {}: {}", asset.getObjectName(), e.getMessage());
+                        restore(asset);
+                    }
+                }
+                if (candidates.size() < batch.getPageSize()) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Storage GC failed after deleting {} object(s)", deleted, e);
+        }
+        if (deleted > 0) {
+            log.info("Storage GC deleted {} unreferenced object(s) not uploaded since {}", deleted, before);
+        }
+    }
+
+    private Set<String> referencedUrls(List<String> urls) {
+        Set<String> referenced = new HashSet<>(bookRepository.findReferencedImageUrls(urls));
+        referenced.addAll(eventImageRepository.findReferencedImageUrls(urls));
+        referenced.addAll(authorRepository.findReferencedImageUrls(urls));
+        return referenced;
+    }
+
+    private void restore(ImageAsset asset) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> imageAssetRepository.insertUploaded(asset.getObjectName(),
+                    asset.getContentHash(), asset.getSizeBytes(), asset.getContentType(), asset.getLastUploadedAt()));
+        } catch (RuntimeException e) {
+            log.warn("Cannot restore index row of {}: {}", asset.getObjectName(), e.getMessage());
+        }
+    }
+
+    private void deleteVariants(ImageAsset asset) {
+        if (asset.getVariantFormat() == null) {
+            return;
+        }
+        for (ImageVariantService.Variant variant : ImageVariantService.Variant.values()) {
+            String variantName = ImageVariantService.variantObjectName(asset.getObjectName(), variant, asset.getVariantFormat());
+            try {
+                storageService.deleteImage(variantName);
+            } catch (RuntimeException e) {
+                log.debug("Cannot delete variant {}: {}", variantName, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        uploadExecutor.shutdown();
+    }
+}
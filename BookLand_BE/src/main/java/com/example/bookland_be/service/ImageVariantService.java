@@ -0,0 +1,357 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.entity.ImageAsset;
+import com.example.bookland_be.repository.ImageAssetRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sinh ảnh thu nhỏ cho ảnh đã upload (bìa sách, ảnh sự kiện) để trang danh sách không tải ảnh gốc.
+ * Chạy nền trên pool có giới hạn: tải ảnh gốc từ storage, thu nhỏ theo chiều rộng
+ * (detail -> card -> thumbnail, bản sau lấy từ bản trước) rồi lưu cạnh ảnh gốc: {@code <tên gốc>.<variant>.<jpg|png>}.
+ * Trạng thái lưu ở image_asset; pool đầy / restart / lỗi tạm thời thì job quét định kỳ xử lý lại.
+ */
+@Service
+@Slf4j
+public class ImageVariantService {
+
+    public enum Variant {
+        DETAIL("detail", 800),
+        CARD("card", 400),
+        THUMBNAIL("thumbnail", 200);
+
+        private final String key;
+        private final int width;
+
+        Variant(String key, int width) {
+            this.key = key;
+            this.width = width;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final List<ImageAsset.VariantStatus> RETRYABLE =
+            List.of(ImageAsset.VariantStatus.PENDING, ImageAsset.VariantStatus.FAILED);
+
+    private final StorageService storageService;
+    private final ImageAssetRepository imageAssetRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    // objectName -> đuôi file bản thu nhỏ; READY thì không đổi nữa nên cache luôn
+    private final Map<String, String> readyFormats = new ConcurrentHashMap<>();
+    // Ảnh chưa READY: nhớ ngắn hạn để trang danh sách không query lại mỗi lần
+    private final Map<String, Long> notReadyUntil = new ConcurrentHashMap<>();
+    // Ảnh cũ không có dòng image_asset: chỉ có khi schedule() nên nhớ lâu hơn nhiều
+    private final Map<String, Long> missingUntil = new ConcurrentHashMap<>();
+
+    @Value("${image.variants.enabled:true}")
+    private boolean enabled;
+
+    @Value("${image.variants.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    @Value("${image.variants.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${image.variants.not-ready-cache:PT30S}")
+    private Duration notReadyCache;
+
+    @Value("${image.variants.missing-cache:PT1H}")
+    private Duration missingCache;
+
+    @Value("${image.variants.retry-after:PT2M}")
+    private Duration retryAfter;
+
+    public ImageVariantService(StorageService storageService,
+                               ImageAssetRepository imageAssetRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${image.variants.threads:2}") int threads,
+                               @Value("${image.variants.queue-capacity:100}") int queueCapacity) {
+        this.storageService = storageService;
+        this.imageAssetRepository = imageAssetRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger counter = new AtomicInteger();
+        int poolSize = Math.max(1, threads);
+        // Ảnh gốc giải nén có thể vài chục MB nên giới hạn số ảnh xử lý cùng lúc
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Gọi sau khi upload ảnh gốc thành công. Không chặn request.
+     */
+    public void schedule(String imageUrl) {
+        String objectName = storageService.objectNameFromPublicUrl(imageUrl);
+        if (!enabled || objectName == null) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    imageAssetRepository.insertPending(objectName, LocalDateTime.now()));
+        } catch (RuntimeException e) {
+            log.warn("Cannot register image {} for variants: {}", objectName, e.getMessage());
+            return;
+        }
+        missingUntil.remove(objectName);
+        submit(objectName);
+    }
+
+    /**
+     * Nạp trạng thái bản thu nhỏ của cả trang ảnh bằng 1 query, để {@link #variantUrls(String)}
+     * sau đó chỉ đọc cache (tránh N+1 khi map trang danh sách).
+     */
+    public void preload(Collection<String> imageUrls) {
+        long now = System.currentTimeMillis();
+        Set<String> objectNames = new HashSet<>();
+        for (String imageUrl : imageUrls) {
+            String objectName = storageService.objectNameFromPublicUrl(imageUrl);
+            if (objectName != null && !isCached(objectName, now)) {
+                objectNames.add(objectName);
+            }
+        }
+        if (!objectNames.isEmpty()) {
+            load(objectNames, now);
+        }
+    }
+
+    /**
+     * URL các bản thu nhỏ (key: thumbnail, card, detail) của ảnh; null khi chưa sinh xong
+     * hoặc ảnh không thuộc storage của mình (client dùng URL gốc).
+     */
+    public Map<String, String> variantUrls(String imageUrl) {
+        String objectName = storageService.objectNameFromPublicUrl(imageUrl);
+        if (objectName == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (!isCached(objectName, now)) {
+            load(Set.of(objectName), now);
+        }
+        String format = readyFormats.get(objectName);
+        if (format == null) {
+            return null;
+        }
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (Variant variant : Variant.values()) {
+            urls.put(variant.getKey(), storageService.publicUrl(variantObjectName(objectName, variant, format)));
+        }
+        return urls;
+    }
+
+    private boolean isCached(String objectName, long now) {
+        if (readyFormats.containsKey(objectName)) {
+            return true;
+        }
+        Long until = notReadyUntil.get(objectName);
+        if (until != null && until > now) {
+            return true;
+        }
+        until = missingUntil.get(objectName);
+        return until != null && until > now;
+    }
+
+    private void load(Set<String> objectNames, long now) {
+        Set<String> missing = new HashSet<>(objectNames);
+        for (Object[] row : imageAssetRepository.findVariantStates(objectNames)) {
+            String objectName = (String) row[0];
+            missing.remove(objectName);
+            missingUntil.remove(objectName);
+            if (row[1] == ImageAsset.VariantStatus.READY && row[2] != null) {
+                readyFormats.put(objectName, (String) row[2]);
+                notReadyUntil.remove(objectName);
+            } else {
+                notReadyUntil.put(objectName, now + notReadyCache.toMillis());
+            }
+        }
+        for (String objectName : missing) {
+            missingUntil.put(objectName, now + missingCache.toMillis());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${image.variants.sweep-interval:PT5M}")
+    public void retryPending() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        notReadyUntil.values().removeIf(until -> until <= now);
+        missingUntil.values().removeIf(until -> until <= now);
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity <= 0) {
+            return;
+        }
+        imageAssetRepository.findRetryable(RETRYABLE, Math.max(1, maxAttempts),
+                        LocalDateTime.now().minus(retryAfter), PageRequest.of(0, capacity))
+                .forEach(this::submit);
+    }
+
+    private void submit(String objectName) {
+        if (!inFlight.add(objectName)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(objectName);
+                } finally {
+                    inFlight.remove(objectName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Dòng vẫn PENDING, lần quét sau xử lý
+            inFlight.remove(objectName);
+            log.debug("Image variant queue full, deferring {}", objectName);
+        }
+    }
+
+    private void process(String objectName) {
+        long start = System.nanoTime();
+        try {
+            BufferedImage original;
+            try (InputStream in = storageService.download(objectName)) {
+                original = ImageIO.read(in);
+            }
+            if (original == null) {
+                // Định dạng ImageIO không đọc được (vd. WebP): không thử lại
+                fail(objectName, "Unsupported image format", true);
+                return;
+            }
+            boolean alpha = original.getColorModel().hasAlpha();
+            String format = alpha ? "png" : "jpg";
+            BufferedImage source = original;
+            for (Variant variant : Variant.values()) {
+                source = resize(source, variant.width, alpha);
+                storageService.uploadObject(variantObjectName(objectName, variant, format),
+                        encode(source, format), alpha ? "image/png" : "image/jpeg");
+            }
+            transactionTemplate.executeWithoutResult(status -> imageAssetRepository.markReady(objectName,
+                    ImageAsset.VariantStatus.READY, format, original.getWidth(), original.getHeight(), LocalDateTime.now()));
+            readyFormats.put(objectName, format);
+            notReadyUntil.remove(objectName);
+            log.debug("Generated variants for {} ({}x{}) in {} ms", objectName, original.getWidth(), original.getHeight(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot generate variants for {}: {}", objectName, e.getMessage());
+            fail(objectName, e.getClass().getSimpleName() + ": " + e.getMessage(), false);
+        }
+    }
+
+    private void fail(String objectName, String error, boolean permanent) {
+        String message = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (permanent) {
+                    imageAssetRepository.markFailedPermanently(objectName, ImageAsset.VariantStatus.FAILED, message,
+                            Math.max(1, maxAttempts), LocalDateTime.now());
+                } else {
+                    imageAssetRepository.markFailed(objectName, ImageAsset.VariantStatus.FAILED, message, LocalDateTime.now());
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Cannot record variant failure for {}: {}", objectName, e.getMessage());
+        }
+    }
+
+    static String variantObjectName(String objectName, Variant variant, String format) {
+        return objectName + "." + variant.getKey() + "." + format;
+    }
+
+    // Thu nhỏ theo chiều rộng, không phóng to; giảm dần mỗi lần 1/2 để ảnh không bị răng cưa
+    private static BufferedImage resize(BufferedImage source, int maxWidth, boolean alpha) {
+        int targetWidth = Math.min(maxWidth, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (!alpha) {
+                    // JPEG không có alpha: nền trắng thay vì đen
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, width, height);
+                }
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if ("png".equals(format)) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
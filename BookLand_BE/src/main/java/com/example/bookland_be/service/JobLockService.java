@@ -0,0 +1,76 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.repository.JobLockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Khoá job trên DB (bảng job_lock) để job định kỳ chỉ chạy ở 1 instance.
+ * Khoá có hạn (lockAtMost): instance chết giữa chừng thì hết hạn sẽ có instance khác chạy lại.
+ */
+@Service
+@Slf4j
+public class JobLockService {
+
+    private final JobLockRepository jobLockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+
+    public JobLockService(JobLockRepository jobLockRepository, PlatformTransactionManager transactionManager) {
+        this.jobLockRepository = jobLockRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Chạy task nếu chiếm được khoá, nhả khoá khi xong.
+     * @return false nếu instance khác đang giữ khoá (task không chạy)
+     */
+    public boolean runWithLock(String name, Duration lockAtMost, Runnable task) {
+        if (!tryAcquire(name, lockAtMost)) {
+            log.debug("Job {} is locked by another instance, skipping", name);
+            return false;
+        }
+        try {
+            task.run();
+            return true;
+        } finally {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        jobLockRepository.release(name, owner, LocalDateTime.now()));
+            } catch (RuntimeException e) {
+                // Khoá sẽ tự hết hạn sau lockAtMost
+                log.warn("Cannot release job lock {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private boolean tryAcquire(String name, Duration lockAtMost) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(lockAtMost);
+        Integer acquired = transactionTemplate.execute(status ->
+                jobLockRepository.acquire(name, owner, now, until));
+        if (acquired != null && acquired > 0) {
+            return true;
+        }
+        if (jobLockRepository.existsById(name)) {
+            return false;
+        }
+        // Lần đầu: tạo dòng khoá, instance khác tạo cùng lúc thì bị unique PK chặn
+        try {
+            transactionTemplate.executeWithoutResult(status -> jobLockRepository.insert(name, owner, now, until));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+}
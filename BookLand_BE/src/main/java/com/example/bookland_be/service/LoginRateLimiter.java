@@ -0,0 +1,65 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import com.example.bookland_be.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Giới hạn số lần đăng nhập theo IP và theo tài khoản (token bucket, lưu local).
+ * Vượt giới hạn => TOO_MANY_LOGIN_ATTEMPTS, chưa hề chạm tới BCrypt.
+ */
+@Service
+public class LoginRateLimiter {
+
+    private final Map<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> accountBuckets = new ConcurrentHashMap<>();
+
+    private final double ipCapacity;
+    private final double ipRefillPerSecond;
+    private final double accountCapacity;
+    private final double accountRefillPerSecond;
+    private final Counter ipRejected;
+    private final Counter accountRejected;
+
+    public LoginRateLimiter(MeterRegistry meterRegistry,
+                            @Value("${security.login-limit.ip.capacity:20}") double ipCapacity,
+                            @Value("${security.login-limit.ip.refill-per-minute:10}") double ipRefillPerMinute,
+                            @Value("${security.login-limit.account.capacity:5}") double accountCapacity,
+                            @Value("${security.login-limit.account.refill-per-minute:2}") double accountRefillPerMinute) {
+        this.ipCapacity = ipCapacity;
+        this.ipRefillPerSecond = ipRefillPerMinute / 60;
+        this.accountCapacity = accountCapacity;
+        this.accountRefillPerSecond = accountRefillPerMinute / 60;
+        this.ipRejected = Counter.builder("auth.login.rejected").tag("scope", "ip").register(meterRegistry);
+        this.accountRejected = Counter.builder("auth.login.rejected").tag("scope", "account").register(meterRegistry);
+    }
+
+    public void checkLogin(String ip, String account) {
+        if (ip != null && !ipBuckets.computeIfAbsent(ip,
+                key -> new TokenBucket(ipCapacity, ipRefillPerSecond)).tryConsume()) {
+            ipRejected.increment();
+            throw new AppException(ErrorCode.TOO_MANY_LOGIN_ATTEMPTS);
+        }
+        if (account != null && !accountBuckets.computeIfAbsent(account.trim().toLowerCase(Locale.ROOT),
+                key -> new TokenBucket(accountCapacity, accountRefillPerSecond)).tryConsume()) {
+            accountRejected.increment();
+            throw new AppException(ErrorCode.TOO_MANY_LOGIN_ATTEMPTS);
+        }
+    }
+
+    // Bỏ các bucket đã hồi đầy (IP / tài khoản không còn thử đăng nhập)
+    @Scheduled(fixedDelayString = "${security.login-limit.cleanup-interval:PT5M}")
+    public void cleanup() {
+        ipBuckets.values().removeIf(TokenBucket::isFull);
+        accountBuckets.values().removeIf(TokenBucket::isFull);
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.dto.request.BroadcastNotificationRequest;
+import com.example.bookland_be.dto.request.BroadcastNotificationRequest.Segment;
+import com.example.bookland_be.dto.response.NotificationBroadcastResponse;
+import com.example.bookland_be.dto.response.NotificationResponse;
+import com.example.bookland_be.entity.Notification.NotificationStatus;
+import com.example.bookland_be.entity.User;
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import com.example.bookland_be.repository.BillBookRepository;
+import com.example.bookland_be.repository.BookRepository;
+import com.example.bookland_be.repository.RoleRepository;
+import com.example.bookland_be.repository.UserRepository;
+import com.example.bookland_be.repository.WishlistRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gửi thông báo cho cả 1 nhóm user (tất cả, theo role, wishlist / đã mua 1 cuốn sách).
+ * Duyệt id người nhận theo từng chunk (seek theo id), mỗi chunk ghi bằng JDBC batch insert trong 1 transaction,
+ * cuối cùng chỉ publish 1 message lên /topic/notifications/... của nhóm thay vì N message /user/queue.
+ * Chạy nền trên 1 thread riêng (các broadcast xếp hàng lần lượt), tiến độ xem qua {@link #getStatus}.
+ */
+@Service
+@Slf4j
+public class NotificationBroadcastService {
+
+    public static final String TOPIC_PREFIX = "/topic/notifications/";
+    private static final String INSERT_SQL = "INSERT INTO notification " +
+            "(from_id, to_id, type, title, content, status, created_at, broadcast_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int MAX_TRACKED_JOBS = 100;
+
+    private final UserRepository userRepository;
+    private final WishlistRepository wishlistRepository;
+    private final BillBookRepository billBookRepository;
+    private final RoleRepository roleRepository;
+    private final BookRepository bookRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final UnreadCounterService unreadCounterService;
+    private final Timer broadcastTimer;
+    private final int chunkSize;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "notification-broadcast");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Các lần broadcast gần nhất (theo thứ tự tạo)
+    private final Map<String, NotificationBroadcastResponse> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, NotificationBroadcastResponse> eldest) {
+            return size() > MAX_TRACKED_JOBS;
+        }
+    };
+
+    public NotificationBroadcastService(UserRepository userRepository,
+                                        WishlistRepository wishlistRepository,
+                                        BillBookRepository billBookRepository,
+                                        RoleRepository roleRepository,
+                                        BookRepository bookRepository,
+                                        JdbcTemplate jdbcTemplate,
+                                        PlatformTransactionManager transactionManager,
+                                        SimpMessagingTemplate messagingTemplate,
+                                        UnreadCounterService unreadCounterService,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${notification.broadcast.chunk-size:1000}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.wishlistRepository = wishlistRepository;
+        this.billBookRepository = billBookRepository;
+        this.roleRepository = roleRepository;
+        this.bookRepository = bookRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.messagingTemplate = messagingTemplate;
+        this.unreadCounterService = unreadCounterService;
+        this.broadcastTimer = Timer.builder("notification.broadcast").register(meterRegistry);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public NotificationBroadcastResponse broadcast(BroadcastNotificationRequest request, Long fromUserId) {
+        validate(request);
+
+        NotificationBroadcastResponse job = NotificationBroadcastResponse.builder()
+                .broadcastId(UUID.randomUUID().toString())
+                .segment(segmentKey(request))
+                .topic(topicFor(request))
+                .status(NotificationBroadcastResponse.Status.RUNNING)
+                .startedAt(LocalDateTime.now())
+                .build();
+        NotificationBroadcastResponse accepted;
+        synchronized (jobs) {
+            jobs.put(job.getBroadcastId(), job);
+            accepted = snapshot(job);
+        }
+        executor.execute(() -> run(job, request, fromUserId));
+        return accepted;
+    }
+
+    public NotificationBroadcastResponse getStatus(String broadcastId) {
+        synchronized (jobs) {
+            NotificationBroadcastResponse job = jobs.get(broadcastId);
+            if (job == null) {
+                throw new AppException(ErrorCode.NOTIFICATION_BROADCAST_NOT_FOUND);
+            }
+            return snapshot(job);
+        }
+    }
+
+    private void run(NotificationBroadcastResponse job, BroadcastNotificationRequest request, Long fromUserId) {
+        long start = System.nanoTime();
+        LocalDateTime createdAt = LocalDateTime.now();
+        try {
+            long afterId = 0L;
+            Pageable chunk = PageRequest.of(0, chunkSize);
+            while (true) {
+                List<Long> recipientIds = nextRecipients(request, afterId, chunk);
+                if (recipientIds.isEmpty()) {
+                    break;
+                }
+                insertChunk(job.getBroadcastId(), recipientIds, request, fromUserId, createdAt);
+                afterId = recipientIds.get(recipientIds.size() - 1);
+                synchronized (jobs) {
+                    job.setRecipients(job.getRecipients() + recipientIds.size());
+                }
+                if (recipientIds.size() < chunkSize) {
+                    break;
+                }
+            }
+
+            messagingTemplate.convertAndSend(job.getTopic(), NotificationResponse.builder()
+                    .fromUserId(fromUserId)
+                    .type(request.getType())
+                    .title(request.getTitle())
+                    .content(request.getContent())
+                    .status(NotificationStatus.UNREAD)
+                    .createdAt(createdAt)
+                    .broadcastId(job.getBroadcastId())
+                    .build());
+            finish(job, start, NotificationBroadcastResponse.Status.COMPLETED, null);
+        } catch (RuntimeException e) {
+            log.error("Broadcast {} to {} failed after {} recipient(s)",
+                    job.getBroadcastId(), job.getSegment(), job.getRecipients(), e);
+            finish(job, start, NotificationBroadcastResponse.Status.FAILED, e.getMessage());
+        }
+    }
+
+    private List<Long> nextRecipients(BroadcastNotificationRequest request, long afterId, Pageable chunk) {
+        return switch (request.getSegment()) {
+            case ALL -> userRepository.findIdsByStatusAfter(User.UserStatus.ENABLE, afterId, chunk);
+            case ROLE -> userRepository.findIdsByRoleAndStatusAfter(request.getRoleName(),
+                    User.UserStatus.ENABLE, afterId, chunk);
+            case WISHLIST_BOOK -> wishlistRepository.findUserIdsByBookAfter(request.getBookId(),
+                    User.UserStatus.ENABLE, afterId, chunk);
+            case PURCHASED_BOOK -> billBookRepository.findBuyerIdsByBookAfter(request.getBookId(),
+                    User.UserStatus.ENABLE, afterId, chunk);
+        };
+    }
+
+    // MySQL gộp batch thành INSERT nhiều dòng khi bật rewriteBatchedStatements (application.properties)
+    private void insertChunk(String broadcastId, List<Long> recipientIds, BroadcastNotificationRequest request,
+                             Long fromUserId, LocalDateTime createdAt) {
+        Timestamp timestamp = Timestamp.valueOf(createdAt);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, recipientIds, recipientIds.size(), (ps, toUserId) -> {
+                if (fromUserId != null) {
+                    ps.setLong(1, fromUserId);
+                } else {
+                    ps.setNull(1, Types.BIGINT);
+                }
+                ps.setLong(2, toUserId);
+                ps.setString(3, request.getType());
+                ps.setString(4, request.getTitle());
+                ps.setString(5, request.getContent());
+                ps.setString(6, NotificationStatus.UNREAD.name());
+                ps.setTimestamp(7, timestamp);
+                ps.setString(8, broadcastId);
+            });
+            unreadCounterService.evictAfterCommit(UnreadCounterService.Kind.NOTIFICATION, recipientIds);
+        });
+    }
+
+    private void finish(NotificationBroadcastResponse job, long start, NotificationBroadcastResponse.Status status,
+                        String error) {
+        long elapsedNanos = System.nanoTime() - start;
+        broadcastTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        synchronized (jobs) {
+            job.setStatus(status);
+            job.setError(error);
+            job.setFinishedAt(LocalDateTime.now());
+            job.setDurationMs(durationMs);
+            job.setRecipientsPerSecond(job.getRecipients() * 1000 / Math.max(1, durationMs));
+        }
+        log.info("Broadcast {} to {}: {} recipient(s) in {} ms ({} /s), status {}",
+                job.getBroadcastId(), job.getSegment(), job.getRecipients(), durationMs,
+                job.getRecipientsPerSecond(), status);
+    }
+
+    private void validate(BroadcastNotificationRequest request) {
+        if (request.getSegment() == null || isBlank(request.getType()) || isBlank(request.getTitle())) {
+            throw new AppException(ErrorCode.NOTIFICATION_BROADCAST_INVALID);
+        }
+        switch (request.getSegment()) {
+            case ROLE -> {
+                if (isBlank(request.getRoleName())) {
+                    throw new AppException(ErrorCode.NOTIFICATION_BROADCAST_INVALID);
+                }
+                if (!roleRepository.existsByName(request.getRoleName())) {
+                    throw new AppException(ErrorCode.ROLE_NOT_FOUND);
+                }
+            }
+            case WISHLIST_BOOK, PURCHASED_BOOK -> {
+                if (request.getBookId() == null) {
+                    throw new AppException(ErrorCode.NOTIFICATION_BROADCAST_INVALID);
+                }
+                if (!bookRepository.existsById(request.getBookId())) {
+                    throw new AppException(ErrorCode.BOOK_NOT_FOUND);
+                }
+            }
+            case ALL -> {
+            }
+        }
+    }
+
+    // Client subscribe topic của nhóm mình: all, role/{ROLE}, wishlist/{bookId}, purchased/{bookId}
+    private static String topicFor(BroadcastNotificationRequest request) {
+        return TOPIC_PREFIX + switch (request.getSegment()) {
+            case ALL -> "all";
+            case ROLE -> "role/" + request.getRoleName();
+            case WISHLIST_BOOK -> "wishlist/" + request.getBookId();
+            case PURCHASED_BOOK -> "purchased/" + request.getBookId();
+        };
+    }
+
+    private static String segmentKey(BroadcastNotificationRequest request) {
+        Segment segment = request.getSegment();
+        return switch (segment) {
+            case ALL -> segment.name();
+            case ROLE -> segment.name() + ":" + request.getRoleName();
+            case WISHLIST_BOOK, PURCHASED_BOOK -> segment.name() + ":" + request.getBookId();
+        };
+    }
+
+    // Gọi trong synchronized (jobs): job vẫn đang được thread broadcast cập nhật
+    private static NotificationBroadcastResponse snapshot(NotificationBroadcastResponse job) {
+        return NotificationBroadcastResponse.builder()
+                .broadcastId(job.getBroadcastId())
+                .segment(job.getSegment())
+                .topic(job.getTopic())
+                .status(job.getStatus())
+                .recipients(job.getRecipients())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .durationMs(job.getDurationMs())
+                .recipientsPerSecond(job.getRecipientsPerSecond())
+                .error(job.getError())
+                .build();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -26,6 +26,7 @@ public class NotificationService {
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final UnreadCounterService unreadCounterService;
 
     @Transactional(readOnly = true)
     public Page<NotificationResponse> getNotifications(Long userId, Pageable pageable) {
@@ -35,26 +36,33 @@ public class NotificationService {
 
     @Transactional(readOnly = true)
     public long countUnread(Long userId) {
-        return notificationRepository.countUnreadByUserId(userId);
+        return unreadCounterService.get(UnreadCounterService.Kind.NOTIFICATION, userId,
+                () -> notificationRepository.countUnreadByUserId(userId));
     }
 
     @Transactional
     public void markAsRead(Long id) {
-        Notification notification = notificationRepository.findById(id)
+        Long toUserId = notificationRepository.findRecipientIdById(id)
                 .orElseThrow(() -> new AppException(ErrorCode.BOOK_NOT_FOUND)); // Reuse existing error or create new one
-        notification.setStatus(NotificationStatus.READ);
-        notification.setReadAt(LocalDateTime.now());
-        notificationRepository.save(notification);
+        int updated = notificationRepository.markAsRead(id, LocalDateTime.now());
+        unreadCounterService.adjustAfterCommit(UnreadCounterService.Kind.NOTIFICATION, toUserId, -updated);
     }
 
     @Transactional
     public void markAllAsRead(Long userId) {
         notificationRepository.markAllAsReadByUserId(userId, LocalDateTime.now());
+        unreadCounterService.resetAfterCommit(UnreadCounterService.Kind.NOTIFICATION, userId);
     }
 
     @Transactional
     public void deleteNotification(Long id) {
-        notificationRepository.deleteById(id);
+        notificationRepository.findById(id).ifPresent(notification -> {
+            notificationRepository.delete(notification);
+            if (notification.getStatus() == NotificationStatus.UNREAD) {
+                unreadCounterService.adjustAfterCommit(UnreadCounterService.Kind.NOTIFICATION,
+                        notification.getTo().getId(), -1);
+            }
+        });
     }
 
     @Transactional
@@ -82,6 +90,7 @@ public class NotificationService {
                 .build();
 
         Notification saved = notificationRepository.save(notification);
+        unreadCounterService.adjustAfterCommit(UnreadCounterService.Kind.NOTIFICATION, toUserId, 1);
         NotificationResponse response = convertToResponse(saved);
 
         // Send WebSocket notification
@@ -108,6 +117,7 @@ public class NotificationService {
                 .status(notification.getStatus())
                 .readAt(notification.getReadAt())
                 .createdAt(notification.getCreatedAt())
+                .broadcastId(notification.getBroadcastId())
                 .build();
     }
 }
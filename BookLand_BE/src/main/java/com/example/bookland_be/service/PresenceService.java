@@ -0,0 +1,466 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.dto.UserPrincipal;
+import com.example.bookland_be.dto.request.TypingRequest;
+import com.example.bookland_be.dto.response.PresenceChangeResponse;
+import com.example.bookland_be.dto.response.PresenceDeltaResponse;
+import com.example.bookland_be.dto.response.TypingEventResponse;
+import com.example.bookland_be.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trạng thái online của user theo session STOMP (CONNECT / DISCONNECT / heartbeat) và typing indicator.
+ * Thay đổi được gộp lại rồi publish định kỳ lên /topic/presence (chỉ staff subscribe được),
+ * online -> offline -> online trong cùng 1 cửa sổ thì không gửi gì.
+ * Số session của mỗi user là toàn cục (nhiều node): Redis hash presence:user:{email} (sessionId -> hết hạn lúc,
+ * heartbeat gia hạn) và zset presence:online (email -> hết hạn muộn nhất). Delta chỉ phát khi số session
+ * toàn cục đi 0 -> 1 hoặc 1 -> 0 (script Lua báo chuyển trạng thái, đúng 1 node thấy nên chỉ 1 node publish).
+ * Node chết không kịp DISCONNECT thì session hết hạn, sweep của node bất kỳ sẽ phát offline.
+ * Redis lỗi thì quay về trạng thái theo node (local).
+ */
+@Service
+@Slf4j
+public class PresenceService {
+
+    public static final String PRESENCE_TOPIC = "/topic/presence";
+    private static final String TYPING_QUEUE = "/queue/typing";
+    private static final int SHARD_COUNT = 16;
+    private static final String USER_KEY_PREFIX = "presence:user:";
+    private static final String ONLINE_KEY = "presence:online";
+
+    // KEYS = [hash của user, zset online]; ARGV = [email, sessionId, now, ttl]
+    // Thêm / gia hạn session, dọn field hết hạn; trả 1 nếu trước đó user không còn session sống (0 -> 1)
+    private static final RedisScript<Long> UPSERT_SESSION = new DefaultRedisScript<>(
+            "local now = tonumber(ARGV[3]) " +
+            "local live = 0 " +
+            "local entries = redis.call('HGETALL', KEYS[1]) " +
+            "for i = 1, #entries, 2 do " +
+            "  if tonumber(entries[i + 1]) <= now then redis.call('HDEL', KEYS[1], entries[i]) " +
+            "  else live = live + 1 end " +
+            "end " +
+            "local expiresAt = now + tonumber(ARGV[4]) " +
+            "redis.call('HSET', KEYS[1], ARGV[2], expiresAt) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[4]) " +
+            "redis.call('ZADD', KEYS[2], expiresAt, ARGV[1]) " +
+            "if live == 0 then return 1 end " +
+            "return 0",
+            Long.class);
+
+    // KEYS = [hash của user, zset online]; ARGV = [email, sessionId ("" khi chỉ dọn), now]
+    // Bỏ session và field hết hạn; trả 1 nếu user vừa hết session sống (1 -> 0), ZREM đảm bảo chỉ 1 lần
+    private static final RedisScript<Long> REMOVE_SESSION = new DefaultRedisScript<>(
+            "if ARGV[2] ~= '' then redis.call('HDEL', KEYS[1], ARGV[2]) end " +
+            "local now = tonumber(ARGV[3]) " +
+            "local live = 0 " +
+            "local entries = redis.call('HGETALL', KEYS[1]) " +
+            "for i = 1, #entries, 2 do " +
+            "  if tonumber(entries[i + 1]) <= now then redis.call('HDEL', KEYS[1], entries[i]) " +
+            "  else live = live + 1 end " +
+            "end " +
+            "if live > 0 then return 0 end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "return redis.call('ZREM', KEYS[2], ARGV[1])",
+            Long.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final UserPrincipalService userPrincipalService;
+    private final UserRepository userRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final long ttlMillis;
+    // Heartbeat đến liên tục, chỉ gia hạn trên Redis sau mỗi khoảng này
+    private final long refreshIntervalMillis;
+    private final long typingTimeoutMillis;
+
+    // email -> các session đang mở; chia shard để connect / heartbeat của nhiều user không tranh cùng bảng
+    private final Map<String, UserPresence>[] shards;
+    // sessionId -> email (heartbeat / DISCONNECT chỉ có sessionId)
+    private final Map<String, String> sessionOwners = new ConcurrentHashMap<>();
+    // sessionId -> lần gia hạn trên Redis gần nhất
+    private final Map<String, Long> lastRefreshed = new ConcurrentHashMap<>();
+    // Chờ flush: email -> online
+    private final Map<String, Boolean> pendingPresence = new ConcurrentHashMap<>();
+    // Chờ flush: "from:to" -> typing event mới nhất
+    private final Map<String, TypingEventResponse> pendingTyping = new ConcurrentHashMap<>();
+    // Typing đang bật: "from:to" -> hết hạn lúc (client không gửi stop thì tự tắt)
+    private final Map<String, ActiveTyping> activeTyping = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public PresenceService(SimpMessagingTemplate messagingTemplate,
+                           UserPrincipalService userPrincipalService,
+                           UserRepository userRepository,
+                           StringRedisTemplate stringRedisTemplate,
+                           @Value("${chat.presence.ttl:PT1M}") Duration ttl,
+                           @Value("${chat.presence.typing-timeout:PT6S}") Duration typingTimeout) {
+        this.messagingTemplate = messagingTemplate;
+        this.userPrincipalService = userPrincipalService;
+        this.userRepository = userRepository;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttlMillis = ttl.toMillis();
+        this.refreshIntervalMillis = ttl.toMillis() / 4;
+        this.typingTimeoutMillis = typingTimeout.toMillis();
+        this.shards = new Map[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    public void connect(String sessionId, String email) {
+        if (sessionId == null || email == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        sessionOwners.put(sessionId, email);
+        boolean[] firstLocal = new boolean[1];
+        shard(email).compute(email, (key, presence) -> {
+            if (presence == null) {
+                presence = new UserPresence();
+            }
+            firstLocal[0] = presence.sessions.isEmpty();
+            presence.sessions.put(sessionId, now);
+            presence.lastSeen = now;
+            return presence;
+        });
+        Boolean cameOnline = upsertShared(email, sessionId, now);
+        if (cameOnline != null ? cameOnline : firstLocal[0]) {
+            markChanged(email, true);
+        }
+    }
+
+    public void disconnect(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        String email = sessionOwners.remove(sessionId);
+        if (email == null) {
+            return;
+        }
+        boolean[] lastLocal = new boolean[1];
+        shard(email).computeIfPresent(email, (key, presence) -> {
+            presence.sessions.remove(sessionId);
+            presence.lastSeen = System.currentTimeMillis();
+            lastLocal[0] = presence.sessions.isEmpty();
+            return lastLocal[0] ? null : presence;
+        });
+        sessionRemoved(email, sessionId, lastLocal[0]);
+    }
+
+    // Heartbeat hoặc bất kỳ frame nào từ client
+    public void touch(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        String email = sessionOwners.get(sessionId);
+        if (email == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        shard(email).computeIfPresent(email, (key, presence) -> {
+            presence.sessions.computeIfPresent(sessionId, (id, lastSeen) -> now);
+            presence.lastSeen = now;
+            return presence;
+        });
+        Long refreshed = lastRefreshed.get(sessionId);
+        if (refreshed == null || now - refreshed >= refreshIntervalMillis) {
+            // Session đã bị coi là hết hạn trên Redis (vd. GC dừng lâu) thì gia hạn lại là 0 -> 1
+            if (Boolean.TRUE.equals(upsertShared(email, sessionId, now))) {
+                markChanged(email, true);
+            }
+        }
+    }
+
+    public void typing(String fromEmail, TypingRequest request) {
+        if (fromEmail == null || request == null || request.getToUserId() == null) {
+            return;
+        }
+        UserPrincipal from = userPrincipalService.loadByEmail(fromEmail);
+        if (from == null || from.getId().equals(request.getToUserId())) {
+            return;
+        }
+
+        String key = from.getId() + ":" + request.getToUserId();
+        TypingEventResponse event = TypingEventResponse.builder()
+                .fromUserId(from.getId())
+                .fromEmail(from.getEmail())
+                .toUserId(request.getToUserId())
+                .typing(request.isTyping())
+                .build();
+        if (request.isTyping()) {
+            // Đang gõ liên tục thì chỉ gia hạn, không tạo event mới
+            ActiveTyping previous = activeTyping.put(key,
+                    new ActiveTyping(event, System.currentTimeMillis() + typingTimeoutMillis));
+            if (previous != null) {
+                return;
+            }
+        } else if (activeTyping.remove(key) == null) {
+            return;
+        }
+        pendingTyping.put(key, event);
+    }
+
+    public boolean isOnline(String email) {
+        if (email == null) {
+            return false;
+        }
+        try {
+            Double expiresAt = stringRedisTemplate.opsForZSet().score(ONLINE_KEY, email);
+            return expiresAt != null && expiresAt > System.currentTimeMillis();
+        } catch (RuntimeException e) {
+            log.debug("Redis unavailable, using local presence for {}: {}", email, e.getMessage());
+            // User hết session thì bị xoá khỏi shard
+            return shard(email).containsKey(email);
+        }
+    }
+
+    /**
+     * User online trên mọi node (zset presence:online còn hạn); lastSeen = lần gia hạn gần nhất
+     */
+    public List<PresenceChangeResponse> getOnlineUsers() {
+        Set<ZSetOperations.TypedTuple<String>> online;
+        try {
+            online = stringRedisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(ONLINE_KEY, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        } catch (RuntimeException e) {
+            log.debug("Redis unavailable, listing local presence only: {}", e.getMessage());
+            return getLocalOnlineUsers();
+        }
+        List<PresenceChangeResponse> result = new ArrayList<>();
+        if (online == null) {
+            return result;
+        }
+        for (ZSetOperations.TypedTuple<String> entry : online) {
+            String email = entry.getValue();
+            Long userId = resolveUserId(email, shard(email).get(email));
+            if (userId != null && entry.getScore() != null) {
+                result.add(toChange(userId, email, true, entry.getScore().longValue() - ttlMillis));
+            }
+        }
+        return result;
+    }
+
+    private List<PresenceChangeResponse> getLocalOnlineUsers() {
+        List<PresenceChangeResponse> result = new ArrayList<>();
+        for (Map<String, UserPresence> shard : shards) {
+            shard.forEach((email, presence) -> {
+                Long userId = resolveUserId(email, presence);
+                if (userId != null) {
+                    result.add(toChange(userId, email, true, presence.lastSeen));
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Session không có heartbeat / frame nào quá TTL (mất kết nối mà không có DISCONNECT) => bỏ.
+     * Sau đó dọn user mà mọi session trên Redis đã hết hạn (kể cả session của node đã chết).
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.sweep-interval:PT15S}")
+    public void sweepExpiredSessions() {
+        long now = System.currentTimeMillis();
+        long cutoff = now - ttlMillis;
+        for (Map<String, UserPresence> shard : shards) {
+            for (String email : shard.keySet()) {
+                List<String> expired = new ArrayList<>();
+                boolean[] lastLocal = new boolean[1];
+                shard.computeIfPresent(email, (key, presence) -> {
+                    presence.sessions.entrySet().removeIf(session -> {
+                        if (session.getValue() < cutoff) {
+                            sessionOwners.remove(session.getKey());
+                            expired.add(session.getKey());
+                            return true;
+                        }
+                        return false;
+                    });
+                    lastLocal[0] = presence.sessions.isEmpty();
+                    return lastLocal[0] ? null : presence;
+                });
+                for (int i = 0; i < expired.size(); i++) {
+                    sessionRemoved(email, expired.get(i), lastLocal[0] && i == expired.size() - 1);
+                }
+            }
+        }
+
+        Set<String> stale;
+        try {
+            stale = stringRedisTemplate.opsForZSet().rangeByScore(ONLINE_KEY, Double.NEGATIVE_INFINITY, now);
+        } catch (RuntimeException e) {
+            log.debug("Cannot sweep shared presence: {}", e.getMessage());
+            return;
+        }
+        if (stale != null) {
+            stale.forEach(email -> {
+                if (Boolean.TRUE.equals(removeShared(email, "", now))) {
+                    markChanged(email, false);
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.flush-interval:PT1S}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        activeTyping.forEach((key, active) -> {
+            if (active.expiresAt() < now && activeTyping.remove(key, active)) {
+                pendingTyping.put(key, TypingEventResponse.builder()
+                        .fromUserId(active.event().getFromUserId())
+                        .fromEmail(active.event().getFromEmail())
+                        .toUserId(active.event().getToUserId())
+                        .typing(false)
+                        .build());
+            }
+        });
+
+        if (pendingPresence.isEmpty() && pendingTyping.isEmpty()) {
+            return;
+        }
+
+        List<PresenceChangeResponse> presence = new ArrayList<>();
+        for (String email : pendingPresence.keySet()) {
+            Boolean online = pendingPresence.remove(email);
+            if (online == null) {
+                continue;
+            }
+            UserPresence current = shard(email).get(email);
+            Long userId = resolveUserId(email, current);
+            if (userId != null) {
+                presence.add(toChange(userId, email, online, current != null ? current.lastSeen : now));
+            }
+        }
+
+        List<TypingEventResponse> typing = new ArrayList<>();
+        for (String key : pendingTyping.keySet()) {
+            TypingEventResponse event = pendingTyping.remove(key);
+            if (event != null) {
+                typing.add(event);
+            }
+        }
+
+        if (presence.isEmpty() && typing.isEmpty()) {
+            return;
+        }
+        try {
+            messagingTemplate.convertAndSend(PRESENCE_TOPIC, PresenceDeltaResponse.builder()
+                    .presence(presence)
+                    .typing(typing)
+                    .at(LocalDateTime.now())
+                    .build());
+            sendTypingToRecipients(typing);
+        } catch (RuntimeException e) {
+            log.warn("Cannot publish presence delta: {}", e.getMessage());
+        }
+    }
+
+    // Khách hàng không subscribe /topic/presence => gửi typing riêng cho người nhận
+    private void sendTypingToRecipients(List<TypingEventResponse> typing) {
+        if (typing.isEmpty()) {
+            return;
+        }
+        Map<Long, String> recipientEmails = new HashMap<>();
+        userRepository.findAllById(typing.stream().map(TypingEventResponse::getToUserId).distinct().toList())
+                .forEach(user -> recipientEmails.put(user.getId(), user.getEmail()));
+        for (TypingEventResponse event : typing) {
+            String toEmail = recipientEmails.get(event.getToUserId());
+            if (toEmail != null && isOnline(toEmail)) {
+                messagingTemplate.convertAndSendToUser(toEmail, TYPING_QUEUE, event);
+            }
+        }
+    }
+
+    private void sessionRemoved(String email, String sessionId, boolean lastLocal) {
+        lastRefreshed.remove(sessionId);
+        Boolean wentOffline = removeShared(email, sessionId, System.currentTimeMillis());
+        if (wentOffline != null ? wentOffline : lastLocal) {
+            markChanged(email, false);
+        }
+    }
+
+    /**
+     * @return user vừa có session sống đầu tiên trên toàn cụm; null nếu Redis lỗi
+     */
+    private Boolean upsertShared(String email, String sessionId, long now) {
+        try {
+            Long result = stringRedisTemplate.execute(UPSERT_SESSION, List.of(USER_KEY_PREFIX + email, ONLINE_KEY),
+                    email, sessionId, Long.toString(now), Long.toString(ttlMillis));
+            lastRefreshed.put(sessionId, now);
+            return result != null && result == 1L;
+        } catch (RuntimeException e) {
+            log.debug("Cannot update shared presence of {}: {}", email, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return user vừa hết session sống trên toàn cụm; null nếu Redis lỗi
+     */
+    private Boolean removeShared(String email, String sessionId, long now) {
+        try {
+            Long result = stringRedisTemplate.execute(REMOVE_SESSION, List.of(USER_KEY_PREFIX + email, ONLINE_KEY),
+                    email, sessionId, Long.toString(now));
+            return result != null && result == 1L;
+        } catch (RuntimeException e) {
+            log.debug("Cannot remove shared presence of {}: {}", email, e.getMessage());
+            return null;
+        }
+    }
+
+    // Chỉ giữ thay đổi thực: trạng thái chờ ngược với trạng thái mới => 2 lần đổi triệt tiêu nhau
+    private void markChanged(String email, boolean online) {
+        pendingPresence.merge(email, online, (pending, next) -> pending.equals(next) ? pending : null);
+    }
+
+    private Long resolveUserId(String email, UserPresence presence) {
+        if (presence != null && presence.userId != null) {
+            return presence.userId;
+        }
+        UserPrincipal principal = userPrincipalService.loadByEmail(email);
+        if (principal == null) {
+            return null;
+        }
+        if (presence != null) {
+            presence.userId = principal.getId();
+        }
+        return principal.getId();
+    }
+
+    private Map<String, UserPresence> shard(String email) {
+        return shards[Math.floorMod(email.hashCode(), SHARD_COUNT)];
+    }
+
+    private static PresenceChangeResponse toChange(Long userId, String email, boolean online, long lastSeen) {
+        return PresenceChangeResponse.builder()
+                .userId(userId)
+                .email(email)
+                .online(online)
+                .lastSeen(LocalDateTime.ofInstant(Instant.ofEpochMilli(lastSeen), ZoneId.systemDefault()))
+                .build();
+    }
+
+    // sessions chỉ được sửa trong compute của shard (khoá theo key)
+    private static final class UserPresence {
+        private final Map<String, Long> sessions = new HashMap<>();
+        private volatile long lastSeen;
+        private volatile Long userId;
+    }
+
+    private record ActiveTyping(TypingEventResponse event, long expiresAt) {
+    }
+}
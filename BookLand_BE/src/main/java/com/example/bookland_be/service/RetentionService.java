@@ -0,0 +1,191 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.entity.Cart;
+import com.example.bookland_be.entity.Notification;
+import com.example.bookland_be.repository.CartItemRepository;
+import com.example.bookland_be.repository.CartRepository;
+import com.example.bookland_be.repository.ChatMessageRepository;
+import com.example.bookland_be.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Dọn dữ liệu cũ theo từng policy (notification, giỏ bỏ quên, tin nhắn chat).
+ * Mỗi policy duyệt id theo seek (id > afterId) từng batch nhỏ, mỗi batch 1 transaction ngắn rồi nghỉ batch-pause
+ * để không giữ lock lâu trên bảng đang dùng. Mỗi policy có khoá DB riêng (job_lock) nên chỉ 1 instance chạy.
+ * Đặt thời gian giữ của policy = 0 để tắt policy đó.
+ */
+@Service
+@Slf4j
+public class RetentionService {
+
+    @FunctionalInterface
+    private interface BatchFinder {
+        List<Long> find(LocalDateTime cutoff, long afterId, Pageable batch);
+    }
+
+    @FunctionalInterface
+    private interface BatchAction {
+        int apply(List<Long> ids);
+    }
+
+    private record Policy(String name, Duration retention, BatchFinder finder, BatchAction action) {
+    }
+
+    private final JobLockService jobLockService;
+    private final TransactionTemplate transactionTemplate;
+    private final CartRepository cartRepository;
+    private final List<Policy> policies;
+
+    @Value("${retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${retention.batch-size:500}")
+    private int batchSize;
+
+    @Value("${retention.batch-pause:PT0.2S}")
+    private Duration batchPause;
+
+    @Value("${retention.max-batches-per-run:1000}")
+    private int maxBatchesPerRun;
+
+    @Value("${retention.lock-at-most:PT1H}")
+    private Duration lockAtMost;
+
+    public RetentionService(JobLockService jobLockService,
+                            PlatformTransactionManager transactionManager,
+                            NotificationRepository notificationRepository,
+                            CartRepository cartRepository,
+                            CartItemRepository cartItemRepository,
+                            ChatMessageRepository chatMessageRepository,
+                            UnreadCounterService unreadCounterService,
+                            @Value("${retention.notification.read-after:P30D}") Duration readNotificationRetention,
+                            @Value("${retention.notification.max-age:P180D}") Duration notificationMaxAge,
+                            @Value("${retention.cart.abandoned-after:P90D}") Duration abandonedCartRetention,
+                            @Value("${retention.chat.archive-after:P365D}") Duration chatArchiveAfter) {
+        this.jobLockService = jobLockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cartRepository = cartRepository;
+        this.policies = List.of(
+                // Thông báo đã đọc
+                new Policy("notification-read", readNotificationRetention,
+                        (cutoff, afterId, batch) -> notificationRepository.findIdsByStatusCreatedBefore(
+                                Notification.NotificationStatus.READ, cutoff, afterId, batch),
+                        ids -> {
+                            notificationRepository.deleteAllByIdInBatch(ids);
+                            return ids.size();
+                        }),
+                // Mọi thông báo quá cũ; xoá cả UNREAD nên phải làm mới badge của người nhận
+                new Policy("notification-expired", notificationMaxAge,
+                        notificationRepository::findIdsCreatedBefore,
+                        ids -> {
+                            List<Long> recipients = notificationRepository.findUnreadRecipientIds(ids);
+                            notificationRepository.deleteAllByIdInBatch(ids);
+                            unreadCounterService.evictAfterCommit(UnreadCounterService.Kind.NOTIFICATION, recipients);
+                            return ids.size();
+                        }),
+                // Giỏ BUYING bỏ quên (lâu không thêm / sửa / xoá món). Bill tạo từ danh sách sách gửi lên
+                // nên giỏ không bao giờ chuyển CHECKED_OUT. Giỏ chưa backfill lastActivityAt (null) không bao giờ khớp
+                new Policy("cart-abandoned", abandonedCartRetention,
+                        (cutoff, afterId, batch) -> cartRepository.findIdsByStatusInactiveSince(
+                                Cart.CartStatus.BUYING, cutoff, afterId, batch),
+                        ids -> {
+                            List<Long> stale = cartRepository.lockIdsByStatusInactiveSince(ids,
+                                    Cart.CartStatus.BUYING, LocalDateTime.now().minus(abandonedCartRetention));
+                            if (stale.isEmpty()) {
+                                return 0;
+                            }
+                            cartItemRepository.deleteByCartIdIn(stale);
+                            return cartRepository.deleteByIdIn(stale);
+                        }),
+                // Tin nhắn đã đọc: chuyển sang chat_message_archive rồi xoá khỏi bảng nóng
+                new Policy("chat-archive", chatArchiveAfter,
+                        chatMessageRepository::findReadIdsCreatedBefore,
+                        ids -> {
+                            chatMessageRepository.archiveByIds(ids, LocalDateTime.now());
+                            return chatMessageRepository.deleteByIdIn(ids);
+                        }));
+    }
+
+    @Scheduled(cron = "${retention.cron:0 30 3 * * *}")
+    public void runAll() {
+        if (!enabled) {
+            return;
+        }
+        for (Policy policy : policies) {
+            if (policy.retention().isZero() || policy.retention().isNegative()) {
+                continue;
+            }
+            jobLockService.runWithLock("retention:" + policy.name(), lockAtMost, () -> run(policy));
+        }
+    }
+
+    /**
+     * Giỏ có từ trước khi theo dõi lastActivityAt: gán thời điểm deploy theo từng batch
+     * (chỉ dòng còn null nên chạy lại / nhiều node cùng chạy đều an toàn).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCartActivity() {
+        LocalDateTime now = LocalDateTime.now();
+        int limit = Math.max(1, batchSize);
+        long updated = 0;
+        try {
+            while (true) {
+                Integer affected = transactionTemplate.execute(status -> cartRepository.backfillLastActivity(now, limit));
+                updated += affected != null ? affected : 0;
+                if (affected == null || affected < limit) {
+                    break;
+                }
+                LockSupport.parkNanos(batchPause.toNanos());
+            }
+        } catch (RuntimeException e) {
+            log.error("Cart activity backfill failed after {} row(s)", updated, e);
+        }
+        if (updated > 0) {
+            log.info("Backfilled last activity of {} cart(s) to {}", updated, now);
+        }
+    }
+
+    private void run(Policy policy) {
+        LocalDateTime cutoff = LocalDateTime.now().minus(policy.retention());
+        Pageable batch = PageRequest.of(0, Math.max(1, batchSize));
+        long afterId = 0L;
+        long processed = 0;
+        int batches = 0;
+        try {
+            while (batches < maxBatchesPerRun) {
+                List<Long> ids = policy.finder().find(cutoff, afterId, batch);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                Integer affected = transactionTemplate.execute(status -> policy.action().apply(ids));
+                processed += affected != null ? affected : 0;
+                afterId = ids.get(ids.size() - 1);
+                batches++;
+                if (ids.size() < batch.getPageSize()) {
+                    break;
+                }
+                LockSupport.parkNanos(batchPause.toNanos());
+            }
+        } catch (RuntimeException e) {
+            log.error("Retention policy {} failed after {} row(s)", policy.name(), processed, e);
+        }
+        if (processed > 0) {
+            log.info("Retention policy {}: {} row(s) older than {} in {} batch(es)",
+                    policy.name(), processed, cutoff, batches);
+        }
+    }
+}
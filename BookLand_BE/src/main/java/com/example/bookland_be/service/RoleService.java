@@ -17,6 +17,7 @@ import org.springframework.transaction.annotation.Transactional;
 public class RoleService {
 
     private final RoleRepository roleRepository;
+    private final AuthorityScopeService authorityScopeService;
 
     @Transactional(readOnly = true)
     public Page<RoleDTO> getAllRoles(String keyword, Pageable pageable) {
@@ -69,6 +70,7 @@ public class RoleService {
         role.setDescription(request.getDescription());
 
         Role updatedRole = roleRepository.save(role);
+        authorityScopeService.invalidateAfterCommit();
         return convertToDTO(updatedRole);
     }
 
@@ -83,6 +85,7 @@ public class RoleService {
         }
 
         roleRepository.delete(role);
+        authorityScopeService.invalidateAfterCommit();
     }
 
     private RoleDTO convertToDTO(Role role) {
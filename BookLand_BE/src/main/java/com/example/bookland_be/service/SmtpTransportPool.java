@@ -0,0 +1,144 @@
+package com.example.bookland_be.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Pool kết nối SMTP dùng lại cho gửi email hàng loạt.
+ * JavaMailSender.send() mở 1 kết nối (TCP + STARTTLS + AUTH) cho mỗi lần gửi; ở đây mỗi Transport
+ * được giữ mở và gửi tối đa max-messages-per-connection thư rồi mới kết nối lại
+ * (server như Gmail giới hạn số thư trên 1 phiên). Kết nối rảnh quá idle-timeout thì đóng.
+ */
+@Service
+@Slf4j
+public class SmtpTransportPool {
+
+    private static final class PooledTransport {
+        private final Transport transport;
+        private int sent;
+        private long lastUsed;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    private final JavaMailSenderImpl mailSender;
+    private final int poolSize;
+    private final int maxMessagesPerConnection;
+    private final long idleTimeoutMillis;
+    private final Semaphore permits;
+    // Dùng LIFO để kết nối vừa dùng (còn "nóng") được lấy trước, kết nối ít dùng sẽ hết hạn và bị đóng
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+
+    public SmtpTransportPool(JavaMailSenderImpl mailSender,
+                             @Value("${mail.smtp.pool-size:4}") int poolSize,
+                             @Value("${mail.smtp.max-messages-per-connection:100}") int maxMessagesPerConnection,
+                             @Value("${mail.smtp.idle-timeout:PT60S}") Duration idleTimeout) {
+        this.mailSender = mailSender;
+        this.poolSize = Math.max(1, poolSize);
+        this.maxMessagesPerConnection = Math.max(1, maxMessagesPerConnection);
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.permits = new Semaphore(this.poolSize, true);
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public MimeMessage createMimeMessage() {
+        return mailSender.createMimeMessage();
+    }
+
+    /**
+     * Gửi qua 1 kết nối trong pool. Lỗi kết nối / giao thức thì bỏ kết nối đó (lần sau mở mới);
+     * SendFailedException (địa chỉ bị từ chối) không làm hỏng phiên nên kết nối vẫn được trả lại pool.
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+        }
+        PooledTransport pooled = null;
+        boolean reusable = false;
+        try {
+            pooled = borrow();
+            message.saveChanges();
+            pooled.transport.sendMessage(message, message.getAllRecipients());
+            pooled.sent++;
+            reusable = true;
+        } catch (SendFailedException e) {
+            reusable = pooled != null;
+            throw e;
+        } finally {
+            if (pooled != null) {
+                if (reusable && pooled.sent < maxMessagesPerConnection && pooled.transport.isConnected()) {
+                    pooled.lastUsed = System.currentTimeMillis();
+                    idle.offerFirst(pooled);
+                } else {
+                    close(pooled);
+                }
+            }
+            permits.release();
+        }
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (pooled.transport.isConnected()) {
+                return pooled;
+            }
+            close(pooled);
+        }
+        Transport transport = mailSender.getSession().getTransport(mailSender.getProtocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return new PooledTransport(transport);
+    }
+
+    @Scheduled(fixedDelayString = "${mail.smtp.idle-check-interval:PT30S}")
+    public void closeIdle() {
+        long expiredBefore = System.currentTimeMillis() - idleTimeoutMillis;
+        List<PooledTransport> expired = new ArrayList<>();
+        idle.removeIf(pooled -> {
+            if (pooled.lastUsed < expiredBefore) {
+                expired.add(pooled);
+                return true;
+            }
+            return false;
+        });
+        expired.forEach(this::close);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            close(pooled);
+        }
+    }
+
+    private void close(PooledTransport pooled) {
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP transport: {}", e.getMessage());
+        }
+    }
+}
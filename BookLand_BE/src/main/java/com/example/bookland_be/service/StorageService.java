@@ -0,0 +1,34 @@
+package com.example.bookland_be.service;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Nơi lưu ảnh upload. Chọn bằng storage.backend: supabase (mặc định) hoặc local (thư mục trên máy,
+ * phục vụ qua /api/files/** — chạy offline được, không cần Supabase).
+ * objectName là tên object trong bucket / thư mục gốc, không chứa tên bucket.
+ */
+public interface StorageService {
+
+    // Stream từ file tạm của multipart; ghi đè nếu đã có object cùng tên
+    String uploadImage(String objectName, MultipartFile file) throws IOException;
+
+    // Ghi đè nếu đã có (dùng cho file sinh ra từ ảnh gốc, xử lý lại phải idempotent)
+    void uploadObject(String objectName, byte[] content, String contentType) throws IOException;
+
+    InputStream download(String objectName) throws IOException;
+
+    String publicUrl(String objectName);
+
+    // Ngược lại với publicUrl; URL không thuộc storage này thì trả về null
+    String objectNameFromPublicUrl(String url);
+
+    Page<Map<String, Object>> listImages(Pageable pageable);
+
+    void deleteImage(String objectName);
+}
@@ -0,0 +1,232 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.entity.InvalidatedToken;
+import com.example.bookland_be.repository.InvalidatedTokenRepository;
+import com.example.bookland_be.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Kiểm tra JTI đã bị thu hồi (logout / refresh) mà không cần query DB cho mỗi request.
+ * Bloom filter trả về "chắc chắn chưa thu hồi" cho gần như mọi token hợp lệ,
+ * khi filter báo "có thể" thì lần lượt hỏi: store local -> Redis (key có TTL) -> DB (nguồn bền vững).
+ * Mỗi entry sống đến khi token không còn dùng được (caller truyền max(exp, iat + refreshable)),
+ * sau đó bị xoá khỏi local, Redis (TTL) và DB (job purge).
+ * Thu hồi ở node khác đến qua Redis pub/sub, và qua sync DB vài giây 1 lần phòng khi publish lỗi;
+ * nếu sync đã quá hạn (DB / Redis gặp sự cố) thì filter không được tin, luôn hỏi store.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationService {
+
+    private static final String REVOKED_CHANNEL = "auth:revoked-jti";
+    private static final String REVOKED_KEY_PREFIX = "auth:revoked:";
+    private static final long MIN_EXPECTED_INSERTIONS = 10_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    // Token không có exp (không xảy ra với token hệ thống) vẫn được giữ 1 ngày
+    private static final long DEFAULT_TTL_MILLIS = Duration.ofDays(1).toMillis();
+
+    private final InvalidatedTokenRepository invalidatedTokenRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Value("${jwt.revocation.purge-batch-size:1000}")
+    private int purgeBatchSize;
+
+    // Filter chỉ được tin khi lần sync thành công gần nhất chưa quá mốc này
+    @Value("${jwt.revocation.max-staleness:PT15S}")
+    private Duration maxStaleness;
+
+    // Khoảng lùi lại khi sync để không sót bản ghi commit trễ / lệch giờ giữa các node
+    @Value("${jwt.revocation.sync-overlap:PT5S}")
+    private Duration syncOverlap;
+
+    // Thời điểm bắt đầu lần rebuild / sync thành công gần nhất (0 = chưa có)
+    private volatile long lastSyncMillis;
+
+    // null = chưa build xong => fallback về store
+    private volatile BloomFilter filter;
+    // Store local: jti -> thời điểm hết hạn (epoch millis)
+    private final Map<String, Long> localRevoked = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void subscribe() {
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onRemoteRevoked(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(REVOKED_CHANNEL));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        Long localExpiry = localRevoked.get(jti);
+        if (localExpiry != null && localExpiry > now) {
+            return true;
+        }
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(jti) && now - lastSyncMillis <= maxStaleness.toMillis()) {
+            return false;
+        }
+
+        // Filter báo "có thể" (hoặc chưa sẵn sàng / sync quá hạn) => hỏi Redis trước, DB là fallback
+        try {
+            Long ttl = stringRedisTemplate.getExpire(REVOKED_KEY_PREFIX + jti);
+            if (ttl != null && ttl > 0) {
+                localRevoked.put(jti, now + ttl * 1000);
+                return true;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot read revoked token {} from Redis: {}", jti, e.getMessage());
+        }
+        return invalidatedTokenRepository.existsActiveById(jti, new Date(now));
+    }
+
+    /**
+     * @param expiryTime thời điểm token không còn được verify chấp nhận (không chỉ exp: refresh dùng iat + refreshable)
+     */
+    public void revoke(String jti, Date expiryTime) {
+        long expiresAt = expiryTime != null ? expiryTime.getTime() : System.currentTimeMillis() + DEFAULT_TTL_MILLIS;
+        invalidatedTokenRepository.save(InvalidatedToken.builder()
+                .id(jti)
+                .expiryTime(new Date(expiresAt))
+                .revokedAt(new Date())
+                .build());
+        addLocal(jti, expiresAt);
+
+        long ttlMillis = expiresAt - System.currentTimeMillis();
+        if (ttlMillis <= 0) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForValue().set(REVOKED_KEY_PREFIX + jti, "1", Duration.ofMillis(ttlMillis));
+            stringRedisTemplate.convertAndSend(REVOKED_CHANNEL, jti + "|" + expiresAt);
+        } catch (RuntimeException e) {
+            // DB vẫn có bản ghi, node khác sẽ nhận được ở lần sync kế tiếp
+            log.warn("Cannot publish revoked token {}: {}", jti, e.getMessage());
+        }
+    }
+
+    /**
+     * Build lại filter từ các token chưa hết hạn (bỏ các JTI đã hết hạn khỏi filter)
+     */
+    @Scheduled(initialDelayString = "${jwt.revocation.rebuild-interval:PT1H}",
+            fixedDelayString = "${jwt.revocation.rebuild-interval:PT1H}")
+    public void rebuild() {
+        try {
+            long now = System.currentTimeMillis();
+            localRevoked.values().removeIf(expiresAt -> expiresAt <= now);
+
+            List<String> ids = invalidatedTokenRepository.findIdsExpiringAfter(new Date(now));
+            BloomFilter rebuilt = new BloomFilter(
+                    Math.max((ids.size() + localRevoked.size()) * 2L, MIN_EXPECTED_INSERTIONS), FALSE_POSITIVE_RATE);
+            ids.forEach(rebuilt::put);
+            // JTI thu hồi trong lúc đang query vẫn nằm trong store local
+            localRevoked.keySet().forEach(rebuilt::put);
+            filter = rebuilt;
+            lastSyncMillis = now;
+            log.info("Token revocation filter rebuilt with {} JTI(s)", ids.size());
+        } catch (RuntimeException e) {
+            log.error("Cannot rebuild token revocation filter", e);
+        }
+    }
+
+    /**
+     * Lấy các JTI bị thu hồi gần đây từ DB, bù cho message pub/sub bị mất (publish lỗi / node mất kết nối Redis)
+     */
+    @Scheduled(initialDelayString = "${jwt.revocation.sync-interval:PT5S}",
+            fixedDelayString = "${jwt.revocation.sync-interval:PT5S}")
+    public void syncRecent() {
+        long lastSync = lastSyncMillis;
+        if (lastSync == 0) {
+            return; // Chưa rebuild lần nào => rebuild sẽ load đủ
+        }
+        long now = System.currentTimeMillis();
+        try {
+            for (Object[] row : invalidatedTokenRepository.findRevokedSince(new Date(lastSync - syncOverlap.toMillis()))) {
+                Date expiryTime = (Date) row[1];
+                addLocal((String) row[0], expiryTime != null ? expiryTime.getTime() : now + DEFAULT_TTL_MILLIS);
+            }
+            lastSyncMillis = now;
+        } catch (RuntimeException e) {
+            log.warn("Cannot sync revoked tokens: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Xoá các token đã hết hạn khỏi DB theo từng chunk nhỏ,
+     * mỗi chunk 1 transaction ngắn nên không khoá bảng lâu
+     */
+    @Scheduled(initialDelayString = "${jwt.revocation.purge-interval:PT15M}",
+            fixedDelayString = "${jwt.revocation.purge-interval:PT15M}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        localRevoked.values().removeIf(expiresAt -> expiresAt <= now);
+
+        Date cutoff = new Date(now);
+        long deleted = 0;
+        try {
+            List<String> ids;
+            do {
+                ids = invalidatedTokenRepository.findExpiredIds(cutoff, PageRequest.of(0, purgeBatchSize));
+                if (!ids.isEmpty()) {
+                    invalidatedTokenRepository.deleteAllByIdInBatch(ids);
+                    deleted += ids.size();
+                }
+            } while (ids.size() == purgeBatchSize);
+        } catch (RuntimeException e) {
+            log.error("Cannot purge expired invalidated tokens", e);
+        }
+        if (deleted > 0) {
+            log.info("Purged {} expired invalidated token(s)", deleted);
+        }
+    }
+
+    private void onRemoteRevoked(String message) {
+        int separator = message.lastIndexOf('|');
+        if (separator < 0) {
+            addLocal(message, System.currentTimeMillis() + DEFAULT_TTL_MILLIS);
+            return;
+        }
+        try {
+            addLocal(message.substring(0, separator), Long.parseLong(message.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid revoked token message: {}", message);
+        }
+    }
+
+    private void addLocal(String jti, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        localRevoked.put(jti, expiresAt);
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(jti);
+        }
+    }
+}
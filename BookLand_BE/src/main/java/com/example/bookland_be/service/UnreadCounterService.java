@@ -0,0 +1,187 @@
+package com.example.bookland_be.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Bộ đếm chưa đọc theo user (chat, notification) để badge polling là O(1).
+ * Lưu ở Redis, seed bằng COUNT khi chưa có key; Redis lỗi thì dùng map local.
+ * Chỉ cộng / trừ khi key đã tồn tại (chưa seed thì lần đọc sau sẽ COUNT lại).
+ * Thay đổi lúc key chưa có sẽ tăng version của key; lần seed nào đọc version trước COUNT
+ * mà version đã đổi thì bỏ kết quả (COUNT có thể đã cũ), không ghi vào Redis.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UnreadCounterService {
+
+    public enum Kind {
+        CHAT("unread:chat:"),
+        NOTIFICATION("unread:notification:");
+
+        private final String keyPrefix;
+
+        Kind(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+    }
+
+    private static final Duration TTL = Duration.ofDays(1);
+    // Chỉ cần sống lâu hơn 1 lần seed (GET version -> COUNT -> SET)
+    private static final Duration VERSION_TTL = Duration.ofHours(1);
+    private static final String VERSION_SUFFIX = ":v";
+
+    // Cộng dồn chỉ khi key đã có, không cho âm; key chưa có thì tăng version để seed đang chạy bỏ kết quả
+    private static final RedisScript<Long> ADJUST_IF_EXISTS = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then " +
+            "  local v = redis.call('INCRBY', KEYS[1], ARGV[1]) " +
+            "  if v < 0 then redis.call('SET', KEYS[1], 0, 'KEEPTTL') v = 0 end " +
+            "  return v " +
+            "end " +
+            "redis.call('INCR', KEYS[2]) " +
+            "redis.call('EXPIRE', KEYS[2], ARGV[2]) " +
+            "return -1",
+            Long.class);
+
+    // Ghi kết quả COUNT chỉ khi version không đổi kể từ trước COUNT và chưa ai seed
+    private static final RedisScript<Long> SEED_IF_UNCHANGED = new DefaultRedisScript<>(
+            "local version = redis.call('GET', KEYS[2]) or '' " +
+            "if version ~= ARGV[1] then return 0 end " +
+            "if redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3], 'NX') then return 1 end " +
+            "return 0",
+            Long.class);
+
+    // KEYS = [key1, version1, key2, version2, ...]: xoá bộ đếm và tăng version
+    private static final RedisScript<Long> EVICT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS, 2 do " +
+            "  redis.call('DEL', KEYS[i]) " +
+            "  redis.call('INCR', KEYS[i + 1]) " +
+            "  redis.call('EXPIRE', KEYS[i + 1], ARGV[1]) " +
+            "end " +
+            "return #KEYS / 2",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // Fallback khi Redis lỗi: key -> [giá trị, hết hạn lúc]
+    private final Map<String, long[]> localCounters = new ConcurrentHashMap<>();
+
+    public long get(Kind kind, Long userId, LongSupplier loader) {
+        String key = kind.keyPrefix + userId;
+        try {
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(List.of(key, key + VERSION_SUFFIX));
+            if (values != null && values.get(0) != null) {
+                return Long.parseLong(values.get(0));
+            }
+            // Chốt version trước COUNT: thay đổi xen vào giữa sẽ làm seed bị bỏ
+            String version = values != null && values.get(1) != null ? values.get(1) : "";
+            long count = loader.getAsLong();
+            stringRedisTemplate.execute(SEED_IF_UNCHANGED, List.of(key, key + VERSION_SUFFIX),
+                    version, Long.toString(count), Long.toString(TTL.toSeconds()));
+            return count;
+        } catch (RuntimeException e) {
+            log.debug("Redis unavailable for {}, using local counter: {}", key, e.getMessage());
+            return getLocal(key, loader);
+        }
+    }
+
+    public void adjustAfterCommit(Kind kind, Long userId, long delta) {
+        if (userId == null || delta == 0) {
+            return;
+        }
+        afterCommit(() -> adjust(kind.keyPrefix + userId, delta));
+    }
+
+    public void resetAfterCommit(Kind kind, Long userId) {
+        if (userId == null) {
+            return;
+        }
+        afterCommit(() -> {
+            String key = kind.keyPrefix + userId;
+            localCounters.computeIfPresent(key, (k, v) -> new long[]{0, v[1]});
+            try {
+                stringRedisTemplate.opsForValue().set(key, "0", TTL);
+            } catch (RuntimeException e) {
+                log.debug("Cannot reset {} in Redis: {}", key, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Xoá bộ đếm của nhiều user (1 lần gọi script), lần đọc sau sẽ COUNT lại.
+     * Dùng khi ghi hàng loạt, rẻ hơn chạy script cộng dồn cho từng user.
+     */
+    public void evictAfterCommit(Kind kind, Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = userIds.stream().map(userId -> kind.keyPrefix + userId).toList();
+        List<String> scriptKeys = keys.stream().flatMap(key -> Stream.of(key, key + VERSION_SUFFIX)).toList();
+        afterCommit(() -> {
+            keys.forEach(localCounters::remove);
+            try {
+                stringRedisTemplate.execute(EVICT, scriptKeys, Long.toString(VERSION_TTL.toSeconds()));
+            } catch (RuntimeException e) {
+                log.debug("Cannot evict {} {} counter(s) in Redis: {}", keys.size(), kind, e.getMessage());
+            }
+        });
+    }
+
+    private void adjust(String key, long delta) {
+        localCounters.computeIfPresent(key, (k, v) -> new long[]{Math.max(0, v[0] + delta), v[1]});
+        try {
+            stringRedisTemplate.execute(ADJUST_IF_EXISTS, List.of(key, key + VERSION_SUFFIX),
+                    Long.toString(delta), Long.toString(VERSION_TTL.toSeconds()));
+        } catch (RuntimeException e) {
+            // Không chắc giá trị trên Redis còn đúng => xoá để lần đọc sau COUNT lại
+            log.debug("Cannot adjust {} in Redis: {}", key, e.getMessage());
+            try {
+                stringRedisTemplate.delete(key);
+            } catch (RuntimeException ignored) {
+                // Redis down hẳn, key sẽ tự hết TTL
+            }
+        }
+    }
+
+    private long getLocal(String key, LongSupplier loader) {
+        long now = System.currentTimeMillis();
+        long[] entry = localCounters.get(key);
+        if (entry != null && entry[1] > now) {
+            return entry[0];
+        }
+        long count = loader.getAsLong();
+        // Local chỉ giữ ngắn vì không đồng bộ giữa các node
+        localCounters.put(key, new long[]{count, now + Duration.ofMinutes(1).toMillis()});
+        if (localCounters.size() > 10_000) {
+            localCounters.values().removeIf(v -> v[1] <= now);
+        }
+        return count;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
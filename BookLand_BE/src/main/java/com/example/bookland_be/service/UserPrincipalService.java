@@ -0,0 +1,123 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.config.UserPrincipalAuthenticationToken;
+import com.example.bookland_be.dto.UserPrincipal;
+import com.example.bookland_be.entity.Role;
+import com.example.bookland_be.entity.User;
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import com.example.bookland_be.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Resolve UserPrincipal theo email (subject của JWT) qua cache local TTL ngắn.
+ * UserService evict khi user bị sửa / đổi role / đổi status / xoá.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserPrincipalService {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final UserRepository userRepository;
+
+    @Value("${security.user-principal.cache-ttl:PT1M}")
+    private Duration cacheTtl;
+
+    private final Map<String, CachedPrincipal> cache = new ConcurrentHashMap<>();
+
+    /**
+     * User đang đăng nhập, lấy từ SecurityContext (đã resolve 1 lần khi decode token)
+     */
+    public UserPrincipal getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        UserPrincipal principal = authentication instanceof UserPrincipalAuthenticationToken token
+                ? token.getUserPrincipal()
+                : loadByEmail(authentication.getName());
+        if (principal == null) {
+            throw new AppException(ErrorCode.USER_NOT_EXISTED);
+        }
+        return principal;
+    }
+
+    public Long getCurrentUserId() {
+        return getCurrentUser().getId();
+    }
+
+    /**
+     * @return null nếu không có user với email này (không cache kết quả rỗng)
+     */
+    public UserPrincipal loadByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        CachedPrincipal cached = cache.get(email);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.principal;
+        }
+
+        UserPrincipal principal = userRepository.findByEmailWithRoles(email)
+                .map(UserPrincipalService::toPrincipal)
+                .orElse(null);
+        if (principal != null) {
+            if (cache.size() >= MAX_ENTRIES) {
+                cache.values().removeIf(entry -> entry.expiresAt <= now);
+                if (cache.size() >= MAX_ENTRIES) {
+                    cache.clear();
+                }
+            }
+            cache.put(email, new CachedPrincipal(principal, now + cacheTtl.toMillis()));
+        }
+        return principal;
+    }
+
+    /**
+     * Xoá cache của user sau khi transaction hiện tại commit (tránh đọc lại dữ liệu cũ trước commit)
+     */
+    public void evictAfterCommit(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId);
+                }
+            });
+        }
+        evict(userId);
+    }
+
+    public void evict(Long userId) {
+        cache.values().removeIf(entry -> entry.principal.getId().equals(userId));
+    }
+
+    private static UserPrincipal toPrincipal(User user) {
+        Set<String> roles = user.getRoles().stream()
+                .map(Role::getName)
+                .collect(Collectors.toUnmodifiableSet());
+        return UserPrincipal.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .username(user.getUsername())
+                .roles(roles)
+                .build();
+    }
+
+    private record CachedPrincipal(UserPrincipal principal, long expiresAt) {
+    }
+}
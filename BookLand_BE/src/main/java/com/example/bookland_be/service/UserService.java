@@ -16,7 +16,6 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,8 +29,8 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final PasswordEncoder passwordEncoder;
-    private final EmailService emailService;
+    private final PasswordHashingService passwordHashingService;
+    private final UserPrincipalService userPrincipalService;
 
     @Transactional(readOnly = true)
     public Page<UserResponse> getAllUsers(String keyword, UserStatus status, Long roleId, Pageable pageable) {
@@ -80,7 +79,7 @@ public class UserService {
                 .lastName(request.getLastName())
                 .dob(request.getDob())
                 .email(request.getEmail())
-                .password(passwordEncoder.encode(request.getPassword()))
+                .password(passwordHashingService.encode(request.getPassword()))
                 .phone(request.getPhone())
                 .status(User.UserStatus.ENABLE)
                 .roles(roles)
@@ -108,6 +107,7 @@ public class UserService {
         if (request.getPhone() != null) user.setPhone(request.getPhone());
 
         User updatedUser = userRepository.save(user);
+        userPrincipalService.evictAfterCommit(id);
         return UserResponse.fromEntity(updatedUser);
     }
 
@@ -123,6 +123,7 @@ public class UserService {
 
         user.setRoles(newRoles);
         User updatedUser = userRepository.save(user);
+        userPrincipalService.evictAfterCommit(id);
 
         return UserResponse.fromEntity(updatedUser);
     }
@@ -134,6 +135,7 @@ public class UserService {
 
         user.setStatus(status);
         User updatedUser = userRepository.save(user);
+        userPrincipalService.evictAfterCommit(id);
 
         return UserResponse.fromEntity(updatedUser);
     }
@@ -144,41 +146,7 @@ public class UserService {
             throw new AppException(ErrorCode.USER_NOT_EXISTED);
         }
         userRepository.deleteById(id);
-    }
-
-    public void sendCustomEmails(SendCustomEmailRequest request) {
-        List<User> users;
-        if (request.isSendToAll()) {
-            users = userRepository.findAll();
-        } else {
-            if (request.getUserIds() == null || request.getUserIds().isEmpty()) {
-                throw new AppException(ErrorCode.USER_NOT_EXISTED); // Or a specific error
-            }
-            users = userRepository.findAllById(request.getUserIds());
-        }
-
-        for (User user : users) {
-            String email = user.getEmail();
-            if (email != null && !email.isEmpty() && email.contains("@")) {
-                java.util.Map<String, Object> templateModel = new java.util.HashMap<>();
-                templateModel.put("name", user.getUsername() != null ? user.getUsername() : "Customer");
-                templateModel.put("message", request.getMessage() != null ? request.getMessage() : "");
-                
-                if (request.getDetails() != null && !request.getDetails().isEmpty()) {
-                    templateModel.put("details", request.getDetails());
-                }
-                if (request.getActionUrl() != null && !request.getActionUrl().isEmpty()) {
-                    templateModel.put("actionUrl", request.getActionUrl());
-                }
-                if (request.getActionText() != null && !request.getActionText().isEmpty()) {
-                    templateModel.put("actionText", request.getActionText());
-                }
-
-                String subject = request.getSubject() != null && !request.getSubject().isEmpty() ? request.getSubject() : "Thông báo từ BookLand";
-
-                emailService.sendEmailWithHtmlTemplate(email, subject, "email-template", templateModel);
-            }
-        }
+        userPrincipalService.evictAfterCommit(id);
     }
 
 }
\ No newline at end of file
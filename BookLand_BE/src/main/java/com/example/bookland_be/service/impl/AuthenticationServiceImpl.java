@@ -1,28 +1,29 @@
 package com.example.bookland_be.service.impl;
 
+import com.example.bookland_be.config.GoogleIdTokenDecoder;
 import com.example.bookland_be.dto.request.*;
 import org.springframework.security.oauth2.jwt.Jwt;
-import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import com.example.bookland_be.dto.response.AuthenticationResponse;
 import com.example.bookland_be.dto.response.IntrospectResponse;
 import com.example.bookland_be.dto.response.LoginResponse;
 import com.example.bookland_be.dto.response.UserResponse;
-import com.example.bookland_be.entity.InvalidatedToken;
 import com.example.bookland_be.entity.Role;
 import com.example.bookland_be.entity.User;
 import com.example.bookland_be.exception.AppException;
 import com.example.bookland_be.exception.ErrorCode;
 import com.example.bookland_be.mapper.UserMapper;
-import com.example.bookland_be.repository.InvalidatedTokenRepository;
 import com.example.bookland_be.repository.RoleRepository;
 import com.example.bookland_be.repository.UserRepository;
 import com.example.bookland_be.service.AuthenticationService;
+import com.example.bookland_be.service.AuthorityScopeService;
+import com.example.bookland_be.service.PasswordHashingService;
+import com.example.bookland_be.service.TokenRevocationService;
 import com.nimbusds.jose.*;
 import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
+import jakarta.annotation.PostConstruct;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -30,11 +31,8 @@ import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.CollectionUtils;
 
 import java.text.ParseException;
 import java.time.Instant;
@@ -58,7 +56,13 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     RoleRepository roleRepository;
 
     @Autowired
-    InvalidatedTokenRepository invalidatedTokenRepository;
+    TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    GoogleIdTokenDecoder googleIdTokenDecoder;
+
+    @Autowired
+    AuthorityScopeService authorityScopeService;
 
     @NonFinal
     @Value("${jwt.signerKey}")
@@ -72,17 +76,32 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     @Value("${jwt.refreshable-duration}")
     protected long REFRESHABLE_DURATION;
 
+    // Signer / verifier HMAC thread-safe, dùng lại cho mọi token (không tạo mới mỗi request)
+    @NonFinal
+    JWSSigner signer;
+
+    @NonFinal
+    JWSVerifier verifier;
+
     @Autowired
     UserMapper userMapper;
 
-    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(10);
+    // BCrypt chạy trên pool riêng, không chiếm thread request
+    @Autowired
+    PasswordHashingService passwordHashingService;
+
+    @PostConstruct
+    void initSignerAndVerifier() throws JOSEException {
+        signer = new MACSigner(SIGNER_KEY.getBytes());
+        verifier = new MACVerifier(SIGNER_KEY.getBytes());
+    }
 
     @Override
     public LoginResponse login(LoginRequest request) {
         User user = userRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
 
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        if (!passwordHashingService.matches(request.getPassword(), user.getPassword())) {
             throw new AppException(ErrorCode.UNAUTHENTICATED);
         }
 
@@ -102,7 +121,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         User user = userRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
 
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        if (!passwordHashingService.matches(request.getPassword(), user.getPassword())) {
             throw new AppException(ErrorCode.UNAUTHENTICATED);
         }
         System.out.println("role: "+ user.getRoles());
@@ -154,12 +173,8 @@ public class AuthenticationServiceImpl implements AuthenticationService {
             var signToken = verifyToken(logoutRequest.getToken(), "REFRESH");
 
             String jit = signToken.getJWTClaimsSet().getJWTID();
-            Date expiryTime = signToken.getJWTClaimsSet().getExpirationTime();
-
-            InvalidatedToken invalidatedToken =
-                    InvalidatedToken.builder().id(jit).expiryTime(expiryTime).build();
 
-            invalidatedTokenRepository.save(invalidatedToken);
+            tokenRevocationService.revoke(jit, unusableAfter(signToken.getJWTClaimsSet()));
         } catch (AppException exception) {
             log.info("Token already expired");
         }
@@ -180,7 +195,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         User user = User.builder()
                 .username(request.getUsername())
                 .email(request.getEmail())
-                .password(passwordEncoder.encode(request.getPassword()))
+                .password(passwordHashingService.encode(request.getPassword()))
                 .status(User.UserStatus.ENABLE)
                 .roles(Set.of(userRole))  // Thêm role USER mặc định
                 .build();
@@ -199,10 +214,8 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         SignedJWT signedJWT = verifyToken(refreshRequest.getToken(), "REFRESH");
 
         String jid = signedJWT.getJWTClaimsSet().getJWTID();
-        var expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
 
-        InvalidatedToken invalidatedToken = InvalidatedToken.builder().id(jid).expiryTime(expiryTime).build();
-        invalidatedTokenRepository.save(invalidatedToken);
+        tokenRevocationService.revoke(jid, unusableAfter(signedJWT.getJWTClaimsSet()));
 
         var name = signedJWT.getJWTClaimsSet().getSubject();
         var user = userRepository.findByUsername(name).orElseThrow(() -> new AppException(ErrorCode.UNAUTHENTICATED));
@@ -215,14 +228,10 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     @Override
     @Transactional
     public LoginResponse loginWithGoogle(GoogleLoginRequest request) {
-        // 1. Verify id_token với Google's public JWKS endpoint
-        JwtDecoder googleJwtDecoder = NimbusJwtDecoder
-                .withJwkSetUri("https://www.googleapis.com/oauth2/v3/certs")
-                .build();
-
+        // 1. Verify id_token với Google's public JWKS (decoder dùng chung, JWKS đã cache)
         Jwt googleJwt;
         try {
-            googleJwt = googleJwtDecoder.decode(request.getIdToken());
+            googleJwt = googleIdTokenDecoder.decode(request.getIdToken());
         } catch (Exception e) {
             throw new AppException(ErrorCode.UNAUTHENTICATED);
         }
@@ -253,7 +262,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
                     .username(username)
                     .firstName(given != null ? given : (name != null ? name : username))
                     .lastName(family != null ? family : "")
-                    .password(passwordEncoder.encode(UUID.randomUUID().toString()))
+                    .password(passwordHashingService.encode(UUID.randomUUID().toString()))
                     .status(User.UserStatus.ENABLE)
                     .roles(userRole != null ? Set.of(userRole) : new HashSet<>())
                     .build();
@@ -300,22 +309,35 @@ public class AuthenticationServiceImpl implements AuthenticationService {
                 )
                 .jwtID(UUID.randomUUID().toString())
                 .claim("type", tokenType.name())
-                .claim("scope", tokenType == TokenType.ACCESS ? buildScope(user) : null)
+                .claim("scope", tokenType == TokenType.ACCESS ? authorityScopeService.scopeFor(user.getRoles()) : null)
                 .build();
 
         JWSObject jwsObject = new JWSObject(header, new Payload(claimsSet.toJSONObject()));
 
         try {
-            jwsObject.sign(new MACSigner(SIGNER_KEY.getBytes()));
+            jwsObject.sign(signer);
             return jwsObject.serialize();
         } catch (JOSEException e) {
             throw new RuntimeException("Cannot generate " + tokenType + " token", e);
         }
     }
 
-    private SignedJWT verifyToken(String token, String tokenType) throws JOSEException, ParseException {
-        JWSVerifier verifier = new MACVerifier(SIGNER_KEY.getBytes());
+    /**
+     * Token thu hồi phải nằm trong store tới khi verifyToken không còn chấp nhận nó ở bất kỳ loại nào:
+     * ACCESS tới exp, REFRESH tới iat + REFRESHABLE_DURATION
+     */
+    private Date unusableAfter(JWTClaimsSet claims) {
+        Date expiryTime = claims.getExpirationTime();
+        if (claims.getIssueTime() == null) {
+            return expiryTime;
+        }
+        Date refreshableUntil = new Date(claims.getIssueTime().toInstant()
+                .plus(REFRESHABLE_DURATION, ChronoUnit.SECONDS)
+                .toEpochMilli());
+        return expiryTime == null || refreshableUntil.after(expiryTime) ? refreshableUntil : expiryTime;
+    }
 
+    private SignedJWT verifyToken(String token, String tokenType) throws JOSEException, ParseException {
         SignedJWT signedJWT = SignedJWT.parse(token);
 
         boolean isRefresh = Objects.equals(tokenType, "REFRESH");
@@ -332,22 +354,9 @@ public class AuthenticationServiceImpl implements AuthenticationService {
 
         if (!(verified && expiryTime.after(new Date()))) throw new AppException(ErrorCode.UNAUTHENTICATED);
 
-        if (invalidatedTokenRepository.existsById(signedJWT.getJWTClaimsSet().getJWTID()))
+        if (tokenRevocationService.isRevoked(signedJWT.getJWTClaimsSet().getJWTID()))
             throw new AppException(ErrorCode.UNAUTHENTICATED);
 
         return signedJWT;
     }
-
-    private String buildScope(User user) {
-        StringJoiner stringJoiner = new StringJoiner(" ");
-
-        if (!CollectionUtils.isEmpty(user.getRoles()))
-            user.getRoles().forEach(role -> {
-                stringJoiner.add("ROLE_" + role.getName());
-                if (!CollectionUtils.isEmpty(role.getPermissions()))
-                    role.getPermissions().forEach(permission -> stringJoiner.add("ROLE_" + permission.getName()));
-            });
-
-        return stringJoiner.toString();
-    }
 }
@@ -0,0 +1,212 @@
+package com.example.bookland_be.service.impl;
+
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import com.example.bookland_be.service.StorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Lưu ảnh trong 1 thư mục trên máy (storage.local.root-dir), phục vụ qua /api/files/** (LocalFileController).
+ * Dùng cho môi trường dev / test chạy offline, hoặc để ảnh hay dùng nằm trên đĩa local thay vì gọi Supabase.
+ * Ghi vào file tạm rồi move nguyên tử nên người đọc không bao giờ thấy file ghi dở.
+ * URL lưu trong sách / sự kiện là URL tuyệt đối (storage.local.public-url-prefix) giống Supabase:
+ * client ở domain khác vẫn tải được và GC so khớp đúng chuỗi URL đã lưu.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalStorageServiceImpl implements StorageService {
+
+    private static final String TEMP_PREFIX = ".upload-";
+
+    private final Path root;
+    private final String publicUrlPrefix;
+
+    public LocalStorageServiceImpl(@Value("${storage.local.root-dir:./storage}") String rootDir,
+                                   @Value("${storage.local.public-url-prefix:http://localhost:${server.port:8080}/api/files/}")
+                                   String publicUrlPrefix)
+            throws IOException {
+        URI prefix = URI.create(publicUrlPrefix);
+        // URL tương đối phụ thuộc host của client; đổi prefix về sau thì URL cũ không còn khớp khi GC
+        if (!prefix.isAbsolute() || prefix.getHost() == null) {
+            throw new IllegalStateException("storage.local.public-url-prefix must be an absolute http(s) URL, got: "
+                    + publicUrlPrefix);
+        }
+        this.root = Path.of(rootDir).toAbsolutePath().normalize();
+        this.publicUrlPrefix = publicUrlPrefix.endsWith("/") ? publicUrlPrefix : publicUrlPrefix + "/";
+        Files.createDirectories(root);
+        log.info("Local storage backend at {}", root);
+    }
+
+    @Override
+    public String uploadImage(String objectName, MultipartFile file) throws IOException {
+        Path target = resolve(objectName);
+        Path temp = tempFile(target);
+        try {
+            // Copy stream từ file tạm của multipart (không dùng transferTo(File): Tomcat rename mất part,
+            // các bước sau còn cần getSize())
+            file.transferTo(temp);
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return publicUrl(objectName);
+    }
+
+    @Override
+    public void uploadObject(String objectName, byte[] content, String contentType) throws IOException {
+        Path target = resolve(objectName);
+        Path temp = tempFile(target);
+        try {
+            Files.write(temp, content);
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream download(String objectName) throws IOException {
+        return Files.newInputStream(resolve(objectName));
+    }
+
+    @Override
+    public String publicUrl(String objectName) {
+        return publicUrlPrefix + objectName;
+    }
+
+    @Override
+    public String objectNameFromPublicUrl(String url) {
+        return url != null && url.startsWith(publicUrlPrefix) && url.length() > publicUrlPrefix.length()
+                ? url.substring(publicUrlPrefix.length())
+                : null;
+    }
+
+    /**
+     * Cùng dạng kết quả với Supabase (name, created_at, metadata.size / mimetype, publicUrl).
+     * Duyệt cả thư mục mỗi lần gọi: chỉ phù hợp lượng ảnh của môi trường dev / 1 máy.
+     */
+    @Override
+    public Page<Map<String, Object>> listImages(Pageable pageable) {
+        Comparator<Map<String, Object>> comparator = Comparator.comparing(
+                file -> (String) file.get("created_at"));
+        if (pageable.getSort().isSorted()) {
+            Sort.Order order = pageable.getSort().iterator().next();
+            if ("name".equals(order.getProperty())) {
+                comparator = Comparator.comparing(file -> (String) file.get("name"));
+            }
+            if (order.isDescending()) {
+                comparator = comparator.reversed();
+            }
+        } else {
+            comparator = comparator.reversed();
+        }
+
+        List<Map<String, Object>> files;
+        try (Stream<Path> paths = Files.list(root)) {
+            files = paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().startsWith(TEMP_PREFIX))
+                    .map(this::describe)
+                    .sorted(comparator)
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<Map<String, Object>> page = files.stream()
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .toList();
+        return new PageImpl<>(page, pageable, files.size());
+    }
+
+    @Override
+    public void deleteImage(String objectName) {
+        try {
+            Files.deleteIfExists(resolve(objectName));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete image: " + e.getMessage());
+        }
+    }
+
+    /**
+     * File của object để LocalFileController gửi thẳng; không tồn tại thì FILE_NOT_FOUND.
+     */
+    public Path resolveExisting(String objectName) {
+        Path path = resolve(objectName);
+        if (!Files.isRegularFile(path)) {
+            throw new AppException(ErrorCode.FILE_NOT_FOUND);
+        }
+        return path;
+    }
+
+    // Chặn objectName kiểu "../" thoát ra ngoài thư mục gốc
+    private Path resolve(String objectName) {
+        Path path = root.resolve(objectName).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new AppException(ErrorCode.FILE_NOT_FOUND);
+        }
+        return path;
+    }
+
+    private static Path tempFile(Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        return target.resolveSibling(TEMP_PREFIX + UUID.randomUUID());
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Map<String, Object> describe(Path path) {
+        String name = root.relativize(path).toString();
+        Map<String, Object> file = new HashMap<>();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("size", attributes.size());
+            metadata.put("mimetype", MediaTypeFactory.getMediaType(name)
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+            file.put("created_at", Instant.ofEpochMilli(attributes.creationTime().toMillis()).toString());
+            file.put("updated_at", Instant.ofEpochMilli(attributes.lastModifiedTime().toMillis()).toString());
+            file.put("metadata", metadata);
+        } catch (IOException e) {
+            file.put("created_at", "");
+        }
+        file.put("name", name);
+        file.put("publicUrl", publicUrl(name));
+        return file;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.bookland_be.service.impl;
+
+import com.example.bookland_be.service.StorageService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.*;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Upload ảnh lên Supabase Storage. Dùng chung 1 HttpClient (giữ kết nối keep-alive) cho cả upload lẫn RestTemplate;
+ * ảnh được stream thẳng từ file tạm của multipart lên storage thay vì đọc hết vào heap.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "supabase", matchIfMissing = true)
+public class SupabaseStorageServiceImpl implements StorageService {
+
+    @Value("${supabase.url}")
+    private String supabaseUrl;
+
+    @Value("${supabase.service-key}")
+    private String serviceKey;
+
+    @Value("${supabase.bucket}")
+    private String bucket;
+
+    private final HttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final Duration uploadTimeout;
+
+    public SupabaseStorageServiceImpl(@Value("${storage.upload.timeout:PT60S}") Duration uploadTimeout,
+                                  @Value("${storage.connect-timeout:PT10S}") Duration connectTimeout) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.restTemplate = new RestTemplate(new JdkClientHttpRequestFactory(httpClient));
+        this.uploadTimeout = uploadTimeout;
+    }
+
+    /**
+     * Upload ảnh dưới tên objectName (tên theo nội dung nên upload lại cùng tên là ghi đè cùng nội dung).
+     */
+    @Override
+    public String uploadImage(String objectName, MultipartFile file) throws IOException {
+
+        String contentType = file.getContentType() != null ? file.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+        // Stream từ file tạm của multipart, có Content-Length nên không phải chunked
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(
+                HttpRequest.BodyPublishers.ofInputStream(() -> {
+                    try {
+                        return file.getInputStream();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }),
+                file.getSize());
+
+        upload(objectName, body, contentType, true);
+
+        // Public URL
+        return publicUrl(objectName);
+    }
+
+    @Override
+    public void uploadObject(String objectName, byte[] content, String contentType) throws IOException {
+        upload(objectName, HttpRequest.BodyPublishers.ofByteArray(content), contentType, true);
+    }
+
+    @Override
+    public InputStream download(String objectName) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(objectUri(objectName))
+                .timeout(uploadTimeout)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + serviceKey)
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() / 100 != 2) {
+            response.body().close();
+            throw new IOException("Download of " + objectName + " failed with status " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    @Override
+    public String publicUrl(String objectName) {
+        return supabaseUrl
+                + "/storage/v1/object/public/"
+                + bucket + "/" + objectName;
+    }
+
+    @Override
+    public String objectNameFromPublicUrl(String url) {
+        String prefix = publicUrl("");
+        return url != null && url.startsWith(prefix) && url.length() > prefix.length()
+                ? url.substring(prefix.length())
+                : null;
+    }
+
+    private void upload(String objectName, HttpRequest.BodyPublisher body, String contentType, boolean upsert)
+            throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(objectUri(objectName))
+                .timeout(uploadTimeout)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + serviceKey)
+                .header(HttpHeaders.CONTENT_TYPE, contentType)
+                .header("x-upsert", String.valueOf(upsert))
+                .POST(body)
+                .build();
+
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Upload failed with status " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return httpClient.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Storage request interrupted", e);
+        }
+    }
+
+    private URI objectUri(String objectName) {
+        return URI.create(supabaseUrl
+                + "/storage/v1/object/"
+                + bucket + "/" + UriUtils.encodePath(objectName, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Lấy danh sách ảnh trong bucket có phân trang
+     */
+    @Override
+    public Page<Map<String, Object>> listImages(Pageable pageable) {
+
+        String listUrl = supabaseUrl
+                + "/storage/v1/object/list/"
+                + bucket;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(serviceKey);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("prefix", "");
+        body.put("limit", pageable.getPageSize());
+        body.put("offset", pageable.getOffset());
+
+        // Handle sorting
+        Map<String, Object> sortBy = new HashMap<>();
+        if (pageable.getSort().isSorted()) {
+            Sort.Order order = pageable.getSort().iterator().next();
+            sortBy.put("column", order.getProperty());
+            sortBy.put("order", order.getDirection().name().toLowerCase());
+        } else {
+             // Default sort by created_at desc if not specified
+             sortBy.put("column", "created_at");
+             sortBy.put("order", "desc");
+        }
+        body.put("sortBy", sortBy);
+
+
+        HttpEntity<Map<String, Object>> request =
+                new HttpEntity<>(body, headers);
+
+        ResponseEntity<List> response = restTemplate.exchange(
+                listUrl,
+                HttpMethod.POST,
+                request,
+                List.class
+        );
+
+        List<Map<String, Object>> files = response.getBody();
+
+        if (files != null) {
+            files.forEach(file -> {
+                String name = (String) file.get("name");
+                String publicUrl = supabaseUrl
+                        + "/storage/v1/object/public/"
+                        + bucket + "/" + name;
+                file.put("publicUrl", publicUrl);
+            });
+        }
+        
+        // Estimate total elements: offset + current_page_size + (if full page, assume there is more)
+        long totalEstimate = pageable.getOffset() + (files != null ? files.size() : 0);
+        if (files != null && files.size() == pageable.getPageSize()) {
+             totalEstimate += 1; // Indicate there might be more
+        }
+
+
+        return new PageImpl<>(files != null ? files : List.of(), pageable, totalEstimate);
+    }
+    
+    @Override
+    public void deleteImage(String fileName) {
+        String deleteUrl = supabaseUrl
+                + "/storage/v1/object/"
+                + bucket + "/" + fileName;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(serviceKey);
+
+        HttpEntity<Void> request = new HttpEntity<>(headers);
+
+        try {
+            restTemplate.exchange(
+                    deleteUrl,
+                    HttpMethod.DELETE,
+                    request,
+                    String.class
+            );
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to delete image: " + e.getMessage());
+        }
+    }
+}
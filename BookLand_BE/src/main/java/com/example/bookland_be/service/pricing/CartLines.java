@@ -0,0 +1,109 @@
+package com.example.bookland_be.service.pricing;
+
+import java.util.Arrays;
+
+/**
+ * Các dòng của giỏ hàng / đơn hàng dưới dạng mảng primitive (không tạo object cho từng dòng).
+ * Pipeline ghi kết quả trực tiếp vào các mảng itemPrices / lineDiscounts.
+ */
+public final class CartLines {
+
+    private int size;
+    private long[] bookIds;
+    private double[] basePrices;
+    private int[] quantities;
+    private boolean[] eligible;
+
+    // Output của pipeline
+    private double[] itemPrices;     // Đơn giá sau stage item
+    private double[] lineDiscounts;  // Giảm giá cấp giỏ đã phân bổ về dòng (cả dòng, không phải / sản phẩm)
+
+    public CartLines(int capacity) {
+        int initial = Math.max(capacity, 4);
+        bookIds = new long[initial];
+        basePrices = new double[initial];
+        quantities = new int[initial];
+        eligible = new boolean[initial];
+        itemPrices = new double[initial];
+        lineDiscounts = new double[initial];
+    }
+
+    /**
+     * Thêm 1 dòng, trả về index của dòng
+     */
+    public int add(long bookId, double unitPrice, int quantity, boolean eligibleForEvent) {
+        if (size == bookIds.length) {
+            int capacity = size * 2;
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            basePrices = Arrays.copyOf(basePrices, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            eligible = Arrays.copyOf(eligible, capacity);
+            itemPrices = Arrays.copyOf(itemPrices, capacity);
+            lineDiscounts = Arrays.copyOf(lineDiscounts, capacity);
+        }
+        bookIds[size] = bookId;
+        basePrices[size] = unitPrice;
+        quantities[size] = quantity;
+        eligible[size] = eligibleForEvent;
+        itemPrices[size] = unitPrice;
+        lineDiscounts[size] = 0;
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long bookId(int i) {
+        return bookIds[i];
+    }
+
+    public int quantity(int i) {
+        return quantities[i];
+    }
+
+    public boolean isEligible(int i) {
+        return eligible[i];
+    }
+
+    /**
+     * Đơn giá trước event (Book.getFinalPrice)
+     */
+    public double basePrice(int i) {
+        return basePrices[i];
+    }
+
+    /**
+     * Đơn giá cuối cùng sau mọi stage (giảm giá cấp giỏ được chia đều cho từng sản phẩm của dòng)
+     */
+    public double unitPrice(int i) {
+        return quantities[i] > 0 ? lineTotal(i) / quantities[i] : itemPrices[i];
+    }
+
+    public double lineTotal(int i) {
+        return Math.max(itemPrices[i] * quantities[i] - lineDiscounts[i], 0);
+    }
+
+    public boolean isDiscounted(int i) {
+        return lineTotal(i) < basePrices[i] * quantities[i];
+    }
+
+    // ===== Dùng nội bộ trong pipeline =====
+
+    void reset() {
+        System.arraycopy(basePrices, 0, itemPrices, 0, size);
+        Arrays.fill(lineDiscounts, 0, size, 0);
+    }
+
+    double itemPrice(int i) {
+        return itemPrices[i];
+    }
+
+    void setItemPrice(int i, double price) {
+        itemPrices[i] = price;
+    }
+
+    void addLineDiscount(int i, double discount) {
+        lineDiscounts[i] += discount;
+    }
+}
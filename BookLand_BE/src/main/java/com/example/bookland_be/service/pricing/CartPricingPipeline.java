@@ -0,0 +1,216 @@
+package com.example.bookland_be.service.pricing;
+
+import com.example.bookland_be.entity.Event;
+import com.example.bookland_be.enums.EventActionType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tính giá giỏ hàng theo từng stage: giá sản phẩm -> action toàn giỏ -> phí ship -> tổng.
+ * Dùng chung cho BillService, BillPreviewService và CartService.
+ */
+@Component
+public class CartPricingPipeline {
+
+    // Event hiện tại lấy từ ActiveEventRegistry nên cùng 1 instance cho tới lần refresh kế tiếp
+    private volatile PricingPlan cachedPlan;
+
+    public PricingPlan planFor(Event event) {
+        if (event == null) {
+            return null;
+        }
+        PricingPlan plan = cachedPlan;
+        if (plan == null || plan.getEvent() != event) {
+            plan = PricingPlan.compile(event);
+            cachedPlan = plan;
+        }
+        return plan;
+    }
+
+    /**
+     * @param plan null nếu không có event (hoặc event không thỏa rule)
+     */
+    public CartPricingResult price(PricingPlan plan, CartLines lines, double shippingCost) {
+        lines.reset();
+
+        boolean participating = false;
+        if (plan != null) {
+            participating = applyItemStage(plan, lines);
+            applyCartStage(plan, lines);
+        }
+        double shippingDiscount = plan != null && (participating || plan.isOrderWide())
+                ? shippingDiscount(plan, shippingCost)
+                : 0;
+
+        double originalSubtotal = 0;
+        double itemsSubtotal = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            originalSubtotal += lines.basePrice(i) * lines.quantity(i);
+            itemsSubtotal += lines.lineTotal(i);
+        }
+
+        Event applied = plan != null && (participating || shippingDiscount > 0) ? plan.getEvent() : null;
+        return new CartPricingResult(lines, applied, originalSubtotal, itemsSubtotal,
+                shippingCost, shippingDiscount, itemsSubtotal + shippingCost - shippingDiscount);
+    }
+
+    /**
+     * Đơn giá 1 sản phẩm thuộc target sau stage item (không tính action toàn giỏ)
+     */
+    public double itemPrice(PricingPlan plan, double basePrice) {
+        EventActionType action = plan.getItemAction();
+        if (action == null) {
+            return basePrice;
+        }
+        double value = plan.getItemValue();
+        return switch (action) {
+            case DISCOUNT_PERCENT -> basePrice * (1 - value / 100);
+            case DISCOUNT_AMOUNT -> Math.max(basePrice - value, 0);
+            case DISCOUNT_FIXED_PRICE -> Math.min(value, basePrice);
+            default -> basePrice;
+        };
+    }
+
+    // ===== Stage 1: giá từng sản phẩm =====
+    // Chỉ dòng thuộc target (BOOK / CATEGORY / ... / ALL) được giảm ở stage 1 và 2.
+    // ALL_ORDERS không kéo mọi dòng vào, chỉ mở stage phí ship và ngưỡng theo cả đơn của TIERED_DISCOUNT.
+
+    private boolean applyItemStage(PricingPlan plan, CartLines lines) {
+        boolean any = false;
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.isEligible(i)) {
+                any = true;
+                lines.setItemPrice(i, itemPrice(plan, lines.basePrice(i)));
+            }
+        }
+        return any;
+    }
+
+    // ===== Stage 2: action toàn giỏ, phân bổ ngược về từng dòng =====
+
+    private void applyCartStage(PricingPlan plan, CartLines lines) {
+        EventActionType action = plan.getCartAction();
+        if (action == null) {
+            return;
+        }
+        double[] values = plan.getCartValues();
+
+        int units = 0;
+        double subtotal = 0;
+        double orderSubtotal = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            orderSubtotal += lines.itemPrice(i) * lines.quantity(i);
+            if (lines.isEligible(i)) {
+                units += lines.quantity(i);
+                subtotal += lines.itemPrice(i) * lines.quantity(i);
+            }
+        }
+        if (units == 0) {
+            return;
+        }
+
+        switch (action) {
+            case BUY_X_GET_Y_FREE -> buyXGetYFree(lines, (int) values[0], (int) values[1], units);
+            case BUY_X_GET_Y_DISCOUNT -> {
+                if (units >= values[0]) {
+                    discountPercent(lines, values[1]);
+                }
+            }
+            case TIERED_DISCOUNT -> {
+                // Target ALL_ORDERS: ngưỡng tính theo cả đơn, nhưng chỉ giảm trên các dòng thuộc target
+                double threshold = plan.isOrderWide() ? orderSubtotal : subtotal;
+                double percent = 0;
+                for (int t = 0; t < values.length; t += 2) {
+                    if (threshold >= values[t]) {
+                        percent = values[t + 1];
+                    }
+                }
+                if (percent > 0) {
+                    discountPercent(lines, percent);
+                }
+            }
+            case BUNDLE_PRICE -> bundlePrice(lines, values[0]);
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Cứ mỗi X + Y sản phẩm thì Y sản phẩm rẻ nhất được miễn phí
+     */
+    private void buyXGetYFree(CartLines lines, int x, int y, int units) {
+        int freeUnits = units / (x + y) * y;
+        if (freeUnits == 0) {
+            return;
+        }
+
+        // Index các dòng tham gia, sort theo đơn giá tăng dần (insertion sort, giỏ hàng nhỏ)
+        int[] order = new int[lines.size()];
+        int n = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (!lines.isEligible(i)) {
+                continue;
+            }
+            int j = n++;
+            while (j > 0 && lines.itemPrice(order[j - 1]) > lines.itemPrice(i)) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = i;
+        }
+
+        for (int k = 0; k < n && freeUnits > 0; k++) {
+            int i = order[k];
+            int take = Math.min(freeUnits, lines.quantity(i));
+            lines.addLineDiscount(i, take * lines.itemPrice(i));
+            freeUnits -= take;
+        }
+    }
+
+    /**
+     * Mỗi combo gồm 1 sản phẩm của mỗi dòng tham gia, giá combo = bundlePrice.
+     * Phần tiết kiệm được chia về các dòng theo tỉ lệ đơn giá.
+     */
+    private void bundlePrice(CartLines lines, double bundlePrice) {
+        int bundles = Integer.MAX_VALUE;
+        double bundleSum = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.isEligible(i)) {
+                bundles = Math.min(bundles, lines.quantity(i));
+                bundleSum += lines.itemPrice(i);
+            }
+        }
+        if (bundles == Integer.MAX_VALUE || bundles == 0 || bundleSum <= bundlePrice) {
+            return;
+        }
+
+        double saving = (bundleSum - bundlePrice) * bundles;
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.isEligible(i)) {
+                lines.addLineDiscount(i, saving * lines.itemPrice(i) / bundleSum);
+            }
+        }
+    }
+
+    private void discountPercent(CartLines lines, double percent) {
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.isEligible(i)) {
+                lines.addLineDiscount(i, lines.itemPrice(i) * lines.quantity(i) * percent / 100);
+            }
+        }
+    }
+
+    // ===== Stage 3: phí ship =====
+
+    private double shippingDiscount(PricingPlan plan, double shippingCost) {
+        EventActionType action = plan.getShippingAction();
+        if (action == null || shippingCost <= 0) {
+            return 0;
+        }
+        return switch (action) {
+            case FREE_SHIPPING -> shippingCost;
+            case DISCOUNT_SHIPPING_PERCENT -> shippingCost * plan.getShippingValue() / 100;
+            case DISCOUNT_SHIPPING_AMOUNT -> Math.min(plan.getShippingValue(), shippingCost);
+            default -> 0;
+        };
+    }
+}
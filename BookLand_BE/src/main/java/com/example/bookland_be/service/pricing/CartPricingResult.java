@@ -0,0 +1,30 @@
+package com.example.bookland_be.service.pricing;
+
+import com.example.bookland_be.entity.Event;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class CartPricingResult {
+    private final CartLines lines;
+    private final Event event;              // null nếu không có event nào được áp dụng
+
+    private final double originalSubtotal;  // Tổng tiền sách trước event
+    private final double itemsSubtotal;     // Tổng tiền sách sau event
+    private final double shippingCost;      // Phí ship gốc
+    private final double shippingDiscount;  // Phần phí ship được giảm
+    private final double grandTotal;
+
+    public double getShippingTotal() {
+        return shippingCost - shippingDiscount;
+    }
+
+    public double getTotalDiscount() {
+        return originalSubtotal - itemsSubtotal + shippingDiscount;
+    }
+
+    public boolean isEventApplied() {
+        return event != null;
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.bookland_be.service.pricing;
+
+import com.example.bookland_be.entity.Book;
+import com.example.bookland_be.entity.Category;
+import com.example.bookland_be.entity.Event;
+import com.example.bookland_be.entity.EventAction;
+import com.example.bookland_be.entity.EventTarget;
+import com.example.bookland_be.enums.EventActionType;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Event đã được "biên dịch" sẵn để tính giá: target thành mảng id đã sort (binary search),
+ * action đã parse sẵn value và chia theo stage. Mỗi stage chỉ dùng action đầu tiên (theo id).
+ */
+@Getter
+public final class PricingPlan {
+
+    private final Event event;
+
+    // Target
+    private final boolean allBooks;
+    // ALL / ALL_ORDERS: phí ship và ngưỡng cả đơn, không làm mọi dòng thuộc target
+    private final boolean orderWide;
+    private final long[] bookIds;
+    private final long[] categoryIds;
+    private final long[] seriesIds;
+    private final long[] authorIds;
+    private final long[] publisherIds;
+
+    // Stage 1: giá từng sản phẩm
+    private final EventActionType itemAction;
+    private final double itemValue;
+
+    // Stage 2: toàn giỏ
+    private final EventActionType cartAction;
+    private final double[] cartValues;
+
+    // Stage 3: phí ship
+    private final EventActionType shippingAction;
+    private final double shippingValue;
+
+    private PricingPlan(Event event, boolean allBooks, boolean orderWide,
+                        long[] bookIds, long[] categoryIds, long[] seriesIds, long[] authorIds, long[] publisherIds,
+                        EventActionType itemAction, double itemValue,
+                        EventActionType cartAction, double[] cartValues,
+                        EventActionType shippingAction, double shippingValue) {
+        this.event = event;
+        this.allBooks = allBooks;
+        this.orderWide = orderWide;
+        this.bookIds = bookIds;
+        this.categoryIds = categoryIds;
+        this.seriesIds = seriesIds;
+        this.authorIds = authorIds;
+        this.publisherIds = publisherIds;
+        this.itemAction = itemAction;
+        this.itemValue = itemValue;
+        this.cartAction = cartAction;
+        this.cartValues = cartValues;
+        this.shippingAction = shippingAction;
+        this.shippingValue = shippingValue;
+    }
+
+    public static PricingPlan compile(Event event) {
+        boolean allBooks = false;
+        boolean orderWide = false;
+        List<Long> books = new ArrayList<>();
+        List<Long> categories = new ArrayList<>();
+        List<Long> series = new ArrayList<>();
+        List<Long> authors = new ArrayList<>();
+        List<Long> publishers = new ArrayList<>();
+
+        if (event.getTargets() != null) {
+            for (EventTarget target : event.getTargets()) {
+                switch (target.getTargetType()) {
+                    case BOOK -> books.add(target.getTargetId());
+                    case CATEGORY -> categories.add(target.getTargetId());
+                    case SERIES -> series.add(target.getTargetId());
+                    case AUTHOR -> authors.add(target.getTargetId());
+                    case PUBLISHER -> publishers.add(target.getTargetId());
+                    case ALL -> {
+                        allBooks = true;
+                        orderWide = true;
+                    }
+                    case ALL_ORDERS -> orderWide = true;
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        EventActionType itemAction = null;
+        double itemValue = 0;
+        EventActionType cartAction = null;
+        double[] cartValues = null;
+        EventActionType shippingAction = null;
+        double shippingValue = 0;
+
+        List<EventAction> actions = new ArrayList<>(event.getActions() != null ? event.getActions() : List.of());
+        actions.sort(Comparator.comparing(EventAction::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        for (EventAction action : actions) {
+            EventActionType type = action.getActionType();
+            try {
+                switch (type) {
+                    case DISCOUNT_PERCENT, DISCOUNT_AMOUNT, DISCOUNT_FIXED_PRICE -> {
+                        if (itemAction == null) {
+                            double value = Double.parseDouble(action.getActionValue().trim());
+                            if (type == EventActionType.DISCOUNT_PERCENT && (value < 0 || value > 100)) {
+                                continue;
+                            }
+                            itemAction = type;
+                            itemValue = value;
+                        }
+                    }
+                    case BUY_X_GET_Y_FREE, BUY_X_GET_Y_DISCOUNT, TIERED_DISCOUNT, BUNDLE_PRICE -> {
+                        if (cartAction == null) {
+                            double[] values = parseCartValues(type, action.getActionValue());
+                            if (values != null) {
+                                cartAction = type;
+                                cartValues = values;
+                            }
+                        }
+                    }
+                    case FREE_SHIPPING, DISCOUNT_SHIPPING_PERCENT, DISCOUNT_SHIPPING_AMOUNT -> {
+                        if (shippingAction == null) {
+                            double value = type == EventActionType.FREE_SHIPPING
+                                    ? 0 : Double.parseDouble(action.getActionValue().trim());
+                            if (type == EventActionType.DISCOUNT_SHIPPING_PERCENT && (value < 0 || value > 100)) {
+                                continue;
+                            }
+                            shippingAction = type;
+                            shippingValue = value;
+                        }
+                    }
+                    default -> {
+                        // Quà tặng, cashback, voucher... không ảnh hưởng giá đơn hàng
+                    }
+                }
+            } catch (NumberFormatException | NullPointerException e) {
+                // Value sai format => bỏ qua action, giống applyAction cũ
+            }
+        }
+
+        return new PricingPlan(event, allBooks, orderWide,
+                toSortedArray(books), toSortedArray(categories), toSortedArray(series),
+                toSortedArray(authors), toSortedArray(publishers),
+                itemAction, itemValue, cartAction, cartValues, shippingAction, shippingValue);
+    }
+
+    /**
+     * Book có nằm trong target của Event không (cùng ý nghĩa với EventApplicationService.isBookInEventTarget)
+     */
+    public boolean matches(Book book) {
+        if (allBooks) {
+            return true;
+        }
+        if (categoryIds.length > 0 && book.getCategories() != null) {
+            for (Category category : book.getCategories()) {
+                if (contains(categoryIds, category.getId())) {
+                    return true;
+                }
+            }
+        }
+        return matches(book.getId(), null,
+                book.getSeries() != null ? book.getSeries().getId() : null,
+                book.getAuthor() != null ? book.getAuthor().getId() : null,
+                book.getPublisher() != null ? book.getPublisher().getId() : null);
+    }
+
+    /**
+     * Giống matches(Book) nhưng dùng id đã load sẵn (không đụng tới entity / lazy collection)
+     */
+    public boolean matches(Long bookId, long[] bookCategoryIds, Long seriesId, Long authorId, Long publisherId) {
+        if (allBooks || contains(bookIds, bookId)) {
+            return true;
+        }
+        if (bookCategoryIds != null && categoryIds.length > 0) {
+            for (long categoryId : bookCategoryIds) {
+                if (Arrays.binarySearch(categoryIds, categoryId) >= 0) {
+                    return true;
+                }
+            }
+        }
+        return contains(seriesIds, seriesId)
+                || contains(authorIds, authorId)
+                || contains(publisherIds, publisherId);
+    }
+
+    /**
+     * BUY_X_GET_Y_*: "X,Y" => [X, Y]
+     * TIERED_DISCOUNT: "500000:10,1000000:20" => [ngưỡng1, %1, ngưỡng2, %2] sort theo ngưỡng tăng dần
+     * BUNDLE_PRICE: "totalPrice" => [totalPrice]
+     */
+    private static double[] parseCartValues(EventActionType type, String raw) {
+        String value = raw.trim();
+        switch (type) {
+            case BUY_X_GET_Y_FREE, BUY_X_GET_Y_DISCOUNT -> {
+                String[] parts = value.split(",");
+                if (parts.length != 2) {
+                    return null;
+                }
+                double x = Double.parseDouble(parts[0].trim());
+                double y = Double.parseDouble(parts[1].trim());
+                if (x < 1 || y <= 0 || (type == EventActionType.BUY_X_GET_Y_DISCOUNT && y > 100)) {
+                    return null;
+                }
+                return new double[]{Math.floor(x), type == EventActionType.BUY_X_GET_Y_FREE ? Math.floor(y) : y};
+            }
+            case TIERED_DISCOUNT -> {
+                String[] tiers = value.split(",");
+                double[][] pairs = new double[tiers.length][];
+                for (int i = 0; i < tiers.length; i++) {
+                    String[] parts = tiers[i].split(":");
+                    if (parts.length != 2) {
+                        return null;
+                    }
+                    double percent = Double.parseDouble(parts[1].trim());
+                    if (percent < 0 || percent > 100) {
+                        return null;
+                    }
+                    pairs[i] = new double[]{Double.parseDouble(parts[0].trim()), percent};
+                }
+                Arrays.sort(pairs, Comparator.comparingDouble(pair -> pair[0]));
+                double[] flat = new double[pairs.length * 2];
+                for (int i = 0; i < pairs.length; i++) {
+                    flat[2 * i] = pairs[i][0];
+                    flat[2 * i + 1] = pairs[i][1];
+                }
+                return flat;
+            }
+            case BUNDLE_PRICE -> {
+                double price = Double.parseDouble(value);
+                return price >= 0 ? new double[]{price} : null;
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private static long[] toSortedArray(List<Long> ids) {
+        long[] result = ids.stream().filter(id -> id != null).mapToLong(Long::longValue).toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static boolean contains(long[] sorted, Long id) {
+        return id != null && sorted.length > 0 && Arrays.binarySearch(sorted, id) >= 0;
+    }
+}
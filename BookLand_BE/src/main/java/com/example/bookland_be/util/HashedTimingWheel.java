@@ -0,0 +1,142 @@
+package com.example.bookland_be.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Hashed timing wheel (kiểu Netty): mỗi tick chỉ duyệt 1 bucket, schedule / cancel là O(1).
+ * Worker thread chỉ làm nhiệm vụ đếm tick, task hết hạn được đẩy sang executor để chạy.
+ */
+@Slf4j
+public class HashedTimingWheel implements AutoCloseable {
+
+    private final long tickMillis;
+    private final int mask;
+    private final List<Timeout>[] buckets;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Executor executor;
+    private final Thread worker;
+    private final long startMillis;
+
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(String name, Duration tick, int ticksPerWheel, Executor executor) {
+        if (Integer.bitCount(ticksPerWheel) != 1) {
+            throw new IllegalArgumentException("ticksPerWheel must be a power of two");
+        }
+        this.tickMillis = tick.toMillis();
+        this.mask = ticksPerWheel - 1;
+        this.buckets = new List[ticksPerWheel];
+        for (int i = 0; i < ticksPerWheel; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.executor = executor;
+        this.startMillis = System.currentTimeMillis();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Đặt task chạy tại thời điểm deadline (deadline trong quá khứ => chạy ở tick kế tiếp)
+     */
+    public Timeout schedule(Runnable task, Instant deadline) {
+        Timeout timeout = new Timeout(task, deadline.toEpochMilli());
+        pending.add(timeout);
+        return timeout;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long sleepMillis = startMillis + (tick + 1) * tickMillis - System.currentTimeMillis();
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+            transferPending(tick);
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPending(long currentTick) {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long deadlineTick = Math.max((timeout.deadlineMillis - startMillis) / tickMillis, currentTick);
+            timeout.remainingRounds = (deadlineTick - currentTick) / buckets.length;
+            buckets[(int) (deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        for (int i = bucket.size() - 1; i >= 0; i--) {
+            Timeout timeout = bucket.get(i);
+            if (timeout.cancelled || timeout.remainingRounds <= 0) {
+                // Xoá kiểu swap-remove để không phải dịch mảng
+                bucket.set(i, bucket.get(bucket.size() - 1));
+                bucket.remove(bucket.size() - 1);
+                if (!timeout.cancelled) {
+                    dispatch(timeout);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    private void dispatch(Timeout timeout) {
+        try {
+            executor.execute(timeout.task);
+        } catch (RuntimeException e) {
+            log.error("Cannot dispatch timing wheel task", e);
+        }
+    }
+
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadlineMillis;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineMillis) {
+            this.task = task;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public Instant getDeadline() {
+            return Instant.ofEpochMilli(deadlineMillis);
+        }
+    }
+}
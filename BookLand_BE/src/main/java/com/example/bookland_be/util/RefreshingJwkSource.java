@@ -0,0 +1,152 @@
+package com.example.bookland_be.util;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JWK set lấy từ URI (http(s) hoặc file:), giữ trong bộ nhớ theo Cache-Control max-age.
+ * - refreshIfStale(): gọi định kỳ ở background để làm mới trước khi hết hạn
+ * - gặp kid lạ => tải lại ngay (có giới hạn tần suất) để bắt kịp key rotation
+ * - tải lỗi thì vẫn dùng bộ key cũ
+ */
+@Slf4j
+public class RefreshingJwkSource implements JWKSource<SecurityContext> {
+
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    private final URI uri;
+    private final Duration defaultTtl;
+    private final Duration minTtl;
+    private final Duration maxTtl;
+    private final Duration unknownKidCooldown;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile JWKSet jwkSet;
+    private volatile long expiresAt;
+    private volatile long lastForcedRefresh;
+
+    public RefreshingJwkSource(URI uri, Duration defaultTtl, Duration minTtl, Duration maxTtl,
+                               Duration unknownKidCooldown, Duration timeout) {
+        this.uri = uri;
+        this.defaultTtl = defaultTtl;
+        this.minTtl = minTtl;
+        this.maxTtl = maxTtl;
+        this.unknownKidCooldown = unknownKidCooldown;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        JWKSet current = jwkSet;
+        if (current == null) {
+            current = refresh(false);
+        }
+        List<JWK> matches = jwkSelector.select(current);
+        if (!matches.isEmpty()) {
+            return matches;
+        }
+
+        // kid chưa biết => có thể key vừa được rotate
+        Set<String> keyIds = jwkSelector.getMatcher().getKeyIDs();
+        if (keyIds != null && !keyIds.isEmpty()
+                && System.currentTimeMillis() - lastForcedRefresh >= unknownKidCooldown.toMillis()) {
+            return jwkSelector.select(refresh(true));
+        }
+        return matches;
+    }
+
+    /**
+     * Làm mới nếu bộ key sắp hết hạn (trong khoảng {@code ahead})
+     */
+    public void refreshIfStale(Duration ahead) {
+        if (jwkSet != null && expiresAt - System.currentTimeMillis() > ahead.toMillis()) {
+            return;
+        }
+        try {
+            refresh(false);
+        } catch (KeySourceException e) {
+            log.warn("Cannot refresh JWK set from {}: {}", uri, e.getMessage());
+        }
+    }
+
+    private JWKSet refresh(boolean forced) throws KeySourceException {
+        JWKSet before = jwkSet;
+        refreshLock.lock();
+        try {
+            // Thread khác vừa tải xong trong lúc chờ lock
+            if (jwkSet != null && jwkSet != before) {
+                return jwkSet;
+            }
+            if (forced) {
+                lastForcedRefresh = System.currentTimeMillis();
+            }
+            try {
+                load();
+            } catch (IOException | ParseException e) {
+                if (jwkSet == null) {
+                    throw new KeySourceException("Cannot load JWK set from " + uri, e);
+                }
+                log.warn("Cannot reload JWK set from {}, keeping cached keys: {}", uri, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KeySourceException("Interrupted while loading JWK set", e);
+            }
+            return jwkSet;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void load() throws IOException, InterruptedException, ParseException {
+        String body;
+        Duration ttl = defaultTtl;
+        if ("file".equalsIgnoreCase(uri.getScheme())) {
+            body = Files.readString(Path.of(uri));
+        } else {
+            HttpResponse<String> response = httpClient.send(
+                    HttpRequest.newBuilder(uri).timeout(timeout).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP " + response.statusCode());
+            }
+            body = response.body();
+            ttl = response.headers().firstValue("Cache-Control")
+                    .map(MAX_AGE::matcher)
+                    .filter(Matcher::find)
+                    .map(m -> Duration.ofSeconds(Long.parseLong(m.group(1))))
+                    .orElse(defaultTtl);
+        }
+
+        if (ttl.compareTo(minTtl) < 0) {
+            ttl = minTtl;
+        } else if (ttl.compareTo(maxTtl) > 0) {
+            ttl = maxTtl;
+        }
+        jwkSet = JWKSet.parse(body);
+        expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        log.info("Loaded {} key(s) from {}, valid for {}", jwkSet.getKeys().size(), uri, ttl);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.bookland_be.util;
+
+/**
+ * Sinh id 64 bit tăng dần theo thời gian (kiểu Snowflake): 41 bit millisecond tính từ {@link #EPOCH},
+ * 10 bit node, 12 bit sequence (4096 id / ms / node).
+ * Id lớn hơn mọi id AUTO_INCREMENT cũ nên seek paging theo id vẫn đúng thứ tự.
+ */
+public class TimeOrderedIdGenerator {
+
+    // 2024-01-01T00:00:00Z
+    public static final long EPOCH = 1_704_067_200_000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private long lastTimestamp = -1L;
+    private long sequence;
+
+    public TimeOrderedIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must be in [0, " + MAX_NODE_ID + "]");
+        }
+        this.nodeId = nodeId;
+    }
+
+    public int getNodeId() {
+        return (int) nodeId;
+    }
+
+    public synchronized long nextId() {
+        // Đồng hồ lùi thì giữ mốc cũ, không sinh id nhỏ hơn id đã cấp
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // Hết sequence trong ms này => chờ sang ms kế tiếp
+                do {
+                    timestamp = System.currentTimeMillis();
+                } while (timestamp <= lastTimestamp);
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+}
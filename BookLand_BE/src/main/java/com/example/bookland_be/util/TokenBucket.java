@@ -0,0 +1,59 @@
+package com.example.bookland_be.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket: tối đa {@code capacity} token, hồi {@code refillPerSecond} token mỗi giây.
+ * Thread-safe (synchronized, mỗi bucket chỉ 1 key nên tranh chấp thấp).
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public synchronized boolean tryConsume() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    // Chờ tới khi có token (dùng cho giới hạn tốc độ gửi, không phải để từ chối request)
+    public void acquire() {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNanos = (long) ((1 - tokens) / refillPerNano);
+            }
+            LockSupport.parkNanos(Math.max(waitNanos, 1_000_000L));
+        }
+    }
+
+    // Bucket đầy = không còn ý nghĩa giữ lại (dùng khi dọn map)
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
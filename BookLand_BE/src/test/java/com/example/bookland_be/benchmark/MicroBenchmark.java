@@ -0,0 +1,61 @@
+package com.example.bookland_be.benchmark;
+
+import java.util.Locale;
+
+/**
+ * Micro-benchmark tối giản cho test JUnit có tag "benchmark" (chạy bằng: gradle benchmark).
+ * Chạy warmup cho JIT rồi đo nhiều vòng, lấy vòng nhanh nhất để giảm nhiễu GC / scheduler.
+ */
+public final class MicroBenchmark {
+
+    public static final String TAG = "benchmark";
+
+    @FunctionalInterface
+    public interface Operation {
+        void run(int iteration) throws Exception;
+    }
+
+    public record Result(String name, long operations, long bestNanos) {
+
+        public double nanosPerOp() {
+            return (double) bestNanos / operations;
+        }
+
+        public double opsPerSecond() {
+            return operations * 1_000_000_000d / bestNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-48s %12.0f ops/s %10.2f us/op",
+                    name, opsPerSecond(), nanosPerOp() / 1_000);
+        }
+    }
+
+    private MicroBenchmark() {
+    }
+
+    public static Result run(String name, int operations, Operation operation) throws Exception {
+        return run(name, operations, 3, 5, operation);
+    }
+
+    public static Result run(String name, int operations, int warmupRounds, int measuredRounds,
+                             Operation operation) throws Exception {
+        for (int round = 0; round < warmupRounds; round++) {
+            for (int i = 0; i < operations; i++) {
+                operation.run(i);
+            }
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < measuredRounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                operation.run(i);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        Result result = new Result(name, operations, Math.max(best, 1));
+        System.out.println("[benchmark] " + result);
+        return result;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.bookland_be.config;
+
+import com.example.bookland_be.benchmark.MicroBenchmark;
+import com.example.bookland_be.repository.InvalidatedTokenRepository;
+import com.example.bookland_be.service.TokenRevocationService;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Throughput decode access token mỗi request: đường cũ (introspect: MACVerifier mới + existsById,
+ * rồi NimbusJwtDecoder parse / verify lần 2) so với CustomJwtDecoder hiện tại với TokenRevocationService thật.
+ * Bloom filter được rebuild từ 10k JTI đã thu hồi; DB / Redis là stub nên chỉ đếm số lần gọi, không mô phỏng độ trễ.
+ */
+@Tag(MicroBenchmark.TAG)
+class CustomJwtDecoderBenchmark {
+
+    private static final String SIGNER_KEY = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+    private static final int OPERATIONS = 20_000;
+    private static final int REVOKED_IN_DB = 10_000;
+
+    private final AtomicInteger dbLookups = new AtomicInteger();
+    private final AtomicInteger redisLookups = new AtomicInteger();
+
+    private String[] validTokens;
+    private String[] filterHitTokens;
+    private String[] revokedTokens;
+    private CustomJwtDecoder decoder;
+    private InvalidatedTokenRepository legacyRepository;
+    private NimbusJwtDecoder legacyNimbusDecoder;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        validTokens = tokens(1_000, "valid-");
+        // JTI nằm trong filter nhưng không còn bị thu hồi (vd. false positive): filter báo "có thể" => hỏi Redis + DB
+        filterHitTokens = tokens(1_000, "maybe-");
+        revokedTokens = tokens(1_000, "revoked-");
+
+        List<String> filterIds = new ArrayList<>();
+        for (int i = 0; i < REVOKED_IN_DB; i++) {
+            filterIds.add("old-" + i);
+        }
+        for (String token : filterHitTokens) {
+            filterIds.add(jti(token));
+        }
+        for (String token : revokedTokens) {
+            filterIds.add(jti(token));
+        }
+
+        // stubOnly: không ghi lại invocation, chi phí gọi stub không phình theo số vòng đo
+        InvalidatedTokenRepository repository = mock(InvalidatedTokenRepository.class, withSettings().stubOnly());
+        when(repository.findIdsExpiringAfter(any())).thenReturn(filterIds);
+        when(repository.existsById(anyString())).thenAnswer(invocation -> {
+            dbLookups.incrementAndGet();
+            return invocation.<String>getArgument(0).startsWith("revoked-");
+        });
+        when(repository.existsActiveById(anyString(), any())).thenAnswer(invocation -> {
+            dbLookups.incrementAndGet();
+            return invocation.<String>getArgument(0).startsWith("revoked-");
+        });
+        StringRedisTemplate redis = mock(StringRedisTemplate.class, withSettings().stubOnly());
+        when(redis.getExpire(anyString())).thenAnswer(invocation -> {
+            redisLookups.incrementAndGet();
+            return invocation.<String>getArgument(0).contains("revoked-") ? 3_600L : -2L;
+        });
+
+        TokenRevocationService revocationService = new TokenRevocationService(repository, redis,
+                mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(revocationService, "maxStaleness", Duration.ofHours(1));
+        revocationService.rebuild();
+
+        decoder = new CustomJwtDecoder();
+        ReflectionTestUtils.setField(decoder, "signerKey", SIGNER_KEY);
+        ReflectionTestUtils.setField(decoder, "tokenRevocationService", revocationService);
+        decoder.init();
+
+        legacyNimbusDecoder = NimbusJwtDecoder.withSecretKey(new SecretKeySpec(SIGNER_KEY.getBytes(), "HS512"))
+                .macAlgorithm(MacAlgorithm.HS512)
+                .build();
+        legacyRepository = repository;
+    }
+
+    @Test
+    void decodeThroughput() throws Exception {
+        long[] sink = new long[1];
+
+        MicroBenchmark.Result legacy = MicroBenchmark.run("legacy: introspect + existsById + Nimbus", OPERATIONS,
+                i -> sink[0] += legacyDecode(validTokens[i % validTokens.length]).getClaims().size());
+        int legacyDb = dbLookups.getAndSet(0);
+
+        MicroBenchmark.Result miss = MicroBenchmark.run("single pass, Bloom miss", OPERATIONS,
+                i -> sink[0] += decoder.decode(validTokens[i % validTokens.length]).getClaims().size());
+        int missDb = dbLookups.getAndSet(0);
+        int missRedis = redisLookups.getAndSet(0);
+
+        MicroBenchmark.Result hit = MicroBenchmark.run("single pass, Bloom hit (not revoked)", OPERATIONS,
+                i -> sink[0] += decoder.decode(filterHitTokens[i % filterHitTokens.length]).getClaims().size());
+        int hitDb = dbLookups.getAndSet(0);
+        int hitRedis = redisLookups.getAndSet(0);
+
+        MicroBenchmark.Result revoked = MicroBenchmark.run("single pass, Bloom hit (revoked)", OPERATIONS, i -> {
+            try {
+                decoder.decode(revokedTokens[i % revokedTokens.length]);
+            } catch (JwtException e) {
+                sink[0]++;
+            }
+        });
+        int revokedDb = dbLookups.getAndSet(0);
+        int revokedRedis = redisLookups.getAndSet(0);
+
+        // 3 warmup + 5 vòng đo
+        double calls = 8d * OPERATIONS;
+        System.out.printf(Locale.ROOT, "[benchmark] lookups per request (db / redis): legacy %.2f / 0, miss %.2f / %.2f, "
+                        + "hit %.2f / %.2f, revoked %.4f / %.4f%n",
+                legacyDb / calls, missDb / calls, missRedis / calls, hitDb / calls, hitRedis / calls,
+                revokedDb / calls, revokedRedis / calls);
+        System.out.printf(Locale.ROOT, "[benchmark] decode speedup vs legacy: miss x%.2f, hit x%.2f%n",
+                legacy.nanosPerOp() / miss.nanosPerOp(), legacy.nanosPerOp() / hit.nanosPerOp());
+
+        assertThat(sink[0]).isPositive();
+        // Token hợp lệ không chạm DB / Redis; token thu hồi chỉ hỏi Redis 1 lần rồi nằm trong store local
+        assertThat(missDb + missRedis).isZero();
+        assertThat(revokedRedis).isEqualTo(revokedTokens.length);
+        assertThat(revokedDb).isZero();
+        assertThat(legacyDb).isEqualTo((int) calls);
+    }
+
+    @Test
+    void revokedTokenIsRejectedByBothPaths() {
+        assertThatThrownBy(() -> decoder.decode(revokedTokens[0])).isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> legacyDecode(revokedTokens[0])).isInstanceOf(JwtException.class);
+        assertThat(decoder.decode(filterHitTokens[0]).getClaims())
+                .isEqualTo(legacyDecode(filterHitTokens[0]).getClaims());
+    }
+
+    // Bản sao CustomJwtDecoder.decode + AuthenticationServiceImpl.verifyToken (ACCESS) trước khi gộp 1 lần verify
+    private Jwt legacyDecode(String token) {
+        try {
+            SignedJWT signedJWT = SignedJWT.parse(token);
+            Date expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
+            boolean verified = signedJWT.verify(new MACVerifier(SIGNER_KEY.getBytes()));
+            if (!(verified && expiryTime.after(new Date()))
+                    || legacyRepository.existsById(signedJWT.getJWTClaimsSet().getJWTID())) {
+                throw new JwtException("Token invalid");
+            }
+        } catch (JwtException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new JwtException(e.getMessage());
+        }
+        return legacyNimbusDecoder.decode(token);
+    }
+
+    private static String[] tokens(int count, String jtiPrefix) throws Exception {
+        MACSigner signer = new MACSigner(SIGNER_KEY.getBytes());
+        String[] tokens = new String[count];
+        for (int i = 0; i < count; i++) {
+            JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
+                    .subject("user" + i + "@bookland.test")
+                    .issuer("kaita")
+                    .issueTime(new Date())
+                    .expirationTime(new Date(Instant.now().plus(1, ChronoUnit.HOURS).toEpochMilli()))
+                    .jwtID(jtiPrefix + UUID.randomUUID())
+                    .claim("type", "ACCESS")
+                    .claim("scope", String.join(" ", Set.of("ROLE_USER", "ROLE_READ_BOOK", "ROLE_CHAT")))
+                    .build();
+            SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS512), claimsSet);
+            jwt.sign(signer);
+            tokens[i] = jwt.serialize();
+        }
+        return tokens;
+    }
+
+    private static String jti(String token) throws Exception {
+        return SignedJWT.parse(token).getJWTClaimsSet().getJWTID();
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.bookland_be.config;
+
+import com.example.bookland_be.benchmark.MicroBenchmark;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.AbstractMessageBrokerConfiguration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.DefaultSimpUserRegistry;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 2 "node" (2 context spring-messaging, mỗi node 1 simple broker) nối với nhau bằng RedisBrokerFanout,
+ * Redis pub/sub được thay bằng 1 kênh in-memory (mỗi subscriber 1 thread, giữ thứ tự như Redis).
+ */
+class RedisBrokerFanoutTest {
+
+    private InMemoryPubSub pubSub;
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void setUp() {
+        pubSub = new InMemoryPubSub();
+        nodeA = new Node(pubSub);
+        nodeB = new Node(pubSub);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+        pubSub.close();
+    }
+
+    @Test
+    void topicMessageReachesSubscribersOnBothNodesExactlyOnce() throws Exception {
+        Client onA = nodeA.connect("a-1", "alice");
+        Client onB = nodeB.connect("b-1", "bob");
+        onA.subscribe("/topic/books", "/topic/books");
+        onB.subscribe("/topic/books", "/topic/books");
+
+        nodeA.template().convertAndSend("/topic/books", "new-book");
+
+        assertThat(onA.next()).isEqualTo("new-book");
+        assertThat(onB.next()).isEqualTo("new-book");
+        // Không bị gửi lặp (node gốc bỏ qua message của chính nó, node nhận không publish lại)
+        assertThat(onA.poll(200)).isNull();
+        assertThat(onB.poll(200)).isNull();
+        assertThat(pubSub.published()).isEqualTo(1);
+    }
+
+    @Test
+    void userDestinationIsResolvedOnTheNodeHoldingTheSession() throws Exception {
+        Client bob = nodeB.connect("b-1", "bob");
+        bob.subscribe("/user/queue/notifications", "/queue/notifications-userb-1");
+
+        nodeA.template().convertAndSendToUser("bob", "/queue/notifications", "order-shipped");
+
+        assertThat(bob.next()).isEqualTo("order-shipped");
+        assertThat(bob.poll(200)).isNull();
+    }
+
+    @Test
+    void queueDestinationsAreNotFannedOut() throws Exception {
+        Client onB = nodeB.connect("b-1", "bob");
+        onB.subscribe("/queue/local", "/queue/local");
+
+        nodeA.template().convertAndSend("/queue/local", "node-a-only");
+
+        assertThat(onB.poll(300)).isNull();
+        assertThat(pubSub.published()).isZero();
+    }
+
+    @Test
+    @Tag(MicroBenchmark.TAG)
+    void crossNodeFanOutLatency() throws Exception {
+        Client onB = nodeB.connect("b-1", "bob");
+        onB.subscribe("/topic/latency", "/topic/latency");
+
+        int messages = 2_000;
+        long[] latencies = new long[messages];
+        for (int i = 0; i < messages; i++) {
+            nodeA.template().convertAndSend("/topic/latency", Long.toString(System.nanoTime()));
+            String payload = onB.next();
+            latencies[i] = System.nanoTime() - Long.parseLong(payload);
+        }
+
+        Arrays.sort(latencies);
+        long p50 = latencies[messages / 2];
+        long p99 = latencies[messages * 99 / 100];
+        System.out.printf("[benchmark] cross-node fan-out latency (in-memory pub/sub, %d msgs): p50 %.1f us, p99 %.1f us%n",
+                messages, p50 / 1_000.0, p99 / 1_000.0);
+        // Chỉ chặn trên rộng: số đo thật phụ thuộc Redis / mạng
+        assertThat(TimeUnit.NANOSECONDS.toMillis(p99)).isLessThan(500);
+    }
+
+    // ===== Hạ tầng test =====
+
+    /**
+     * Thay Redis pub/sub: StringRedisTemplate.convertAndSend và RedisMessageListenerContainer.addMessageListener
+     * của mọi node dùng chung 1 danh sách subscriber
+     */
+    static final class InMemoryPubSub {
+
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final AtomicInteger published = new AtomicInteger();
+
+        private record Subscriber(String channel, MessageListener listener, ExecutorService executor) {
+        }
+
+        StringRedisTemplate template() {
+            StringRedisTemplate template = mock(StringRedisTemplate.class);
+            when(template.convertAndSend(anyString(), any())).thenAnswer(invocation -> {
+                String channel = invocation.getArgument(0);
+                byte[] body = invocation.getArgument(1, String.class).getBytes(StandardCharsets.UTF_8);
+                published.incrementAndGet();
+                for (Subscriber subscriber : subscribers) {
+                    if (subscriber.channel().equals(channel)) {
+                        subscriber.executor().execute(() -> subscriber.listener().onMessage(
+                                new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8), body), null));
+                    }
+                }
+                return 1L;
+            });
+            return template;
+        }
+
+        RedisMessageListenerContainer container() {
+            RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+            doAnswer(invocation -> {
+                ChannelTopic topic = invocation.getArgument(1);
+                subscribers.add(new Subscriber(topic.getTopic(), invocation.getArgument(0),
+                        Executors.newSingleThreadExecutor()));
+                return null;
+            }).when(container).addMessageListener(any(MessageListener.class), any(ChannelTopic.class));
+            return container;
+        }
+
+        int published() {
+            return published.get();
+        }
+
+        void close() {
+            subscribers.forEach(subscriber -> subscriber.executor().shutdownNow());
+        }
+    }
+
+    @Configuration
+    static class NodeConfig extends AbstractMessageBrokerConfiguration {
+
+        @Autowired
+        private InMemoryPubSub pubSub;
+
+        @Bean
+        public RedisBrokerFanout redisBrokerFanout() {
+            // Giống @Lazy brokerChannel của bean thật: brokerChannel cần interceptor này để khởi tạo
+            MessageChannel brokerChannel = (message, timeout) -> getApplicationContext()
+                    .getBean("brokerChannel", MessageChannel.class).send(message, timeout);
+            return new RedisBrokerFanout(pubSub.template(), pubSub.container(), brokerChannel);
+        }
+
+        @Override
+        protected void configureMessageBroker(MessageBrokerRegistry registry) {
+            // Giống WebSocketConfig ở websocket.broker.mode=redis
+            registry.enableSimpleBroker("/topic", "/queue");
+            registry.configureBrokerChannel().interceptors(redisBrokerFanout());
+            registry.setApplicationDestinationPrefixes("/app");
+            registry.setUserDestinationPrefix("/user");
+        }
+
+        @Override
+        protected SimpUserRegistry createLocalUserRegistry(Integer order) {
+            return new DefaultSimpUserRegistry();
+        }
+    }
+
+    static final class Node implements AutoCloseable {
+
+        private final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        private final Map<String, BlockingQueue<String>> inboxes = new ConcurrentHashMap<>();
+
+        Node(InMemoryPubSub pubSub) {
+            context.registerBean(InMemoryPubSub.class, () -> pubSub);
+            context.register(NodeConfig.class);
+            context.refresh();
+            // Message broker gửi cho client đi qua clientOutboundChannel
+            context.getBean("clientOutboundChannel", SubscribableChannel.class).subscribe(message -> {
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+                BlockingQueue<String> inbox = inboxes.get(accessor.getSessionId());
+                if (accessor.getMessageType() == SimpMessageType.MESSAGE && inbox != null) {
+                    inbox.add(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+                }
+            });
+        }
+
+        SimpMessagingTemplate template() {
+            return context.getBean("brokerMessagingTemplate", SimpMessagingTemplate.class);
+        }
+
+        Client connect(String sessionId, String userName) {
+            Principal user = () -> userName;
+            inboxes.put(sessionId, new LinkedBlockingQueue<>());
+
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId(sessionId);
+            connect.setUser(user);
+            Message<byte[]> message = MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders());
+            clientInbound().send(message);
+            // Như StompSubProtocolHandler phát SessionConnectedEvent sau CONNECTED
+            context.getBean(DefaultSimpUserRegistry.class)
+                    .onApplicationEvent(new SessionConnectedEvent(this, message, user));
+            return new Client(this, sessionId, user);
+        }
+
+        MessageChannel clientInbound() {
+            return context.getBean("clientInboundChannel", MessageChannel.class);
+        }
+
+        boolean hasSubscription(String sessionId, String brokerDestination) {
+            SimpMessageHeaderAccessor probe = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            probe.setDestination(brokerDestination);
+            return context.getBean(SimpleBrokerMessageHandler.class).getSubscriptionRegistry()
+                    .findSubscriptions(MessageBuilder.createMessage(new byte[0], probe.getMessageHeaders()))
+                    .containsKey(sessionId);
+        }
+
+        @Override
+        public void close() {
+            context.close();
+        }
+    }
+
+    record Client(Node node, String sessionId, Principal user) {
+
+        /**
+         * @param brokerDestination đích sau khi resolve (vd. /user/queue/x => /queue/x-user{sessionId})
+         */
+        void subscribe(String destination, String brokerDestination) throws InterruptedException {
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId(sessionId);
+            subscribe.setSubscriptionId("sub-" + destination);
+            subscribe.setDestination(destination);
+            subscribe.setUser(user);
+            node.clientInbound().send(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+
+            // clientInboundChannel chạy bất đồng bộ: chờ broker đăng ký xong subscription
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (!node.hasSubscription(sessionId, brokerDestination)) {
+                assertThat(System.currentTimeMillis()).as("subscription registered").isLessThan(deadline);
+                Thread.sleep(5);
+            }
+        }
+
+        String next() throws InterruptedException {
+            String payload = poll(5_000);
+            assertThat(payload).as("message delivered to " + sessionId).isNotNull();
+            return payload;
+        }
+
+        String poll(long timeoutMillis) throws InterruptedException {
+            return node.inboxes.get(sessionId).poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.bookland_be.controller.common;
+
+import com.example.bookland_be.service.impl.LocalStorageServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class LocalFileControllerTest {
+
+    private static final String CONTENT = "0123456789";
+    private static final String URL = "/api/files/cover.jpg";
+
+    @TempDir
+    Path root;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(root.resolve("cover.jpg"), CONTENT, StandardCharsets.US_ASCII);
+        LocalStorageServiceImpl storageService =
+                new LocalStorageServiceImpl(root.toString(), "http://localhost:8080/api/files/");
+        LocalFileController controller = new LocalFileController(storageService);
+        ReflectionTestUtils.setField(controller, "cacheMaxAge", Duration.ofDays(365));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void servesWholeFileWithValidators() throws Exception {
+        mockMvc.perform(get(URL))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length()))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable"))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    void servesSingleRangeAsPartialContent() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(content().string("2345"));
+    }
+
+    @Test
+    void rejectsRangeOutsideFile() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=20-30"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    void ignoresRangeWhenIfRangeDoesNotMatch() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=2-5").header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    void returnsNotModifiedForMatchingEtag() throws Exception {
+        String etag = mockMvc.perform(get(URL)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(URL).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void rejectsRelativePublicUrlPrefix() {
+        assertThatThrownBy(() -> new LocalStorageServiceImpl(root.toString(), "/api/files/"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.entity.ChatConversation;
+import com.example.bookland_be.entity.User;
+import com.example.bookland_be.repository.ChatConversationRepository;
+import com.example.bookland_be.repository.ChatMessageRepository;
+import com.example.bookland_be.repository.UserRepository;
+import com.example.bookland_be.service.ChatConversationService.MessageSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * recordMessages / applySide với repository mock: mỗi chiều chỉ ghi tin mới nhất + số tin đến chưa đọc
+ */
+class ChatConversationServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 1, 10, 0);
+
+    private ChatConversationRepository chatConversationRepository;
+    private ChatConversationService service;
+
+    @BeforeEach
+    void setUp() {
+        chatConversationRepository = mock(ChatConversationRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.getReferenceById(anyLong()))
+                .thenAnswer(invocation -> User.builder().id(invocation.getArgument(0)).build());
+        service = new ChatConversationService(chatConversationRepository, mock(ChatMessageRepository.class),
+                userRepository, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void batchUpdatesEachSideOnceWithLatestMessageAndIncomingCount() {
+        when(chatConversationRepository.existsByOwnerIdAndPeerId(anyLong(), anyLong())).thenReturn(true);
+
+        service.recordMessages(List.of(
+                message(11L, 1L, 2L, true),
+                message(13L, 2L, 1L, true),
+                message(12L, 1L, 2L, true)));
+
+        verify(chatConversationRepository).applyMessage(1L, 2L, 13L, 2L, "m13", NOW.plusSeconds(13));
+        verify(chatConversationRepository).applyMessage(2L, 1L, 13L, 2L, "m13", NOW.plusSeconds(13));
+        verify(chatConversationRepository, times(2)).applyMessage(anyLong(), anyLong(), anyLong(), anyLong(), any(), any());
+        // 2 tin 1 -> 2 chưa đọc, 1 tin 2 -> 1 chưa đọc
+        verify(chatConversationRepository).incrementUnread(2L, 1L, 2L);
+        verify(chatConversationRepository).incrementUnread(1L, 2L, 1L);
+    }
+
+    @Test
+    void readMessagesAreNotCounted() {
+        when(chatConversationRepository.existsByOwnerIdAndPeerId(anyLong(), anyLong())).thenReturn(true);
+
+        service.recordMessages(List.of(message(11L, 1L, 2L, false)));
+
+        verify(chatConversationRepository).applyMessage(2L, 1L, 11L, 1L, "m11", NOW.plusSeconds(11));
+        verify(chatConversationRepository, never()).incrementUnread(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void missingRowIsInsertedWithIncomingCount() {
+        service.recordMessages(List.of(message(11L, 1L, 2L, true), message(12L, 1L, 2L, true)));
+
+        ArgumentCaptor<ChatConversation> saved = ArgumentCaptor.forClass(ChatConversation.class);
+        verify(chatConversationRepository, times(2)).saveAndFlush(saved.capture());
+        assertThat(saved.getAllValues())
+                .extracting(row -> row.getOwner().getId(), ChatConversation::getLastMessageId, ChatConversation::getUnreadCount)
+                .containsExactlyInAnyOrder(tuple(1L, 12L, 0L), tuple(2L, 12L, 2L));
+        verify(chatConversationRepository, never()).applyMessage(anyLong(), anyLong(), anyLong(), anyLong(), any(), any());
+    }
+
+    @Test
+    void concurrentInsertIsRetriedAsUpdate() {
+        // Request khác tạo dòng giữa lúc kiểm tra và lúc INSERT
+        when(chatConversationRepository.existsByOwnerIdAndPeerId(2L, 1L)).thenReturn(false, true);
+        when(chatConversationRepository.existsByOwnerIdAndPeerId(1L, 2L)).thenReturn(true);
+        when(chatConversationRepository.saveAndFlush(any()))
+                .thenThrow(new DataIntegrityViolationException("uk_chat_conversation_owner_peer"));
+
+        service.recordMessages(List.of(message(11L, 1L, 2L, true)));
+
+        verify(chatConversationRepository).saveAndFlush(any());
+        verify(chatConversationRepository).applyMessage(2L, 1L, 11L, 1L, "m11", NOW.plusSeconds(11));
+        verify(chatConversationRepository).incrementUnread(2L, 1L, 1L);
+    }
+
+    @Test
+    void failureOnOneSideDoesNotBlockTheOther() {
+        when(chatConversationRepository.existsByOwnerIdAndPeerId(anyLong(), anyLong())).thenReturn(true);
+        when(chatConversationRepository.applyMessage(eq(1L), eq(2L), anyLong(), anyLong(), any(), any()))
+                .thenThrow(new QueryTimeoutException("lock wait timeout"));
+
+        service.recordMessages(List.of(message(11L, 1L, 2L, true)));
+
+        verify(chatConversationRepository).applyMessage(2L, 1L, 11L, 1L, "m11", NOW.plusSeconds(11));
+        verify(chatConversationRepository).incrementUnread(2L, 1L, 1L);
+    }
+
+    @Test
+    void previewIsTruncated() {
+        MessageSnapshot snapshot = MessageSnapshot.of(1L, 1L, 2L, "x".repeat(500), NOW, true);
+
+        assertThat(snapshot.preview()).hasSize(200);
+    }
+
+    private static MessageSnapshot message(Long id, Long from, Long to, boolean unread) {
+        return MessageSnapshot.of(id, from, to, "m" + id, NOW.plusSeconds(id), unread);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.dto.response.ChatHistoryPageResponse;
+import com.example.bookland_be.dto.response.ChatMessageResponse;
+import com.example.bookland_be.entity.ChatMessage;
+import com.example.bookland_be.entity.User;
+import com.example.bookland_be.repository.ChatMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Phân trang seek của getChatHistoryPage trên chat_message giả lập trong bộ nhớ (query trả về theo id giảm dần)
+ */
+class ChatMessageServiceTest {
+
+    private static final User ADMIN = User.builder().id(1L).username("admin").email("admin@bookland.test").build();
+    private static final User CUSTOMER = User.builder().id(9L).username("customer").email("customer@bookland.test").build();
+    private static final User OTHER = User.builder().id(5L).username("other").email("other@bookland.test").build();
+
+    private final List<ChatMessage> table = new ArrayList<>();
+    private final List<Pageable> pageables = new ArrayList<>();
+    private ChatMessageService service;
+
+    @BeforeEach
+    void setUp() {
+        ChatMessageRepository repository = mock(ChatMessageRepository.class);
+        when(repository.findLatestInConversation(anyLong(), anyLong(), any())).thenAnswer(invocation ->
+                query(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2), message -> true));
+        when(repository.findInConversationBefore(anyLong(), anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            Long beforeId = invocation.getArgument(2);
+            return query(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(3),
+                    message -> message.getId() < beforeId);
+        });
+        service = new ChatMessageService(repository, mock(SimpMessagingTemplate.class),
+                mock(ChatConversationService.class), mock(UnreadCounterService.class),
+                mock(ChatMessageWriter.class), mock(UserPrincipalService.class));
+    }
+
+    @Test
+    void pagesBackwardsInChronologicalOrder() {
+        for (long id = 1; id <= 5; id++) {
+            insert(id, id % 2 == 0 ? CUSTOMER : ADMIN, id % 2 == 0 ? ADMIN : CUSTOMER);
+        }
+        insert(6L, OTHER, ADMIN);
+
+        ChatHistoryPageResponse first = service.getChatHistoryPage(1L, 9L, null, 2);
+        assertThat(ids(first)).containsExactly(4L, 5L);
+        assertThat(first.getNextBefore()).isEqualTo(4L);
+        assertThat(first.isHasMore()).isTrue();
+
+        // Thứ tự userId không quan trọng: cùng 1 cặp (low, high)
+        ChatHistoryPageResponse second = service.getChatHistoryPage(9L, 1L, first.getNextBefore(), 2);
+        assertThat(ids(second)).containsExactly(2L, 3L);
+        assertThat(second.getNextBefore()).isEqualTo(2L);
+
+        ChatHistoryPageResponse last = service.getChatHistoryPage(1L, 9L, second.getNextBefore(), 2);
+        assertThat(ids(last)).containsExactly(1L);
+        assertThat(last.getNextBefore()).isNull();
+        assertThat(last.isHasMore()).isFalse();
+    }
+
+    @Test
+    void newMessageBetweenPagesDoesNotShiftOlderPages() {
+        for (long id = 1; id <= 5; id++) {
+            insert(id, ADMIN, CUSTOMER);
+        }
+        ChatHistoryPageResponse first = service.getChatHistoryPage(1L, 9L, null, 2);
+
+        insert(7L, CUSTOMER, ADMIN);
+
+        // Với offset, trang 2 sẽ lặp lại tin 4
+        assertThat(ids(service.getChatHistoryPage(1L, 9L, first.getNextBefore(), 2))).containsExactly(2L, 3L);
+        assertThat(ids(service.getChatHistoryPage(1L, 9L, null, 2))).containsExactly(5L, 7L);
+    }
+
+    @Test
+    void pageSizeIsClampedAndMappedToResponse() {
+        insert(1L, CUSTOMER, ADMIN);
+
+        ChatHistoryPageResponse page = service.getChatHistoryPage(1L, 9L, null, 0);
+        service.getChatHistoryPage(1L, 9L, null, 10_000);
+
+        assertThat(pageables).extracting(Pageable::getPageSize).containsExactly(2, 101);
+        ChatMessageResponse message = page.getMessages().get(0);
+        assertThat(message.getFromUserId()).isEqualTo(9L);
+        assertThat(message.getFromEmail()).isEqualTo("customer@bookland.test");
+        assertThat(message.getToUsername()).isEqualTo("admin");
+        assertThat(message.getContent()).isEqualTo("m1");
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    void emptyConversationHasNoMore() {
+        ChatHistoryPageResponse page = service.getChatHistoryPage(1L, 9L, null, 20);
+
+        assertThat(page.getMessages()).isEmpty();
+        assertThat(page.getNextBefore()).isNull();
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    private void insert(Long id, User from, User to) {
+        table.add(ChatMessage.builder()
+                .id(id)
+                .fromUser(from)
+                .toUser(to)
+                .content("m" + id)
+                .isRead(false)
+                .createdAt(LocalDateTime.of(2026, 1, 1, 10, 0).plusMinutes(id))
+                .participantLow(Math.min(from.getId(), to.getId()))
+                .participantHigh(Math.max(from.getId(), to.getId()))
+                .build());
+    }
+
+    private List<ChatMessage> query(Long low, Long high, Pageable pageable, Predicate<ChatMessage> filter) {
+        pageables.add(pageable);
+        return table.stream()
+                .filter(message -> message.getParticipantLow().equals(low) && message.getParticipantHigh().equals(high))
+                .filter(filter)
+                .sorted(Comparator.comparing(ChatMessage::getId).reversed())
+                .limit(pageable.getPageSize())
+                .toList();
+    }
+
+    private static List<Long> ids(ChatHistoryPageResponse page) {
+        return page.getMessages().stream().map(ChatMessageResponse::getId).toList();
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bảng chat_message giả lập trong bộ nhớ: INSERT ... ON DUPLICATE KEY UPDATE id = id
+ * nguyên tử theo câu lệnh, unique (from_user_id, client_message_id) như entity
+ */
+class ChatMessageWriterTest {
+
+    private static final String BAD_CONTENT = "violates-constraint";
+    // Người nhận mở hội thoại ngay sau khi INSERT commit, trước khi writer cập nhật tóm tắt / bộ đếm
+    private static final String READ_AT_ONCE_CONTENT = "read-right-after-insert";
+
+    private final Map<Long, Object[]> rowsById = new ConcurrentHashMap<>();
+    private final Map<String, Long> idsByClientId = new ConcurrentHashMap<>();
+    private final Set<Long> readIds = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger transientFailures = new AtomicInteger();
+    private final AtomicInteger insertStatements = new AtomicInteger();
+
+    private ChatConversationService chatConversationService;
+    private UnreadCounterService unreadCounterService;
+    private ChatMessageWriter writer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        NamedParameterJdbcTemplate namedParameterJdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        chatConversationService = mock(ChatConversationService.class);
+        unreadCounterService = mock(UnreadCounterService.class);
+        ChatNodeIdLease nodeIdLease = mock(ChatNodeIdLease.class);
+        when(nodeIdLease.nodeId()).thenReturn(3);
+
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            insertStatements.incrementAndGet();
+            Object[] args = (Object[]) invocation.getRawArguments()[1];
+            if (transientFailures.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                throw new TransientDataAccessResourceException("connection reset");
+            }
+            for (int i = 0; i < args.length; i += 9) {
+                if (BAD_CONTENT.equals(args[i + 3])) {
+                    // Lỗi dữ liệu => cả câu lệnh không ghi dòng nào
+                    throw new DataIntegrityViolationException("bad row " + args[i]);
+                }
+            }
+            int affected = 0;
+            for (int i = 0; i < args.length; i += 9) {
+                Long id = (Long) args[i];
+                String clientKey = args[i + 6] != null ? args[i + 1] + ":" + args[i + 6] : null;
+                if (rowsById.containsKey(id) || (clientKey != null && idsByClientId.containsKey(clientKey))) {
+                    continue;
+                }
+                rowsById.put(id, args);
+                if (READ_AT_ONCE_CONTENT.equals(args[i + 3])) {
+                    readIds.add(id);
+                }
+                if (clientKey != null) {
+                    idsByClientId.put(clientKey, id);
+                }
+                affected++;
+            }
+            return affected;
+        });
+        when(namedParameterJdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(Long.class)))
+                .thenAnswer(invocation -> {
+                    Collection<?> ids = (Collection<?>) invocation.getArgument(1, MapSqlParameterSource.class).getValue("ids");
+                    boolean unreadOnly = invocation.<String>getArgument(0).contains("is_read = false");
+                    return ids.stream().map(Long.class::cast).filter(rowsById::containsKey)
+                            .filter(id -> !unreadOnly || !readIds.contains(id))
+                            .toList();
+                });
+        doAnswer(invocation -> {
+            MapSqlParameterSource params = invocation.getArgument(1);
+            Collection<?> senders = (Collection<?>) params.getValue("senders");
+            Collection<?> clientIds = (Collection<?>) params.getValue("clientIds");
+            RowCallbackHandler handler = invocation.getArgument(2);
+            for (Map.Entry<String, Long> entry : idsByClientId.entrySet()) {
+                String[] key = entry.getKey().split(":", 2);
+                if (senders.contains(Long.parseLong(key[0])) && clientIds.contains(key[1])) {
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getLong("id")).thenReturn(entry.getValue());
+                    when(rs.getLong("from_user_id")).thenReturn(Long.parseLong(key[0]));
+                    when(rs.getString("client_message_id")).thenReturn(key[1]);
+                    handler.processRow(rs);
+                }
+            }
+            return null;
+        }).when(namedParameterJdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+
+        // max-delay dài để các tin gửi liền nhau vào cùng 1 batch
+        writer = new ChatMessageWriter(jdbcTemplate, namedParameterJdbcTemplate, chatConversationService,
+                unreadCounterService, new SimpleMeterRegistry(), nodeIdLease,
+                100, 50, Duration.ofMillis(200), Duration.ofMillis(100), 3);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.shutdown();
+    }
+
+    @Test
+    void oneBadRowDoesNotFailTheRestOfTheBatch() throws Exception {
+        ChatMessageWriter.PendingMessage first = message(1L, 2L, "hello", "c1");
+        ChatMessageWriter.PendingMessage bad = message(1L, 2L, BAD_CONTENT, "c2");
+        ChatMessageWriter.PendingMessage third = message(3L, 2L, "hi", null);
+
+        CompletableFuture<Long> firstPersisted = writer.submit(first);
+        CompletableFuture<Long> badPersisted = writer.submit(bad);
+        CompletableFuture<Long> thirdPersisted = writer.submit(third);
+
+        assertThat(firstPersisted.get(5, TimeUnit.SECONDS)).isEqualTo(first.id());
+        assertThat(thirdPersisted.get(5, TimeUnit.SECONDS)).isEqualTo(third.id());
+        assertThatThrownBy(() -> badPersisted.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(AppException.class)
+                .satisfies(e -> assertThat(((AppException) e.getCause()).getErrorCode())
+                        .isEqualTo(ErrorCode.CHAT_MESSAGE_NOT_SAVED));
+        assertThat(rowsById).containsOnlyKeys(first.id(), third.id());
+        // Lỗi dữ liệu không thử lại cả batch: 1 lần cả batch + các nửa khi chia đôi
+        assertThat(insertStatements.get()).isLessThanOrEqualTo(5);
+        // first và third nằm ở 2 nửa khác nhau sau khi chia đôi => 2 lần ghi tóm tắt
+        assertThat(recordedMessageIds(2)).containsExactlyInAnyOrder(first.id(), third.id());
+    }
+
+    @Test
+    void resentClientMessageIdResolvesToTheStoredRow() throws Exception {
+        ChatMessageWriter.PendingMessage original = message(1L, 2L, "hello", "c1");
+        assertThat(writer.submit(original).get(5, TimeUnit.SECONDS)).isEqualTo(original.id());
+
+        // Gửi lại ở node khác / sau khi hết cửa sổ dedupe => id mới, cùng clientMessageId
+        ChatMessageWriter.PendingMessage resent = message(1L, 2L, "hello", "c1");
+        ChatMessageWriter.PendingMessage other = message(1L, 2L, "second", "c2");
+        CompletableFuture<Long> resentPersisted = writer.submit(resent);
+        CompletableFuture<Long> otherPersisted = writer.submit(other);
+
+        assertThat(resentPersisted.get(5, TimeUnit.SECONDS)).isEqualTo(original.id());
+        assertThat(otherPersisted.get(5, TimeUnit.SECONDS)).isEqualTo(other.id());
+        assertThat(rowsById).containsOnlyKeys(original.id(), other.id());
+        // Tin trùng không cộng thêm vào tóm tắt / bộ đếm chưa đọc
+        assertThat(recordedMessageIds(2)).containsExactlyInAnyOrder(original.id(), other.id());
+    }
+
+    @Test
+    void transientFailureIsRetriedForTheWholeBatch() throws Exception {
+        transientFailures.set(2);
+        ChatMessageWriter.PendingMessage message = message(1L, 2L, "hello", "c1");
+
+        assertThat(writer.submit(message).get(5, TimeUnit.SECONDS)).isEqualTo(message.id());
+        assertThat(insertStatements.get()).isEqualTo(3);
+        // Future hoàn thành trước khi cập nhật tóm tắt / bộ đếm
+        verify(unreadCounterService, timeout(1_000)).adjustAfterCommit(UnreadCounterService.Kind.CHAT, 2L, 1L);
+    }
+
+    @Test
+    void messageReadBeforeSummaryUpdateIsNotCountedAsUnread() throws Exception {
+        ChatMessageWriter.PendingMessage read = message(1L, 2L, READ_AT_ONCE_CONTENT, "c1");
+        ChatMessageWriter.PendingMessage unread = message(3L, 2L, "hello", "c2");
+        CompletableFuture<Long> readPersisted = writer.submit(read);
+        CompletableFuture<Long> unreadPersisted = writer.submit(unread);
+        readPersisted.get(5, TimeUnit.SECONDS);
+        unreadPersisted.get(5, TimeUnit.SECONDS);
+
+        List<ChatConversationService.MessageSnapshot> snapshots = recordedSnapshots(1);
+        assertThat(snapshots).filteredOn(ChatConversationService.MessageSnapshot::unread)
+                .extracting(ChatConversationService.MessageSnapshot::messageId)
+                .containsExactly(unread.id());
+        // Tin đã đọc vẫn cập nhật tin nhắn cuối nhưng không cộng vào bộ đếm
+        assertThat(snapshots).hasSize(2);
+        verify(unreadCounterService, timeout(1_000)).adjustAfterCommit(UnreadCounterService.Kind.CHAT, 2L, 1L);
+    }
+
+    @Test
+    void failsAfterMaxAttemptsOfTransientErrors() {
+        transientFailures.set(10);
+        CompletableFuture<Long> persisted = writer.submit(message(1L, 2L, "hello", "c1"));
+
+        assertThatThrownBy(() -> persisted.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(AppException.class);
+        assertThat(rowsById).isEmpty();
+        verify(chatConversationService, never()).recordMessages(anyList());
+    }
+
+    private ChatMessageWriter.PendingMessage message(Long from, Long to, String content, String clientMessageId) {
+        return new ChatMessageWriter.PendingMessage(writer.nextId(), from, to, content, LocalDateTime.now(), clientMessageId);
+    }
+
+    // afterPersist chạy sau khi future hoàn thành, mỗi batch ghi thành công 1 lần => chờ đủ số lần
+    private List<Long> recordedMessageIds(int batches) {
+        return recordedSnapshots(batches).stream()
+                .map(ChatConversationService.MessageSnapshot::messageId)
+                .toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ChatConversationService.MessageSnapshot> recordedSnapshots(int batches) {
+        ArgumentCaptor<List<ChatConversationService.MessageSnapshot>> captor = ArgumentCaptor.forClass(List.class);
+        verify(chatConversationService, timeout(1_000).times(batches)).recordMessages(captor.capture());
+        return captor.getAllValues().stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.entity.EmailCampaign;
+import com.example.bookland_be.entity.EmailDeliveryFailure;
+import com.example.bookland_be.entity.User;
+import com.example.bookland_be.repository.EmailCampaignRepository;
+import com.example.bookland_be.repository.EmailDeliveryFailureRepository;
+import com.example.bookland_be.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * EmailCampaignService + SmtpTransportPool thật, gửi tới 1 server SMTP giả lập trong process (ServerSocket).
+ * Repository là mock giữ trạng thái campaign trong bộ nhớ; pool 1 kết nối để thứ tự gửi cố định.
+ */
+class EmailCampaignServiceTest {
+
+    private static final Long CAMPAIGN_ID = 1L;
+
+    private final List<Object[]> users = new ArrayList<>();
+    private final List<EmailDeliveryFailure> savedFailures = new CopyOnWriteArrayList<>();
+    private final AtomicInteger statusChecks = new AtomicInteger();
+
+    private StubSmtpServer server;
+    private EmailCampaign campaign;
+    private SmtpTransportPool transportPool;
+    private EmailCampaignService service;
+    // Số lần đọc trạng thái trước khi "crash" giữa slice (<= 0: không crash)
+    private int crashAfterStatusChecks;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubSmtpServer();
+        campaign = EmailCampaign.builder()
+                .id(CAMPAIGN_ID).subject("Sale").templateName(EmailCampaignService.TEMPLATE_NAME)
+                .message("Giảm 30%").sendToAll(true).status(EmailCampaign.CampaignStatus.RUNNING).build();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (service != null) {
+            service.shutdown();
+        }
+        if (transportPool != null) {
+            transportPool.shutdown();
+        }
+        server.close();
+    }
+
+    @Test
+    void reusesConnectionUpToMaxMessagesPerConnection() {
+        users("a", "b", "c", "d", "e");
+        start(2);
+
+        ReflectionTestUtils.invokeMethod(service, "runSlice", CAMPAIGN_ID);
+
+        assertThat(server.connections).containsExactly(
+                List.of("a@mail.test", "b@mail.test"),
+                List.of("c@mail.test", "d@mail.test"),
+                List.of("e@mail.test"));
+        assertThat(campaign.getSentCount()).isEqualTo(5);
+        assertThat(campaign.getStatus()).isEqualTo(EmailCampaign.CampaignStatus.COMPLETED);
+    }
+
+    @Test
+    void rejectedRecipientIsRecordedAsPermanentFailure() {
+        users("a", "bad", "c");
+        start(100);
+
+        ReflectionTestUtils.invokeMethod(service, "runSlice", CAMPAIGN_ID);
+
+        // 550 ở RCPT TO không làm hỏng phiên: cả 3 thư đi trên cùng 1 kết nối
+        assertThat(server.connections).containsExactly(List.of("a@mail.test", "c@mail.test"));
+        assertThat(savedFailures).singleElement().satisfies(failure -> {
+            assertThat(failure.getEmail()).isEqualTo("bad@mail.test");
+            assertThat(failure.getPermanent()).isTrue();
+            assertThat(failure.getAttempts()).isEqualTo(1);
+        });
+        assertThat(campaign.getSentCount()).isEqualTo(2);
+        assertThat(campaign.getFailedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void transientFailureIsRetried() {
+        users("a");
+        // Kết nối đầu bị từ chối ngay từ greeting (421) => MessagingException, không phải SendFailedException
+        server.rejectConnections.set(1);
+        start(100);
+
+        ReflectionTestUtils.invokeMethod(service, "runSlice", CAMPAIGN_ID);
+
+        assertThat(server.connectionAttempts).hasValue(2);
+        assertThat(server.connections).containsExactly(List.of("a@mail.test"));
+        assertThat(savedFailures).isEmpty();
+        assertThat(campaign.getSentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void resumesFromCursorAfterInterruptedSlice() {
+        users("a", "b", "c", "d", "e");
+        // Trang 1 (a, b) gửi xong và ghi cursor, instance chết khi kiểm tra trạng thái trước trang 2
+        crashAfterStatusChecks = 1;
+        start(100);
+        assertThatThrownBy(() -> ReflectionTestUtils.invokeMethod(service, "runSlice", CAMPAIGN_ID))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(campaign.getCursorUserId()).isEqualTo(2);
+
+        crashAfterStatusChecks = 0;
+        ReflectionTestUtils.invokeMethod(service, "runSlice", CAMPAIGN_ID);
+
+        assertThat(server.connections.stream().flatMap(List::stream))
+                .containsExactly("a@mail.test", "b@mail.test", "c@mail.test", "d@mail.test", "e@mail.test");
+        assertThat(campaign.getSentCount()).isEqualTo(5);
+        assertThat(campaign.getCursorUserId()).isEqualTo(5);
+        assertThat(campaign.getStatus()).isEqualTo(EmailCampaign.CampaignStatus.COMPLETED);
+    }
+
+    private void users(String... names) {
+        for (int i = 0; i < names.length; i++) {
+            users.add(new Object[]{(long) i + 1, names[i] + "@mail.test", names[i]});
+        }
+    }
+
+    private void start(int maxMessagesPerConnection) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+        mailSender.setPort(server.port());
+        // Spring Boot luôn set protocol (spring.mail.protocol mặc định smtp)
+        mailSender.setProtocol("smtp");
+        Properties properties = new Properties();
+        properties.put("mail.smtp.connectiontimeout", "5000");
+        properties.put("mail.smtp.timeout", "5000");
+        mailSender.setJavaMailProperties(properties);
+        transportPool = new SmtpTransportPool(mailSender, 1, maxMessagesPerConnection, Duration.ofMinutes(1));
+
+        EmailCampaignRepository campaignRepository = mock(EmailCampaignRepository.class);
+        when(campaignRepository.findById(CAMPAIGN_ID)).thenAnswer(invocation -> Optional.of(campaign));
+        when(campaignRepository.findStatusById(CAMPAIGN_ID)).thenAnswer(invocation -> {
+            if (crashAfterStatusChecks > 0 && statusChecks.incrementAndGet() > crashAfterStatusChecks) {
+                throw new IllegalStateException("instance stopped");
+            }
+            return Optional.of(campaign.getStatus());
+        });
+        when(campaignRepository.advance(eq(CAMPAIGN_ID), anyLong(), anyLong(), anyLong(), any()))
+                .thenAnswer(invocation -> {
+                    campaign.setCursorUserId(invocation.getArgument(1));
+                    campaign.setSentCount(campaign.getSentCount() + invocation.<Long>getArgument(2));
+                    campaign.setFailedCount(campaign.getFailedCount() + invocation.<Long>getArgument(3));
+                    return 1;
+                });
+        when(campaignRepository.transition(eq(CAMPAIGN_ID), anyCollection(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    if (!invocation.<Collection<?>>getArgument(1).contains(campaign.getStatus())) {
+                        return 0;
+                    }
+                    campaign.setStatus(invocation.getArgument(2));
+                    return 1;
+                });
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findMailRecipientsAfter(eq(User.UserStatus.ENABLE), anyLong(), any()))
+                .thenAnswer(invocation -> users.stream()
+                        .filter(row -> (Long) row[0] > invocation.<Long>getArgument(1))
+                        .limit(invocation.<Pageable>getArgument(2).getPageSize())
+                        .toList());
+
+        EmailDeliveryFailureRepository failureRepository = mock(EmailDeliveryFailureRepository.class);
+        when(failureRepository.saveAll(any())).thenAnswer(invocation -> {
+            invocation.<Iterable<EmailDeliveryFailure>>getArgument(0).forEach(savedFailures::add);
+            return List.of();
+        });
+
+        service = new EmailCampaignService(campaignRepository, failureRepository, userRepository,
+                mock(JobLockService.class), mock(UserPrincipalService.class), transportPool,
+                new EmailTemplateRenderer(EmailTemplateRendererTest.templateEngine(), new SimpleMeterRegistry()),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+                1, 10, 1_000, 1_000, "");
+        ReflectionTestUtils.setField(service, "from", "noreply@bookland.test");
+        ReflectionTestUtils.setField(service, "pageSize", 2);
+        ReflectionTestUtils.setField(service, "sliceBudget", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "retryBackoff", Duration.ofMillis(1));
+    }
+
+    /**
+     * Server SMTP tối giản: mỗi kết nối 1 thread, ghi lại người nhận đã nhận thư theo từng kết nối.
+     * RCPT TO địa chỉ bắt đầu bằng "bad" bị từ chối vĩnh viễn (550).
+     */
+    private static final class StubSmtpServer implements AutoCloseable {
+
+        private final ServerSocket serverSocket;
+        private final List<List<String>> connections = new CopyOnWriteArrayList<>();
+        private final AtomicInteger connectionAttempts = new AtomicInteger();
+        private final AtomicInteger rejectConnections = new AtomicInteger();
+
+        private StubSmtpServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::acceptLoop, "stub-smtp");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    Thread session = new Thread(() -> session(socket), "stub-smtp-session");
+                    session.setDaemon(true);
+                    session.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void session(Socket socket) {
+            try (socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+                connectionAttempts.incrementAndGet();
+                if (rejectConnections.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    reply(out, "421 4.3.2 Service not available");
+                    return;
+                }
+                List<String> delivered = new CopyOnWriteArrayList<>();
+                connections.add(delivered);
+                reply(out, "220 stub.test ESMTP");
+                List<String> recipients = new ArrayList<>();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                    switch (command) {
+                        case "EHLO", "HELO", "MAIL", "NOOP" -> reply(out, "250 OK");
+                        case "RSET" -> {
+                            recipients.clear();
+                            reply(out, "250 OK");
+                        }
+                        case "RCPT" -> {
+                            String address = line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+                            if (address.startsWith("bad")) {
+                                reply(out, "550 5.1.1 User unknown");
+                            } else {
+                                recipients.add(address);
+                                reply(out, "250 OK");
+                            }
+                        }
+                        case "DATA" -> {
+                            reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                            while ((line = in.readLine()) != null && !line.equals(".")) {
+                                // Bỏ qua nội dung thư
+                            }
+                            delivered.addAll(recipients);
+                            recipients.clear();
+                            reply(out, "250 OK queued");
+                        }
+                        case "QUIT" -> {
+                            reply(out, "221 Bye");
+                            return;
+                        }
+                        default -> reply(out, "502 Command not implemented");
+                    }
+                }
+            } catch (IOException e) {
+                // Client đóng kết nối
+            }
+        }
+
+        private static void reply(PrintWriter out, String line) {
+            out.print(line + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.benchmark.MicroBenchmark;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chi phí render mỗi thư của 1 campaign 100k người nhận: render đầy đủ Thymeleaf mỗi thư
+ * so với prepare() 1 lần + render() (nối đoạn tĩnh, escape tên)
+ */
+@Tag(MicroBenchmark.TAG)
+class EmailTemplateRenderBenchmark {
+
+    private static final int RECIPIENTS = 100_000;
+    private static final String TEMPLATE = "email-template";
+
+    @Test
+    void renderCostPerMessageForOneHundredThousandRecipients() throws Exception {
+        EmailTemplateRenderer renderer = new EmailTemplateRenderer(EmailTemplateRendererTest.templateEngine(),
+                new SimpleMeterRegistry());
+        Map<String, Object> shared = EmailTemplateRendererTest.sharedModel();
+        String[] names = new String[RECIPIENTS];
+        for (int i = 0; i < RECIPIENTS; i++) {
+            names[i] = "Khách hàng <" + i + "> & \"BookLand\"";
+        }
+        long[] sink = new long[1];
+        EmailTemplateRenderer.PreparedTemplate[] template = new EmailTemplateRenderer.PreparedTemplate[1];
+
+        MicroBenchmark.Result full = MicroBenchmark.run("full render per message", RECIPIENTS, 1, 3, i -> {
+            Map<String, Object> model = new HashMap<>(shared);
+            model.put("name", names[i]);
+            sink[0] += renderer.render(TEMPLATE, model).length();
+        });
+        MicroBenchmark.Result prepared = MicroBenchmark.run("prepare once + fill slot per message", RECIPIENTS, 1, 3, i -> {
+            // Campaign prepare 1 lần cho mỗi slice; tính luôn vào lần đầu của vòng đo
+            if (i == 0) {
+                template[0] = renderer.prepare(TEMPLATE, shared, List.of("name"));
+            }
+            sink[0] += template[0].render(Map.of("name", names[i])).length();
+        });
+
+        System.out.printf(Locale.ROOT, "[benchmark] 100k campaign render: %.0f ms -> %.0f ms (x%.1f)%n",
+                full.bestNanos() / 1e6, prepared.bestNanos() / 1e6, (double) full.bestNanos() / prepared.bestNanos());
+        assertThat(sink[0]).isPositive();
+        assertThat(prepared.bestNanos()).isLessThan(full.bestNanos());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.bookland_be.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * prepare() + render() phải cho ra đúng HTML như render đầy đủ bằng Thymeleaf (kể cả escape của th:text)
+ */
+class EmailTemplateRendererTest {
+
+    private static final String TEMPLATE = "email-template";
+    private static final List<String> TRICKY_VALUES = List.of(
+            "Nguyễn Văn An",
+            "<script>alert('x')</script>",
+            "Tom & \"Jerry\"",
+            "O'Brien",
+            "a > b < c",
+            "&amp; đã escape sẵn",
+            "Sách 📚 mới",
+            "tab\tnew\nline",
+            "");
+
+    private EmailTemplateRenderer renderer;
+
+    @BeforeEach
+    void setUp() {
+        renderer = new EmailTemplateRenderer(templateEngine(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void preparedSlotMatchesFullRenderForEveryValue() {
+        Map<String, Object> shared = sharedModel();
+        EmailTemplateRenderer.PreparedTemplate prepared = renderer.prepare(TEMPLATE, shared, List.of("name"));
+
+        for (String name : TRICKY_VALUES) {
+            Map<String, Object> model = new HashMap<>(shared);
+            model.put("name", name);
+            assertThat(prepared.render(Map.of("name", name)))
+                    .as("slot value %s", name)
+                    .isEqualTo(renderer.render(TEMPLATE, model));
+        }
+    }
+
+    @Test
+    void multipleSlotsAreFilledIndependently() {
+        Map<String, Object> shared = sharedModel();
+        shared.remove("message");
+        EmailTemplateRenderer.PreparedTemplate prepared = renderer.prepare(TEMPLATE, shared, List.of("name", "message"));
+
+        for (int i = 0; i < TRICKY_VALUES.size(); i++) {
+            String name = TRICKY_VALUES.get(i);
+            String message = TRICKY_VALUES.get(TRICKY_VALUES.size() - 1 - i);
+            Map<String, Object> model = new HashMap<>(shared);
+            model.put("name", name);
+            model.put("message", message);
+            assertThat(prepared.render(Map.of("name", name, "message", message)))
+                    .isEqualTo(renderer.render(TEMPLATE, model));
+        }
+    }
+
+    @Test
+    void slotNotPrintedByTemplateFallsBackToFullRender() {
+        Map<String, Object> shared = sharedModel();
+        // actionUrl chỉ dùng trong th:if / th:href, không in bằng th:text
+        shared.remove("actionUrl");
+        EmailTemplateRenderer.PreparedTemplate prepared = renderer.prepare(TEMPLATE, shared, List.of("name", "actionUrl"));
+
+        Map<String, Object> model = new HashMap<>(shared);
+        model.put("name", "Tom & \"Jerry\"");
+        model.put("actionUrl", "https://bookland.vn/orders?id=1&tab=2");
+        assertThat(prepared.render(Map.of("name", "Tom & \"Jerry\"", "actionUrl", "https://bookland.vn/orders?id=1&tab=2")))
+                .isEqualTo(renderer.render(TEMPLATE, model))
+                .contains("href=\"https://bookland.vn/orders?id=1&amp;tab=2\"");
+    }
+
+    static SpringTemplateEngine templateEngine() {
+        // Cùng cấu hình mặc định của Spring Boot (classpath:/templates/*.html, HTML, UTF-8)
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resolver.setCacheable(true);
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+
+    static Map<String, Object> sharedModel() {
+        Map<String, Object> model = new HashMap<>();
+        model.put("message", "Chương trình khuyến mãi tháng 10: giảm 30% <b>toàn bộ</b> sách văn học");
+        model.put("details", "Áp dụng đến 31/10 & chỉ cho đơn từ 200.000đ");
+        model.put("actionUrl", "https://bookland.vn/events/42?utm_source=email&utm_campaign=oct");
+        model.put("actionText", "Xem ngay");
+        return model;
+    }
+}
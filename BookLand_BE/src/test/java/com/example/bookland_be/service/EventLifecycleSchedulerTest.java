@@ -0,0 +1,151 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.dto.response.EventLifecycleResponse;
+import com.example.bookland_be.entity.Event;
+import com.example.bookland_be.entity.Event.EventStatus;
+import com.example.bookland_be.repository.EventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 2 node dùng chung 1 dòng event (UPDATE có điều kiện) và 1 Redis giả lập:
+ * mỗi mốc chỉ 1 node broadcast
+ */
+class EventLifecycleSchedulerTest {
+
+    private static final Long EVENT_ID = 7L;
+
+    private final LocalDateTime startTime = LocalDateTime.now().withNano(0);
+    private final LocalDateTime endTime = startTime.plusHours(1);
+    private final AtomicReference<EventStatus> status = new AtomicReference<>(EventStatus.ACTIVE);
+    private final Set<String> redisKeys = ConcurrentHashMap.newKeySet();
+    private final List<EventLifecycleResponse> broadcasts = new ArrayList<>();
+
+    private EventRepository eventRepository;
+    private StringRedisTemplate stringRedisTemplate;
+    private EventLifecycleScheduler nodeA;
+    private EventLifecycleScheduler nodeB;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        eventRepository = mock(EventRepository.class);
+        when(eventRepository.findById(EVENT_ID)).thenAnswer(invocation -> Optional.of(Event.builder()
+                .id(EVENT_ID).name("Sale").startTime(startTime).endTime(endTime).status(status.get()).build()));
+        when(eventRepository.expireIfActive(eq(EVENT_ID), any())).thenAnswer(invocation ->
+                endTime.equals(invocation.getArgument(1)) && status.compareAndSet(EventStatus.ACTIVE, EventStatus.EXPIRED)
+                        ? 1 : 0);
+
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> redisKeys.add(invocation.getArgument(0)));
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        nodeA = node();
+        nodeB = node();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+    }
+
+    @Test
+    void onlyOneNodeBroadcastsStart() {
+        ReflectionTestUtils.invokeMethod(nodeA, "onStart", EVENT_ID, startTime);
+        ReflectionTestUtils.invokeMethod(nodeB, "onStart", EVENT_ID, startTime);
+
+        assertThat(broadcasts).extracting(EventLifecycleResponse::getType)
+                .containsExactly(EventLifecycleScheduler.EVENT_STARTED);
+    }
+
+    @Test
+    void rescheduledStartIsBroadcastAgain() {
+        ReflectionTestUtils.invokeMethod(nodeA, "onStart", EVENT_ID, startTime);
+        // Admin đổi startTime => mốc mới là key mới
+        LocalDateTime newStart = startTime.plusMinutes(10);
+        when(eventRepository.findById(EVENT_ID)).thenAnswer(invocation -> Optional.of(Event.builder()
+                .id(EVENT_ID).name("Sale").startTime(newStart).endTime(endTime).status(status.get()).build()));
+        ReflectionTestUtils.invokeMethod(nodeB, "onStart", EVENT_ID, newStart);
+
+        assertThat(broadcasts).hasSize(2);
+    }
+
+    @Test
+    void startIsBroadcastWhenRedisIsDown() {
+        when(stringRedisTemplate.opsForValue()).thenThrow(new QueryTimeoutException("redis down"));
+
+        ReflectionTestUtils.invokeMethod(nodeA, "onStart", EVENT_ID, startTime);
+
+        assertThat(broadcasts).hasSize(1);
+    }
+
+    @Test
+    void onlyNodeThatExpiresTheRowBroadcastsEnd() {
+        ReflectionTestUtils.invokeMethod(nodeA, "onEnd", EVENT_ID, endTime);
+        ReflectionTestUtils.invokeMethod(nodeB, "onEnd", EVENT_ID, endTime);
+
+        assertThat(status.get()).isEqualTo(EventStatus.EXPIRED);
+        assertThat(broadcasts).extracting(EventLifecycleResponse::getType)
+                .containsExactly(EventLifecycleScheduler.EVENT_ENDED);
+    }
+
+    @Test
+    void endWithStaleEndTimeDoesNothing() {
+        ReflectionTestUtils.invokeMethod(nodeA, "onEnd", EVENT_ID, endTime.minusMinutes(5));
+
+        assertThat(status.get()).isEqualTo(EventStatus.ACTIVE);
+        assertThat(broadcasts).isEmpty();
+    }
+
+    @Test
+    void overdueEventIsExpiredAndBroadcastOnceAcrossNodes() {
+        when(eventRepository.findExpiredEvents(any())).thenAnswer(invocation -> List.of(Event.builder()
+                .id(EVENT_ID).name("Sale").startTime(startTime).endTime(endTime).status(EventStatus.ACTIVE).build()));
+
+        nodeA.reconcile();
+        nodeB.reconcile();
+
+        assertThat(broadcasts).extracting(EventLifecycleResponse::getType)
+                .containsExactly(EventLifecycleScheduler.EVENT_ENDED);
+    }
+
+    private EventLifecycleScheduler node() {
+        SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+        doAnswer(invocation -> {
+            synchronized (broadcasts) {
+                broadcasts.add(invocation.getArgument(1));
+            }
+            return null;
+        }).when(messagingTemplate).convertAndSend(eq(EventLifecycleScheduler.EVENTS_TOPIC), any(Object.class));
+        return new EventLifecycleScheduler(eventRepository, mock(ActiveEventRegistry.class), mock(CacheManager.class),
+                messagingTemplate, mock(PlatformTransactionManager.class), stringRedisTemplate);
+    }
+}
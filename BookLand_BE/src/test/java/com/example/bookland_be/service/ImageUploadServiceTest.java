@@ -0,0 +1,164 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.entity.ImageAsset;
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import com.example.bookland_be.repository.AuthorRepository;
+import com.example.bookland_be.repository.BookRepository;
+import com.example.bookland_be.repository.EventImageRepository;
+import com.example.bookland_be.repository.ImageAssetRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageUploadServiceTest {
+
+    private static final String PREFIX = "https://cdn.test/images/";
+
+    private StorageService storageService;
+    private ImageAssetRepository imageAssetRepository;
+    private BookRepository bookRepository;
+    private ImageUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        storageService = mock(StorageService.class);
+        when(storageService.publicUrl(anyString())).thenAnswer(invocation -> PREFIX + invocation.getArgument(0));
+        imageAssetRepository = mock(ImageAssetRepository.class);
+        bookRepository = mock(BookRepository.class);
+        JobLockService jobLockService = mock(JobLockService.class);
+        when(jobLockService.runWithLock(anyString(), any(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        });
+        service = new ImageUploadService(storageService, mock(ImageVariantService.class), imageAssetRepository,
+                bookRepository, mock(EventImageRepository.class), mock(AuthorRepository.class),
+                jobLockService, mock(PlatformTransactionManager.class), 1);
+        ReflectionTestUtils.setField(service, "gcEnabled", true);
+        ReflectionTestUtils.setField(service, "gcGracePeriod", Duration.ofDays(7));
+        ReflectionTestUtils.setField(service, "gcBatchSize", 200);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void deleteRefusesReferencedImage() {
+        when(bookRepository.findReferencedImageUrls(List.of(PREFIX + "cover.jpg"))).thenReturn(List.of(PREFIX + "cover.jpg"));
+
+        assertThatThrownBy(() -> service.delete("cover.jpg"))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.FILE_IN_USE);
+        verify(storageService, never()).deleteImage(anyString());
+        verify(imageAssetRepository, never()).deleteById(anyLong());
+    }
+
+    @Test
+    void gcSkipsObjectReferencedAfterScan() {
+        gcCandidates(asset(1L, "late.jpg"));
+        // Lần quét cả batch chưa thấy, lần kiểm tra lại ngay trước khi xoá thì đã được gắn vào sách
+        when(bookRepository.findReferencedImageUrls(anyCollection()))
+                .thenReturn(List.of())
+                .thenReturn(List.of(PREFIX + "late.jpg"));
+
+        service.collectGarbage();
+
+        verify(imageAssetRepository, never()).deleteIfNotUploadedSince(anyLong(), any());
+        verify(storageService, never()).deleteImage(anyString());
+    }
+
+    @Test
+    void gcSkipsObjectReuploadedAfterScan() {
+        gcCandidates(asset(1L, "reuploaded.jpg"));
+        // upload() đã touch lastUploadedAt nên điều kiện xoá không còn đúng
+        when(imageAssetRepository.deleteIfNotUploadedSince(eq(1L), any())).thenReturn(0);
+
+        service.collectGarbage();
+
+        verify(storageService, never()).deleteImage(anyString());
+    }
+
+    @Test
+    void gcDeletesUnreferencedObjectAndRestoresRowOnStorageFailure() {
+        ImageAsset broken = asset(2L, "broken.jpg");
+        gcCandidates(asset(1L, "orphan.jpg"), broken);
+        when(imageAssetRepository.deleteIfNotUploadedSince(anyLong(), any())).thenReturn(1);
+        doThrow(new IllegalStateException("storage down")).when(storageService).deleteImage("broken.jpg");
+
+        service.collectGarbage();
+
+        verify(storageService).deleteImage("orphan.jpg");
+        verify(imageAssetRepository).insertUploaded("broken.jpg", broken.getContentHash(), 10L, "image/jpeg",
+                broken.getLastUploadedAt());
+        verify(imageAssetRepository, never()).insertUploaded(eq("orphan.jpg"), anyString(), anyLong(), any(), any());
+    }
+
+    @Test
+    void uploadOfContentClaimedByGcUploadsAgain() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "cover.jpg", "image/jpeg", "cover".getBytes());
+        ImageAsset existing = asset(1L, "old.jpg");
+        when(imageAssetRepository.findByContentHash(anyString())).thenReturn(Optional.of(existing));
+        // Dòng đã bị GC xoá giữa findByContentHash và touch
+        when(imageAssetRepository.touchUploaded(eq(1L), any())).thenReturn(0);
+        when(storageService.uploadImage(anyString(), eq(file)))
+                .thenAnswer(invocation -> PREFIX + invocation.getArgument(0));
+
+        ImageUploadService.UploadResult result = service.upload(file);
+
+        assertThat(result.deduplicated()).isFalse();
+        verify(storageService).uploadImage(result.objectName(), file);
+        verify(imageAssetRepository).insertUploaded(eq(result.objectName()), anyString(), eq(5L), eq("image/jpeg"), any());
+    }
+
+    @Test
+    void uploadOfKnownContentReusesObject() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "cover.jpg", "image/jpeg", "cover".getBytes());
+        when(imageAssetRepository.findByContentHash(anyString())).thenReturn(Optional.of(asset(1L, "old.jpg")));
+        when(imageAssetRepository.touchUploaded(eq(1L), any())).thenReturn(1);
+
+        ImageUploadService.UploadResult result = service.upload(file);
+
+        assertThat(result.deduplicated()).isTrue();
+        assertThat(result.url()).isEqualTo(PREFIX + "old.jpg");
+        verify(storageService, never()).uploadImage(anyString(), any());
+    }
+
+    private void gcCandidates(ImageAsset... assets) {
+        when(imageAssetRepository.findGcCandidates(any(), eq(0L), any())).thenReturn(List.of(assets));
+    }
+
+    private static ImageAsset asset(Long id, String objectName) {
+        return ImageAsset.builder()
+                .id(id)
+                .objectName(objectName)
+                .contentHash("hash-" + objectName)
+                .sizeBytes(10L)
+                .contentType("image/jpeg")
+                .lastUploadedAt(LocalDateTime.now().minusDays(30))
+                .build();
+    }
+}
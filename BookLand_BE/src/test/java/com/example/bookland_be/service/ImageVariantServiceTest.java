@@ -0,0 +1,102 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.entity.ImageAsset;
+import com.example.bookland_be.repository.ImageAssetRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageVariantServiceTest {
+
+    private static final String PREFIX = "https://cdn.test/images/";
+
+    private StorageService storageService;
+    private ImageAssetRepository imageAssetRepository;
+    private ImageVariantService service;
+
+    @BeforeEach
+    void setUp() {
+        storageService = mock(StorageService.class);
+        when(storageService.objectNameFromPublicUrl(anyString())).thenAnswer(invocation -> {
+            String url = invocation.getArgument(0);
+            return url.startsWith(PREFIX) ? url.substring(PREFIX.length()) : null;
+        });
+        when(storageService.publicUrl(anyString())).thenAnswer(invocation -> PREFIX + invocation.getArgument(0));
+        imageAssetRepository = mock(ImageAssetRepository.class);
+        // ready.jpg đã có bản thu nhỏ, pending.jpg đang xử lý, legacy-*.jpg không có dòng chỉ mục
+        when(imageAssetRepository.findVariantStates(any())).thenAnswer(invocation -> {
+            Collection<String> names = invocation.getArgument(0);
+            List<Object[]> rows = new ArrayList<>();
+            if (names.contains("ready.jpg")) {
+                rows.add(new Object[]{"ready.jpg", ImageAsset.VariantStatus.READY, "jpg"});
+            }
+            if (names.contains("pending.jpg")) {
+                rows.add(new Object[]{"pending.jpg", ImageAsset.VariantStatus.PENDING, null});
+            }
+            return rows;
+        });
+        service = new ImageVariantService(storageService, imageAssetRepository,
+                mock(PlatformTransactionManager.class), 1, 1);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "notReadyCache", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(service, "missingCache", Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void preloadResolvesWholePageWithOneQuery() {
+        List<String> page = List.of(PREFIX + "ready.jpg", PREFIX + "pending.jpg",
+                PREFIX + "legacy-1.jpg", PREFIX + "legacy-2.jpg", "https://other.host/x.jpg");
+
+        service.preload(page);
+        List<Object> variants = page.stream().map(url -> (Object) service.variantUrls(url)).toList();
+
+        verify(imageAssetRepository, times(1)).findVariantStates(any());
+        assertThat(service.variantUrls(PREFIX + "ready.jpg"))
+                .containsEntry("thumbnail", PREFIX + "ready.jpg.thumbnail.jpg");
+        assertThat(variants.subList(1, 5)).containsOnlyNulls();
+    }
+
+    @Test
+    void missingRowIsCachedLongerThanNotReady() {
+        // not-ready-cache hết hạn ngay, missing-cache vẫn còn
+        ReflectionTestUtils.setField(service, "notReadyCache", Duration.ZERO);
+        for (int i = 0; i < 3; i++) {
+            service.variantUrls(PREFIX + "legacy-1.jpg");
+            service.variantUrls(PREFIX + "pending.jpg");
+        }
+
+        verify(imageAssetRepository, times(1)).findVariantStates(Set.of("legacy-1.jpg"));
+        verify(imageAssetRepository, times(3)).findVariantStates(Set.of("pending.jpg"));
+    }
+
+    @Test
+    void scheduleForgetsMissingRow() {
+        service.preload(List.of(PREFIX + "legacy-1.jpg"));
+        service.schedule(PREFIX + "legacy-1.jpg");
+        service.variantUrls(PREFIX + "legacy-1.jpg");
+
+        verify(imageAssetRepository).insertPending(anyString(), any());
+        verify(imageAssetRepository, times(2)).findVariantStates(any());
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.benchmark.MicroBenchmark;
+import com.example.bookland_be.dto.request.BroadcastNotificationRequest;
+import com.example.bookland_be.dto.response.NotificationBroadcastResponse;
+import com.example.bookland_be.dto.response.NotificationResponse;
+import com.example.bookland_be.entity.Notification.NotificationStatus;
+import com.example.bookland_be.entity.User;
+import com.example.bookland_be.repository.BillBookRepository;
+import com.example.bookland_be.repository.BookRepository;
+import com.example.bookland_be.repository.RoleRepository;
+import com.example.bookland_be.repository.UserRepository;
+import com.example.bookland_be.repository.WishlistRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Broadcast 100k người nhận trên H2 (MODE=MySQL, in-memory):
+ * cách cũ (mỗi user 1 INSERT trong 1 transaction + 1 message /user/queue) so với
+ * NotificationBroadcastService (chunk 1000, JDBC batch insert, 1 message lên topic).
+ * Số đo chỉ để so sánh tương đối: MySQL thật còn thêm round trip mạng cho mỗi câu lệnh ở cách cũ.
+ */
+@Tag(MicroBenchmark.TAG)
+class NotificationBroadcastBenchmark {
+
+    private static final int RECIPIENTS = 100_000;
+    private static final int ROUNDS = 3;
+    private static final String INSERT_SQL = "INSERT INTO notification " +
+            "(from_id, to_id, type, title, content, status, created_at, broadcast_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private final AtomicInteger userMessages = new AtomicInteger();
+    private SimpMessagingTemplate messagingTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:broadcast;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS notification (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, from_id BIGINT, to_id BIGINT, type VARCHAR(50), " +
+                "title VARCHAR(255), content VARCHAR(2000), status VARCHAR(20), created_at TIMESTAMP, " +
+                "broadcast_id VARCHAR(36))");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_notification_to_id ON notification (to_id)");
+        // Broker không có client: đo chi phí convert + gửi vào channel
+        messagingTemplate = new SimpMessagingTemplate((message, timeout) -> {
+            userMessages.incrementAndGet();
+            return true;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE notification");
+    }
+
+    @Test
+    void broadcastToOneHundredThousandRecipients() throws Exception {
+        BroadcastNotificationRequest request = BroadcastNotificationRequest.builder()
+                .segment(BroadcastNotificationRequest.Segment.ALL)
+                .type("PROMOTION")
+                .title("Sale cuối tuần")
+                .content("Giảm 30% toàn bộ sách văn học đến hết chủ nhật")
+                .build();
+
+        long perUser = best(round -> perUserInserts(request));
+        long chunked = best(round -> chunkedBroadcast(request));
+
+        print("per-user insert + /user/queue push", perUser);
+        print("chunked batch insert + 1 topic push", chunked);
+        System.out.printf(Locale.ROOT, "[benchmark] speedup x%.1f%n", (double) perUser / chunked);
+    }
+
+    // Cách cũ: mỗi người nhận 1 transaction, 1 INSERT, 1 message riêng
+    private void perUserInserts(BroadcastNotificationRequest request) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        for (long toUserId = 1; toUserId <= RECIPIENTS; toUserId++) {
+            long recipient = toUserId;
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_SQL,
+                    1L, recipient, request.getType(), request.getTitle(), request.getContent(),
+                    NotificationStatus.UNREAD.name(), createdAt, null));
+            messagingTemplate.convertAndSendToUser("user" + recipient + "@bookland.vn", "/queue/notifications",
+                    NotificationResponse.builder()
+                            .toUserId(recipient)
+                            .type(request.getType())
+                            .title(request.getTitle())
+                            .content(request.getContent())
+                            .status(NotificationStatus.UNREAD)
+                            .build());
+        }
+    }
+
+    private void chunkedBroadcast(BroadcastNotificationRequest request) throws InterruptedException {
+        UserRepository userRepository = mock(UserRepository.class);
+        // Seek theo id như query thật
+        when(userRepository.findIdsByStatusAfter(eq(User.UserStatus.ENABLE), anyLong(), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    long afterId = invocation.getArgument(1);
+                    Pageable chunk = invocation.getArgument(2);
+                    return LongStream.rangeClosed(afterId + 1, Math.min(afterId + chunk.getPageSize(), RECIPIENTS))
+                            .boxed()
+                            .toList();
+                });
+        NotificationBroadcastService service = new NotificationBroadcastService(userRepository,
+                mock(WishlistRepository.class), mock(BillBookRepository.class), mock(RoleRepository.class),
+                mock(BookRepository.class), jdbcTemplate, transactionManager, messagingTemplate,
+                mock(UnreadCounterService.class), new SimpleMeterRegistry(), 1000);
+        try {
+            int before = userMessages.get();
+            String broadcastId = service.broadcast(request, 1L).getBroadcastId();
+            NotificationBroadcastResponse status = service.getStatus(broadcastId);
+            while (status.getStatus() == NotificationBroadcastResponse.Status.RUNNING) {
+                Thread.sleep(5);
+                status = service.getStatus(broadcastId);
+            }
+            assertThat(status.getStatus()).isEqualTo(NotificationBroadcastResponse.Status.COMPLETED);
+            assertThat(status.getRecipients()).isEqualTo(RECIPIENTS);
+            assertThat(userMessages.get() - before).isEqualTo(1);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private long best(MicroBenchmark.Operation operation) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            jdbcTemplate.execute("TRUNCATE TABLE notification");
+            long start = System.nanoTime();
+            operation.run(round);
+            best = Math.min(best, System.nanoTime() - start);
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification", Long.class))
+                    .isEqualTo(RECIPIENTS);
+        }
+        return best;
+    }
+
+    private static void print(String name, long nanos) {
+        System.out.printf(Locale.ROOT, "[benchmark] %-40s %d recipients in %6d ms (%8.0f recipients/s)%n",
+                name, RECIPIENTS, nanos / 1_000_000, RECIPIENTS * 1_000_000_000d / nanos);
+    }
+}
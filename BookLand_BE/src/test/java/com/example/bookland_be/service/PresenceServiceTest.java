@@ -0,0 +1,269 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.dto.UserPrincipal;
+import com.example.bookland_be.dto.request.TypingRequest;
+import com.example.bookland_be.dto.response.PresenceChangeResponse;
+import com.example.bookland_be.dto.response.PresenceDeltaResponse;
+import com.example.bookland_be.dto.response.TypingEventResponse;
+import com.example.bookland_be.entity.User;
+import com.example.bookland_be.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Redis được thay bằng bản giả lập trong bộ nhớ của 2 script UPSERT_SESSION / REMOVE_SESSION và zset presence:online,
+ * dùng chung cho nhiều "node" (mỗi node 1 PresenceService)
+ */
+class PresenceServiceTest {
+
+    private static final String ALICE = "alice@bookland.test";
+    private static final String BOB = "bob@bookland.test";
+    private static final Duration TTL = Duration.ofMillis(200);
+
+    private final FakeRedis redis = new FakeRedis();
+    private UserPrincipalService userPrincipalService;
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userPrincipalService = mock(UserPrincipalService.class);
+        when(userPrincipalService.loadByEmail(ALICE)).thenReturn(principal(1L, ALICE));
+        when(userPrincipalService.loadByEmail(BOB)).thenReturn(principal(2L, BOB));
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findAllById(any())).thenReturn(List.of(
+                User.builder().id(1L).email(ALICE).build(), User.builder().id(2L).email(BOB).build()));
+    }
+
+    @Test
+    void onlineThenOfflineInOneWindowSendsNothing() {
+        Node node = node(TTL, Duration.ofSeconds(6));
+
+        node.service.connect("s1", ALICE);
+        node.service.disconnect("s1");
+        node.service.flush();
+
+        verify(node.messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void onlyFirstAndLastSessionAcrossNodesPublish() {
+        Node nodeA = node(TTL, Duration.ofSeconds(6));
+        Node nodeB = node(TTL, Duration.ofSeconds(6));
+
+        // 0 -> 1: chỉ node A thấy
+        nodeA.service.connect("a1", ALICE);
+        nodeB.service.connect("b1", ALICE);
+        assertThat(nodeA.flushPresence()).extracting(PresenceChangeResponse::isOnline).containsExactly(true);
+        assertThat(nodeB.flushPresence()).isEmpty();
+
+        // Còn session b1 nên a1 rời đi không phải 1 -> 0
+        nodeA.service.disconnect("a1");
+        assertThat(nodeA.flushPresence()).isEmpty();
+        assertThat(nodeA.service.isOnline(ALICE)).isTrue();
+
+        nodeB.service.disconnect("b1");
+        assertThat(nodeB.flushPresence()).extracting(PresenceChangeResponse::isOnline).containsExactly(false);
+        assertThat(nodeA.service.isOnline(ALICE)).isFalse();
+    }
+
+    @Test
+    void typingWithoutStopTimesOutToTypingFalse() throws InterruptedException {
+        Node node = node(TTL, Duration.ofMillis(20));
+        node.service.connect("s2", BOB);
+        node.service.typing(ALICE, new TypingRequest(2L, true));
+        // Gõ tiếp trong lúc còn hạn chỉ gia hạn, không tạo event mới
+        node.service.typing(ALICE, new TypingRequest(2L, true));
+        assertThat(node.flush().getTyping()).extracting(TypingEventResponse::isTyping).containsExactly(true);
+
+        Thread.sleep(50);
+        node.service.flush();
+
+        ArgumentCaptor<TypingEventResponse> sent = ArgumentCaptor.forClass(TypingEventResponse.class);
+        verify(node.messagingTemplate, times(2)).convertAndSendToUser(eq(BOB), anyString(), sent.capture());
+        assertThat(sent.getAllValues()).extracting(TypingEventResponse::isTyping).containsExactly(true, false);
+    }
+
+    @Test
+    void sweepDropsSilentSessionsIncludingThoseOfDeadNode() throws InterruptedException {
+        Node nodeA = node(TTL, Duration.ofSeconds(6));
+        Node deadNode = node(TTL, Duration.ofSeconds(6));
+        nodeA.service.connect("a1", ALICE);
+        deadNode.service.connect("d1", BOB);
+        nodeA.flushPresence();
+
+        // Không heartbeat, không DISCONNECT quá TTL
+        Thread.sleep(TTL.toMillis() + 50);
+        nodeA.service.sweepExpiredSessions();
+
+        assertThat(nodeA.flushPresence())
+                .extracting(PresenceChangeResponse::getEmail, PresenceChangeResponse::isOnline)
+                .containsExactlyInAnyOrder(tuple(ALICE, false),
+                        tuple(BOB, false));
+        assertThat(nodeA.service.isOnline(ALICE)).isFalse();
+        assertThat(nodeA.service.isOnline(BOB)).isFalse();
+    }
+
+    @Test
+    void redisDownFallsBackToLocalState() {
+        redis.down = true;
+        Node node = node(TTL, Duration.ofSeconds(6));
+
+        node.service.connect("s1", ALICE);
+        node.service.connect("s2", ALICE);
+        assertThat(node.flushPresence()).extracting(PresenceChangeResponse::isOnline).containsExactly(true);
+        assertThat(node.service.isOnline(ALICE)).isTrue();
+        assertThat(node.service.getOnlineUsers()).extracting(PresenceChangeResponse::getEmail).containsExactly(ALICE);
+
+        node.service.disconnect("s1");
+        assertThat(node.flushPresence()).isEmpty();
+        node.service.disconnect("s2");
+        assertThat(node.flushPresence()).extracting(PresenceChangeResponse::isOnline).containsExactly(false);
+        assertThat(node.service.isOnline(ALICE)).isFalse();
+    }
+
+    private Node node(Duration ttl, Duration typingTimeout) {
+        SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+        List<PresenceDeltaResponse> deltas = new ArrayList<>();
+        doAnswer(invocation -> deltas.add(invocation.getArgument(1)))
+                .when(messagingTemplate).convertAndSend(eq(PresenceService.PRESENCE_TOPIC), any(Object.class));
+        PresenceService service = new PresenceService(messagingTemplate, userPrincipalService, userRepository,
+                redis.template(), ttl, typingTimeout);
+        return new Node(service, messagingTemplate, deltas);
+    }
+
+    private static UserPrincipal principal(Long id, String email) {
+        return UserPrincipal.builder().id(id).email(email).roles(Set.of()).build();
+    }
+
+    private record Node(PresenceService service, SimpMessagingTemplate messagingTemplate,
+                        List<PresenceDeltaResponse> deltas) {
+
+        // Flush rồi lấy delta vừa publish (null nếu không publish gì)
+        PresenceDeltaResponse flush() {
+            deltas.clear();
+            service.flush();
+            return deltas.isEmpty() ? null : deltas.get(deltas.size() - 1);
+        }
+
+        List<PresenceChangeResponse> flushPresence() {
+            PresenceDeltaResponse delta = flush();
+            return delta != null ? delta.getPresence() : List.of();
+        }
+    }
+
+    /**
+     * Giả lập đúng logic 2 script Lua (HGETALL / HDEL field hết hạn / HSET / ZADD / ZREM) trên map trong bộ nhớ
+     */
+    private static final class FakeRedis {
+
+        private final Map<String, Map<String, Long>> hashes = new HashMap<>();
+        private final Map<String, Double> online = new HashMap<>();
+        private volatile boolean down;
+
+        @SuppressWarnings("unchecked")
+        StringRedisTemplate template() {
+            StringRedisTemplate template = mock(StringRedisTemplate.class);
+            when(template.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+                Object[] arguments = invocation.getArguments();
+                return execute(invocation.getArgument(0), invocation.getArgument(1),
+                        Arrays.copyOfRange(arguments, 2, arguments.length));
+            });
+            ZSetOperations<String, String> zSet = mock(ZSetOperations.class);
+            when(zSet.score(anyString(), anyString())).thenAnswer(invocation -> {
+                checkUp();
+                synchronized (this) {
+                    return online.get((String) invocation.getArgument(1));
+                }
+            });
+            when(zSet.rangeByScore(anyString(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+                checkUp();
+                double min = invocation.getArgument(1);
+                double max = invocation.getArgument(2);
+                synchronized (this) {
+                    Set<String> result = new LinkedHashSet<>();
+                    online.forEach((email, score) -> {
+                        if (score >= min && score <= max) {
+                            result.add(email);
+                        }
+                    });
+                    return result;
+                }
+            });
+            when(zSet.rangeByScoreWithScores(anyString(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+                checkUp();
+                double min = invocation.getArgument(1);
+                synchronized (this) {
+                    Set<ZSetOperations.TypedTuple<String>> result = new LinkedHashSet<>();
+                    online.forEach((email, score) -> {
+                        if (score >= min) {
+                            result.add(ZSetOperations.TypedTuple.of(email, score));
+                        }
+                    });
+                    return result;
+                }
+            });
+            when(template.opsForZSet()).thenReturn(zSet);
+            return template;
+        }
+
+        private synchronized Long execute(RedisScript<?> script, List<String> keys, Object[] args) {
+            checkUp();
+            Map<String, Long> sessions = hashes.computeIfAbsent(keys.get(0), key -> new HashMap<>());
+            String email = (String) args[0];
+            String sessionId = (String) args[1];
+            long now = Long.parseLong((String) args[2]);
+            boolean upsert = script.getScriptAsString().contains("ZADD");
+            if (!upsert && !sessionId.isEmpty()) {
+                sessions.remove(sessionId);
+            }
+            sessions.values().removeIf(expiresAt -> expiresAt <= now);
+            int live = sessions.size();
+            if (upsert) {
+                long expiresAt = now + Long.parseLong((String) args[3]);
+                sessions.put(sessionId, expiresAt);
+                online.put(email, (double) expiresAt);
+                return live == 0 ? 1L : 0L;
+            }
+            if (live > 0) {
+                return 0L;
+            }
+            hashes.remove(keys.get(0));
+            return online.remove(email) != null ? 1L : 0L;
+        }
+
+        private void checkUp() {
+            if (down) {
+                throw new QueryTimeoutException("redis down");
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.entity.Cart;
+import com.example.bookland_be.repository.CartItemRepository;
+import com.example.bookland_be.repository.CartRepository;
+import com.example.bookland_be.repository.ChatMessageRepository;
+import com.example.bookland_be.repository.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chỉ bật policy cart-abandoned (các policy khác retention = 0)
+ */
+class RetentionServiceTest {
+
+    private static final Duration ABANDONED_AFTER = Duration.ofDays(90);
+
+    private CartRepository cartRepository;
+    private CartItemRepository cartItemRepository;
+    private RetentionService service;
+
+    @BeforeEach
+    void setUp() {
+        cartRepository = mock(CartRepository.class);
+        cartItemRepository = mock(CartItemRepository.class);
+        JobLockService jobLockService = mock(JobLockService.class);
+        when(jobLockService.runWithLock(anyString(), any(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        });
+        service = new RetentionService(jobLockService, mock(PlatformTransactionManager.class),
+                mock(NotificationRepository.class), cartRepository, cartItemRepository,
+                mock(ChatMessageRepository.class), mock(UnreadCounterService.class),
+                Duration.ZERO, Duration.ZERO, ABANDONED_AFTER, Duration.ZERO);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "batchSize", 3);
+        ReflectionTestUtils.setField(service, "batchPause", Duration.ZERO);
+        ReflectionTestUtils.setField(service, "maxBatchesPerRun", 100);
+        ReflectionTestUtils.setField(service, "lockAtMost", Duration.ofMinutes(1));
+    }
+
+    @Test
+    void deletesOnlyCartsStillInactiveWhenLocked() {
+        when(cartRepository.findIdsByStatusInactiveSince(eq(Cart.CartStatus.BUYING), any(), eq(0L), any()))
+                .thenReturn(List.of(1L, 2L, 3L));
+        when(cartRepository.findIdsByStatusInactiveSince(eq(Cart.CartStatus.BUYING), any(), eq(3L), any()))
+                .thenReturn(List.of());
+        // Giỏ 2 vừa được sửa giữa lúc tìm và lúc khoá
+        when(cartRepository.lockIdsByStatusInactiveSince(eq(List.of(1L, 2L, 3L)), eq(Cart.CartStatus.BUYING), any()))
+                .thenReturn(List.of(1L, 3L));
+        when(cartRepository.deleteByIdIn(List.of(1L, 3L))).thenReturn(2);
+
+        service.runAll();
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(cartRepository).lockIdsByStatusInactiveSince(anyCollection(), eq(Cart.CartStatus.BUYING), cutoff.capture());
+        assertThat(cutoff.getValue()).isCloseTo(LocalDateTime.now().minus(ABANDONED_AFTER), within(Duration.ofMinutes(1)));
+        verify(cartItemRepository).deleteByCartIdIn(List.of(1L, 3L));
+        verify(cartRepository).deleteByIdIn(List.of(1L, 3L));
+    }
+
+    @Test
+    void skipsDeleteWhenEveryCartWasTouchedBeforeLock() {
+        when(cartRepository.findIdsByStatusInactiveSince(any(), any(), anyLong(), any(Pageable.class)))
+                .thenReturn(List.of(5L));
+        when(cartRepository.lockIdsByStatusInactiveSince(anyCollection(), any(), any())).thenReturn(List.of());
+
+        service.runAll();
+
+        verify(cartItemRepository, never()).deleteByCartIdIn(anyCollection());
+        verify(cartRepository, never()).deleteByIdIn(anyCollection());
+    }
+
+    @Test
+    void seeksPastEachFullBatch() {
+        when(cartRepository.findIdsByStatusInactiveSince(any(), any(), eq(0L), any())).thenReturn(List.of(1L, 2L, 3L));
+        when(cartRepository.findIdsByStatusInactiveSince(any(), any(), eq(3L), any())).thenReturn(List.of(7L));
+        when(cartRepository.lockIdsByStatusInactiveSince(anyCollection(), any(), any()))
+                .thenAnswer(invocation -> List.copyOf(invocation.<List<Long>>getArgument(0)));
+
+        service.runAll();
+
+        verify(cartRepository).deleteByIdIn(List.of(1L, 2L, 3L));
+        verify(cartRepository).deleteByIdIn(List.of(7L));
+        // Batch thứ 2 chưa đầy => dừng, không tìm tiếp sau id 7
+        verify(cartRepository, never()).findIdsByStatusInactiveSince(any(), any(), eq(7L), any());
+    }
+
+    @Test
+    void backfillRunsInBatchesUntilNoLegacyCartLeft() {
+        when(cartRepository.backfillLastActivity(any(), anyInt())).thenReturn(3, 3, 1);
+
+        service.backfillCartActivity();
+
+        verify(cartRepository, times(3)).backfillLastActivity(any(), eq(3));
+    }
+}
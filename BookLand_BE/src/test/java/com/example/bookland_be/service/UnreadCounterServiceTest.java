@@ -0,0 +1,208 @@
+package com.example.bookland_be.service;
+
+import com.example.bookland_be.service.UnreadCounterService.Kind;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Redis được thay bằng map trong bộ nhớ chạy lại đúng logic 3 script ADJUST_IF_EXISTS / SEED_IF_UNCHANGED / EVICT
+ */
+class UnreadCounterServiceTest {
+
+    private static final Long USER_ID = 7L;
+    private static final String KEY = "unread:chat:" + USER_ID;
+
+    private final Map<String, String> redis = new HashMap<>();
+    private boolean redisDown;
+    private UnreadCounterService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(template.opsForValue()).thenReturn(values);
+        when(values.multiGet(anyCollection())).thenAnswer(invocation -> {
+            checkUp();
+            return invocation.<Collection<String>>getArgument(0).stream().map(redis::get).toList();
+        });
+        doAnswer(invocation -> {
+            checkUp();
+            redis.put(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(values).set(anyString(), anyString(), any(Duration.class));
+        when(template.delete(anyString())).thenAnswer(invocation -> {
+            checkUp();
+            return redis.remove(invocation.<String>getArgument(0)) != null;
+        });
+        when(template.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            checkUp();
+            Object[] arguments = invocation.getArguments();
+            return execute(invocation.getArgument(0), invocation.getArgument(1),
+                    Arrays.copyOfRange(arguments, 2, arguments.length));
+        });
+        service = new UnreadCounterService(template);
+    }
+
+    @Test
+    void firstReadSeedsCounterAndLaterReadsSkipCount() {
+        AtomicInteger counts = new AtomicInteger();
+
+        assertThat(service.get(Kind.CHAT, USER_ID, counting(counts, 3))).isEqualTo(3);
+        assertThat(service.get(Kind.CHAT, USER_ID, counting(counts, 99))).isEqualTo(3);
+
+        assertThat(counts).hasValue(1);
+        assertThat(redis).containsEntry(KEY, "3");
+    }
+
+    @Test
+    void adjustBeforeSeedDoesNotCreateCounter() {
+        service.adjustAfterCommit(Kind.CHAT, USER_ID, 1);
+
+        assertThat(redis).doesNotContainKey(KEY).containsEntry(KEY + ":v", "1");
+        assertThat(service.get(Kind.CHAT, USER_ID, () -> 4)).isEqualTo(4);
+        assertThat(redis).containsEntry(KEY, "4");
+    }
+
+    @Test
+    void adjustAfterSeedAddsAndNeverGoesNegative() {
+        service.get(Kind.CHAT, USER_ID, () -> 3);
+
+        service.adjustAfterCommit(Kind.CHAT, USER_ID, 2);
+        assertThat(service.get(Kind.CHAT, USER_ID, () -> 99)).isEqualTo(5);
+
+        service.adjustAfterCommit(Kind.CHAT, USER_ID, -10);
+        assertThat(service.get(Kind.CHAT, USER_ID, () -> 99)).isEqualTo(0);
+    }
+
+    @Test
+    void seedIsDiscardedWhenAdjustRacesCount() {
+        // Tin nhắn mới commit (adjust) giữa lúc đọc version và lúc ghi kết quả COUNT
+        long seeded = service.get(Kind.CHAT, USER_ID, () -> {
+            service.adjustAfterCommit(Kind.CHAT, USER_ID, 1);
+            return 3;
+        });
+
+        assertThat(seeded).isEqualTo(3);
+        assertThat(redis).doesNotContainKey(KEY);
+        assertThat(service.get(Kind.CHAT, USER_ID, () -> 4)).isEqualTo(4);
+    }
+
+    @Test
+    void evictDropsCounterAndDiscardsSeedInFlight() {
+        service.get(Kind.CHAT, USER_ID, () -> 3);
+
+        service.evictAfterCommit(Kind.CHAT, List.of(USER_ID, 8L));
+        assertThat(redis).doesNotContainKey(KEY);
+
+        // markAsRead (evict) xen vào COUNT đang chạy => COUNT cũ không được ghi
+        service.get(Kind.CHAT, USER_ID, () -> {
+            service.evictAfterCommit(Kind.CHAT, List.of(USER_ID));
+            return 3;
+        });
+        assertThat(redis).doesNotContainKey(KEY);
+        assertThat(service.get(Kind.CHAT, USER_ID, () -> 0)).isEqualTo(0);
+    }
+
+    @Test
+    void secondSeedDoesNotOverwriteFirst() {
+        // 2 lần đọc cùng lúc thấy key trống, lần ghi sau (SET NX) không đè
+        service.get(Kind.CHAT, USER_ID, () -> {
+            service.get(Kind.CHAT, USER_ID, () -> 5);
+            return 3;
+        });
+
+        assertThat(redis).containsEntry(KEY, "5");
+    }
+
+    @Test
+    void resetSetsCounterToZero() {
+        service.get(Kind.CHAT, USER_ID, () -> 3);
+
+        service.resetAfterCommit(Kind.CHAT, USER_ID);
+
+        assertThat(service.get(Kind.CHAT, USER_ID, () -> 99)).isEqualTo(0);
+    }
+
+    @Test
+    void redisDownUsesLocalCounter() {
+        redisDown = true;
+        AtomicInteger counts = new AtomicInteger();
+
+        assertThat(service.get(Kind.CHAT, USER_ID, counting(counts, 3))).isEqualTo(3);
+        service.adjustAfterCommit(Kind.CHAT, USER_ID, 2);
+        assertThat(service.get(Kind.CHAT, USER_ID, counting(counts, 99))).isEqualTo(5);
+        assertThat(counts).hasValue(1);
+
+        service.evictAfterCommit(Kind.CHAT, List.of(USER_ID));
+        assertThat(service.get(Kind.CHAT, USER_ID, counting(counts, 1))).isEqualTo(1);
+        assertThat(counts).hasValue(2);
+    }
+
+    private static LongSupplier counting(AtomicInteger counts, long value) {
+        return () -> {
+            counts.incrementAndGet();
+            return value;
+        };
+    }
+
+    private void checkUp() {
+        if (redisDown) {
+            throw new QueryTimeoutException("redis down");
+        }
+    }
+
+    private Long execute(RedisScript<?> script, List<String> keys, Object[] args) {
+        String source = script.getScriptAsString();
+        if (source.contains("INCRBY")) {
+            // ADJUST_IF_EXISTS
+            if (redis.containsKey(keys.get(0))) {
+                long value = Math.max(0, Long.parseLong(redis.get(keys.get(0))) + Long.parseLong((String) args[0]));
+                redis.put(keys.get(0), Long.toString(value));
+                return value;
+            }
+            incr(keys.get(1));
+            return -1L;
+        }
+        if (source.contains("'NX'")) {
+            // SEED_IF_UNCHANGED
+            if (!redis.getOrDefault(keys.get(1), "").equals(args[0]) || redis.containsKey(keys.get(0))) {
+                return 0L;
+            }
+            redis.put(keys.get(0), (String) args[1]);
+            return 1L;
+        }
+        // EVICT
+        for (int i = 0; i < keys.size(); i += 2) {
+            redis.remove(keys.get(i));
+            incr(keys.get(i + 1));
+        }
+        return (long) keys.size() / 2;
+    }
+
+    private void incr(String key) {
+        redis.merge(key, "1", (current, one) -> Long.toString(Long.parseLong(current) + 1));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.bookland_be.service.impl;
+
+import com.example.bookland_be.config.GoogleIdTokenDecoder;
+import com.example.bookland_be.dto.request.LogoutRequest;
+import com.example.bookland_be.dto.request.RefreshRequest;
+import com.example.bookland_be.entity.InvalidatedToken;
+import com.example.bookland_be.entity.User;
+import com.example.bookland_be.exception.AppException;
+import com.example.bookland_be.exception.ErrorCode;
+import com.example.bookland_be.mapper.UserMapper;
+import com.example.bookland_be.repository.InvalidatedTokenRepository;
+import com.example.bookland_be.repository.RoleRepository;
+import com.example.bookland_be.repository.UserRepository;
+import com.example.bookland_be.service.AuthorityScopeService;
+import com.example.bookland_be.service.PasswordHashingService;
+import com.example.bookland_be.service.TokenRevocationService;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthenticationServiceImplTest {
+
+    private static final String SIGNER_KEY = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+    private static final long VALID_DURATION = 3_600;
+    private static final long REFRESHABLE_DURATION = 36_000;
+    private static final String EMAIL = "reader@bookland.test";
+
+    private InvalidatedTokenRepository invalidatedTokenRepository;
+    private AuthenticationServiceImpl authenticationService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        invalidatedTokenRepository = mock(InvalidatedTokenRepository.class);
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(mock(ValueOperations.class));
+
+        // Store thật (Redis / DB mock rỗng) để kiểm tra đúng thời gian giữ JTI
+        TokenRevocationService tokenRevocationService = new TokenRevocationService(
+                invalidatedTokenRepository, stringRedisTemplate, mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(tokenRevocationService, "maxStaleness", Duration.ofSeconds(15));
+        ReflectionTestUtils.setField(tokenRevocationService, "syncOverlap", Duration.ofSeconds(5));
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername(anyString()))
+                .thenReturn(Optional.of(User.builder().id(1L).email(EMAIL).username(EMAIL).build()));
+
+        authenticationService = new AuthenticationServiceImpl(userRepository, mock(RoleRepository.class),
+                tokenRevocationService, mock(GoogleIdTokenDecoder.class), mock(AuthorityScopeService.class),
+                mock(UserMapper.class), mock(PasswordHashingService.class));
+        ReflectionTestUtils.setField(authenticationService, "SIGNER_KEY", SIGNER_KEY);
+        ReflectionTestUtils.setField(authenticationService, "VALID_DURATION", VALID_DURATION);
+        ReflectionTestUtils.setField(authenticationService, "REFRESHABLE_DURATION", REFRESHABLE_DURATION);
+        authenticationService.initSignerAndVerifier();
+    }
+
+    @Test
+    void loggedOutTokenIsRejectedForRefreshAfterExp() throws Exception {
+        // exp đã qua nhưng vẫn trong iat + REFRESHABLE_DURATION => verify REFRESH vẫn chấp nhận
+        String token = tokenIssuedAgo(Duration.ofHours(2));
+        authenticationService.logout(new LogoutRequest(token));
+
+        assertUnauthenticated(() -> authenticationService.refreshToken(new RefreshRequest(token)));
+        assertUnauthenticated(() -> authenticationService.getTokenByRefresh(new RefreshRequest(token)));
+    }
+
+    @Test
+    void rotatedTokenCannotBeReplayedAfterExp() throws Exception {
+        String token = tokenIssuedAgo(Duration.ofHours(2));
+
+        assertThat(authenticationService.refreshToken(new RefreshRequest(token)).getToken()).isNotBlank();
+        assertUnauthenticated(() -> authenticationService.refreshToken(new RefreshRequest(token)));
+    }
+
+    @Test
+    void revocationIsKeptUntilRefreshWindowCloses() throws Exception {
+        Instant issuedAt = Instant.now().minus(2, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+        authenticationService.logout(new LogoutRequest(sign(issuedAt, issuedAt.plusSeconds(VALID_DURATION))));
+
+        ArgumentCaptor<InvalidatedToken> saved = ArgumentCaptor.forClass(InvalidatedToken.class);
+        verify(invalidatedTokenRepository).save(saved.capture());
+        assertThat(saved.getValue().getExpiryTime())
+                .isEqualTo(Date.from(issuedAt.plusSeconds(REFRESHABLE_DURATION)));
+    }
+
+    @Test
+    void tokenOutsideRefreshWindowIsRejectedWithoutRevocation() throws Exception {
+        String token = tokenIssuedAgo(Duration.ofSeconds(REFRESHABLE_DURATION + 60));
+
+        assertUnauthenticated(() -> authenticationService.refreshToken(new RefreshRequest(token)));
+        verify(invalidatedTokenRepository, never()).save(any());
+    }
+
+    private String tokenIssuedAgo(Duration age) throws Exception {
+        Instant issuedAt = Instant.now().minus(age);
+        return sign(issuedAt, issuedAt.plusSeconds(VALID_DURATION));
+    }
+
+    private static String sign(Instant issuedAt, Instant expiresAt) throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(EMAIL)
+                .issuer("kaita")
+                .issueTime(Date.from(issuedAt))
+                .expirationTime(Date.from(expiresAt))
+                .jwtID(UUID.randomUUID().toString())
+                .claim("type", "ACCESS")
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS512), claims);
+        jwt.sign(new MACSigner(SIGNER_KEY.getBytes()));
+        return jwt.serialize();
+    }
+
+    private static void assertUnauthenticated(ThrowingCall call) {
+        assertThatThrownBy(call::run)
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.UNAUTHENTICATED);
+    }
+
+    @FunctionalInterface
+    private interface ThrowingCall {
+        void run() throws Exception;
+    }
+}
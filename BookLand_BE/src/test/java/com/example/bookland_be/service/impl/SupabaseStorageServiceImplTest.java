@@ -0,0 +1,302 @@
+package com.example.bookland_be.service.impl;
+
+import com.example.bookland_be.benchmark.MicroBenchmark;
+import com.example.bookland_be.repository.AuthorRepository;
+import com.example.bookland_be.repository.BookRepository;
+import com.example.bookland_be.repository.EventImageRepository;
+import com.example.bookland_be.repository.ImageAssetRepository;
+import com.example.bookland_be.service.ImageUploadService;
+import com.example.bookland_be.service.ImageVariantService;
+import com.example.bookland_be.service.JobLockService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.lang.NonNull;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Upload lên 1 storage giả (com.sun.net.httpserver) chạy trong JVM, nhận đúng API object của Supabase
+ */
+class SupabaseStorageServiceImplTest {
+
+    private static final String BUCKET = "images";
+    private static final int FILE_SIZE = 5 * 1024 * 1024;
+    // Giả lập độ trễ xử lý / mạng của storage cho mỗi request
+    private static final Duration SERVER_LATENCY = Duration.ofMillis(100);
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final Map<String, Received> received = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private SupabaseStorageServiceImpl storageService;
+
+    private record Received(long bytes, long crc, String contentLength, String transferEncoding, String contentType) {
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/storage/v1/object/", this::handleUpload);
+        server.start();
+
+        storageService = new SupabaseStorageServiceImpl(Duration.ofSeconds(30), Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(storageService, "supabaseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(storageService, "serviceKey", "test-key");
+        ReflectionTestUtils.setField(storageService, "bucket", BUCKET);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void uploadImageStreamsFileWithContentLength() throws IOException {
+        Path path = randomFile("cover.png", 1024 * 1024 + 17, 1);
+        DiskMultipartFile file = new DiskMultipartFile(path, "image/png");
+
+        String url = storageService.uploadImage("covers/bìa 1.png", file);
+
+        Received upload = received.get("/storage/v1/object/images/covers/b%C3%ACa%201.png");
+        assertThat(upload).as("received uploads: %s", received.keySet()).isNotNull();
+        assertThat(upload.bytes()).isEqualTo(Files.size(path));
+        assertThat(upload.crc()).isEqualTo(crc(Files.readAllBytes(path)));
+        // Có Content-Length, không phải chunked
+        assertThat(upload.contentLength()).isEqualTo(Long.toString(Files.size(path)));
+        assertThat(upload.transferEncoding()).isNull();
+        assertThat(upload.contentType()).isEqualTo("image/png");
+        assertThat(url).isEqualTo(storageService.publicUrl("covers/bìa 1.png"));
+    }
+
+    /**
+     * 10 ảnh x 5 MB: cách cũ (getBytes() rồi upload tuần tự từng mảng byte) so với
+     * ImageUploadService.uploadAsync (pool 4 thread, stream từ file tạm)
+     */
+    @Test
+    @Tag(MicroBenchmark.TAG)
+    void tenFiveMegabyteUploads() throws Exception {
+        List<DiskMultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            files.add(new DiskMultipartFile(randomFile("image-" + i + ".jpg", FILE_SIZE, i), "image/jpeg"));
+        }
+        ImageUploadService uploadService = new ImageUploadService(storageService, mock(ImageVariantService.class),
+                mock(ImageAssetRepository.class), mock(BookRepository.class), mock(EventImageRepository.class),
+                mock(AuthorRepository.class), mock(JobLockService.class), mock(PlatformTransactionManager.class), 4);
+
+        // Làm nóng HttpClient / JIT
+        storageService.uploadImage("warmup.jpg", files.get(0));
+        storageService.uploadObject("warmup-bytes.jpg", Files.readAllBytes(files.get(0).path), "image/jpeg");
+
+        Measurement inHeap = measure(() -> {
+            for (DiskMultipartFile file : files) {
+                storageService.uploadObject("old/" + file.getOriginalFilename(), file.readAllBytes(), "image/jpeg");
+            }
+        });
+        maxInFlight.set(0);
+        Measurement streamed = measure(() -> {
+            List<CompletableFuture<ImageUploadService.UploadResult>> uploads = files.stream()
+                    .map(uploadService::uploadAsync)
+                    .toList();
+            uploads.forEach(CompletableFuture::join);
+        });
+
+        print("sequential getBytes() + byte[] upload", inHeap);
+        print("parallel streamed upload (4 threads)", streamed);
+        assertThat(maxInFlight.get()).isEqualTo(4);
+        assertThat(files).allSatisfy(file -> assertThat(file.bytesRead()).isZero());
+        assertThat(received.values().stream().filter(upload -> upload.bytes() == FILE_SIZE).count())
+                .isGreaterThanOrEqualTo(20);
+        assertThat(streamed.wallNanos()).isLessThan(inHeap.wallNanos());
+    }
+
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try (exchange) {
+            CRC32 crc = new CRC32();
+            long bytes = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream body = exchange.getRequestBody()) {
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                    bytes += read;
+                }
+            }
+            received.put(exchange.getRequestURI().getRawPath(), new Received(bytes, crc.getValue(),
+                    exchange.getRequestHeaders().getFirst("Content-Length"),
+                    exchange.getRequestHeaders().getFirst("Transfer-Encoding"),
+                    exchange.getRequestHeaders().getFirst("Content-Type")));
+            Thread.sleep(SERVER_LATENCY.toMillis());
+            byte[] response = "{\"Key\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private record Measurement(long wallNanos, long peakHeapBytes) {
+    }
+
+    @FunctionalInterface
+    private interface Work {
+        void run() throws Exception;
+    }
+
+    // Đỉnh heap đang dùng so với sau GC lúc bắt đầu (lấy mẫu mỗi 1 ms, gồm cả rác chưa được GC dọn)
+    private static Measurement measure(Work work) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong peak = new AtomicLong(baseline);
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+        long start = System.nanoTime();
+        try {
+            work.run();
+        } finally {
+            sampler.interrupt();
+            sampler.join();
+        }
+        return new Measurement(System.nanoTime() - start, Math.max(0, peak.get() - baseline));
+    }
+
+    private static void print(String name, Measurement measurement) {
+        System.out.printf(Locale.ROOT, "[benchmark] %-40s 10 x 5 MB in %5d ms, peak heap +%5.1f MB%n",
+                name, measurement.wallNanos() / 1_000_000, measurement.peakHeapBytes() / (1024.0 * 1024.0));
+    }
+
+    private Path randomFile(String name, int size, long seed) throws IOException {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return Files.write(tempDir.resolve(name), content);
+    }
+
+    private static long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    /**
+     * Giống StandardMultipartFile của Tomcat khi file lớn hơn ngưỡng: nằm trên đĩa.
+     * Đếm số byte bị nạp vào heap qua getBytes() (đường stream phải bằng 0).
+     */
+    private static final class DiskMultipartFile implements MultipartFile {
+
+        private final Path path;
+        private final String contentType;
+        private final AtomicLong bytesRead = new AtomicLong();
+
+        private DiskMultipartFile(Path path, String contentType) {
+            this.path = path;
+            this.contentType = contentType;
+        }
+
+        long bytesRead() {
+            return bytesRead.get();
+        }
+
+        // Đường cũ: đọc cả file vào heap (không tính vào bytesRead của đường stream)
+        byte[] readAllBytes() throws IOException {
+            return Files.readAllBytes(path);
+        }
+
+        @Override
+        @NonNull
+        public String getName() {
+            return "files";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return path.getFileName().toString();
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return getSize() == 0;
+        }
+
+        @Override
+        public long getSize() {
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        @NonNull
+        public byte[] getBytes() throws IOException {
+            byte[] content = Files.readAllBytes(path);
+            bytesRead.addAndGet(content.length);
+            return content;
+        }
+
+        @Override
+        @NonNull
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public void transferTo(@NonNull File dest) throws IOException {
+            Files.copy(path, dest.toPath());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.bookland_be.service.impl;
+
+import com.example.bookland_be.benchmark.MicroBenchmark;
+import com.example.bookland_be.config.GoogleIdTokenDecoder;
+import com.example.bookland_be.dto.request.IntrospectRequest;
+import com.example.bookland_be.entity.Permission;
+import com.example.bookland_be.entity.Role;
+import com.example.bookland_be.entity.User;
+import com.example.bookland_be.mapper.UserMapper;
+import com.example.bookland_be.repository.RoleRepository;
+import com.example.bookland_be.repository.UserRepository;
+import com.example.bookland_be.service.AuthorityScopeService;
+import com.example.bookland_be.service.PasswordHashingService;
+import com.example.bookland_be.service.TokenRevocationService;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Throughput phát hành / verify token: đường cũ (duyệt role + permission mỗi token, MACSigner / MACVerifier
+ * tạo mới mỗi lần) so với đường hiện tại (scope cache theo tập role, signer / verifier dùng chung).
+ * Đường cũ còn tốn 1 + số role lần lazy-load permission từ DB mỗi token; ở đây chỉ đếm, không mô phỏng độ trễ DB.
+ */
+@Tag(MicroBenchmark.TAG)
+class TokenIssuanceBenchmark {
+
+    private static final String SIGNER_KEY = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+    private static final int OPERATIONS = 20_000;
+
+    // Stub thường (không dùng Mockito) để chi phí gọi mock không lẫn vào số đo
+    private static final TokenRevocationService NOT_REVOKED = new TokenRevocationService(null, null, null) {
+        @Override
+        public boolean isRevoked(String jti) {
+            return false;
+        }
+    };
+
+    private RoleRepository roleRepository;
+    private AuthenticationServiceImpl authenticationService;
+    private Method generateToken;
+    private User user;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Role userRole = role(1L, "USER", "READ_BOOK", "WRITE_COMMENT", "CREATE_BILL", "CHAT", "WISHLIST");
+        Role adminRole = role(2L, "ADMIN", "MANAGE_BOOK", "MANAGE_EVENT", "MANAGE_USER", "MANAGE_BILL",
+                "MANAGE_ROLE", "VIEW_REPORT", "SEND_EMAIL", "MANAGE_STORAGE", "MANAGE_CHAT", "MANAGE_SUPPLIER");
+        user = User.builder().id(1L).email("admin@bookland.test").roles(Set.of(userRole, adminRole)).build();
+
+        roleRepository = mock(RoleRepository.class);
+        List<Object[]> rows = new ArrayList<>();
+        for (Role role : List.of(adminRole, userRole)) {
+            role.getPermissions().stream().map(Permission::getName).sorted()
+                    .forEach(permission -> rows.add(new Object[]{role.getName(), permission}));
+        }
+        when(roleRepository.findRoleAndPermissionNames(anyCollection())).thenReturn(rows);
+
+        authenticationService = new AuthenticationServiceImpl(mock(UserRepository.class), mock(RoleRepository.class),
+                NOT_REVOKED, mock(GoogleIdTokenDecoder.class),
+                new AuthorityScopeService(roleRepository), mock(UserMapper.class), mock(PasswordHashingService.class));
+        ReflectionTestUtils.setField(authenticationService, "SIGNER_KEY", SIGNER_KEY);
+        ReflectionTestUtils.setField(authenticationService, "VALID_DURATION", 3_600L);
+        ReflectionTestUtils.setField(authenticationService, "REFRESHABLE_DURATION", 36_000L);
+        authenticationService.initSignerAndVerifier();
+        generateToken = AuthenticationServiceImpl.class.getDeclaredMethod("generateToken", User.class, TokenType.class);
+        generateToken.setAccessible(true);
+    }
+
+    @Test
+    void tokenGenerationThroughput() throws Exception {
+        MicroBenchmark.Result baseline = MicroBenchmark.run("generate: walk roles + new MACSigner", OPERATIONS,
+                i -> baselineGenerate(user));
+        MicroBenchmark.Result current = MicroBenchmark.run("generate: cached scope + shared signer", OPERATIONS,
+                i -> generate(user));
+
+        // Scope chỉ được build 1 lần cho cả (3 + 5) * OPERATIONS token
+        verify(roleRepository, times(1)).findRoleAndPermissionNames(anyCollection());
+        System.out.printf("[benchmark] lazy permission loads per token: baseline %d, cached 0 (1 query per role set)%n",
+                1 + user.getRoles().size());
+        System.out.printf("[benchmark] generate speedup: %.2fx%n", baseline.nanosPerOp() / current.nanosPerOp());
+
+        // Cùng nội dung scope với cách build cũ
+        String token = generate(user);
+        Set<String> scope = Set.of(SignedJWT.parse(token).getJWTClaimsSet().getStringClaim("scope").split(" "));
+        assertThat(scope).isEqualTo(Set.of(buildScopeLikeBefore(user).split(" ")));
+    }
+
+    @Test
+    void tokenVerificationThroughput() throws Exception {
+        String[] tokens = new String[1_000];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = generate(user);
+        }
+        AtomicInteger invalid = new AtomicInteger();
+
+        MicroBenchmark.Result baseline = MicroBenchmark.run("verify: new MACVerifier per token", OPERATIONS, i -> {
+            if (!baselineVerify(tokens[i % tokens.length])) {
+                invalid.incrementAndGet();
+            }
+        });
+        MicroBenchmark.Result current = MicroBenchmark.run("verify: shared verifier (introspect)", OPERATIONS, i -> {
+            if (!authenticationService.introspect(new IntrospectRequest(tokens[i % tokens.length], "ACCESS")).isValid()) {
+                invalid.incrementAndGet();
+            }
+        });
+
+        System.out.printf("[benchmark] verify speedup: %.2fx%n", baseline.nanosPerOp() / current.nanosPerOp());
+        assertThat(invalid).hasValue(0);
+    }
+
+    private String generate(User user) throws Exception {
+        return (String) generateToken.invoke(authenticationService, user, TokenType.ACCESS);
+    }
+
+    // Bản sao verifyToken (ACCESS) trước khi dùng chung MACVerifier
+    private static boolean baselineVerify(String token) throws Exception {
+        SignedJWT signedJWT = SignedJWT.parse(token);
+        Date expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
+        boolean verified = signedJWT.verify(new MACVerifier(SIGNER_KEY.getBytes()));
+        return verified && expiryTime.after(new Date())
+                && !NOT_REVOKED.isRevoked(Objects.requireNonNull(signedJWT.getJWTClaimsSet().getJWTID()));
+    }
+
+    // Bản sao generateToken trước khi có scope cache / signer dùng chung
+    private static String baselineGenerate(User user) throws Exception {
+        JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
+                .subject(user.getEmail())
+                .issuer("kaita")
+                .issueTime(new Date())
+                .expirationTime(new Date(Instant.now().plus(3_600, ChronoUnit.SECONDS).toEpochMilli()))
+                .jwtID(UUID.randomUUID().toString())
+                .claim("type", TokenType.ACCESS.name())
+                .claim("scope", buildScopeLikeBefore(user))
+                .build();
+        JWSObject jwsObject = new JWSObject(new JWSHeader(JWSAlgorithm.HS512), new Payload(claimsSet.toJSONObject()));
+        jwsObject.sign(new MACSigner(SIGNER_KEY.getBytes()));
+        return jwsObject.serialize();
+    }
+
+    private static String buildScopeLikeBefore(User user) {
+        StringJoiner stringJoiner = new StringJoiner(" ");
+        user.getRoles().forEach(role -> {
+            stringJoiner.add("ROLE_" + role.getName());
+            role.getPermissions().forEach(permission -> stringJoiner.add("ROLE_" + permission.getName()));
+        });
+        return stringJoiner.toString();
+    }
+
+    private static Role role(Long id, String name, String... permissions) {
+        Set<Permission> set = new HashSet<>();
+        Arrays.stream(permissions).forEach(permission -> set.add(Permission.builder().name(permission).build()));
+        return Role.builder().id(id).name(name).permissions(set).build();
+    }
+}
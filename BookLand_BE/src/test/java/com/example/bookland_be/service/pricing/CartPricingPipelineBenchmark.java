@@ -0,0 +1,134 @@
+package com.example.bookland_be.service.pricing;
+
+import com.example.bookland_be.benchmark.MicroBenchmark;
+import com.example.bookland_be.entity.Author;
+import com.example.bookland_be.entity.Book;
+import com.example.bookland_be.entity.Category;
+import com.example.bookland_be.entity.Event;
+import com.example.bookland_be.entity.EventAction;
+import com.example.bookland_be.entity.EventTarget;
+import com.example.bookland_be.entity.Publisher;
+import com.example.bookland_be.enums.EventActionType;
+import com.example.bookland_be.enums.EventTargetType;
+import com.example.bookland_be.service.EventApplicationService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tính giá giỏ 100 dòng: đường cũ của BillService (isBookInEventTarget + calculateDiscountedPrice từng dòng,
+ * duyệt Set target và parse actionValue mỗi lần) so với PricingPlan đã compile + CartPricingPipeline
+ */
+@Tag(MicroBenchmark.TAG)
+class CartPricingPipelineBenchmark {
+
+    private static final int LINES = 100;
+    private static final int CARTS = 20_000;
+
+    private final EventApplicationService eventApplicationService = new EventApplicationService(null, null, null, null);
+    private final CartPricingPipeline pipeline = new CartPricingPipeline();
+
+    @Test
+    void priceOneHundredLineCart() throws Exception {
+        Event event = event();
+        List<Book> books = books();
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (Book book : books) {
+            quantities.put(book.getId(), 1 + (int) (book.getId() % 3));
+        }
+        double[] sink = new double[1];
+
+        double legacyTotal = legacyPrice(event, books, quantities);
+        double pipelineTotal = pipelinePrice(event, books, quantities);
+        assertThat(pipelineTotal).isCloseTo(legacyTotal, within(1e-6));
+
+        MicroBenchmark.Result legacy = MicroBenchmark.run("legacy per-line event pricing (100 lines)", CARTS,
+                i -> sink[0] += legacyPrice(event, books, quantities));
+        MicroBenchmark.Result staged = MicroBenchmark.run("compiled plan + pipeline (100 lines)", CARTS,
+                i -> sink[0] += pipelinePrice(event, books, quantities));
+
+        System.out.printf(Locale.ROOT, "[benchmark] 100-line cart pricing: %.2f us -> %.2f us (x%.1f)%n",
+                legacy.nanosPerOp() / 1_000, staged.nanosPerOp() / 1_000,
+                (double) legacy.bestNanos() / staged.bestNanos());
+        assertThat(sink[0]).isPositive();
+    }
+
+    // Giống BillService.createBill trước pipeline
+    private double legacyPrice(Event event, List<Book> books, Map<Long, Integer> quantities) {
+        Map<Long, Double> eventDiscountedPrices = new HashMap<>();
+        for (Book book : books) {
+            if (eventApplicationService.isBookInEventTarget(event, book)) {
+                eventDiscountedPrices.put(book.getId(),
+                        eventApplicationService.calculateDiscountedPrice(event, book.getFinalPrice()));
+            }
+        }
+        double finalBooksCost = 0.0;
+        for (Book book : books) {
+            Double price = eventDiscountedPrices.getOrDefault(book.getId(), book.getFinalPrice());
+            finalBooksCost += price * quantities.get(book.getId());
+        }
+        return finalBooksCost;
+    }
+
+    // Giống BillService.createBill hiện tại: plan lấy từ cache, 1 CartLines cho cả giỏ
+    private double pipelinePrice(Event event, List<Book> books, Map<Long, Integer> quantities) {
+        PricingPlan plan = pipeline.planFor(event);
+        CartLines lines = new CartLines(books.size());
+        for (Book book : books) {
+            lines.add(book.getId(), book.getFinalPrice(), quantities.get(book.getId()), plan.matches(book));
+        }
+        return pipeline.price(plan, lines, 0).getItemsSubtotal();
+    }
+
+    // 30 target trộn BOOK / CATEGORY / AUTHOR / PUBLISHER, khoảng nửa giỏ thuộc target
+    private static Event event() {
+        Set<EventTarget> targets = new HashSet<>();
+        for (long id = 1; id <= 10; id++) {
+            targets.add(target(EventTargetType.BOOK, id * 7));
+        }
+        for (long id = 100; id < 115; id++) {
+            targets.add(target(EventTargetType.CATEGORY, id));
+        }
+        for (long id = 1; id <= 3; id++) {
+            targets.add(target(EventTargetType.AUTHOR, id));
+        }
+        targets.add(target(EventTargetType.PUBLISHER, 1L));
+        targets.add(target(EventTargetType.PUBLISHER, 2L));
+        EventAction action = EventAction.builder().id(1L)
+                .actionType(EventActionType.DISCOUNT_PERCENT).actionValue("15").build();
+        return Event.builder().id(1L).targets(targets).actions(new HashSet<>(Set.of(action))).build();
+    }
+
+    private static EventTarget target(EventTargetType type, Long id) {
+        return EventTarget.builder().targetType(type).targetId(id).build();
+    }
+
+    private static List<Book> books() {
+        List<Book> books = new ArrayList<>(LINES);
+        for (long id = 1; id <= LINES; id++) {
+            Set<Category> categories = new HashSet<>();
+            for (long c = 0; c < 3; c++) {
+                categories.add(Category.builder().id(100 + (id * 3 + c) % 40).build());
+            }
+            books.add(Book.builder()
+                    .id(id)
+                    .originalCost(50_000d + id * 1_000)
+                    .sale(id % 4 == 0 ? 10d : 0d)
+                    .categories(categories)
+                    .author(Author.builder().id(id % 20 + 1).build())
+                    .publisher(Publisher.builder().id(id % 10 + 1).build())
+                    .build());
+        }
+        return books;
+    }
+}
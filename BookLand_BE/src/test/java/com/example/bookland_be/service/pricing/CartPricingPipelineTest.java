@@ -0,0 +1,276 @@
+package com.example.bookland_be.service.pricing;
+
+import com.example.bookland_be.entity.Event;
+import com.example.bookland_be.entity.EventAction;
+import com.example.bookland_be.entity.EventTarget;
+import com.example.bookland_be.enums.EventActionType;
+import com.example.bookland_be.enums.EventTargetType;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class CartPricingPipelineTest {
+
+    private static final double EPS = 1e-6;
+    private static final long BOOK_A = 1L;
+    private static final long BOOK_B = 2L;
+    private static final long BOOK_C = 3L;
+
+    private final CartPricingPipeline pipeline = new CartPricingPipeline();
+
+    // ===== Stage 1: giá từng sản phẩm =====
+
+    @Test
+    void discountPercentAppliesToTargetedLinesOnly() {
+        PricingPlan plan = plan(targets(EventTargetType.BOOK, BOOK_A), action(EventActionType.DISCOUNT_PERCENT, "20"));
+        CartLines lines = lines(plan, line(BOOK_A, 100_000, 2), line(BOOK_B, 50_000, 1));
+
+        CartPricingResult result = pipeline.price(plan, lines, 0);
+
+        assertThat(lines.unitPrice(0)).isCloseTo(80_000, within(EPS));
+        assertThat(lines.unitPrice(1)).isCloseTo(50_000, within(EPS));
+        assertThat(result.getItemsSubtotal()).isCloseTo(210_000, within(EPS));
+        assertThat(result.isEventApplied()).isTrue();
+    }
+
+    @Test
+    void discountAmountNeverGoesBelowZero() {
+        PricingPlan plan = plan(targets(EventTargetType.BOOK, BOOK_A), action(EventActionType.DISCOUNT_AMOUNT, "30000"));
+        CartLines lines = lines(plan, line(BOOK_A, 100_000, 1));
+        pipeline.price(plan, lines, 0);
+        assertThat(lines.unitPrice(0)).isCloseTo(70_000, within(EPS));
+
+        PricingPlan big = plan(targets(EventTargetType.BOOK, BOOK_A), action(EventActionType.DISCOUNT_AMOUNT, "500000"));
+        CartLines cheap = lines(big, line(BOOK_A, 100_000, 1));
+        pipeline.price(big, cheap, 0);
+        assertThat(cheap.unitPrice(0)).isCloseTo(0, within(EPS));
+    }
+
+    @Test
+    void fixedPriceOnlyLowersPrice() {
+        PricingPlan plan = plan(targets(EventTargetType.BOOK, BOOK_A, BOOK_B),
+                action(EventActionType.DISCOUNT_FIXED_PRICE, "60000"));
+        CartLines lines = lines(plan, line(BOOK_A, 100_000, 1), line(BOOK_B, 40_000, 1));
+
+        pipeline.price(plan, lines, 0);
+
+        assertThat(lines.unitPrice(0)).isCloseTo(60_000, within(EPS));
+        assertThat(lines.unitPrice(1)).isCloseTo(40_000, within(EPS));
+    }
+
+    @Test
+    void allTargetDiscountsEveryLine() {
+        PricingPlan plan = plan(targets(EventTargetType.ALL, 0L), action(EventActionType.DISCOUNT_PERCENT, "10"));
+        CartLines lines = lines(plan, line(BOOK_A, 100_000, 1), line(BOOK_B, 50_000, 1));
+
+        CartPricingResult result = pipeline.price(plan, lines, 0);
+
+        assertThat(result.getItemsSubtotal()).isCloseTo(135_000, within(EPS));
+    }
+
+    @Test
+    void allOrdersTargetDoesNotRepriceUntargetedLines() {
+        // BOOK + ALL_ORDERS: trước đây chỉ sách thuộc target được giảm
+        Set<EventTarget> targets = targets(EventTargetType.BOOK, BOOK_A);
+        targets.addAll(targets(EventTargetType.ALL_ORDERS, 0L));
+        PricingPlan plan = plan(targets, action(EventActionType.DISCOUNT_PERCENT, "50"),
+                action(EventActionType.FREE_SHIPPING, ""));
+        CartLines lines = lines(plan, line(BOOK_A, 100_000, 1), line(BOOK_B, 80_000, 1));
+
+        CartPricingResult result = pipeline.price(plan, lines, 30_000);
+
+        assertThat(lines.unitPrice(0)).isCloseTo(50_000, within(EPS));
+        assertThat(lines.unitPrice(1)).isCloseTo(80_000, within(EPS));
+        assertThat(result.getShippingDiscount()).isCloseTo(30_000, within(EPS));
+        assertThat(result.getGrandTotal()).isCloseTo(130_000, within(EPS));
+    }
+
+    @Test
+    void allOrdersOnlyEventGivesShippingDiscountWithoutTouchingLines() {
+        PricingPlan plan = plan(targets(EventTargetType.ALL_ORDERS, 0L),
+                action(EventActionType.DISCOUNT_PERCENT, "50"),
+                action(EventActionType.DISCOUNT_SHIPPING_AMOUNT, "10000"));
+        CartLines lines = lines(plan, line(BOOK_A, 100_000, 1));
+
+        CartPricingResult result = pipeline.price(plan, lines, 30_000);
+
+        assertThat(lines.isDiscounted(0)).isFalse();
+        assertThat(result.getShippingDiscount()).isCloseTo(10_000, within(EPS));
+        assertThat(result.isEventApplied()).isTrue();
+    }
+
+    // ===== Stage 2: toàn giỏ =====
+
+    @Test
+    void buyXGetYFreeGivesCheapestUnitsAway() {
+        PricingPlan plan = plan(targets(EventTargetType.BOOK, BOOK_A, BOOK_B), action(EventActionType.BUY_X_GET_Y_FREE, "2,1"));
+        // 4 + 2 = 6 sản phẩm => 2 combo => 2 sản phẩm rẻ nhất (BOOK_B) miễn phí
+        CartLines lines = lines(plan, line(BOOK_A, 100_000, 4), line(BOOK_B, 30_000, 2), line(BOOK_C, 10_000, 3));
+
+        CartPricingResult result = pipeline.price(plan, lines, 0);
+
+        assertThat(lines.lineTotal(0)).isCloseTo(400_000, within(EPS));
+        assertThat(lines.lineTotal(1)).isCloseTo(0, within(EPS));
+        // Dòng ngoài target không được tính vào combo dù rẻ hơn
+        assertThat(lines.lineTotal(2)).isCloseTo(30_000, within(EPS));
+        assertThat(result.getItemsSubtotal()).isCloseTo(430_000, within(EPS));
+    }
+
+    @Test
+    void buyXGetYDiscountNeedsEnoughUnits() {
+        PricingPlan plan = plan(targets(EventTargetType.BOOK, BOOK_A), action(EventActionType.BUY_X_GET_Y_DISCOUNT, "3,10"));
+
+        CartLines two = lines(plan, line(BOOK_A, 100_000, 2));
+        pipeline.price(plan, two, 0);
+        assertThat(two.lineTotal(0)).isCloseTo(200_000, within(EPS));
+
+        CartLines three = lines(plan, line(BOOK_A, 100_000, 3));
+        pipeline.price(plan, three, 0);
+        assertThat(three.lineTotal(0)).isCloseTo(270_000, within(EPS));
+    }
+
+    @Test
+    void tieredDiscountPicksHighestReachedTier() {
+        PricingPlan plan = plan(targets(EventTargetType.BOOK, BOOK_A),
+                action(EventActionType.TIERED_DISCOUNT, "1000000:20,500000:10"));
+
+        CartLines low = lines(plan, line(BOOK_A, 100_000, 4));
+        pipeline.price(plan, low, 0);
+        assertThat(low.lineTotal(0)).isCloseTo(400_000, within(EPS));
+
+        CartLines mid = lines(plan, line(BOOK_A, 100_000, 6));
+        pipeline.price(plan, mid, 0);
+        assertThat(mid.lineTotal(0)).isCloseTo(540_000, within(EPS));
+
+        CartLines high = lines(plan, line(BOOK_A, 100_000, 10));
+        pipeline.price(plan, high, 0);
+        assertThat(high.lineTotal(0)).isCloseTo(800_000, within(EPS));
+    }
+
+    @Test
+    void tieredDiscountWithAllOrdersUsesWholeOrderThresholdButTargetedLines() {
+        Set<EventTarget> targets = targets(EventTargetType.BOOK, BOOK_A);
+        targets.addAll(targets(EventTargetType.ALL_ORDERS, 0L));
+        PricingPlan plan = plan(targets, action(EventActionType.TIERED_DISCOUNT, "500000:10"));
+        // Sách target chỉ 200k nhưng cả đơn 600k => đạt ngưỡng
+        CartLines lines = lines(plan, line(BOOK_A, 100_000, 2), line(BOOK_B, 100_000, 4));
+
+        pipeline.price(plan, lines, 0);
+
+        assertThat(lines.lineTotal(0)).isCloseTo(180_000, within(EPS));
+        assertThat(lines.lineTotal(1)).isCloseTo(400_000, within(EPS));
+    }
+
+    @Test
+    void bundlePriceSplitsSavingByUnitPrice() {
+        PricingPlan plan = plan(targets(EventTargetType.BOOK, BOOK_A, BOOK_B), action(EventActionType.BUNDLE_PRICE, "120000"));
+        // 2 combo (min quantity), mỗi combo 150k -> 120k, tiết kiệm 60k chia 100:50
+        CartLines lines = lines(plan, line(BOOK_A, 100_000, 3), line(BOOK_B, 50_000, 2));
+
+        CartPricingResult result = pipeline.price(plan, lines, 0);
+
+        assertThat(lines.lineTotal(0)).isCloseTo(300_000 - 40_000, within(EPS));
+        assertThat(lines.lineTotal(1)).isCloseTo(100_000 - 20_000, within(EPS));
+        assertThat(result.getItemsSubtotal()).isCloseTo(340_000, within(EPS));
+    }
+
+    @Test
+    void cartActionStacksOnItemAction() {
+        PricingPlan plan = plan(targets(EventTargetType.BOOK, BOOK_A),
+                action(EventActionType.DISCOUNT_PERCENT, "10"),
+                action(EventActionType.BUY_X_GET_Y_DISCOUNT, "2,50"));
+        CartLines lines = lines(plan, line(BOOK_A, 100_000, 2));
+
+        pipeline.price(plan, lines, 0);
+
+        assertThat(lines.unitPrice(0)).isCloseTo(45_000, within(EPS));
+    }
+
+    // ===== Stage 3: phí ship =====
+
+    @Test
+    void shippingActions() {
+        CartPricingResult free = priceShipping(action(EventActionType.FREE_SHIPPING, ""));
+        assertThat(free.getShippingTotal()).isCloseTo(0, within(EPS));
+
+        CartPricingResult percent = priceShipping(action(EventActionType.DISCOUNT_SHIPPING_PERCENT, "50"));
+        assertThat(percent.getShippingDiscount()).isCloseTo(15_000, within(EPS));
+
+        CartPricingResult amount = priceShipping(action(EventActionType.DISCOUNT_SHIPPING_AMOUNT, "50000"));
+        assertThat(amount.getShippingDiscount()).isCloseTo(30_000, within(EPS));
+        assertThat(amount.getGrandTotal()).isCloseTo(100_000, within(EPS));
+    }
+
+    @Test
+    void shippingDiscountNeedsParticipatingLine() {
+        PricingPlan plan = plan(targets(EventTargetType.BOOK, BOOK_A), action(EventActionType.FREE_SHIPPING, ""));
+        CartLines lines = lines(plan, line(BOOK_B, 100_000, 1));
+
+        CartPricingResult result = pipeline.price(plan, lines, 30_000);
+
+        assertThat(result.getShippingDiscount()).isCloseTo(0, within(EPS));
+        assertThat(result.isEventApplied()).isFalse();
+    }
+
+    @Test
+    void noPlanKeepsBasePrices() {
+        CartLines lines = new CartLines(1);
+        lines.add(BOOK_A, 100_000, 2, false);
+
+        CartPricingResult result = pipeline.price(null, lines, 30_000);
+
+        assertThat(result.getGrandTotal()).isCloseTo(230_000, within(EPS));
+        assertThat(result.getTotalDiscount()).isCloseTo(0, within(EPS));
+        assertThat(result.isEventApplied()).isFalse();
+    }
+
+    // ===== Helpers =====
+
+    private CartPricingResult priceShipping(EventAction action) {
+        PricingPlan plan = plan(targets(EventTargetType.BOOK, BOOK_A), action);
+        return pipeline.price(plan, lines(plan, line(BOOK_A, 100_000, 1)), 30_000);
+    }
+
+    private record Line(long bookId, double price, int quantity) {
+    }
+
+    private static Line line(long bookId, double price, int quantity) {
+        return new Line(bookId, price, quantity);
+    }
+
+    // Eligibility giống CartService / BillService: plan.matches(...) theo target của sách
+    private static CartLines lines(PricingPlan plan, Line... items) {
+        CartLines lines = new CartLines(items.length);
+        for (Line item : items) {
+            lines.add(item.bookId(), item.price(), item.quantity(),
+                    plan.matches(item.bookId(), null, null, null, null));
+        }
+        return lines;
+    }
+
+    private static Set<EventTarget> targets(EventTargetType type, Long... ids) {
+        Set<EventTarget> targets = new HashSet<>();
+        for (Long id : ids) {
+            targets.add(EventTarget.builder().targetType(type).targetId(id).build());
+        }
+        return targets;
+    }
+
+    private static long nextActionId = 1;
+
+    private static EventAction action(EventActionType type, String value) {
+        return EventAction.builder().id(nextActionId++).actionType(type).actionValue(value).build();
+    }
+
+    private static PricingPlan plan(Set<EventTarget> targets, EventAction... actions) {
+        Event event = Event.builder()
+                .targets(targets)
+                .actions(new HashSet<>(Set.of(actions)))
+                .build();
+        return PricingPlan.compile(event);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.bookland_be.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void noFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        List<String> inserted = jtis(10_000);
+        inserted.forEach(filter::put);
+
+        assertThat(inserted).allMatch(filter::mightContain);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearConfiguredBound() {
+        int n = 20_000;
+        BloomFilter filter = new BloomFilter(n, 0.01);
+        jtis(n).forEach(filter::put);
+
+        int probes = 100_000;
+        int falsePositives = 0;
+        for (String jti : jtis(probes)) {
+            if (filter.mightContain(jti)) {
+                falsePositives++;
+            }
+        }
+
+        // Cấu hình 1%, cho phép dư do làm tròn số bit / số hàm băm
+        assertThat(falsePositives / (double) probes).isLessThan(0.015);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+
+        assertThat(jtis(1_000)).noneMatch(filter::mightContain);
+    }
+
+    @Test
+    void concurrentPutsAreNotLost() throws Exception {
+        BloomFilter filter = new BloomFilter(40_000, 0.01);
+        List<List<String>> batches = List.of(jtis(10_000), jtis(10_000), jtis(10_000), jtis(10_000));
+
+        ExecutorService executor = Executors.newFixedThreadPool(batches.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<String> batch : batches) {
+                futures.add(executor.submit(() -> batch.forEach(filter::put)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (List<String> batch : batches) {
+            assertThat(batch).allMatch(filter::mightContain);
+        }
+    }
+
+    private static List<String> jtis(int count) {
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(UUID.randomUUID().toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.bookland_be.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedTimingWheelTest {
+
+    // 8 bucket x 10ms => 1 vòng = 80ms
+    private static final Duration TICK = Duration.ofMillis(10);
+    private static final int TICKS_PER_WHEEL = 8;
+
+    private HashedTimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new HashedTimingWheel("test-wheel", TICK, TICKS_PER_WHEEL, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.close();
+    }
+
+    @Test
+    void firesWithinOneWheelNotBeforeDeadline() throws InterruptedException {
+        assertFiresOnTime(Duration.ofMillis(35));
+    }
+
+    @Test
+    void deadlineSeveralRoundsAwayWaitsForItsRound() throws InterruptedException {
+        // 3 vòng + vài tick: task nằm cùng bucket với các tick sớm hơn, phải chờ đúng số vòng
+        assertFiresOnTime(Duration.ofMillis(3 * 80 + 25));
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextTick() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long scheduledAt = System.currentTimeMillis();
+        wheel.schedule(fired::countDown, Instant.now().minusSeconds(5));
+
+        assertThat(fired.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(System.currentTimeMillis() - scheduledAt).isLessThan(200);
+    }
+
+    @Test
+    void cancelledTimeoutNeverFires() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        HashedTimingWheel.Timeout timeout = wheel.schedule(fired::countDown, Instant.now().plusMillis(50));
+        timeout.cancel();
+
+        assertThat(timeout.isCancelled()).isTrue();
+        assertThat(fired.await(300, TimeUnit.MILLISECONDS)).isFalse();
+    }
+
+    @Test
+    void firesInDeadlineOrder() throws InterruptedException {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        Instant now = Instant.now();
+        // Cùng bucket (cách nhau đúng 1 vòng) và khác bucket
+        wheel.schedule(() -> { order.add(3); done.countDown(); }, now.plusMillis(30 + 2 * 80));
+        wheel.schedule(() -> { order.add(1); done.countDown(); }, now.plusMillis(30));
+        wheel.schedule(() -> { order.add(2); done.countDown(); }, now.plusMillis(30 + 80));
+
+        assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly(1, 2, 3);
+    }
+
+    private void assertFiresOnTime(Duration delay) throws InterruptedException {
+        AtomicLong firedAt = new AtomicLong();
+        CountDownLatch fired = new CountDownLatch(1);
+        Instant deadline = Instant.now().plus(delay);
+        wheel.schedule(() -> {
+            firedAt.set(System.currentTimeMillis());
+            fired.countDown();
+        }, deadline);
+
+        assertThat(fired.await(delay.toMillis() + 1000, TimeUnit.MILLISECONDS)).isTrue();
+        long lateness = firedAt.get() - deadline.toEpochMilli();
+        assertThat(lateness).isGreaterThanOrEqualTo(0);
+        // Trễ tối đa ~1 tick, cộng dư cho máy CI chậm
+        assertThat(lateness).isLessThan(TICK.toMillis() + 100);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.bookland_be.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HyperLogLogTest {
+
+    @Test
+    void errorUnderTwoPercentAtHundredThousand() {
+        // precision 14: sai số chuẩn ~0.8%
+        HyperLogLog hll = new HyperLogLog(14);
+        int distinct = 100_000;
+        for (long i = 1; i <= distinct; i++) {
+            hll.add(i);
+        }
+
+        assertThat(relativeError(hll.cardinality(), distinct)).isLessThan(0.02);
+    }
+
+    @Test
+    void analyticsPrecisionStaysWithinExpectedError() {
+        // precision 11 (EventAnalyticsService): sai số chuẩn ~2.3%, cho phép 3 sigma
+        HyperLogLog hll = new HyperLogLog(11);
+        int distinct = 100_000;
+        for (long i = 1; i <= distinct; i++) {
+            hll.add(i * 7919);
+        }
+
+        assertThat(relativeError(hll.cardinality(), distinct)).isLessThan(0.07);
+    }
+
+    @Test
+    void duplicatesAreNotCounted() {
+        HyperLogLog hll = new HyperLogLog(14);
+        for (int round = 0; round < 10; round++) {
+            for (long i = 1; i <= 1_000; i++) {
+                hll.add(i);
+            }
+        }
+
+        assertThat(relativeError(hll.cardinality(), 1_000)).isLessThan(0.02);
+    }
+
+    @Test
+    void smallCardinalitiesUseLinearCounting() {
+        HyperLogLog hll = new HyperLogLog(11);
+        assertThat(hll.cardinality()).isZero();
+
+        for (long i = 1; i <= 10; i++) {
+            hll.add(i);
+        }
+        assertThat(hll.cardinality()).isEqualTo(10);
+    }
+
+    @Test
+    void mergeEqualsUnion() {
+        HyperLogLog left = new HyperLogLog(14);
+        HyperLogLog right = new HyperLogLog(14);
+        for (long i = 1; i <= 60_000; i++) {
+            left.add(i);
+        }
+        for (long i = 40_001; i <= 100_000; i++) {
+            right.add(i);
+        }
+
+        left.merge(right);
+
+        assertThat(relativeError(left.cardinality(), 100_000)).isLessThan(0.02);
+        assertThatThrownBy(() -> left.merge(new HyperLogLog(11))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void clearResetsRegisters() {
+        HyperLogLog hll = new HyperLogLog(11);
+        for (long i = 1; i <= 5_000; i++) {
+            hll.add(i);
+        }
+
+        hll.clear();
+
+        assertThat(hll.cardinality()).isZero();
+    }
+
+    private static double relativeError(long estimate, long actual) {
+        return Math.abs(estimate - actual) / (double) actual;
+    }
+}
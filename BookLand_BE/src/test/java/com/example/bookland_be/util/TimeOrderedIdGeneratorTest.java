@@ -0,0 +1,100 @@
+package com.example.bookland_be.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimeOrderedIdGeneratorTest {
+
+    @Test
+    void idsAreStrictlyIncreasingOnOneThread() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(7);
+
+        // > 4096 id để chắc chắn đi qua lúc hết sequence trong 1 ms
+        long previous = generator.nextId();
+        for (int i = 0; i < 100_000; i++) {
+            long next = generator.nextId();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void idsAreUniqueAndIncreasingPerThreadAcrossThreads() throws Exception {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(7);
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    long[] ids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            Set<Long> all = new HashSet<>(threads * perThread * 2);
+            for (Future<long[]> result : results) {
+                long[] ids = result.get();
+                for (int i = 0; i < ids.length; i++) {
+                    // Trong 1 thread, id sau luôn lớn hơn id trước
+                    if (i > 0) {
+                        assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+                    }
+                    assertThat(all.add(ids[i])).as("duplicate id %d", ids[i]).isTrue();
+                }
+            }
+            assertThat(all).hasSize(threads * perThread);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void differentNodesNeverCollideInTheSameMillisecond() {
+        TimeOrderedIdGenerator first = new TimeOrderedIdGenerator(1);
+        TimeOrderedIdGenerator second = new TimeOrderedIdGenerator(2);
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(ids.add(first.nextId())).isTrue();
+            assertThat(ids.add(second.nextId())).isTrue();
+        }
+    }
+
+    @Test
+    void encodesNodeIdAndTimestamp() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE_ID);
+        long before = System.currentTimeMillis();
+        long id = generator.nextId();
+        long after = System.currentTimeMillis();
+
+        assertThat(generator.getNodeId()).isEqualTo(TimeOrderedIdGenerator.MAX_NODE_ID);
+        assertThat((id >>> 12) & TimeOrderedIdGenerator.MAX_NODE_ID).isEqualTo(TimeOrderedIdGenerator.MAX_NODE_ID);
+        assertThat((id >>> 22) + TimeOrderedIdGenerator.EPOCH).isBetween(before, after);
+    }
+
+    @Test
+    void rejectsNodeIdOutOfRange() {
+        assertThatThrownBy(() -> new TimeOrderedIdGenerator(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE_ID + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.bookland_be.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    @Test
+    void startsFullAndRejectsWhenEmpty() {
+        TokenBucket bucket = new TokenBucket(3, 0.001);
+
+        assertThat(bucket.isFull()).isTrue();
+        assertThat(bucket.tryConsume()).isTrue();
+        assertThat(bucket.tryConsume()).isTrue();
+        assertThat(bucket.tryConsume()).isTrue();
+        assertThat(bucket.tryConsume()).isFalse();
+        assertThat(bucket.isFull()).isFalse();
+    }
+
+    @Test
+    void refillsOverTime() throws InterruptedException {
+        // 20 token / giây => 1 token mỗi 50ms
+        TokenBucket bucket = new TokenBucket(2, 20);
+        drain(bucket);
+        assertThat(bucket.tryConsume()).isFalse();
+
+        Thread.sleep(120);
+
+        assertThat(bucket.tryConsume()).isTrue();
+    }
+
+    @Test
+    void refillIsCappedAtCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(2, 100);
+        drain(bucket);
+
+        Thread.sleep(200); // Đủ hồi 20 token nhưng chỉ giữ tối đa 2
+
+        assertThat(bucket.isFull()).isTrue();
+        assertThat(bucket.tryConsume()).isTrue();
+        assertThat(bucket.tryConsume()).isTrue();
+        assertThat(bucket.tryConsume()).isFalse();
+    }
+
+    @Test
+    void acquireWaitsForRefillRate() {
+        // Capacity 1, 50 token / giây: token đầu có sẵn, 10 token sau cần ~200ms
+        TokenBucket bucket = new TokenBucket(1, 50);
+        long start = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            bucket.acquire();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(180);
+        assertThat(elapsedMillis).isLessThan(2_000);
+    }
+
+    private static void drain(TokenBucket bucket) {
+        while (bucket.tryConsume()) {
+            // Lấy hết token có sẵn
+        }
+    }
+}